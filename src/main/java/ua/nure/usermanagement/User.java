@@ -12,6 +12,7 @@ public class User{
     private String firstName;
     private String lastName;
     private Date dateOfBirth;
+    private Long version;
 
     public User() {
     }
@@ -22,6 +23,7 @@ public class User{
         this.lastName = user.lastName;
 
         this.dateOfBirth = user.dateOfBirth;
+        this.version = user.version;
     }
 
     public User(Long id, String firstName, String lastName, Date dateOfBirth) {
@@ -69,6 +71,24 @@ public class User{
         this.dateOfBirth = dateOfBirth;
     }
 
+    /**
+     *
+     * @return a number of the last change of the user in db, null if it isn't known
+     */
+    public Long getVersion() {
+        return version;
+    }
+
+    /**
+     * Version isn't compared by {@link #equals(Object)}, it only guards an update from overwriting
+     * changes, that were made after the user was read
+     *
+     * @param version a version, that the user had, when it was read from db, null for an update without a check
+     */
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
     /**
      *
      * @return a string, that contains both first and last name of user, uses ', ' as delimiter
@@ -116,6 +136,7 @@ public class User{
                 ", firstName='" + firstName + '\'' +
                 ", lastName='" + lastName + '\'' +
                 ", dateOfBirth=" + dateOfBirth +
+                ", version=" + version +
                 '}';
     }
 }
@@ -0,0 +1,62 @@
+package ua.nure.usermanagement;
+
+/**
+ * A short, immutable description of a user for lists: id and name only. It is read from db without
+ * date of birth, so listing many users transfers and allocates less, than reading whole {@link User} objects.
+ */
+public class UserSummary {
+    private final Long id;
+    private final String firstName;
+    private final String lastName;
+
+    public UserSummary(Long id, String firstName, String lastName) {
+        this.id = id;
+        this.firstName = firstName;
+        this.lastName = lastName;
+    }
+
+    public UserSummary(User user) {
+        this(user.getId(), user.getFirstName(), user.getLastName());
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        UserSummary summary = (UserSummary) o;
+
+        if (id != null ? !id.equals(summary.id) : summary.id != null) return false;
+        if (!firstName.equals(summary.firstName)) return false;
+        return lastName.equals(summary.lastName);
+    }
+
+    @Override
+    public int hashCode() {
+        int result = id != null ? id.hashCode() : 0;
+        result = 31 * result + firstName.hashCode();
+        result = 31 * result + lastName.hashCode();
+        return result;
+    }
+
+    @Override
+    public String toString() {
+        return "UserSummary{" +
+                "id=" + id +
+                ", firstName='" + firstName + '\'' +
+                ", lastName='" + lastName + '\'' +
+                '}';
+    }
+}
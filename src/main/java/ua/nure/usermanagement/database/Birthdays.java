@@ -0,0 +1,51 @@
+package ua.nure.usermanagement.database;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Date;
+
+/**
+ * Converts dates of birth into values of BIRTHDAY column: month * 100 + day of month, e.g. 1231 for December 31.
+ * Birthdays of all years share these values, so "next N days" is one or two ranges of an index
+ */
+final class Birthdays {
+    static final int FIRST_DAY_OF_YEAR = 101;
+    static final int LAST_DAY_OF_YEAR = 1231;
+
+    private Birthdays() {
+    }
+
+    static int of(Date dateOfBirth) {
+        return of(Instant.ofEpochMilli(dateOfBirth.getTime()).atZone(ZoneId.systemDefault()).toLocalDate());
+    }
+
+    static int of(LocalDate day) {
+        return day.getMonthValue() * 100 + day.getDayOfMonth();
+    }
+
+    /**
+     * @param today the first day of the period
+     * @param days  amount of days after today, that belong to the period
+     * @return inclusive ranges of BIRTHDAY values in order of their days: one range, or two, if the period
+     * crosses the end of the year
+     */
+    static int[][] ranges(LocalDate today, int days) {
+        if (days < 0) {
+            throw new IllegalArgumentException("Amount of days must not be negative: " + days);
+        }
+        int from = of(today);
+        if (days >= 365) {
+            if (from == FIRST_DAY_OF_YEAR) {
+                return new int[][]{{FIRST_DAY_OF_YEAR, LAST_DAY_OF_YEAR}};
+            }
+            return new int[][]{{from, LAST_DAY_OF_YEAR}, {FIRST_DAY_OF_YEAR, from - 1}};
+        }
+        LocalDate last = today.plusDays(days);
+        int to = of(last);
+        if (last.getYear() == today.getYear()) {
+            return new int[][]{{from, to}};
+        }
+        return new int[][]{{from, LAST_DAY_OF_YEAR}, {FIRST_DAY_OF_YEAR, to}};
+    }
+}
@@ -0,0 +1,226 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A read-through cache of {@link UserDao#find(Long)} results. Entries are evicted in least-recently-used
+ * order, when the cache is full, and expire after a time to live. Every write through this DAO
+ * invalidates the entries of the written users. Inside a unit of work users aren't put into the cache,
+ * because they may be rolled back, and written users are invalidated once more at its end.
+ * Settings: dao.cache.delegate (wrapped DAO), dao.cache.maxSize, dao.cache.ttl (milliseconds)
+ *
+ * @see ua.nure.usermanagement.database.UserDao
+ */
+public class CachingUserDao extends UserDaoDecorator {
+    private static final String PREFIX = "dao.cache";
+
+    private int maxSize;
+    private long ttlNanos;
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<Long, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Entry> eldest) {
+            if (size() > maxSize) {
+                evictions.incrementAndGet();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    public CachingUserDao() {
+        super(PREFIX);
+    }
+
+    /**
+     * @param delegate a DAO, that is wrapped by this cache
+     * @param maxSize  maximum amount of cached users
+     * @param ttl      time in milliseconds, after which a cached user is read again
+     */
+    public CachingUserDao(UserDao delegate, int maxSize, long ttl) {
+        super(PREFIX, delegate);
+        this.maxSize = maxSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl);
+    }
+
+    /**
+     * Reads size and time to live of the cache from settings.properties
+     *
+     * @see UserDaoDecorator#setConnectionFactory(ConnectionFactory)
+     */
+    @Override
+    public void setConnectionFactory(ConnectionFactory factory) {
+        if (delegate == null) {
+            maxSize = Integer.parseInt(getProperty("maxSize", "1000"));
+            ttlNanos = TimeUnit.MILLISECONDS.toNanos(Long.parseLong(getProperty("ttl", "60000")));
+        }
+        super.setConnectionFactory(factory);
+    }
+
+    /**
+     * Returns a cached copy of the user, if there is one, that hasn't expired, otherwise reads it from the wrapped DAO
+     *
+     * @see UserDao#find(Long)
+     */
+    @Override
+    public User find(Long id) throws DatabaseException {
+        long now = System.nanoTime();
+        synchronized (entries) {
+            Entry entry = entries.get(id);
+            if (entry != null) {
+                if (now - entry.loadedAt < ttlNanos) {
+                    hits.incrementAndGet();
+                    return new User(entry.user);
+                }
+                entries.remove(id);
+                evictions.incrementAndGet();
+            }
+        }
+        misses.incrementAndGet();
+        long invalidationsBeforeRead = invalidations.get();
+        User user = delegate.find(id);
+        if (user != null && user.getId() != null && !Transaction.isActive()) {
+            synchronized (entries) {
+                // a write, that happened during the read, may have made the user stale
+                if (invalidations.get() == invalidationsBeforeRead) {
+                    entries.put(id, new Entry(new User(user), now));
+                }
+            }
+        }
+        return user;
+    }
+
+    @Override
+    public void update(User user) throws DatabaseException {
+        List<Long> ids = Collections.singletonList(user.getId());
+        invalidate(ids);
+        try {
+            delegate.update(user);
+        } finally {
+            invalidateAfterWrite(ids);
+        }
+    }
+
+    @Override
+    public int updateAll(Collection<User> users) throws DatabaseException {
+        List<Long> ids = new ArrayList<>(users.size());
+        for (User user : users) {
+            ids.add(user.getId());
+        }
+        invalidate(ids);
+        try {
+            return delegate.updateAll(users);
+        } finally {
+            invalidateAfterWrite(ids);
+        }
+    }
+
+    @Override
+    public void delete(User user) throws DatabaseException {
+        List<Long> ids = Collections.singletonList(user.getId());
+        invalidate(ids);
+        try {
+            delegate.delete(user);
+        } finally {
+            invalidateAfterWrite(ids);
+        }
+    }
+
+    @Override
+    public int deleteAll(Collection<Long> ids) throws DatabaseException {
+        List<Long> idList = new ArrayList<>(ids);
+        try {
+            return delegate.deleteAll(idList);
+        } finally {
+            invalidateAfterWrite(idList);
+        }
+    }
+
+    /**
+     * Removes users from the cache. Called before and after a write, so a read, that
+     * races with the write, can't leave a stale copy behind
+     */
+    private void invalidate(Collection<Long> ids) {
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            for (Long id : ids) {
+                entries.remove(id);
+            }
+        }
+    }
+
+    /**
+     * Removes written users from the cache now and, inside a unit of work, once more at its end,
+     * because a read of another thread may have cached them before the work was committed
+     */
+    private void invalidateAfterWrite(List<Long> ids) {
+        invalidate(ids);
+        if (Transaction.isActive()) {
+            Transaction.afterCompletion(() -> invalidate(ids));
+        }
+    }
+
+    /**
+     * Removes all users from the cache
+     */
+    public void clear() {
+        synchronized (entries) {
+            entries.clear();
+        }
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * @return amount of users, removed from the cache because it was full or they expired
+     */
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public int getSize() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "CachingUserDao{" +
+                "size=" + getSize() +
+                ", maxSize=" + maxSize +
+                ", hits=" + hits +
+                ", misses=" + misses +
+                ", evictions=" + evictions +
+                '}';
+    }
+
+    private static class Entry {
+        private final User user;
+        private final long loadedAt;
+
+        Entry(User user, long loadedAt) {
+            this.user = user;
+            this.loadedAt = loadedAt;
+        }
+    }
+}
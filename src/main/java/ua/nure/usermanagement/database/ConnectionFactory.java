@@ -15,4 +15,14 @@ public interface ConnectionFactory {
      * @throws DatabaseException
      */
     public Connection createConnection() throws DatabaseException;
+
+    /**
+     * Generates a connection, that is used only for queries outside of a unit of work.
+     * A factory with read replicas may return a connection to one of them, others return the same, as createConnection()
+     * @return generated connection
+     * @throws DatabaseException
+     */
+    public default Connection createReadConnection() throws DatabaseException {
+        return createConnection();
+    }
 }
@@ -0,0 +1,107 @@
+package ua.nure.usermanagement.database;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * An immutable snapshot of usage counters of a {@link PooledConnectionFactory}
+ */
+public class ConnectionPoolStatistics {
+    private final int maxSize;
+    private final int inUse;
+    private final int idle;
+    private final long created;
+    private final long invalidated;
+    private final long borrowed;
+    private final long totalWaitNanos;
+    private final long maxWaitNanos;
+    private final long timeouts;
+    private final long leaks;
+
+    public ConnectionPoolStatistics(int maxSize, int inUse, int idle, long created, long invalidated, long borrowed,
+                                    long totalWaitNanos, long maxWaitNanos, long timeouts, long leaks) {
+        this.maxSize = maxSize;
+        this.inUse = inUse;
+        this.idle = idle;
+        this.created = created;
+        this.invalidated = invalidated;
+        this.borrowed = borrowed;
+        this.totalWaitNanos = totalWaitNanos;
+        this.maxWaitNanos = maxWaitNanos;
+        this.timeouts = timeouts;
+        this.leaks = leaks;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * @return amount of connections, that are currently borrowed
+     */
+    public int getInUse() {
+        return inUse;
+    }
+
+    public int getIdle() {
+        return idle;
+    }
+
+    /**
+     * @return amount of physical connections, opened by the pool since its creation
+     */
+    public long getCreated() {
+        return created;
+    }
+
+    /**
+     * @return amount of physical connections, that failed validation and were discarded
+     */
+    public long getInvalidated() {
+        return invalidated;
+    }
+
+    public long getBorrowed() {
+        return borrowed;
+    }
+
+    /**
+     * @return average time in milliseconds, that a borrower waited for a connection
+     */
+    public double getAverageWaitMillis() {
+        return borrowed == 0 ? 0 : (double) totalWaitNanos / borrowed / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMaxWaitMillis() {
+        return (double) maxWaitNanos / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * @return amount of borrowers, that gave up waiting for a connection
+     */
+    public long getTimeouts() {
+        return timeouts;
+    }
+
+    /**
+     * @return amount of connections, that were held longer than the leak threshold
+     */
+    public long getLeaks() {
+        return leaks;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolStatistics{" +
+                "maxSize=" + maxSize +
+                ", inUse=" + inUse +
+                ", idle=" + idle +
+                ", created=" + created +
+                ", invalidated=" + invalidated +
+                ", borrowed=" + borrowed +
+                ", averageWaitMillis=" + getAverageWaitMillis() +
+                ", maxWaitMillis=" + getMaxWaitMillis() +
+                ", timeouts=" + timeouts +
+                ", leaks=" + leaks +
+                '}';
+    }
+}
@@ -1,8 +1,11 @@
 package ua.nure.usermanagement.database;
 
 import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.search.NameSearchIndex;
+import ua.nure.usermanagement.statistics.UserStatistics;
 
 import java.io.IOException;
+import java.lang.reflect.InvocationTargetException;
 import java.util.Properties;
 
 /**
@@ -12,9 +15,15 @@ public abstract class DaoFactory {
     protected static final String USER_DAO_PROP = "ua.nure.usermanagement.database.UserDao";
     protected static Properties properties;
     protected static final String DAO_FACTORY = "dao.factory";
+    protected static final String CONNECTION_FACTORY = "connection.factory";
+    protected static final String SCHEMA_INITIALIZE = "schema.initialize";
 
     protected static DaoFactory instance;
 
+    private ConnectionFactory connectionFactory;
+    private NameSearchIndex nameSearchIndex;
+    private UserStatistics userStatistics;
+
     static {
         properties = new Properties();
         try {
@@ -40,12 +49,149 @@ public abstract class DaoFactory {
     }
 
     /**
-     * A private method that generates a connection factory based on the current settings, listed in settings.properties file
+     * A method that generates a connection factory based on the current settings, listed in settings.properties file.
+     * The factory is created once and shared by all DAOs of this DaoFactory, so a pooling factory
+     * (defined by CONNECTION_FACTORY variable) keeps its connections between calls.
+     * If schema.initialize is true, table USERS is created or migrated by {@link SchemaInitializer} first.
      *
      * @return generated connection factory
      */
-    protected ConnectionFactory getConnectionFactory() throws DatabaseException {
-        return new ConnectionFactoryImpl(properties);
+    protected synchronized ConnectionFactory getConnectionFactory() throws DatabaseException {
+        if (connectionFactory == null) {
+            ConnectionFactory factory = createConnectionFactory(
+                    properties.getProperty(CONNECTION_FACTORY, ConnectionFactoryImpl.class.getName()), properties);
+            if (Boolean.parseBoolean(properties.getProperty(SCHEMA_INITIALIZE, "false"))) {
+                try {
+                    new SchemaInitializer(factory, properties).initialize();
+                } catch (DatabaseException | RuntimeException e) {
+                    close(factory);
+                    throw e;
+                }
+            }
+            connectionFactory = factory;
+        }
+        return connectionFactory;
+    }
+
+    /**
+     * Creates a connection factory of the class by its constructor, that takes settings
+     *
+     * @param className  a name of a class, that implements ConnectionFactory
+     * @param properties settings of the system or of one database, see settings.properties file for a list of used parameters
+     * @return created connection factory
+     * @throws DatabaseException if the factory failed to connect, e.g. a pool could not be pre-filled
+     */
+    static ConnectionFactory createConnectionFactory(String className, Properties properties) throws DatabaseException {
+        try {
+            return (ConnectionFactory) Class.forName(className).getConstructor(Properties.class).newInstance(properties);
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof DatabaseException) {
+                throw (DatabaseException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (ReflectiveOperationException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * Copies the settings, replacing connection.url, connection.user and connection.password with settings
+     * of another database, e.g. a replica or a shard. User and password of connection.* are kept, if the database has none
+     *
+     * @param prefix a prefix of url, user and password keys of the database, e.g. "connection.replica.1."
+     * @return settings, that connect to the database
+     */
+    static Properties getDatabaseProperties(Properties properties, String prefix) {
+        String url = properties.getProperty(prefix + "url");
+        if (url == null) {
+            throw new IllegalArgumentException("Setting " + prefix + "url is missing");
+        }
+        Properties database = new Properties();
+        database.putAll(properties);
+        database.setProperty("connection.url", url);
+        database.setProperty("connection.user", properties.getProperty(prefix + "user", properties.getProperty("connection.user", "")));
+        database.setProperty("connection.password", properties.getProperty(prefix + "password", properties.getProperty("connection.password", "")));
+        return database;
+    }
+
+    /**
+     * Returns a name search index over the users of the DAO of this factory. The index is built on the first call
+     *
+     * @return a shared name search index
+     * @throws DatabaseException if the users could not be read
+     */
+    public synchronized NameSearchIndex getNameSearchIndex() throws DatabaseException {
+        if (nameSearchIndex == null) {
+            nameSearchIndex = attach(new NameSearchIndex());
+        }
+        return nameSearchIndex;
+    }
+
+    /**
+     * Returns running statistics of the users of the DAO of this factory. They are counted on the first call
+     *
+     * @return shared statistics
+     * @throws DatabaseException if the users could not be read
+     */
+    public synchronized UserStatistics getUserStatistics() throws DatabaseException {
+        if (userStatistics == null) {
+            userStatistics = attach(new UserStatistics());
+        }
+        return userStatistics;
+    }
+
+    /**
+     * Builds the view from the DAO of this factory. If the DAO is a {@link ListeningUserDao},
+     * the view follows its changes, otherwise it is a snapshot
+     *
+     * @return the built view
+     * @throws DatabaseException if the users could not be read
+     */
+    private <T extends UserDataView> T attach(T view) throws DatabaseException {
+        UserDao userDao = getUserDao();
+        if (userDao instanceof ListeningUserDao) {
+            ((ListeningUserDao) userDao).addListener(view);
+        }
+        try {
+            view.build(userDao);
+        } catch (DatabaseException | RuntimeException e) {
+            if (userDao instanceof ListeningUserDao) {
+                ((ListeningUserDao) userDao).removeListener(view);
+            }
+            throw e;
+        }
+        return view;
+    }
+
+    /**
+     * Runs several calls of the DAO of this factory on one connection and commits them once, e.g. load, modify and save.
+     * Listeners and caches see the changes only after they are committed.
+     * A unit of work, started inside another one, joins it
+     *
+     * @param work calls of the DAO
+     * @return result of the work
+     * @throws DatabaseException if the work or the commit failed, all its changes are rolled back in that case
+     */
+    public <T> T executeInTransaction(UnitOfWork<T> work) throws DatabaseException {
+        return Transaction.execute(getUserDao(), work);
+    }
+
+    /**
+     * Releases resources, held by the connection factory of this DaoFactory
+     */
+    protected synchronized void close() {
+        nameSearchIndex = null;
+        userStatistics = null;
+        close(connectionFactory);
+        connectionFactory = null;
+    }
+
+    static void close(ConnectionFactory factory) {
+        if (factory instanceof PooledConnectionFactory) {
+            ((PooledConnectionFactory) factory).close();
+        } else if (factory instanceof ReadWriteConnectionFactory) {
+            ((ReadWriteConnectionFactory) factory).close();
+        }
     }
 
     /**
@@ -56,7 +202,10 @@ public abstract class DaoFactory {
 //    {
     public abstract UserDao getUserDao();
 
-    public static void init(Properties prop) {
+    public static synchronized void init(Properties prop) {
+        if (instance != null) {
+            instance.close();
+        }
         DaoFactory.properties = prop;
         instance = null;
     }
@@ -1,20 +1,39 @@
 package ua.nure.usermanagement.database;
 
+/**
+ * A DaoFactory, that creates the UserDao, named in settings.properties (defined by USER_DAO_PROP variable).
+ * The DAO is created once and shared, so decorators like {@link CachingUserDao} keep their state between calls.
+ * It is wrapped with a {@link ListeningUserDao}, so in-memory structures, like the name search index, follow its changes,
+ * and with a {@link TimeoutUserDao}, so its calls fail after time budgets of dao.timeout.* settings
+ */
 public class DaoFactoryImpl extends DaoFactory {
 
+    private UserDao userDao;
+
     @Override
-    public UserDao getUserDao() {
-        UserDao result = null;
-        try {
-            Class clazz = Class.forName(properties.getProperty(USER_DAO_PROP));
-            UserDao userDao = (UserDao) clazz.newInstance();
-            userDao.setConnectionFactory(getConnectionFactory());
-            result = userDao;
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+    public synchronized UserDao getUserDao() {
+        if (userDao == null) {
+            try {
+                Class<?> clazz = Class.forName(properties.getProperty(USER_DAO_PROP));
+                UserDao result = (UserDao) clazz.getDeclaredConstructor().newInstance();
+                result.setConnectionFactory(getConnectionFactory());
+                userDao = new ListeningUserDao(new TimeoutUserDao(result));
+            } catch (Exception e) {
+                throw new RuntimeException(e);
+            }
         }
-        return result;
+        return userDao;
+    }
 
+    /**
+     * Closes decorators of the shared DAO before the connection factory, so they can finish their writes
+     */
+    @Override
+    protected synchronized void close() {
+        if (userDao instanceof UserDaoDecorator) {
+            ((UserDaoDecorator) userDao).close();
+        }
+        userDao = null;
+        super.close();
     }
 }
-
@@ -0,0 +1,105 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.database.exception.DatabaseTimeoutException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time, by which a call of a DAO method must complete, bound to the current thread like a unit of work.
+ * {@link JdbcTemplate} gives statements a query timeout of the remaining time and connection pools
+ * wait for a free connection no longer, than it is left. Deadlines don't extend each other:
+ * a nested call keeps the deadline of the outer one, if it ends earlier
+ */
+final class Deadline {
+    private static final ThreadLocal<Deadline> CURRENT = new ThreadLocal<>();
+
+    private final String operation;
+    private final long timeout;
+    private final long endNanos;
+
+    private Deadline(String operation, long timeout) {
+        this.operation = operation;
+        this.timeout = timeout;
+        this.endNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+    }
+
+    /**
+     * @return the deadline of the current thread, null if there is no deadline
+     */
+    static Deadline current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Binds a deadline of the operation to the current thread, unless the current deadline ends earlier
+     *
+     * @param operation a name of the operation for messages
+     * @param timeout   time in milliseconds, 0 for no deadline
+     * @return the deadline, that was bound before, it must be given to {@link #restore(Deadline)}
+     */
+    static Deadline start(String operation, long timeout) {
+        Deadline previous = CURRENT.get();
+        if (timeout > 0) {
+            Deadline deadline = new Deadline(operation, timeout);
+            if (previous == null || deadline.endNanos - previous.endNanos < 0) {
+                CURRENT.set(deadline);
+            }
+        }
+        return previous;
+    }
+
+    /**
+     * Binds a deadline of another thread to the current one, e.g. in a task, that runs a part of a DAO call
+     *
+     * @return the deadline, that was bound before, it must be given to {@link #restore(Deadline)}
+     */
+    static Deadline bind(Deadline deadline) {
+        Deadline previous = CURRENT.get();
+        restore(deadline);
+        return previous;
+    }
+
+    static void restore(Deadline previous) {
+        if (previous == null) {
+            CURRENT.remove();
+        } else {
+            CURRENT.set(previous);
+        }
+    }
+
+    /**
+     * @throws DatabaseTimeoutException if the deadline of the current thread has passed
+     */
+    static void check() throws DatabaseTimeoutException {
+        Deadline deadline = CURRENT.get();
+        if (deadline != null && deadline.isExpired()) {
+            throw deadline.exceeded(null);
+        }
+    }
+
+    boolean isExpired() {
+        return System.nanoTime() - endNanos >= 0;
+    }
+
+    /**
+     * @return time in milliseconds, that is left, 0 if the deadline has passed
+     */
+    long getRemainingMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(endNanos - System.nanoTime() + 999999));
+    }
+
+    /**
+     * @return remaining time in whole seconds for {@link java.sql.Statement#setQueryTimeout(int)}, at least 1
+     */
+    int getQueryTimeout() {
+        return (int) Math.max(1, (getRemainingMillis() + 999) / 1000);
+    }
+
+    DatabaseTimeoutException exceeded(Throwable cause) {
+        return new DatabaseTimeoutException(getMessage(), cause);
+    }
+
+    String getMessage() {
+        return operation + " did not complete in " + timeout + " ms";
+    }
+}
@@ -1,30 +1,109 @@
 package ua.nure.usermanagement.database;
 
 import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.UserSummary;
 import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.OptimisticLockException;
+import ua.nure.usermanagement.database.exception.UncheckedDatabaseException;
 
-import java.sql.*;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
- * A UserDao implementation for HSQL database
+ * A UserDao implementation for HSQL database. All statements are executed through {@link JdbcTemplate}.
+ * It must be closed, if it has a parallel scan, so that threads of the scan are stopped.
  *
  * @see ua.nure.usermanagement.database.UserDao
  */
-class HSQLdbUserDao implements UserDao {
-    public static final String INSERT_INTO_USERS_FIRSTNAME_LASTNAME_DATEOFBIRTH_VALUES = "insert INTO users(firstname,lastname,dateofbirth) values(?,?,?)";
+class HSQLdbUserDao implements UserDao, AutoCloseable {
+    public static final String INSERT_INTO_USERS_FIRSTNAME_LASTNAME_DATEOFBIRTH_BIRTHDAY_VALUES = "insert INTO users(firstname,lastname,dateofbirth,birthday) values(?,?,?,?)";
     private static final String SELECT_USER_BY_ID = "SELECT * FROM users WHERE id = ?";
     private static final String SELECT_ALL_USERS = "SELECT * FROM users";
-    public static final String UPDATE_USERS_SET_FIRSTNAME_LASTNAME_DATEOFBIRTH_WHERE_ID = "UPDATE users SET firstname = ?, lastname = ?, dateofbirth = ? WHERE id = ?";
+    public static final String UPDATE_USERS_SET_FIRSTNAME_LASTNAME_DATEOFBIRTH_BIRTHDAY_WHERE_ID = "UPDATE users SET firstname = ?, lastname = ?, dateofbirth = ?, birthday = ?, version = version + 1 WHERE id = ?";
+    public static final String UPDATE_USERS_SET_FIRSTNAME_LASTNAME_DATEOFBIRTH_BIRTHDAY_WHERE_ID_AND_VERSION = "UPDATE users SET firstname = ?, lastname = ?, dateofbirth = ?, birthday = ?, version = version + 1 WHERE id = ? AND version = ?";
     public static final String DELETE_FROM_USERS_WHERE_ID = "DELETE FROM users WHERE id = ?";
+    private static final String DELETE_FROM_USERS_WHERE_ID_IN = "DELETE FROM users WHERE id IN (";
+    private static final int DELETE_CHUNK_SIZE = 100;
+    private static final String SELECT_USERS_BETWEEN_IDS = "SELECT * FROM users WHERE id >= ? AND id <= ? ORDER BY id";
+    private static final String SELECT_SUMMARIES = "SELECT id, firstname, lastname FROM users ORDER BY id";
+    private static final String SELECT_SUMMARIES_BETWEEN_IDS = "SELECT id, firstname, lastname FROM users WHERE id >= ? AND id <= ? ORDER BY id";
+    private static final String SELECT_ANY_ID_BETWEEN = "SELECT id FROM users WHERE id >= ? AND id <= ? LIMIT 1";
+    private static final String SELECT_USERS_BY_BIRTHDAY = "SELECT * FROM users WHERE birthday BETWEEN ? AND ? ORDER BY birthday, id";
+    private static final String CALL_IDENTITY = "call IDENTITY()";
+    private static final String INSERT_INTO_USERS_WITH_ID = "insert INTO users(id,firstname,lastname,dateofbirth,birthday) values(?,?,?,?,?)";
+    private static final String SELECT_MAX_ID = "SELECT MAX(id) FROM users";
+    private static final String ID_SEQUENCE = "USER_IDS";
+    private static final String SELECT_ID_SEQUENCE_INCREMENT = "SELECT INCREMENT FROM INFORMATION_SCHEMA.SYSTEM_SEQUENCES WHERE SEQUENCE_NAME = ?";
+    private static final String CREATE_ID_SEQUENCE = "CREATE SEQUENCE " + ID_SEQUENCE + " AS BIGINT START WITH ";
+    private static final String SELECT_NEXT_ID = "SELECT NEXT VALUE FOR " + ID_SEQUENCE + " FROM INFORMATION_SCHEMA.SYSTEM_SEQUENCES WHERE SEQUENCE_NAME = ?";
+    private static final int MAX_CACHED_CRITERIA_QUERIES = 256;
+    /**
+     * Size of pages of streamAll(), when no fetch size is given
+     */
+    private static final int DEFAULT_STREAM_PAGE_SIZE = 500;
+    /**
+     * Limit of growth of ranges, in which the next existing id is looked for, so they never overflow
+     */
+    private static final long MAX_ID_SEEK_SPAN = 1L << 61;
+
+    /**
+     * SQL of criteria queries by their shape: which conditions are set, order and limit.
+     * Values of conditions are parameters, so a shape always produces the same statement
+     */
+    private static final Map<String, String> CRITERIA_QUERIES = new ConcurrentHashMap<>();
+
+    /**
+     * Converts a row of users table into a User object
+     */
+    static final JdbcTemplate.RowMapper<User> USER_MAPPER = resultSet -> {
+        User user = new User();
+        user.setId(resultSet.getLong(1));
+        user.setFirstName(resultSet.getString(2));
+        user.setLastName(resultSet.getString(3));
+        user.setDateOfBirth(new java.util.Date(resultSet.getDate(4).getTime()));
+        user.setVersion(resultSet.getLong(6));
+        return user;
+    };
+
+    /**
+     * Converts a row of id, firstname and lastname columns into a UserSummary object
+     */
+    static final JdbcTemplate.RowMapper<UserSummary> SUMMARY_MAPPER =
+            resultSet -> new UserSummary(resultSet.getLong(1), resultSet.getString(2), resultSet.getString(3));
+
     ConnectionFactory connectionFactory;
+    private JdbcTemplate jdbcTemplate;
+    private int scanParallelism = 1;
+    private int scanRangeSize;
+    private volatile ParallelScan parallelScan;
 
     public HSQLdbUserDao(ConnectionFactory connectionFactory) {
-        this.connectionFactory = connectionFactory;
+        setConnectionFactory(connectionFactory);
     }
 
+    /**
+     * Creates a DAO with settings of full scans from settings.properties: dao.scan.parallelism
+     * (1 reads the table on one connection) and dao.scan.rangeSize
+     */
     public HSQLdbUserDao() {
+        scanParallelism = Integer.parseInt(DaoFactory.properties.getProperty("dao.scan.parallelism", "1").trim());
+        scanRangeSize = Integer.parseInt(DaoFactory.properties.getProperty("dao.scan.rangeSize", "10000").trim());
     }
 
     public ConnectionFactory getConnectionFactory() {
@@ -33,6 +112,43 @@ class HSQLdbUserDao implements UserDao {
 
     public void setConnectionFactory(ConnectionFactory connectionFactory) {
         this.connectionFactory = connectionFactory;
+        this.jdbcTemplate = new JdbcTemplate(connectionFactory);
+        replaceParallelScan(scanParallelism > 1 ? new ParallelScan(jdbcTemplate, scanParallelism, scanRangeSize) : null);
+    }
+
+    /**
+     * Makes findAll() and streamAll() read the table in ranges of ids on several connections at once
+     *
+     * @param parallelism amount of ranges, read at the same time, 1 reads the table on one connection
+     * @param rangeSize   average amount of rows in a range
+     * @see ParallelScan
+     */
+    public void setParallelScan(int parallelism, int rangeSize) {
+        scanParallelism = parallelism;
+        scanRangeSize = rangeSize;
+        if (jdbcTemplate != null) {
+            replaceParallelScan(parallelism > 1 ? new ParallelScan(jdbcTemplate, parallelism, rangeSize) : null);
+        }
+    }
+
+    /**
+     * Closes the previous scan, so that threads of its pool are stopped
+     */
+    private synchronized void replaceParallelScan(ParallelScan scan) {
+        ParallelScan previous = parallelScan;
+        parallelScan = scan;
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * Stops threads of the parallel scan, full scans are read on one connection after that.
+     * Called through decorators by {@link DaoFactoryImpl}, when the factory is closed
+     */
+    @Override
+    public void close() {
+        replaceParallelScan(null);
     }
 
     /**
@@ -43,73 +159,274 @@ class HSQLdbUserDao implements UserDao {
      */
     @Override
     public User create(User user) throws DatabaseException {
-        Connection connection = null;
-        try {
-            connection = connectionFactory.createConnection();
+        return jdbcTemplate.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_INTO_USERS_FIRSTNAME_LASTNAME_DATEOFBIRTH_BIRTHDAY_VALUES)) {
+                statement.setString(1, user.getFirstName());
+                statement.setString(2, user.getLastName());
+                statement.setDate(3, new Date(user.getDateOfBirth().getTime()));
+                statement.setInt(4, Birthdays.of(user.getDateOfBirth()));
+                int n = statement.executeUpdate();
+                if (n != 1)
+                    throw new DatabaseException("Insertion not executed");
+            }
+            jdbcTemplate.commit(connection);
             User createdUser = new User();
-            PreparedStatement statement = connection.prepareStatement(INSERT_INTO_USERS_FIRSTNAME_LASTNAME_DATEOFBIRTH_VALUES);
-            statement.setString(1, user.getFirstName());
-            statement.setString(2, user.getLastName());
-            statement.setDate(3, new Date(user.getDateOfBirth().getTime()));
-            int n = statement.executeUpdate();
-            if (n != 1)
-                throw new DatabaseException("Insertion not executed");
-            connection.commit();
-            CallableStatement callableStatement = connection.prepareCall("call IDENTITY()");
-            ResultSet resultSet = callableStatement.executeQuery();
-            if (resultSet.next()) {
-                createdUser = new User(user);
-                createdUser.setId(new Long(resultSet.getLong(1)));
-            }
-            resultSet.close();
-            callableStatement.close();
-            statement.close();
+            try (CallableStatement callableStatement = connection.prepareCall(CALL_IDENTITY);
+                 ResultSet resultSet = callableStatement.executeQuery()) {
+                if (resultSet.next()) {
+                    createdUser = new User(user);
+                    createdUser.setId(resultSet.getLong(1));
+                    createdUser.setVersion(0L);
+                }
+            }
             return createdUser;
-        } catch (SQLException e) {
-            throw new DatabaseException(e);
-        } catch (DatabaseException e1) {
-            throw e1;
-        } finally {
-            if (connection != null) {
-                try {
-                    connection.close();
-                } catch (SQLException e) {
-                    e.printStackTrace();
+        });
+    }
+
+    /**
+     * Inserts users in chunks via JDBC batches inside a single transaction. HSQLDB 1.8 doesn't return
+     * generated keys, but it executes a batch as one uninterrupted command, so ids of a chunk are
+     * consecutive and end with the value of IDENTITY()
+     *
+     * @see UserDao#createAll(Collection, int)
+     */
+    @Override
+    public List<User> createAll(Collection<User> users, int chunkSize) throws DatabaseException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        return jdbcTemplate.executeInTransaction(connection -> {
+            List<User> createdUsers = new ArrayList<>(users.size());
+            List<User> chunk = new ArrayList<>(chunkSize);
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_INTO_USERS_FIRSTNAME_LASTNAME_DATEOFBIRTH_BIRTHDAY_VALUES);
+                 CallableStatement callableStatement = connection.prepareCall(CALL_IDENTITY)) {
+                for (User user : users) {
+                    statement.setString(1, user.getFirstName());
+                    statement.setString(2, user.getLastName());
+                    statement.setDate(3, new Date(user.getDateOfBirth().getTime()));
+                    statement.setInt(4, Birthdays.of(user.getDateOfBirth()));
+                    statement.addBatch();
+                    chunk.add(user);
+                    if (chunk.size() == chunkSize) {
+                        executeChunk(statement, callableStatement, chunk, createdUsers);
+                    }
+                }
+                if (!chunk.isEmpty()) {
+                    executeChunk(statement, callableStatement, chunk, createdUsers);
                 }
             }
+            return createdUsers;
+        });
+    }
+
+    /**
+     * Sends a batch of inserts and assigns ids to the inserted users
+     */
+    private void executeChunk(PreparedStatement statement, CallableStatement callableStatement,
+                              List<User> chunk, List<User> createdUsers) throws SQLException, DatabaseException {
+        int[] counts = statement.executeBatch();
+        if (counts.length != chunk.size())
+            throw new DatabaseException("Insertion not executed");
+        long lastId;
+        try (ResultSet resultSet = callableStatement.executeQuery()) {
+            if (!resultSet.next())
+                throw new DatabaseException("Insertion not executed");
+            lastId = resultSet.getLong(1);
         }
+        long id = lastId - chunk.size() + 1;
+        for (User user : chunk) {
+            User createdUser = new User(user);
+            createdUser.setId(id++);
+            createdUser.setVersion(0L);
+            createdUsers.add(createdUser);
+        }
+        chunk.clear();
     }
 
     /**
-     * Updates values of user entry, that has id that equals the the one in the parameter
+     * Inserts users with ids, that are assigned by the caller instead of db, e.g. by {@link ShardedUserDao},
+     * in chunks via JDBC batches inside a single transaction. The caller must keep ids unique
      *
-     * @param user all fields of user must be filled
-     * @throws DatabaseException
+     * @param users all fields of users must be filled, including id
+     * @param chunkSize amount of inserts, sent to db in one batch
+     * @return copies of users with version 0 in the same order, as the users were given
+     * @throws DatabaseException if has any problems with db, e.g. an id is taken, no user is added in that case
+     */
+    List<User> createAllWithIds(Collection<User> users, int chunkSize) throws DatabaseException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        return jdbcTemplate.executeInTransaction(connection -> {
+            List<User> createdUsers = new ArrayList<>(users.size());
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_INTO_USERS_WITH_ID)) {
+                int batched = 0;
+                for (User user : users) {
+                    statement.setLong(1, user.getId());
+                    statement.setString(2, user.getFirstName());
+                    statement.setString(3, user.getLastName());
+                    statement.setDate(4, new Date(user.getDateOfBirth().getTime()));
+                    statement.setInt(5, Birthdays.of(user.getDateOfBirth()));
+                    statement.addBatch();
+                    User createdUser = new User(user);
+                    createdUser.setVersion(0L);
+                    createdUsers.add(createdUser);
+                    if (++batched == chunkSize) {
+                        statement.executeBatch();
+                        batched = 0;
+                    }
+                }
+                if (batched > 0) {
+                    statement.executeBatch();
+                }
+            }
+            return createdUsers;
+        });
+    }
+
+    /**
+     * Creates the sequence of ids, if the database has none. The sequence is kept by the database,
+     * so ids, taken from it, are unique for all processes, that use it
+     *
+     * @param start     the first id, used only if the sequence is created
+     * @param increment step between ids of the sequence
+     * @throws DatabaseException if the sequence steps by another increment, or has any problems with db
+     */
+    void createIdSequence(long start, long increment) throws DatabaseException {
+        jdbcTemplate.execute(connection -> {
+            Long currentIncrement;
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_ID_SEQUENCE_INCREMENT)) {
+                statement.setString(1, ID_SEQUENCE);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    currentIncrement = resultSet.next() ? Long.valueOf(resultSet.getString(1).trim()) : null;
+                }
+            }
+            if (currentIncrement == null) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute(CREATE_ID_SEQUENCE + start + " INCREMENT BY " + increment);
+                }
+            } else if (currentIncrement != increment) {
+                throw new DatabaseException("Sequence of ids steps by " + currentIncrement + " instead of " + increment);
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @return the next value of the sequence of ids
+     * @throws DatabaseException if the sequence doesn't exist, or has any problems with db
+     */
+    long nextSequenceId() throws DatabaseException {
+        return jdbcTemplate.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_NEXT_ID)) {
+                statement.setString(1, ID_SEQUENCE);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    if (!resultSet.next()) {
+                        throw new DatabaseException("Sequence of ids doesn't exist");
+                    }
+                    return resultSet.getLong(1);
+                }
+            }
+        });
+    }
+
+    /**
+     * Reads the greatest id on the primary connection, because a replica may not have the latest users yet
+     *
+     * @return the greatest id in table users, null if it is empty
+     * @throws DatabaseException if has any problems with db
+     */
+    Long findMaxId() throws DatabaseException {
+        return jdbcTemplate.execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(SELECT_MAX_ID);
+                 ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                long id = resultSet.getLong(1);
+                return resultSet.wasNull() ? null : id;
+            }
+        });
+    }
+
+    /**
+     * Updates values of user entry, that has id that equals the the one in the parameter.
+     * If the user has a version, the row is updated only if its version is still the same,
+     * so a change, made by someone else after the user was read, isn't overwritten.
+     * Every update increments the version, the version of the parameter is incremented too
+     *
+     * @param user all fields of user must be filled, version may be null
+     * @throws OptimisticLockException if the user was changed or deleted after it was read
+     * @throws DatabaseException if has any problems with db
      */
     @Override
     public void update(User user) throws DatabaseException {
-        Connection connection = null;
-        try {
-            connection = connectionFactory.createConnection();
-            PreparedStatement statement = connection.prepareStatement(UPDATE_USERS_SET_FIRSTNAME_LASTNAME_DATEOFBIRTH_WHERE_ID);
-            statement.setString(1, user.getFirstName());
-            statement.setString(2, user.getLastName());
-            statement.setDate(3, new Date(user.getDateOfBirth().getTime()));
-            statement.setLong(4, user.getId());
-            int n = statement.executeUpdate();
-            if (n != 1)
-                throw new DatabaseException("Update not executed");
-            connection.commit();
-        } catch (SQLException e) {
-            throw new DatabaseException(e);
-        } finally {
-            if (connection != null) {
-                try {
-                    connection.close();
-                } catch (SQLException e) {
-                    e.printStackTrace();
+        boolean versioned = user.getVersion() != null;
+        int n = jdbcTemplate.update(versioned ? UPDATE_USERS_SET_FIRSTNAME_LASTNAME_DATEOFBIRTH_BIRTHDAY_WHERE_ID_AND_VERSION
+                : UPDATE_USERS_SET_FIRSTNAME_LASTNAME_DATEOFBIRTH_BIRTHDAY_WHERE_ID, statement -> bindUpdate(statement, user));
+        if (n != 1) {
+            if (versioned)
+                throw new OptimisticLockException(user.getId());
+            throw new DatabaseException("Update not executed");
+        }
+        if (versioned) {
+            user.setVersion(user.getVersion() + 1);
+        }
+    }
+
+    private static void bindUpdate(PreparedStatement statement, User user) throws SQLException {
+        statement.setString(1, user.getFirstName());
+        statement.setString(2, user.getLastName());
+        statement.setDate(3, new Date(user.getDateOfBirth().getTime()));
+        statement.setInt(4, Birthdays.of(user.getDateOfBirth()));
+        statement.setLong(5, user.getId());
+        if (user.getVersion() != null) {
+            statement.setLong(6, user.getVersion());
+        }
+    }
+
+    /**
+     * Sends all updates inside a single transaction: users without a version as one JDBC batch,
+     * users with a version as another one, that checks it
+     *
+     * @see UserDao#updateAll(Collection)
+     */
+    @Override
+    public int updateAll(Collection<User> users) throws DatabaseException {
+        if (users.isEmpty()) {
+            return 0;
+        }
+        List<User> plain = new ArrayList<>();
+        List<User> versioned = new ArrayList<>();
+        for (User user : users) {
+            (user.getVersion() != null ? versioned : plain).add(user);
+        }
+        return jdbcTemplate.executeInTransaction(connection ->
+                executeUpdateBatch(connection, UPDATE_USERS_SET_FIRSTNAME_LASTNAME_DATEOFBIRTH_BIRTHDAY_WHERE_ID, plain)
+                        + executeUpdateBatch(connection, UPDATE_USERS_SET_FIRSTNAME_LASTNAME_DATEOFBIRTH_BIRTHDAY_WHERE_ID_AND_VERSION, versioned));
+    }
+
+    /**
+     * @return amount of updated rows, versions of updated users are incremented
+     */
+    private int executeUpdateBatch(Connection connection, String sql, List<User> users) throws SQLException {
+        if (users.isEmpty()) {
+            return 0;
+        }
+        try (PreparedStatement statement = connection.prepareStatement(sql)) {
+            for (User user : users) {
+                bindUpdate(statement, user);
+                statement.addBatch();
+            }
+            int[] counts = statement.executeBatch();
+            int updated = 0;
+            for (int i = 0; i < counts.length; i++) {
+                if (counts[i] == Statement.SUCCESS_NO_INFO || counts[i] > 0) {
+                    updated++;
+                    User user = users.get(i);
+                    if (user.getVersion() != null) {
+                        user.setVersion(user.getVersion() + 1);
+                    }
                 }
             }
+            return updated;
         }
     }
 
@@ -121,27 +438,44 @@ class HSQLdbUserDao implements UserDao {
      */
     @Override
     public void delete(User user) throws DatabaseException {
-        Connection connection = null;
-        try {
-            connection = connectionFactory.createConnection();
-            PreparedStatement statement = connection.prepareStatement(DELETE_FROM_USERS_WHERE_ID);
-            statement.setLong(1, user.getId());
-            int n = statement.executeUpdate();
-            if (n != 1)
-                throw new DatabaseException("Delete not executed");
-            connection.commit();
-        } catch (SQLException e) {
-            throw new DatabaseException(e);
-        } finally {
-            if (connection != null) {
-                try {
-                    connection.close();
-                } catch (SQLException e) {
-                    e.printStackTrace();
+        int n = jdbcTemplate.update(DELETE_FROM_USERS_WHERE_ID, statement -> statement.setLong(1, user.getId()));
+        if (n != 1)
+            throw new DatabaseException("Delete not executed");
+    }
+
+    /**
+     * Deletes users by chunks of DELETE_CHUNK_SIZE ids, each chunk is one statement with an IN-list.
+     * Full chunks share one cached statement.
+     *
+     * @see UserDao#deleteAll(Collection)
+     */
+    @Override
+    public int deleteAll(Collection<Long> ids) throws DatabaseException {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<Long> idList = new ArrayList<>(ids);
+        return jdbcTemplate.executeInTransaction(connection -> {
+            int deleted = 0;
+            for (int from = 0; from < idList.size(); from += DELETE_CHUNK_SIZE) {
+                List<Long> chunk = idList.subList(from, Math.min(from + DELETE_CHUNK_SIZE, idList.size()));
+                try (PreparedStatement statement = connection.prepareStatement(deleteInSql(chunk.size()))) {
+                    for (int i = 0; i < chunk.size(); i++) {
+                        statement.setLong(i + 1, chunk.get(i));
+                    }
+                    deleted += statement.executeUpdate();
                 }
             }
-        }
+            return deleted;
+        });
+    }
 
+    private static String deleteInSql(int size) {
+        StringBuilder sql = new StringBuilder(DELETE_FROM_USERS_WHERE_ID_IN);
+        for (int i = 0; i < size; i++) {
+            sql.append(i == 0 ? "?" : ",?");
+        }
+        return sql.append(')').toString();
     }
 
     /**
@@ -153,58 +487,364 @@ class HSQLdbUserDao implements UserDao {
      */
     @Override
     public User find(Long id) throws DatabaseException {
-        try {
-            Connection connection = connectionFactory.createConnection();
-            User createdUser = new User();
-            PreparedStatement statement = connection.prepareStatement(SELECT_USER_BY_ID);
-            statement.setLong(1, id);
-            ResultSet resultSet = statement.executeQuery();
-            if (resultSet.next()) {
-                createdUser = new User();
-                createdUser.setId(new Long(resultSet.getLong(1)));
-                createdUser.setLastName(resultSet.getString(3));
-                createdUser.setFirstName(resultSet.getString(2));
-                createdUser.setDateOfBirth(new java.util.Date(resultSet.getDate(4).getTime()));
-            }
-            resultSet.close();
-            statement.close();
-            connection.close();
-            return createdUser;
-        } catch (SQLException e) {
-            throw new DatabaseException(e);
-        } catch (DatabaseException e1) {
-            throw e1;
-        }
+        User user = jdbcTemplate.queryForObject(SELECT_USER_BY_ID, statement -> statement.setLong(1, id), USER_MAPPER);
+        return user != null ? user : new User();
     }
 
     /**
+     * With a parallel scan the table is read in ranges of ids on several connections, except inside a unit of work,
+     * whose connection is bound to the calling thread
+     *
      * @return returns all entries in users table as a collection
      * @throws DatabaseException
      */
     @Override
     public Collection<User> findAll() throws DatabaseException {
-        Collection<User> userList = new ArrayList<>();
-        try {
-            Connection connection = connectionFactory.createConnection();
-            Statement statement = connection.createStatement();
-            ResultSet resultSet = statement.executeQuery(SELECT_ALL_USERS);
-            while (resultSet.next()) {
-                User createdUser = new User();
-                createdUser.setId(new Long(resultSet.getLong(1)));
-                createdUser.setFirstName(resultSet.getString(2));
-                createdUser.setLastName(resultSet.getString(3));
-                createdUser.setDateOfBirth(new java.util.Date(resultSet.getDate(4).getTime()));
-                userList.add(createdUser);
-            }
-
-            resultSet.close();
-            statement.close();
-            connection.close();
-            return userList;
-        } catch (SQLException e) {
-            throw new DatabaseException(e);
-        } catch (DatabaseException e1) {
-            throw e1;
+        ParallelScan scan = parallelScan;
+        if (scan != null && !Transaction.isActive()) {
+            return scan.findAll();
         }
+        return jdbcTemplate.query(SELECT_ALL_USERS, JdbcTemplate.NO_PARAMETERS, USER_MAPPER);
+    }
+
+    /**
+     * Reads the table by pages of fetchSize users, each page is read by {@link #findPage(Long, int)} after the last id
+     * of the previous one, when the previous page is consumed. HSQLDB 1.8 ignores fetch size and reads the whole
+     * result of a query into memory, so a single cursor would hold the whole table. The first page is read by this
+     * call, no connection is held between pages. Pages aren't read in one transaction: a user, changed during
+     * the scan, may be read in either state, users, created after the scan has started, may be read or missed.
+     * With a parallel scan fetch size isn't used, ranges of ids are read ahead of the consumer instead
+     *
+     * @param fetchSize amount of users in a page, below 1 for the default of 500
+     * @see UserDao#streamAll(int)
+     */
+    @Override
+    public Stream<User> streamAll(int fetchSize) throws DatabaseException {
+        ParallelScan scan = parallelScan;
+        if (scan != null && !Transaction.isActive()) {
+            return scan.stream();
+        }
+        int pageSize = fetchSize > 0 ? fetchSize : DEFAULT_STREAM_PAGE_SIZE;
+        return StreamSupport.stream(new PageSpliterator(findPage(null, pageSize), pageSize), false);
+    }
+
+    /**
+     * A spliterator over users in ascending order of id, that reads the next page, when the current one is consumed
+     */
+    private class PageSpliterator extends Spliterators.AbstractSpliterator<User> {
+        private final int pageSize;
+        private List<User> page;
+        private int position;
+
+        PageSpliterator(List<User> page, int pageSize) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.page = page;
+            this.pageSize = pageSize;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super User> action) {
+            if (position == page.size()) {
+                if (page.size() < pageSize) {
+                    return false;
+                }
+                try {
+                    page = findPage(page.get(page.size() - 1).getId(), pageSize);
+                } catch (DatabaseException e) {
+                    throw new UncheckedDatabaseException(e);
+                }
+                position = 0;
+                if (page.isEmpty()) {
+                    return false;
+                }
+            }
+            action.accept(page.get(position++));
+            return true;
+        }
+    }
+
+    /**
+     * @see UserDao#findPage(Long, int)
+     * @see #findAfter(Long, int, String, JdbcTemplate.RowMapper)
+     */
+    @Override
+    public List<User> findPage(Long afterId, int limit) throws DatabaseException {
+        return findAfter(afterId, limit, SELECT_USERS_BETWEEN_IDS, USER_MAPPER);
+    }
+
+    /**
+     * @see UserDao#findPageBefore(Long, int)
+     * @see #findBefore(Long, int, String, JdbcTemplate.RowMapper)
+     */
+    @Override
+    public List<User> findPageBefore(Long beforeId, int limit) throws DatabaseException {
+        return findBefore(beforeId, limit, SELECT_USERS_BETWEEN_IDS, USER_MAPPER);
+    }
+
+    /**
+     * @see UserDao#findSummaries()
+     */
+    @Override
+    public List<UserSummary> findSummaries() throws DatabaseException {
+        return jdbcTemplate.query(SELECT_SUMMARIES, JdbcTemplate.NO_PARAMETERS, SUMMARY_MAPPER);
+    }
+
+    /**
+     * @see UserDao#findSummaryPage(Long, int)
+     */
+    @Override
+    public List<UserSummary> findSummaryPage(Long afterId, int limit) throws DatabaseException {
+        return findAfter(afterId, limit, SELECT_SUMMARIES_BETWEEN_IDS, SUMMARY_MAPPER);
+    }
+
+    /**
+     * @see UserDao#findSummaryPageBefore(Long, int)
+     */
+    @Override
+    public List<UserSummary> findSummaryPageBefore(Long beforeId, int limit) throws DatabaseException {
+        return findBefore(beforeId, limit, SELECT_SUMMARIES_BETWEEN_IDS, SUMMARY_MAPPER);
+    }
+
+    /**
+     * Reads a page after the id. HSQLDB 1.8 sorts every row, that matches the condition, before it applies a limit,
+     * so "WHERE id &gt; ? ORDER BY id LIMIT n" reads the rest of the table for every page. Instead the page is read
+     * as ranges of ids, bounded at both ends: ids are unique, so a range of n ids holds n users at most.
+     * A range starts at the next existing id and covers as many ids, as the page still lacks users,
+     * so gaps of deleted users are skipped by index seeks, not by reading
+     *
+     * @param afterId id of the last user of the previous page, or null for the first page
+     * @param sql     query of users between two ids, both inclusive, in ascending order of id
+     */
+    private <T> List<T> findAfter(Long afterId, int limit, String sql, JdbcTemplate.RowMapper<T> mapper) throws DatabaseException {
+        List<T> page = new ArrayList<>();
+        if (limit <= 0 || afterId != null && afterId == Long.MAX_VALUE) {
+            return page;
+        }
+        Long lower = findFirstIdBetween(afterId != null ? afterId + 1 : Long.MIN_VALUE, Long.MAX_VALUE);
+        while (lower != null) {
+            long from = lower;
+            long to = from > Long.MAX_VALUE - (limit - page.size() - 1) ? Long.MAX_VALUE : from + (limit - page.size() - 1);
+            page.addAll(queryBetween(sql, mapper, from, to));
+            if (page.size() >= limit || to == Long.MAX_VALUE) {
+                break;
+            }
+            lower = findFirstIdBetween(to + 1, Long.MAX_VALUE);
+        }
+        return page;
+    }
+
+    /**
+     * Reads a page before the id in ascending order of id, as ranges of ids, that end at the previous existing id,
+     * the same way, as {@link #findAfter(Long, int, String, JdbcTemplate.RowMapper)} reads a page after it.
+     * "WHERE id &lt; ? ORDER BY id DESC LIMIT n" sorts every user before the id on HSQLDB 1.8
+     *
+     * @param beforeId id of the first user of the next page, or null for the last page
+     * @param sql      query of users between two ids, both inclusive, in ascending order of id
+     */
+    private <T> List<T> findBefore(Long beforeId, int limit, String sql, JdbcTemplate.RowMapper<T> mapper) throws DatabaseException {
+        List<T> page = new ArrayList<>();
+        if (limit <= 0 || beforeId != null && beforeId == Long.MIN_VALUE) {
+            return page;
+        }
+        Long upper = findLastIdBetween(Long.MIN_VALUE, beforeId != null ? beforeId - 1 : Long.MAX_VALUE);
+        while (upper != null) {
+            long to = upper;
+            long from = to < Long.MIN_VALUE + (limit - page.size() - 1) ? Long.MIN_VALUE : to - (limit - page.size() - 1);
+            page.addAll(0, queryBetween(sql, mapper, from, to));
+            if (page.size() >= limit || from == Long.MIN_VALUE) {
+                break;
+            }
+            upper = findLastIdBetween(Long.MIN_VALUE, from - 1);
+        }
+        return page;
+    }
+
+    private <T> List<T> queryBetween(String sql, JdbcTemplate.RowMapper<T> mapper, long from, long to) throws DatabaseException {
+        return jdbcTemplate.query(sql, statement -> {
+            statement.setLong(1, from);
+            statement.setLong(2, to);
+        }, mapper);
+    }
+
+    /**
+     * Looks for the least id between two ids by index seeks: ranges, that follow "from", grow twice,
+     * until one of them holds an id, then that range is halved. Only existence of an id in a range is queried,
+     * which needs no sort, so it takes a few seeks for dense ids and about 130 seeks at most
+     *
+     * @return the least id between the given ones, both inclusive, or null if there is no such id
+     */
+    private Long findFirstIdBetween(long from, long to) throws DatabaseException {
+        long low = from;
+        long high = from;
+        long span = 1;
+        while (!existsIdBetween(low, high)) {
+            if (high == to) {
+                return null;
+            }
+            low = high + 1;
+            high = Long.compareUnsigned(to - low, span) <= 0 ? to : low + span;
+            span = span < MAX_ID_SEEK_SPAN ? span << 1 : span;
+        }
+        while (low < high) {
+            long middle = (low & high) + ((low ^ high) >> 1);
+            if (existsIdBetween(low, middle)) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Looks for the greatest id between two ids the same way, as {@link #findFirstIdBetween(long, long)},
+     * with ranges, that end at "to"
+     *
+     * @return the greatest id between the given ones, both inclusive, or null if there is no such id
+     */
+    private Long findLastIdBetween(long from, long to) throws DatabaseException {
+        long low = to;
+        long high = to;
+        long span = 1;
+        while (!existsIdBetween(low, high)) {
+            if (low == from) {
+                return null;
+            }
+            high = low - 1;
+            low = Long.compareUnsigned(high - from, span) <= 0 ? from : high - span;
+            span = span < MAX_ID_SEEK_SPAN ? span << 1 : span;
+        }
+        while (low < high) {
+            long middle = (low & high) + ((low ^ high) >> 1) + ((low ^ high) & 1);
+            if (existsIdBetween(middle, high)) {
+                low = middle;
+            } else {
+                high = middle - 1;
+            }
+        }
+        return high;
+    }
+
+    private boolean existsIdBetween(long from, long to) throws DatabaseException {
+        return jdbcTemplate.queryForObject(SELECT_ANY_ID_BETWEEN, statement -> {
+            statement.setLong(1, from);
+            statement.setLong(2, to);
+        }, resultSet -> Boolean.TRUE) != null;
+    }
+
+    /**
+     * Name prefixes are compiled to ranges, e.g. lastname &gt;= 'Sm' AND lastname &lt; 'Sm\uffff',
+     * so db scans the index on the column instead of the whole table
+     *
+     * @see UserDao#findByCriteria(UserCriteria)
+     */
+    @Override
+    public List<User> findByCriteria(UserCriteria criteria) throws DatabaseException {
+        return jdbcTemplate.query(criteriaSql(criteria), statement -> {
+            int index = 1;
+            if (criteria.hasLastNamePrefix()) {
+                statement.setString(index++, criteria.getLastNamePrefix());
+                statement.setString(index++, criteria.getLastNamePrefix() + Character.MAX_VALUE);
+            }
+            if (criteria.hasFirstNamePrefix()) {
+                statement.setString(index++, criteria.getFirstNamePrefix());
+                statement.setString(index++, criteria.getFirstNamePrefix() + Character.MAX_VALUE);
+            }
+            if (criteria.getBornFrom() != null) {
+                statement.setDate(index++, new Date(criteria.getBornFrom().getTime()));
+            }
+            if (criteria.getBornTo() != null) {
+                statement.setDate(index, new Date(criteria.getBornTo().getTime()));
+            }
+        }, USER_MAPPER);
+    }
+
+    /**
+     * @see UserDao#findByDateOfBirth(java.util.Date, java.util.Date)
+     */
+    @Override
+    public List<User> findByDateOfBirth(java.util.Date from, java.util.Date to) throws DatabaseException {
+        UserCriteria criteria = new UserCriteria();
+        criteria.setBornFrom(from);
+        criteria.setBornTo(to);
+        criteria.setSortColumn(UserCriteria.SortColumn.DATEOFBIRTH);
+        return findByCriteria(criteria);
+    }
+
+    /**
+     * @see UserDao#findByAge(int, int)
+     */
+    @Override
+    public List<User> findByAge(int minAge, int maxAge) throws DatabaseException {
+        UserCriteria criteria = new UserCriteria();
+        criteria.setAge(minAge, maxAge);
+        criteria.setSortColumn(UserCriteria.SortColumn.DATEOFBIRTH);
+        criteria.setDescending(true);
+        return findByCriteria(criteria);
+    }
+
+    /**
+     * Reads one or two ranges of the index on BIRTHDAY column, so time depends on amount of found users only
+     *
+     * @see UserDao#findUpcomingBirthdays(int)
+     */
+    @Override
+    public List<User> findUpcomingBirthdays(int days) throws DatabaseException {
+        List<User> users = new ArrayList<>();
+        for (int[] range : Birthdays.ranges(LocalDate.now(), days)) {
+            users.addAll(jdbcTemplate.query(SELECT_USERS_BY_BIRTHDAY, statement -> {
+                statement.setInt(1, range[0]);
+                statement.setInt(2, range[1]);
+            }, USER_MAPPER));
+        }
+        return users;
+    }
+
+    /**
+     * @return SQL of the query, compiled once for each shape of criteria
+     */
+    static String criteriaSql(UserCriteria criteria) {
+        String shape = (criteria.hasLastNamePrefix() ? "L" : "") + (criteria.hasFirstNamePrefix() ? "F" : "")
+                + (criteria.getBornFrom() != null ? "A" : "") + (criteria.getBornTo() != null ? "B" : "")
+                + ':' + criteria.getSortColumn() + (criteria.isDescending() ? ":DESC:" : ":ASC:") + criteria.getLimit();
+        String sql = CRITERIA_QUERIES.get(shape);
+        if (sql == null) {
+            sql = compileCriteriaSql(criteria);
+            // limits are a part of the SQL, so amount of shapes is not bounded
+            if (CRITERIA_QUERIES.size() < MAX_CACHED_CRITERIA_QUERIES) {
+                CRITERIA_QUERIES.put(shape, sql);
+            }
+        }
+        return sql;
+    }
+
+    private static String compileCriteriaSql(UserCriteria criteria) {
+        StringBuilder where = new StringBuilder();
+        if (criteria.hasLastNamePrefix()) {
+            appendCondition(where, "lastname >= ? AND lastname < ?");
+        }
+        if (criteria.hasFirstNamePrefix()) {
+            appendCondition(where, "firstname >= ? AND firstname < ?");
+        }
+        if (criteria.getBornFrom() != null) {
+            appendCondition(where, "dateofbirth >= ?");
+        }
+        if (criteria.getBornTo() != null) {
+            appendCondition(where, "dateofbirth <= ?");
+        }
+        String direction = criteria.isDescending() ? " DESC" : "";
+        StringBuilder sql = new StringBuilder("SELECT * FROM users").append(where).append(" ORDER BY ");
+        if (criteria.getSortColumn() != UserCriteria.SortColumn.ID) {
+            sql.append(criteria.getSortColumn().getColumn()).append(direction).append(", ");
+        }
+        sql.append("id").append(direction);
+        if (criteria.getLimit() > 0) {
+            sql.append(" LIMIT ").append(criteria.getLimit());
+        }
+        return sql.toString();
+    }
+
+    private static void appendCondition(StringBuilder where, String condition) {
+        where.append(where.length() == 0 ? " WHERE " : " AND ").append(condition);
     }
 }
@@ -0,0 +1,394 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.OptimisticLockException;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * A UserDao, that keeps users in a {@link ConcurrentHashMap} instead of db. Reads never block,
+ * a write locks only the entry of its user, ids are taken from an {@link AtomicLong}.
+ * Queries, that db answers with an index, scan all users here, so it suits data sets, that fit in heap.
+ * Users may be saved to a snapshot file periodically and on close, and are loaded from it on start,
+ * so changes after the last snapshot are lost, if the process is killed.
+ * A unit of work is undone, if it is rolled back, but other threads see its changes before it ends.
+ * Settings: dao.memory.snapshotFile (empty for no snapshots), dao.memory.snapshotInterval (milliseconds)
+ *
+ * @see ua.nure.usermanagement.database.UserDao
+ */
+public class InMemoryUserDao extends ScanningUserDao {
+    private static final Logger LOGGER = Logger.getLogger(InMemoryUserDao.class.getName());
+    private static final String PREFIX = "dao.memory";
+    private static final int SNAPSHOT_FORMAT = 1;
+
+    private final ConcurrentHashMap<Long, User> users = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    /**
+     * Incremented by every write, so a snapshot is written only if something has changed
+     */
+    private final AtomicLong modifications = new AtomicLong();
+    private final Object snapshotLock = new Object();
+
+    private File snapshotFile;
+    private long snapshotInterval;
+    private long snapshotModifications;
+    private boolean started;
+    private ScheduledExecutorService snapshotter;
+    private Thread shutdownHook;
+    private volatile boolean closed;
+
+    /**
+     * Creates an empty DAO, snapshot settings are read from settings.properties by {@link #setConnectionFactory(ConnectionFactory)}
+     */
+    public InMemoryUserDao() {
+    }
+
+    /**
+     * @param snapshotFile     a file, users are loaded from, if it exists, and saved to, null for no snapshots
+     * @param snapshotInterval time in milliseconds between snapshots, 0 to save them only on close
+     * @throws DatabaseException if the snapshot could not be read
+     */
+    public InMemoryUserDao(File snapshotFile, long snapshotInterval) throws DatabaseException {
+        this.snapshotFile = snapshotFile;
+        this.snapshotInterval = snapshotInterval;
+        start();
+    }
+
+    /**
+     * Users aren't kept in db, so the factory isn't used. Reads snapshot settings from settings.properties
+     * and loads the snapshot on the first call
+     *
+     * @see UserDao#setConnectionFactory(ConnectionFactory)
+     */
+    @Override
+    public synchronized void setConnectionFactory(ConnectionFactory factory) {
+        if (started) {
+            return;
+        }
+        String file = DaoFactory.properties.getProperty(PREFIX + ".snapshotFile", "").trim();
+        snapshotFile = file.isEmpty() ? null : new File(file);
+        snapshotInterval = Long.parseLong(DaoFactory.properties.getProperty(PREFIX + ".snapshotInterval", "60000").trim());
+        try {
+            start();
+        } catch (DatabaseException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private synchronized void start() throws DatabaseException {
+        if (snapshotInterval < 0) {
+            throw new IllegalArgumentException("Snapshot interval must not be negative: " + snapshotInterval);
+        }
+        started = true;
+        if (snapshotFile == null) {
+            return;
+        }
+        if (snapshotFile.exists()) {
+            load();
+        }
+        if (snapshotInterval > 0) {
+            snapshotter = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "user-dao-snapshot");
+                thread.setDaemon(true);
+                return thread;
+            });
+            snapshotter.scheduleWithFixedDelay(this::backgroundSnapshot, snapshotInterval, snapshotInterval, TimeUnit.MILLISECONDS);
+        }
+        shutdownHook = new Thread(this::close, "user-dao-snapshot-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    @Override
+    public User create(User user) throws DatabaseException {
+        check(user);
+        User createdUser = copy(user);
+        createdUser.setId(nextId.getAndIncrement());
+        createdUser.setVersion(0L);
+        put(createdUser);
+        return copy(createdUser);
+    }
+
+    /**
+     * All users are checked before the first one is added, so either all or none of them are added
+     *
+     * @see UserDao#createAll(Collection, int)
+     */
+    @Override
+    public List<User> createAll(Collection<User> users, int chunkSize) throws DatabaseException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        for (User user : users) {
+            check(user);
+        }
+        List<User> createdUsers = new ArrayList<>(users.size());
+        for (User user : users) {
+            createdUsers.add(create(user));
+        }
+        return createdUsers;
+    }
+
+    @Override
+    public void update(User user) throws DatabaseException {
+        check(user);
+        if (!replace(user)) {
+            if (user.getVersion() != null) {
+                throw new OptimisticLockException(user.getId());
+            }
+            throw new DatabaseException("Update not executed");
+        }
+    }
+
+    @Override
+    public int updateAll(Collection<User> users) throws DatabaseException {
+        for (User user : users) {
+            check(user);
+        }
+        int updated = 0;
+        for (User user : users) {
+            if (replace(user)) {
+                updated++;
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public void delete(User user) throws DatabaseException {
+        if (!remove(user.getId())) {
+            throw new DatabaseException("Delete not executed");
+        }
+    }
+
+    @Override
+    public int deleteAll(Collection<Long> ids) throws DatabaseException {
+        int deleted = 0;
+        for (Long id : ids) {
+            if (remove(id)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public User find(Long id) throws DatabaseException {
+        User user = users.get(id);
+        return user != null ? copy(user) : new User();
+    }
+
+    @Override
+    protected Stream<User> users() {
+        return users.values().stream();
+    }
+
+    @Override
+    protected User detach(User user) {
+        return copy(user);
+    }
+
+    private void put(User user) {
+        users.put(user.getId(), user);
+        modifications.incrementAndGet();
+        Transaction.afterRollback(() -> {
+            users.remove(user.getId(), user);
+            modifications.incrementAndGet();
+        });
+    }
+
+    /**
+     * Replaces the stored user, if it exists and, for a versioned user, has the same version.
+     * The version of the given user is incremented on success, as db does
+     *
+     * @return true, if the user was replaced
+     */
+    private boolean replace(User user) {
+        Long id = user.getId();
+        Long expectedVersion = user.getVersion();
+        User[] previous = new User[1];
+        User updated = users.computeIfPresent(id, (key, current) -> {
+            if (expectedVersion != null && !expectedVersion.equals(current.getVersion())) {
+                return current;
+            }
+            previous[0] = current;
+            User next = copy(user);
+            next.setVersion(current.getVersion() + 1);
+            return next;
+        });
+        if (previous[0] == null) {
+            return false;
+        }
+        modifications.incrementAndGet();
+        Transaction.afterRollback(() -> {
+            users.replace(id, updated, previous[0]);
+            modifications.incrementAndGet();
+        });
+        if (expectedVersion != null) {
+            user.setVersion(expectedVersion + 1);
+        }
+        return true;
+    }
+
+    private boolean remove(Long id) {
+        User removed = users.remove(id);
+        if (removed == null) {
+            return false;
+        }
+        modifications.incrementAndGet();
+        Transaction.afterRollback(() -> {
+            users.putIfAbsent(id, removed);
+            modifications.incrementAndGet();
+        });
+        return true;
+    }
+
+    /**
+     * Stored users are never changed, so they are copied together with their date of birth on the way in and out
+     */
+    private static User copy(User user) {
+        User copy = new User(user);
+        copy.setDateOfBirth(new Date(user.getDateOfBirth().getTime()));
+        return copy;
+    }
+
+    /**
+     * Saves all users into the snapshot file, if any of them has changed since the last snapshot.
+     * The file is written next to the old one and replaces it at once, so a crash leaves the old snapshot intact.
+     * Users, changed while the snapshot is written, may be saved in either state
+     *
+     * @throws DatabaseException if the file could not be written
+     */
+    public void snapshot() throws DatabaseException {
+        if (snapshotFile == null) {
+            return;
+        }
+        synchronized (snapshotLock) {
+            long modificationsBefore = modifications.get();
+            if (modificationsBefore == snapshotModifications) {
+                return;
+            }
+            File temporaryFile = new File(snapshotFile.getPath() + ".tmp");
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temporaryFile)))) {
+                    out.writeInt(SNAPSHOT_FORMAT);
+                    out.writeLong(nextId.get());
+                    List<User> snapshot = new ArrayList<>(users.values());
+                    out.writeInt(snapshot.size());
+                    for (User user : snapshot) {
+                        out.writeLong(user.getId());
+                        out.writeLong(user.getVersion());
+                        out.writeUTF(user.getFirstName());
+                        out.writeUTF(user.getLastName());
+                        out.writeLong(user.getDateOfBirth().getTime());
+                    }
+                }
+                Files.move(temporaryFile.toPath(), snapshotFile.toPath(),
+                        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (IOException e) {
+                throw new DatabaseException("Snapshot could not be written to " + snapshotFile, e);
+            }
+            snapshotModifications = modificationsBefore;
+        }
+    }
+
+    private void load() throws DatabaseException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(snapshotFile)))) {
+            int format = in.readInt();
+            if (format != SNAPSHOT_FORMAT) {
+                throw new DatabaseException("Unknown format of snapshot " + snapshotFile + ": " + format);
+            }
+            long savedNextId = in.readLong();
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                User user = new User(in.readLong(), null, null, null);
+                user.setVersion(in.readLong());
+                user.setFirstName(in.readUTF());
+                user.setLastName(in.readUTF());
+                user.setDateOfBirth(new Date(in.readLong()));
+                users.put(user.getId(), user);
+                savedNextId = Math.max(savedNextId, user.getId() + 1);
+            }
+            nextId.set(savedNextId);
+        } catch (IOException e) {
+            throw new DatabaseException("Snapshot could not be read from " + snapshotFile, e);
+        }
+        LOGGER.info("Loaded " + users.size() + " users from " + snapshotFile);
+    }
+
+    private void backgroundSnapshot() {
+        try {
+            snapshot();
+        } catch (DatabaseException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Snapshot failed, retrying in " + snapshotInterval + " ms", e);
+        }
+    }
+
+    /**
+     * Stops periodic snapshots and saves the last one
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (snapshotter != null) {
+            snapshotter.shutdown();
+            try {
+                snapshotter.awaitTermination(snapshotInterval, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (shutdownHook != null) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // the JVM is already shutting down, this is the hook
+            }
+        }
+        try {
+            snapshot();
+        } catch (DatabaseException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Changes after the last snapshot are lost on close", e);
+        }
+    }
+
+    /**
+     * @return amount of stored users
+     */
+    public int getSize() {
+        return users.size();
+    }
+
+    @Override
+    public String toString() {
+        return "InMemoryUserDao{" +
+                "size=" + getSize() +
+                ", snapshotFile=" + snapshotFile +
+                ", snapshotInterval=" + snapshotInterval +
+                '}';
+    }
+}
@@ -0,0 +1,347 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.DatabaseTimeoutException;
+import ua.nure.usermanagement.database.exception.UncheckedDatabaseException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A template for executing JDBC statements. It takes care of acquiring a connection,
+ * committing changes and closing connection, statement and result set, so DAO methods
+ * only supply SQL, parameters and row mapping.
+ * Statements are always prepared via {@link Connection#prepareStatement(String)},
+ * so a pooled connection serves them from its statement cache.
+ * Queries use {@link ConnectionFactory#createReadConnection()}, so they may go to a read replica.
+ * Inside a unit of work (see {@link Transaction}) all methods use its connection
+ * and leave committing and closing to it.
+ * When the current thread has a {@link Deadline}, statements get a query timeout of the time, that is left,
+ * and a statement, that fails after the deadline, throws a DatabaseTimeoutException. HSQLDB 1.8 ignores
+ * query timeouts, so {@link TimeoutUserDao} stops waiting for a call at its deadline on its own.
+ */
+class JdbcTemplate {
+
+    /**
+     * Sets parameters of a prepared statement
+     */
+    interface StatementBinder {
+        void bind(PreparedStatement statement) throws SQLException;
+    }
+
+    /**
+     * Converts current row of a result set into an object
+     */
+    interface RowMapper<T> {
+        T map(ResultSet resultSet) throws SQLException;
+    }
+
+    /**
+     * Does arbitrary work with a connection, that is managed by the template
+     */
+    interface ConnectionCallback<T> {
+        T doInConnection(Connection connection) throws SQLException, DatabaseException;
+    }
+
+    static final StatementBinder NO_PARAMETERS = statement -> {
+    };
+
+    private final ConnectionFactory connectionFactory;
+
+    JdbcTemplate(ConnectionFactory connectionFactory) {
+        this.connectionFactory = connectionFactory;
+    }
+
+    ConnectionFactory getConnectionFactory() {
+        return connectionFactory;
+    }
+
+    /**
+     * @return all rows, returned by the query, converted by the mapper
+     * @throws DatabaseException if has any problems with db
+     */
+    <T> List<T> query(String sql, StatementBinder binder, RowMapper<T> mapper) throws DatabaseException {
+        return executeRead(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                binder.bind(statement);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    List<T> result = new ArrayList<>();
+                    while (resultSet.next()) {
+                        result.add(mapper.map(resultSet));
+                    }
+                    return result;
+                }
+            }
+        });
+    }
+
+    /**
+     * @return the first row, returned by the query, converted by the mapper, or null if there are no rows
+     * @throws DatabaseException if has any problems with db
+     */
+    <T> T queryForObject(String sql, StatementBinder binder, RowMapper<T> mapper) throws DatabaseException {
+        return executeRead(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                binder.bind(statement);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    return resultSet.next() ? mapper.map(resultSet) : null;
+                }
+            }
+        });
+    }
+
+    /**
+     * Opens a cursor over the rows, returned by the query, and maps them lazily, as the stream is consumed.
+     * Connection, statement and result set stay open until the stream is exhausted or closed.
+     * Only one row is held by the caller at a time, but drivers, that ignore fetch size, like HSQLDB 1.8,
+     * read the whole result into memory, when the query is executed, so large results are read by pages instead.
+     *
+     * @param fetchSize amount of rows, the driver is asked to read from the database at once
+     * @return a stream of mapped rows, that must be closed
+     * @throws DatabaseException if the query could not be executed
+     */
+    <T> Stream<T> stream(String sql, StatementBinder binder, RowMapper<T> mapper, int fetchSize) throws DatabaseException {
+        Deadline.check();
+        Connection bound = Transaction.getConnection(connectionFactory);
+        Connection connection = bound != null ? bound : connectionFactory.createReadConnection();
+        Cursor<T> cursor = new Cursor<>(connection, bound == null, mapper);
+        try {
+            cursor.statement = withDeadline(connection).prepareStatement(sql);
+            cursor.statement.setFetchSize(fetchSize);
+            binder.bind(cursor.statement);
+            cursor.resultSet = cursor.statement.executeQuery();
+        } catch (SQLException e) {
+            cursor.close();
+            throw translate(e);
+        }
+        return StreamSupport.stream(cursor, false).onClose(cursor::close);
+    }
+
+    /**
+     * Executes an insert, update or delete statement and commits it
+     *
+     * @return amount of changed rows
+     * @throws DatabaseException if has any problems with db
+     */
+    int update(String sql, StatementBinder binder) throws DatabaseException {
+        return execute(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(sql)) {
+                binder.bind(statement);
+                int n = statement.executeUpdate();
+                commit(connection);
+                return n;
+            }
+        });
+    }
+
+    /**
+     * Commits the connection, unless it belongs to a unit of work, which is committed at its end
+     *
+     * @throws SQLException if the commit failed
+     */
+    void commit(Connection connection) throws SQLException {
+        if (!Transaction.isActive()) {
+            connection.commit();
+        }
+    }
+
+    /**
+     * Runs the callback with a connection, that is closed afterwards.
+     * Inside a unit of work the callback gets its connection, that stays open
+     *
+     * @return result of the callback
+     * @throws DatabaseException if has any problems with db
+     */
+    <T> T execute(ConnectionCallback<T> callback) throws DatabaseException {
+        Deadline.check();
+        Connection bound = Transaction.getConnection(connectionFactory);
+        if (bound != null) {
+            return execute(bound, callback);
+        }
+        return executeAndClose(connectionFactory.createConnection(), callback);
+    }
+
+    /**
+     * Same as {@link #execute(ConnectionCallback)}, but outside of a unit of work the callback gets a read connection,
+     * so it must not change anything
+     *
+     * @return result of the callback
+     * @throws DatabaseException if has any problems with db
+     */
+    private <T> T executeRead(ConnectionCallback<T> callback) throws DatabaseException {
+        Deadline.check();
+        Connection bound = Transaction.getConnection(connectionFactory);
+        if (bound != null) {
+            return execute(bound, callback);
+        }
+        return executeAndClose(connectionFactory.createReadConnection(), callback);
+    }
+
+    private static <T> T execute(Connection connection, ConnectionCallback<T> callback) throws DatabaseException {
+        try {
+            return callback.doInConnection(withDeadline(connection));
+        } catch (SQLException e) {
+            throw translate(e);
+        }
+    }
+
+    private static <T> T executeAndClose(Connection connection, ConnectionCallback<T> callback) throws DatabaseException {
+        try {
+            return callback.doInConnection(withDeadline(connection));
+        } catch (SQLException e) {
+            throw translate(e);
+        } finally {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * Gives statements, prepared by the connection, a query timeout of the time, that is left till the deadline
+     * of the current thread. Without a deadline the connection is returned as it is
+     */
+    private static Connection withDeadline(Connection connection) {
+        Deadline deadline = Deadline.current();
+        if (deadline == null) {
+            return connection;
+        }
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    Object result;
+                    try {
+                        result = method.invoke(connection, args);
+                    } catch (InvocationTargetException e) {
+                        throw e.getCause();
+                    }
+                    if (result instanceof Statement) {
+                        Statement statement = (Statement) result;
+                        if (deadline.isExpired()) {
+                            statement.close();
+                            throw new SQLTimeoutException(deadline.getMessage());
+                        }
+                        statement.setQueryTimeout(deadline.getQueryTimeout());
+                    }
+                    return result;
+                });
+    }
+
+    /**
+     * @return a DatabaseTimeoutException, if the statement timed out or failed after the deadline
+     * of the current thread, otherwise a DatabaseException
+     */
+    static DatabaseException translate(SQLException e) {
+        Deadline deadline = Deadline.current();
+        if (deadline != null && (e instanceof SQLTimeoutException || deadline.isExpired())) {
+            return deadline.exceeded(e);
+        }
+        if (e instanceof SQLTimeoutException) {
+            return new DatabaseTimeoutException(e.getMessage(), e);
+        }
+        return new DatabaseException(e);
+    }
+
+    /**
+     * Runs the callback with a connection in a single transaction, that is committed, when the callback
+     * returns normally, and rolled back otherwise. Inside a unit of work the callback joins it
+     *
+     * @return result of the callback
+     * @throws DatabaseException if has any problems with db
+     */
+    <T> T executeInTransaction(ConnectionCallback<T> callback) throws DatabaseException {
+        if (Transaction.isActive()) {
+            return execute(callback);
+        }
+        return execute(connection -> {
+            connection.setAutoCommit(false);
+            try {
+                T result = callback.doInConnection(connection);
+                connection.commit();
+                return result;
+            } catch (SQLException | DatabaseException | RuntimeException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(true);
+            }
+        });
+    }
+
+    /**
+     * A spliterator over an open result set, that releases its resources, when the last row is read or it is closed.
+     * A connection of a unit of work is left open
+     */
+    private static class Cursor<T> extends Spliterators.AbstractSpliterator<T> {
+        private final Connection connection;
+        private final boolean closeConnection;
+        private final RowMapper<T> mapper;
+        private PreparedStatement statement;
+        private ResultSet resultSet;
+        private boolean closed;
+
+        Cursor(Connection connection, boolean closeConnection, RowMapper<T> mapper) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.connection = connection;
+            this.closeConnection = closeConnection;
+            this.mapper = mapper;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            if (closed) {
+                return false;
+            }
+            try {
+                if (!resultSet.next()) {
+                    close();
+                    return false;
+                }
+                action.accept(mapper.map(resultSet));
+                return true;
+            } catch (SQLException e) {
+                close();
+                throw new UncheckedDatabaseException(translate(e));
+            }
+        }
+
+        void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            try {
+                if (resultSet != null) {
+                    resultSet.close();
+                }
+                if (statement != null) {
+                    statement.close();
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            } finally {
+                if (closeConnection) {
+                    try {
+                        connection.close();
+                    } catch (SQLException e) {
+                        e.printStackTrace();
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * A UserDao, that notifies {@link UserChangeListener}s about every successful write, so in-memory structures,
+ * built from the users, stay up to date. {@link DaoFactoryImpl} wraps the DAO, named in settings.properties, with it.
+ * Inside a unit of work listeners are notified after it is committed, so they never see rolled back changes
+ *
+ * @see ua.nure.usermanagement.database.UserDao
+ */
+public class ListeningUserDao extends UserDaoDecorator {
+    private static final String PREFIX = "dao.listening";
+
+    private final List<UserChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    public ListeningUserDao() {
+        super(PREFIX);
+    }
+
+    /**
+     * @param delegate a DAO, that is wrapped by this decorator
+     */
+    public ListeningUserDao(UserDao delegate) {
+        super(PREFIX, delegate);
+    }
+
+    public void addListener(UserChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(UserChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    @Override
+    public User create(User user) throws DatabaseException {
+        User createdUser = delegate.create(user);
+        // a copy, because the caller may change the user before the work is committed
+        User notifiedUser = new User(createdUser);
+        Transaction.afterCommit(() -> {
+            for (UserChangeListener listener : listeners) {
+                listener.userCreated(notifiedUser);
+            }
+        });
+        return createdUser;
+    }
+
+    @Override
+    public List<User> createAll(Collection<User> users, int chunkSize) throws DatabaseException {
+        List<User> createdUsers = delegate.createAll(users, chunkSize);
+        List<User> notifiedUsers = new ArrayList<>(createdUsers.size());
+        for (User createdUser : createdUsers) {
+            notifiedUsers.add(new User(createdUser));
+        }
+        Transaction.afterCommit(() -> {
+            for (UserChangeListener listener : listeners) {
+                for (User createdUser : notifiedUsers) {
+                    listener.userCreated(createdUser);
+                }
+            }
+        });
+        return createdUsers;
+    }
+
+    @Override
+    public void update(User user) throws DatabaseException {
+        delegate.update(user);
+        User updatedUser = new User(user);
+        Transaction.afterCommit(() -> {
+            for (UserChangeListener listener : listeners) {
+                listener.userUpdated(updatedUser);
+            }
+        });
+    }
+
+    /**
+     * Listeners are notified only about users, that were updated. If the delegate skipped some users,
+     * a versioned user is updated, if its version was incremented, and a user without a version, if it exists
+     *
+     * @see UserDao#updateAll(Collection)
+     */
+    @Override
+    public int updateAll(Collection<User> users) throws DatabaseException {
+        List<Long> versions = new ArrayList<>(users.size());
+        for (User user : users) {
+            versions.add(user.getVersion());
+        }
+        int updated = delegate.updateAll(users);
+        List<User> updatedUsers = new ArrayList<>(updated);
+        Iterator<Long> version = versions.iterator();
+        for (User user : users) {
+            Long previousVersion = version.next();
+            if (updated == users.size() || (previousVersion != null
+                    ? !previousVersion.equals(user.getVersion())
+                    : delegate.find(user.getId()).getId() != null)) {
+                updatedUsers.add(new User(user));
+            }
+        }
+        Transaction.afterCommit(() -> {
+            for (UserChangeListener listener : listeners) {
+                for (User user : updatedUsers) {
+                    listener.userUpdated(user);
+                }
+            }
+        });
+        return updated;
+    }
+
+    @Override
+    public void delete(User user) throws DatabaseException {
+        delegate.delete(user);
+        Long id = user.getId();
+        Transaction.afterCommit(() -> {
+            for (UserChangeListener listener : listeners) {
+                listener.userDeleted(id);
+            }
+        });
+    }
+
+    /**
+     * Listeners are not notified, if no user was deleted. The delegate doesn't tell, which ids were absent,
+     * so if only some users were deleted, listeners get all ids, for absent ones it changes nothing
+     *
+     * @see UserDao#deleteAll(Collection)
+     */
+    @Override
+    public int deleteAll(Collection<Long> ids) throws DatabaseException {
+        int deleted = delegate.deleteAll(ids);
+        List<Long> deletedIds = deleted > 0 ? new ArrayList<>(new LinkedHashSet<>(ids)) : Collections.emptyList();
+        Transaction.afterCommit(() -> {
+            for (UserChangeListener listener : listeners) {
+                for (Long id : deletedIds) {
+                    listener.userDeleted(id);
+                }
+            }
+        });
+        return deleted;
+    }
+}
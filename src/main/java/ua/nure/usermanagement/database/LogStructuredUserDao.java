@@ -0,0 +1,761 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.OptimisticLockException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * A UserDao, that appends records of users to memory-mapped segment files in a directory instead of db.
+ * Every write appends a record: a new state of a user or a tombstone of a deleted one, so writes never seek.
+ * An in-memory index maps ids to the latest records, so {@link #find(Long)} reads one record, and reads never block.
+ * On start the index is rebuilt by scanning the segments in order, a later record of a user wins.
+ * A record, that was being written when the process died, fails its checksum and is overwritten.
+ * When a segment is full, the next one is started. Full segments, that consist mostly of overwritten and deleted records,
+ * are compacted in background: their live records are appended again and the segment file is deleted.
+ * Records reach the file through the page cache at once, so they survive a crash of the process,
+ * and are forced to disk, when a segment is full, after every compaction run and on close.
+ * Other queries scan all live records, a unit of work is undone, if it is rolled back.
+ * Settings: dao.log.directory, dao.log.segmentSize (bytes), dao.log.compactionThreshold
+ * (share of garbage in a segment, from 0 to 1), dao.log.compactionInterval (milliseconds, 0 to compact only on demand)
+ *
+ * @see ua.nure.usermanagement.database.UserDao
+ */
+public class LogStructuredUserDao extends ScanningUserDao {
+    private static final Logger LOGGER = Logger.getLogger(LogStructuredUserDao.class.getName());
+    private static final String PREFIX = "dao.log";
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d+)\\.log");
+
+    private static final byte PUT = 1;
+    private static final byte DELETE = 2;
+    /**
+     * A record, whose id is the highest one, given to a user, so the id isn't reused, when its records are compacted
+     */
+    private static final byte ID_MARK = 3;
+    /**
+     * length, type, id, version, date of birth, lengths of first and last names
+     */
+    private static final int HEADER_SIZE = 4 + 1 + 8 + 8 + 8 + 2 + 2;
+    private static final int CHECKSUM_SIZE = 4;
+    private static final int MIN_SEGMENT_SIZE = 4096;
+
+    private final ConcurrentHashMap<Long, Location> index = new ConcurrentHashMap<>();
+    private final AtomicLong nextId = new AtomicLong();
+    /**
+     * Guards appends, segments and their accounting. Readers don't take it
+     */
+    private final Object writeLock = new Object();
+    private final List<Segment> segments = new ArrayList<>();
+    private final AtomicLong compactedSegments = new AtomicLong();
+
+    private File directory;
+    private int segmentSize;
+    private double compactionThreshold;
+    private long compactionInterval;
+    private Segment active;
+    private boolean started;
+    private ScheduledExecutorService compactor;
+    private Thread shutdownHook;
+    private volatile boolean closed;
+
+    /**
+     * Creates a DAO, that is opened by {@link #setConnectionFactory(ConnectionFactory)} with settings from settings.properties
+     */
+    public LogStructuredUserDao() {
+    }
+
+    /**
+     * Opens segments in the directory, or creates the first one, if there are none
+     *
+     * @param directory           a directory of segment files, it is created, if it doesn't exist
+     * @param segmentSize         size of a segment file in bytes, at least 4096
+     * @param compactionThreshold share of overwritten and deleted records, starting from which a full segment is compacted
+     * @param compactionInterval  time in milliseconds between background compactions, 0 to compact only by {@link #compact()}
+     * @throws DatabaseException if segments could not be read
+     */
+    public LogStructuredUserDao(File directory, int segmentSize, double compactionThreshold, long compactionInterval) throws DatabaseException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.compactionThreshold = compactionThreshold;
+        this.compactionInterval = compactionInterval;
+        start();
+    }
+
+    /**
+     * Users aren't kept in db, so the factory isn't used. Reads settings from settings.properties
+     * and opens segments on the first call
+     *
+     * @see UserDao#setConnectionFactory(ConnectionFactory)
+     */
+    @Override
+    public synchronized void setConnectionFactory(ConnectionFactory factory) {
+        if (started) {
+            return;
+        }
+        directory = new File(DaoFactory.properties.getProperty(PREFIX + ".directory", "log").trim());
+        segmentSize = Integer.parseInt(DaoFactory.properties.getProperty(PREFIX + ".segmentSize", "67108864").trim());
+        compactionThreshold = Double.parseDouble(DaoFactory.properties.getProperty(PREFIX + ".compactionThreshold", "0.5").trim());
+        compactionInterval = Long.parseLong(DaoFactory.properties.getProperty(PREFIX + ".compactionInterval", "60000").trim());
+        try {
+            start();
+        } catch (DatabaseException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private synchronized void start() throws DatabaseException {
+        if (segmentSize < MIN_SEGMENT_SIZE) {
+            throw new IllegalArgumentException("Segment size must be at least " + MIN_SEGMENT_SIZE + ": " + segmentSize);
+        }
+        if (compactionThreshold <= 0 || compactionThreshold > 1) {
+            throw new IllegalArgumentException("Compaction threshold must be from 0 to 1: " + compactionThreshold);
+        }
+        if (compactionInterval < 0) {
+            throw new IllegalArgumentException("Compaction interval must not be negative: " + compactionInterval);
+        }
+        started = true;
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new DatabaseException("Directory " + directory + " could not be created");
+        }
+        synchronized (writeLock) {
+            try {
+                recover();
+            } catch (IOException e) {
+                closeSegments();
+                throw new DatabaseException("Segments in " + directory + " could not be read", e);
+            }
+        }
+        if (compactionInterval > 0) {
+            compactor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "user-dao-log-compaction");
+                thread.setDaemon(true);
+                return thread;
+            });
+            compactor.scheduleWithFixedDelay(this::backgroundCompact, compactionInterval, compactionInterval, TimeUnit.MILLISECONDS);
+        }
+        shutdownHook = new Thread(this::close, "user-dao-log-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Scans the segments in order of their numbers and rebuilds the index. The last segment becomes the active one
+     */
+    private void recover() throws IOException {
+        File[] files = directory.listFiles((dir, name) -> SEGMENT_NAME.matcher(name).matches());
+        long[] numbers = new long[files == null ? 0 : files.length];
+        for (int i = 0; i < numbers.length; i++) {
+            Matcher matcher = SEGMENT_NAME.matcher(files[i].getName());
+            matcher.matches();
+            numbers[i] = Long.parseLong(matcher.group(1));
+        }
+        Arrays.sort(numbers);
+        for (long number : numbers) {
+            Segment segment = Segment.open(segmentFile(number), number, 0);
+            segments.add(segment);
+            scan(segment);
+        }
+        if (segments.isEmpty()) {
+            active = Segment.open(segmentFile(1), 1, segmentSize);
+            segments.add(active);
+        } else {
+            active = segments.get(segments.size() - 1);
+        }
+        if (!index.isEmpty()) {
+            LOGGER.info("Loaded " + index.size() + " users from " + segments.size() + " segments in " + directory);
+        }
+    }
+
+    private void scan(Segment segment) {
+        ByteBuffer buffer = segment.buffer.duplicate();
+        int offset = 0;
+        while (offset + HEADER_SIZE + CHECKSUM_SIZE <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length < HEADER_SIZE + CHECKSUM_SIZE || offset + length > buffer.capacity() || !checksumMatches(buffer, offset, length)) {
+                break;
+            }
+            long id = buffer.getLong(offset + 5);
+            byte type = buffer.get(offset + 4);
+            if (type == PUT) {
+                supersede(index.put(id, new Location(segment, offset, length)));
+                segment.liveBytes += length;
+            } else if (type == DELETE) {
+                supersede(index.remove(id));
+                segment.tombstoneBytes += length;
+            } else {
+                segment.tombstoneBytes += length;
+            }
+            nextId.set(Math.max(nextId.get(), id + 1));
+            offset += length;
+        }
+        segment.end = offset;
+        if (offset + 4 <= buffer.capacity() && buffer.getInt(offset) != 0) {
+            // a torn record is cleared, so it can't be taken for a part of the records, appended over it
+            clear(segment, offset);
+        }
+    }
+
+    private static void clear(Segment segment, int from) {
+        ByteBuffer writer = segment.buffer.duplicate();
+        writer.position(from);
+        byte[] zeros = new byte[Math.min(8192, writer.remaining())];
+        while (writer.hasRemaining()) {
+            writer.put(zeros, 0, Math.min(zeros.length, writer.remaining()));
+        }
+    }
+
+    private static boolean checksumMatches(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        ByteBuffer record = buffer.duplicate();
+        record.position(offset + 4);
+        record.limit(offset + length - CHECKSUM_SIZE);
+        crc.update(record);
+        return (int) crc.getValue() == buffer.getInt(offset + length - CHECKSUM_SIZE);
+    }
+
+    /**
+     * Marks a record, that is no longer the latest one of its user, as garbage
+     */
+    private static void supersede(Location previous) {
+        if (previous != null) {
+            previous.segment.liveBytes -= previous.length;
+        }
+    }
+
+    private File segmentFile(long number) {
+        return new File(directory, String.format("segment-%06d.log", number));
+    }
+
+    @Override
+    public User create(User user) throws DatabaseException {
+        check(user);
+        synchronized (writeLock) {
+            User createdUser = new User(user);
+            createdUser.setId(nextId.getAndIncrement());
+            createdUser.setVersion(0L);
+            put(encode(PUT, createdUser));
+            return createdUser;
+        }
+    }
+
+    /**
+     * All users are checked and encoded before the first one is appended
+     *
+     * @see UserDao#createAll(Collection, int)
+     */
+    @Override
+    public List<User> createAll(Collection<User> users, int chunkSize) throws DatabaseException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        for (User user : users) {
+            check(user);
+            checkNames(user);
+        }
+        synchronized (writeLock) {
+            List<User> createdUsers = new ArrayList<>(users.size());
+            for (User user : users) {
+                User createdUser = new User(user);
+                createdUser.setId(nextId.getAndIncrement());
+                createdUser.setVersion(0L);
+                put(encode(PUT, createdUser));
+                createdUsers.add(createdUser);
+            }
+            return createdUsers;
+        }
+    }
+
+    @Override
+    public void update(User user) throws DatabaseException {
+        check(user);
+        if (!replace(user)) {
+            if (user.getVersion() != null) {
+                throw new OptimisticLockException(user.getId());
+            }
+            throw new DatabaseException("Update not executed");
+        }
+    }
+
+    @Override
+    public int updateAll(Collection<User> users) throws DatabaseException {
+        for (User user : users) {
+            check(user);
+            checkNames(user);
+        }
+        int updated = 0;
+        for (User user : users) {
+            if (replace(user)) {
+                updated++;
+            }
+        }
+        return updated;
+    }
+
+    @Override
+    public void delete(User user) throws DatabaseException {
+        if (!remove(user.getId())) {
+            throw new DatabaseException("Delete not executed");
+        }
+    }
+
+    @Override
+    public int deleteAll(Collection<Long> ids) throws DatabaseException {
+        int deleted = 0;
+        for (Long id : ids) {
+            if (remove(id)) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public User find(Long id) throws DatabaseException {
+        Location location = index.get(id);
+        return location != null ? decode(location) : new User();
+    }
+
+    @Override
+    protected Stream<User> users() {
+        return index.values().stream().map(LogStructuredUserDao::decode);
+    }
+
+    /**
+     * Appends the state of the user and points the index at it. Must be called with the write lock held
+     */
+    private void put(byte[] record) throws DatabaseException {
+        Location location = append(record);
+        long id = ByteBuffer.wrap(record).getLong(5);
+        supersede(index.put(id, location));
+        location.segment.liveBytes += location.length;
+        Transaction.afterRollback(() -> undo(id, location, null));
+    }
+
+    /**
+     * Replaces the latest record of the user, if it exists and, for a versioned user, has the same version.
+     * The version of the given user is incremented on success, as db does
+     *
+     * @return true, if the user was replaced
+     */
+    private boolean replace(User user) throws DatabaseException {
+        Long id = user.getId();
+        synchronized (writeLock) {
+            Location current = index.get(id);
+            if (current == null) {
+                return false;
+            }
+            User previous = decode(current);
+            if (user.getVersion() != null && !user.getVersion().equals(previous.getVersion())) {
+                return false;
+            }
+            User next = new User(user);
+            next.setVersion(previous.getVersion() + 1);
+            Location location = append(encode(PUT, next));
+            supersede(index.put(id, location));
+            location.segment.liveBytes += location.length;
+            Transaction.afterRollback(() -> undo(id, location, previous));
+        }
+        if (user.getVersion() != null) {
+            user.setVersion(user.getVersion() + 1);
+        }
+        return true;
+    }
+
+    private boolean remove(Long id) throws DatabaseException {
+        synchronized (writeLock) {
+            Location current = index.get(id);
+            if (current == null) {
+                return false;
+            }
+            User previous = decode(current);
+            Location tombstone = append(encode(DELETE, previous));
+            tombstone.segment.tombstoneBytes += tombstone.length;
+            supersede(index.remove(id));
+            Transaction.afterRollback(() -> undo(id, tombstone, previous));
+            return true;
+        }
+    }
+
+    /**
+     * Restores the previous state of the user, if nobody has written it after the rolled back write
+     *
+     * @param written  the record of the rolled back write
+     * @param previous the state of the user before the write, null, if the write created the user
+     */
+    private void undo(Long id, Location written, User previous) {
+        synchronized (writeLock) {
+            Location current = index.get(id);
+            boolean unchanged = written.isTombstone() ? current == null : current == written;
+            if (!unchanged || closed) {
+                return;
+            }
+            try {
+                if (previous == null) {
+                    Location tombstone = append(encode(DELETE, decode(written)));
+                    tombstone.segment.tombstoneBytes += tombstone.length;
+                    supersede(index.remove(id));
+                } else {
+                    Location location = append(encode(PUT, previous));
+                    supersede(index.put(id, location));
+                    location.segment.liveBytes += location.length;
+                }
+            } catch (DatabaseException e) {
+                LOGGER.log(Level.SEVERE, "Rolled back write of user " + id + " could not be undone", e);
+            }
+        }
+    }
+
+    /**
+     * Writes the record at the end of the active segment, a new segment is started, if it doesn't fit.
+     * Must be called with the write lock held
+     */
+    private Location append(byte[] record) throws DatabaseException {
+        if (closed) {
+            throw new DatabaseException("Log-structured DAO is closed");
+        }
+        if (record.length > segmentSize) {
+            throw new DatabaseException("Record of " + record.length + " bytes doesn't fit in a segment of " + segmentSize + " bytes");
+        }
+        if (active.end + record.length > active.buffer.capacity()) {
+            roll();
+        }
+        Location location = new Location(active, active.end, record.length);
+        ByteBuffer writer = active.buffer.duplicate();
+        writer.position(active.end);
+        writer.put(record);
+        active.end += record.length;
+        return location;
+    }
+
+    private void roll() throws DatabaseException {
+        active.buffer.force();
+        try {
+            Segment segment = Segment.open(segmentFile(active.number + 1), active.number + 1, segmentSize);
+            segments.add(segment);
+            active = segment;
+        } catch (IOException e) {
+            throw new DatabaseException("Segment " + (active.number + 1) + " could not be created in " + directory, e);
+        }
+    }
+
+    private static void checkNames(User user) throws DatabaseException {
+        if (user.getFirstName().getBytes(StandardCharsets.UTF_8).length > Short.MAX_VALUE
+                || user.getLastName().getBytes(StandardCharsets.UTF_8).length > Short.MAX_VALUE) {
+            throw new DatabaseException("Names of user are longer than " + Short.MAX_VALUE + " bytes: " + user.getId());
+        }
+    }
+
+    /**
+     * Layout of a record: length, type, id, version, date of birth, lengths of names in UTF-8,
+     * first name, last name, CRC32 of everything between length and checksum
+     */
+    private static byte[] encode(byte type, User user) throws DatabaseException {
+        checkNames(user);
+        byte[] firstName = user.getFirstName().getBytes(StandardCharsets.UTF_8);
+        byte[] lastName = user.getLastName().getBytes(StandardCharsets.UTF_8);
+        int length = HEADER_SIZE + firstName.length + lastName.length + CHECKSUM_SIZE;
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.putInt(length);
+        buffer.put(type);
+        buffer.putLong(user.getId());
+        buffer.putLong(user.getVersion());
+        buffer.putLong(user.getDateOfBirth().getTime());
+        buffer.putShort((short) firstName.length);
+        buffer.putShort((short) lastName.length);
+        buffer.put(firstName);
+        buffer.put(lastName);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 4, length - 4 - CHECKSUM_SIZE);
+        buffer.putInt((int) crc.getValue());
+        return buffer.array();
+    }
+
+    private static User decode(Location location) {
+        ByteBuffer buffer = location.segment.buffer.duplicate();
+        buffer.position(location.offset + 5);
+        User user = new User();
+        user.setId(buffer.getLong());
+        user.setVersion(buffer.getLong());
+        user.setDateOfBirth(new Date(buffer.getLong()));
+        byte[] firstName = new byte[buffer.getShort()];
+        byte[] lastName = new byte[buffer.getShort()];
+        buffer.get(firstName);
+        buffer.get(lastName);
+        user.setFirstName(new String(firstName, StandardCharsets.UTF_8));
+        user.setLastName(new String(lastName, StandardCharsets.UTF_8));
+        return user;
+    }
+
+    /**
+     * Compacts every full segment, whose share of garbage reached the threshold, oldest first.
+     * Live records of a segment are appended to the active segment, and its file is deleted.
+     * Tombstones are kept, while an older segment may hold a record of their user.
+     * If tombstones are dropped, a mark of the highest id is appended, so ids of deleted users aren't given again after restart.
+     * Writers wait, while a segment is compacted, readers don't
+     *
+     * @return amount of compacted segments
+     * @throws DatabaseException if records could not be appended
+     */
+    public int compact() throws DatabaseException {
+        int compacted = 0;
+        while (true) {
+            synchronized (writeLock) {
+                Segment victim = null;
+                for (Segment segment : segments) {
+                    if (segment != active && segment.garbageShare(segment == segments.get(0)) >= compactionThreshold) {
+                        victim = segment;
+                        break;
+                    }
+                }
+                if (victim == null) {
+                    break;
+                }
+                compact(victim, victim == segments.get(0));
+                compacted++;
+            }
+        }
+        if (compacted > 0) {
+            synchronized (writeLock) {
+                if (!closed) {
+                    active.buffer.force();
+                }
+            }
+            compactedSegments.addAndGet(compacted);
+            LOGGER.fine("Compacted " + compacted + " segments. " + this);
+        }
+        return compacted;
+    }
+
+    private void compact(Segment victim, boolean oldest) throws DatabaseException {
+        ByteBuffer buffer = victim.buffer.duplicate();
+        int offset = 0;
+        boolean dropped = false;
+        while (offset < victim.end) {
+            int length = buffer.getInt(offset);
+            long id = buffer.getLong(offset + 5);
+            byte type = buffer.get(offset + 4);
+            if (type == PUT) {
+                Location current = index.get(id);
+                if (current != null && current.segment == victim && current.offset == offset) {
+                    Location location = append(copy(buffer, offset, length));
+                    index.put(id, location);
+                    location.segment.liveBytes += length;
+                }
+            } else if (type == DELETE && !oldest && !index.containsKey(id)) {
+                // a tombstone of a user, whose deletion was undone, must not be moved after the restored record
+                Location location = append(copy(buffer, offset, length));
+                location.segment.tombstoneBytes += length;
+            } else {
+                dropped = true;
+            }
+            offset += length;
+        }
+        if (dropped) {
+            appendIdMark();
+        }
+        segments.remove(victim);
+        victim.close();
+        if (!victim.file.delete()) {
+            LOGGER.warning("Compacted segment " + victim.file + " could not be deleted");
+            victim.file.deleteOnExit();
+        }
+    }
+
+    /**
+     * Appends a record of the highest given id. Dropped tombstones may have been the only records of it
+     */
+    private void appendIdMark() throws DatabaseException {
+        User mark = new User("", "", new Date(0));
+        mark.setId(nextId.get() - 1);
+        mark.setVersion(0L);
+        Location location = append(encode(ID_MARK, mark));
+        location.segment.tombstoneBytes += location.length;
+    }
+
+    private static byte[] copy(ByteBuffer buffer, int offset, int length) {
+        byte[] record = new byte[length];
+        ByteBuffer source = buffer.duplicate();
+        source.position(offset);
+        source.get(record);
+        return record;
+    }
+
+    private void backgroundCompact() {
+        try {
+            compact();
+        } catch (DatabaseException | RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Compaction failed, retrying in " + compactionInterval + " ms", e);
+        }
+    }
+
+    /**
+     * Stops background compaction, forces the active segment to disk and closes segment files. Further writes are rejected
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        if (compactor != null) {
+            compactor.shutdown();
+            try {
+                compactor.awaitTermination(compactionInterval, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (shutdownHook != null) {
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // the JVM is already shutting down, this is the hook
+            }
+        }
+        synchronized (writeLock) {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (active != null) {
+                active.buffer.force();
+            }
+            closeSegments();
+        }
+    }
+
+    private void closeSegments() {
+        for (Segment segment : segments) {
+            segment.close();
+        }
+    }
+
+    /**
+     * @return amount of live users
+     */
+    public int getSize() {
+        return index.size();
+    }
+
+    public int getSegmentCount() {
+        synchronized (writeLock) {
+            return segments.size();
+        }
+    }
+
+    /**
+     * @return amount of segments, removed by compaction since the DAO was opened
+     */
+    public long getCompactedSegments() {
+        return compactedSegments.get();
+    }
+
+    @Override
+    public String toString() {
+        return "LogStructuredUserDao{" +
+                "directory=" + directory +
+                ", size=" + getSize() +
+                ", segments=" + getSegmentCount() +
+                ", compactedSegments=" + compactedSegments +
+                '}';
+    }
+
+    /**
+     * A position of a record in a segment
+     */
+    private static final class Location {
+        private final Segment segment;
+        private final int offset;
+        private final int length;
+
+        Location(Segment segment, int offset, int length) {
+            this.segment = segment;
+            this.offset = offset;
+            this.length = length;
+        }
+
+        boolean isTombstone() {
+            return segment.buffer.get(offset + 4) == DELETE;
+        }
+    }
+
+    /**
+     * A segment file, mapped into memory. The mapping stays valid after the file is closed and deleted,
+     * so readers, that found a record of a compacted segment in the index, still read it
+     */
+    private static final class Segment {
+        private final File file;
+        private final long number;
+        private final RandomAccessFile randomAccessFile;
+        private final MappedByteBuffer buffer;
+        /**
+         * Offset, where the next record is appended
+         */
+        private int end;
+        private long liveBytes;
+        private long tombstoneBytes;
+
+        private Segment(File file, long number, RandomAccessFile randomAccessFile, MappedByteBuffer buffer) {
+            this.file = file;
+            this.number = number;
+            this.randomAccessFile = randomAccessFile;
+            this.buffer = buffer;
+        }
+
+        /**
+         * @param size size of a new file, 0 to map an existing file as it is
+         */
+        static Segment open(File file, long number, int size) throws IOException {
+            RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+            try {
+                long length = size > 0 ? size : randomAccessFile.length();
+                MappedByteBuffer buffer = randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, length);
+                return new Segment(file, number, randomAccessFile, buffer);
+            } catch (IOException | RuntimeException e) {
+                randomAccessFile.close();
+                throw e;
+            }
+        }
+
+        /**
+         * @param oldest true, if there is no older segment, so its tombstones are garbage too
+         * @return share of the written bytes, that belong to overwritten and deleted records
+         */
+        double garbageShare(boolean oldest) {
+            if (end == 0) {
+                return 0;
+            }
+            long garbage = end - liveBytes - (oldest ? 0 : tombstoneBytes);
+            return (double) garbage / end;
+        }
+
+        void close() {
+            try {
+                randomAccessFile.close();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Segment " + file + " could not be closed", e);
+            }
+        }
+    }
+}
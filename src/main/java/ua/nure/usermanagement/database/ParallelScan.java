@@ -0,0 +1,237 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.UncheckedDatabaseException;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A full scan of table users, that is split into ranges of ids between MIN(id) and MAX(id).
+ * Every range is read by a task of a {@link ForkJoinPool} on its own connection, so a scan uses several
+ * connections and cores. Ranges follow each other in order of ids, so their rows are merged by concatenation.
+ * Ranges aren't read in one transaction: a user, changed during a scan, may be read in either state,
+ * and users, created after the scan has started, may be missed. Tasks run under the {@link Deadline} of the caller.
+ * The pool must be stopped by {@link #close()}, scans, that are still read then, finish on the calling thread
+ */
+class ParallelScan implements AutoCloseable {
+    private static final String SELECT_ID_RANGE = "SELECT MIN(id), MAX(id), COUNT(*) FROM users";
+    private static final String SELECT_USERS_IN_RANGE = "SELECT * FROM users WHERE id BETWEEN ? AND ? ORDER BY id";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int parallelism;
+    private final int rangeSize;
+    private final ForkJoinPool pool;
+
+    /**
+     * @param parallelism amount of ranges, that are read at the same time, and of connections, that are used
+     * @param rangeSize   average amount of rows in a range
+     */
+    ParallelScan(JdbcTemplate jdbcTemplate, int parallelism, int rangeSize) {
+        if (parallelism < 1 || rangeSize < 1) {
+            throw new IllegalArgumentException("Parallelism and range size must be positive: " + parallelism + ", " + rangeSize);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.parallelism = parallelism;
+        this.rangeSize = rangeSize;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * @return all users in ascending order of id
+     * @throws DatabaseException if a range could not be read
+     */
+    List<User> findAll() throws DatabaseException {
+        Ranges ranges = findRanges();
+        if (ranges == null) {
+            return new ArrayList<>();
+        }
+        try {
+            return pool.invoke(new RangeTask(ranges, 0, ranges.count, Deadline.current()));
+        } catch (UncheckedDatabaseException e) {
+            throw e.getCause();
+        } catch (RejectedExecutionException e) {
+            // the scan is closed, the caller reads all ranges at once
+            return jdbcTemplate.query(SELECT_USERS_IN_RANGE, statement -> {
+                statement.setLong(1, ranges.min);
+                statement.setLong(2, ranges.max);
+            }, HSQLdbUserDao.USER_MAPPER);
+        }
+    }
+
+    /**
+     * Reads ranges ahead of the consumer, at most parallelism of them are read or wait to be consumed,
+     * so memory usage doesn't depend on the size of the table
+     *
+     * @return a stream of all users in ascending order of id, that must be closed
+     * @throws DatabaseException if the bounds of ids could not be read
+     */
+    Stream<User> stream() throws DatabaseException {
+        Ranges ranges = findRanges();
+        if (ranges == null) {
+            return Stream.empty();
+        }
+        RangeSpliterator spliterator = new RangeSpliterator(ranges, Deadline.current());
+        return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+    }
+
+    /**
+     * Splits ids between MIN(id) and MAX(id) into ranges, that have rangeSize rows on average
+     *
+     * @return ranges of ids, null if the table is empty
+     */
+    private Ranges findRanges() throws DatabaseException {
+        return jdbcTemplate.queryForObject(SELECT_ID_RANGE, JdbcTemplate.NO_PARAMETERS, resultSet -> {
+            long min = resultSet.getLong(1);
+            if (resultSet.wasNull()) {
+                return null;
+            }
+            long max = resultSet.getLong(2);
+            long rows = Math.max(1, resultSet.getLong(3));
+            double idsPerRow = (max - min + 1.0) / rows;
+            long width = Math.max(1, (long) Math.ceil(idsPerRow * rangeSize));
+            return new Ranges(min, max, width);
+        });
+    }
+
+    /**
+     * Ids from min to max, split into ranges of width ids
+     */
+    private static class Ranges {
+        private final long min;
+        private final long max;
+        private final long width;
+        private final long count;
+
+        Ranges(long min, long max, long width) {
+            this.min = min;
+            this.max = max;
+            this.width = width;
+            this.count = (max - min) / width + 1;
+        }
+
+        long low(long range) {
+            return min + range * width;
+        }
+
+        long high(long range) {
+            return Math.min(max, low(range) + width - 1);
+        }
+    }
+
+    /**
+     * Reads ranges from (inclusive) to (exclusive), splitting them in halves, until one range is left
+     */
+    private class RangeTask extends RecursiveTask<List<User>> {
+        private final Ranges ranges;
+        private final long from;
+        private final long to;
+        private final Deadline deadline;
+
+        RangeTask(Ranges ranges, long from, long to, Deadline deadline) {
+            this.ranges = ranges;
+            this.from = from;
+            this.to = to;
+            this.deadline = deadline;
+        }
+
+        @Override
+        protected List<User> compute() {
+            if (to - from == 1) {
+                Deadline previous = Deadline.bind(deadline);
+                try {
+                    return jdbcTemplate.query(SELECT_USERS_IN_RANGE, statement -> {
+                        statement.setLong(1, ranges.low(from));
+                        statement.setLong(2, ranges.high(from));
+                    }, HSQLdbUserDao.USER_MAPPER);
+                } catch (DatabaseException e) {
+                    throw new UncheckedDatabaseException(e);
+                } finally {
+                    Deadline.restore(previous);
+                }
+            }
+            long middle = (from + to) >>> 1;
+            RangeTask right = new RangeTask(ranges, middle, to, deadline);
+            right.fork();
+            List<User> users = new RangeTask(ranges, from, middle, deadline).compute();
+            users.addAll(right.join());
+            return users;
+        }
+    }
+
+    /**
+     * A spliterator, that starts reading of the next ranges, while rows of the current one are consumed
+     */
+    private class RangeSpliterator extends Spliterators.AbstractSpliterator<User> {
+        private final Ranges ranges;
+        private final Deadline deadline;
+        private final Deque<RangeTask> tasks = new ArrayDeque<>();
+        private long next;
+        private Iterator<User> current = Collections.emptyIterator();
+
+        RangeSpliterator(Ranges ranges, Deadline deadline) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.ranges = ranges;
+            this.deadline = deadline;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super User> action) {
+            while (!current.hasNext()) {
+                while (tasks.size() < parallelism && next < ranges.count) {
+                    RangeTask task = new RangeTask(ranges, next, next + 1, deadline);
+                    try {
+                        pool.execute(task);
+                    } catch (RejectedExecutionException e) {
+                        // the scan is closed, the range is read on the calling thread, join() reports its failure
+                        task.quietlyInvoke();
+                    }
+                    next++;
+                    tasks.add(task);
+                }
+                RangeTask task = tasks.poll();
+                if (task == null) {
+                    return false;
+                }
+                try {
+                    current = task.join().iterator();
+                } catch (RuntimeException e) {
+                    close();
+                    throw e;
+                }
+            }
+            action.accept(current.next());
+            return true;
+        }
+
+        void close() {
+            for (RangeTask task : tasks) {
+                task.cancel(true);
+            }
+            tasks.clear();
+            next = ranges.count;
+            current = Collections.emptyIterator();
+        }
+    }
+
+    /**
+     * Stops threads of the pool, when their current ranges are read
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+}
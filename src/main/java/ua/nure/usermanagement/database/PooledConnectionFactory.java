@@ -0,0 +1,395 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.DatabaseTimeoutException;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A bounded, pooling implementation of connection factory interface.
+ * Connections handed out by this factory return to the pool when closed.
+ * Idle connections are validated before reuse, borrowers wait no longer than the borrow timeout
+ * and connections held longer than the leak threshold are reported.
+ * Every physical connection keeps a {@link StatementCache}, so statements, prepared by previous borrowers, are reused.
+ * Every borrower gets its own proxy of the connection, so a proxy, that is used or closed after it was given back,
+ * can't touch the connection of the next borrower.
+ *
+ * @see ua.nure.usermanagement.database.ConnectionFactory
+ */
+public class PooledConnectionFactory implements ConnectionFactory {
+    private static final Logger LOGGER = Logger.getLogger(PooledConnectionFactory.class.getName());
+
+    private static final String DEFAULT_VALIDATION_QUERY = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SYSTEM_USERS";
+
+    private final String url;
+    private final String user;
+    private final String password;
+    private final int maxSize;
+    private final long borrowTimeout;
+    private final String validationQuery;
+    private final long validationInterval;
+    private final long leakThreshold;
+    private final int statementCacheSize;
+
+    private final Semaphore permits;
+    private final LinkedBlockingDeque<PooledConnection> idle = new LinkedBlockingDeque<>();
+    private final Map<PooledConnection, Throwable> borrowed = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService leakDetector;
+
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong invalidatedCount = new AtomicLong();
+
+    private volatile boolean closed;
+
+    /**
+     * @param properties settings of the system, see settings.properties file for a list of used parameters
+     * @throws DatabaseException if the pool could not be pre-filled
+     */
+    public PooledConnectionFactory(Properties properties) throws DatabaseException {
+        this(properties.getProperty("connection.driver"),
+                properties.getProperty("connection.url"),
+                properties.getProperty("connection.user"),
+                properties.getProperty("connection.password"),
+                Integer.parseInt(properties.getProperty("connection.pool.maxSize", "10")),
+                Integer.parseInt(properties.getProperty("connection.pool.initialSize", "2")),
+                Long.parseLong(properties.getProperty("connection.pool.borrowTimeout", "5000")),
+                properties.getProperty("connection.pool.validationQuery", DEFAULT_VALIDATION_QUERY),
+                Long.parseLong(properties.getProperty("connection.pool.validationInterval", "30000")),
+                Long.parseLong(properties.getProperty("connection.pool.leakThreshold", "60000")),
+                Integer.parseInt(properties.getProperty("connection.pool.statementCacheSize", "32")));
+    }
+
+    /**
+     * @param maxSize            maximum amount of connections, that may be opened at the same time
+     * @param initialSize        amount of connections, opened when the pool is created
+     * @param borrowTimeout      time in milliseconds, that a borrower waits for a free connection
+     * @param validationQuery    a query, used to check, whether or not an idle connection is still usable
+     * @param validationInterval time in milliseconds, after which an idle connection is validated before reuse
+     * @param leakThreshold      time in milliseconds, after which a borrowed connection is reported as leaked
+     * @param statementCacheSize maximum amount of prepared statements, cached for each connection
+     * @throws DatabaseException if the pool could not be pre-filled
+     */
+    public PooledConnectionFactory(String driver, String url, String user, String password,
+                                   int maxSize, int initialSize, long borrowTimeout,
+                                   String validationQuery, long validationInterval, long leakThreshold,
+                                   int statementCacheSize)
+            throws DatabaseException {
+        try {
+            Class.forName(driver);
+        } catch (ClassNotFoundException e) {
+            throw new RuntimeException(e);
+        }
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be positive: " + maxSize);
+        }
+        this.url = url;
+        this.user = user;
+        this.password = password;
+        this.maxSize = maxSize;
+        this.borrowTimeout = borrowTimeout;
+        this.validationQuery = validationQuery;
+        this.validationInterval = validationInterval;
+        this.leakThreshold = leakThreshold;
+        this.statementCacheSize = statementCacheSize;
+        this.permits = new Semaphore(maxSize, true);
+
+        for (int i = 0; i < Math.min(initialSize, maxSize); i++) {
+            idle.offer(openPhysicalConnection());
+        }
+
+        leakDetector = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "connection-pool-leak-detector");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(leakThreshold / 2, 100);
+        leakDetector.scheduleAtFixedRate(this::detectLeaks, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Borrows a connection from the pool. Closing returned connection gives it back to the pool.
+     * A borrower waits no longer, than the borrow timeout and the {@link Deadline} of the current thread allow
+     *
+     * @return a pooled connection
+     * @throws DatabaseTimeoutException if no connection became free in time
+     * @throws DatabaseException if a new connection could not be opened
+     * @see ConnectionFactory#createConnection()
+     */
+    @Override
+    public Connection createConnection() throws DatabaseException {
+        if (closed) {
+            throw new DatabaseException("Connection pool is closed");
+        }
+        Deadline deadline = Deadline.current();
+        long wait = deadline != null ? Math.min(borrowTimeout, deadline.getRemainingMillis()) : borrowTimeout;
+        long start = System.nanoTime();
+        try {
+            if (!permits.tryAcquire(wait, TimeUnit.MILLISECONDS)) {
+                timeoutCount.incrementAndGet();
+                if (deadline != null && wait < borrowTimeout) {
+                    throw deadline.exceeded(null);
+                }
+                throw new DatabaseTimeoutException("Timed out after " + borrowTimeout + " ms waiting for a connection");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Interrupted while waiting for a connection");
+        }
+        recordWait(System.nanoTime() - start);
+
+        PooledConnection connection;
+        try {
+            connection = takeIdleConnection();
+        } catch (DatabaseException e) {
+            permits.release();
+            throw e;
+        }
+        connection.borrowedAt = System.currentTimeMillis();
+        connection.leakReported = false;
+        Lease lease;
+        synchronized (connection) {
+            connection.lease++;
+            connection.borrowed = true;
+            lease = new Lease(connection, connection.lease);
+        }
+        borrowed.put(connection, new Throwable("Connection borrowed by thread " + Thread.currentThread().getName()));
+        return lease.proxy;
+    }
+
+    /**
+     * Closes all idle connections and stops accepting borrowers. Connections, that are still in use,
+     * are closed when they are returned.
+     */
+    public void close() {
+        closed = true;
+        leakDetector.shutdownNow();
+        PooledConnection connection;
+        while ((connection = idle.poll()) != null) {
+            connection.destroy();
+        }
+    }
+
+    /**
+     * @return a snapshot of wait time, usage and leak counters of this pool
+     */
+    public ConnectionPoolStatistics getStatistics() {
+        return new ConnectionPoolStatistics(maxSize, borrowed.size(), idle.size(), createdCount.get(),
+                invalidatedCount.get(), borrowCount.get(), totalWaitNanos.get(), maxWaitNanos.get(),
+                timeoutCount.get(), leakCount.get());
+    }
+
+    private PooledConnection takeIdleConnection() throws DatabaseException {
+        PooledConnection connection;
+        while ((connection = idle.pollFirst()) != null) {
+            if (isUsable(connection)) {
+                return connection;
+            }
+            invalidatedCount.incrementAndGet();
+            connection.destroy();
+        }
+        return openPhysicalConnection();
+    }
+
+    private boolean isUsable(PooledConnection connection) {
+        try {
+            if (connection.physical.isClosed()) {
+                return false;
+            }
+            if (System.currentTimeMillis() - connection.lastUsed < validationInterval) {
+                return true;
+            }
+            try (Statement statement = connection.physical.createStatement()) {
+                statement.execute(validationQuery);
+            }
+            return true;
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private PooledConnection openPhysicalConnection() throws DatabaseException {
+        try {
+            PooledConnection connection = new PooledConnection(DriverManager.getConnection(url, user, password));
+            createdCount.incrementAndGet();
+            return connection;
+        } catch (SQLException e) {
+            throw new DatabaseException(e);
+        }
+    }
+
+    /**
+     * Gives a connection back to the pool. Uncommitted work is rolled back.
+     * Nothing happens, if the lease has already ended, e.g. the same proxy is closed twice
+     */
+    private void release(PooledConnection connection, long lease) {
+        synchronized (connection) {
+            if (!connection.borrowed || connection.lease != lease) {
+                return;
+            }
+            connection.borrowed = false;
+        }
+        borrowed.remove(connection);
+        connection.statementCache.releaseAll();
+        try {
+            if (!connection.physical.getAutoCommit()) {
+                connection.physical.rollback();
+                connection.physical.setAutoCommit(true);
+            }
+            connection.lastUsed = System.currentTimeMillis();
+            if (closed) {
+                connection.destroy();
+            } else {
+                idle.offerFirst(connection);
+            }
+        } catch (SQLException e) {
+            invalidatedCount.incrementAndGet();
+            connection.destroy();
+        } finally {
+            permits.release();
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        borrowCount.incrementAndGet();
+        totalWaitNanos.addAndGet(waitNanos);
+        long max;
+        while (waitNanos > (max = maxWaitNanos.get())) {
+            if (maxWaitNanos.compareAndSet(max, waitNanos)) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Reports every connection, that is held longer than the leak threshold. Each connection is reported once per borrow.
+     */
+    private void detectLeaks() {
+        long now = System.currentTimeMillis();
+        for (Map.Entry<PooledConnection, Throwable> entry : borrowed.entrySet()) {
+            PooledConnection connection = entry.getKey();
+            if (!connection.leakReported && now - connection.borrowedAt > leakThreshold) {
+                connection.leakReported = true;
+                leakCount.incrementAndGet();
+                LOGGER.log(Level.WARNING, "Connection held for " + (now - connection.borrowedAt)
+                        + " ms, possible leak. " + getStatistics(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * A physical connection together with its pool bookkeeping
+     */
+    private class PooledConnection {
+        private final Connection physical;
+        private final StatementCache statementCache;
+        private volatile long lastUsed = System.currentTimeMillis();
+        private volatile long borrowedAt;
+        private volatile boolean borrowed;
+        private volatile boolean leakReported;
+        /**
+         * Number of the current borrow, changed only while the connection is locked
+         */
+        private volatile long lease;
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+            this.statementCache = new StatementCache(physical, statementCacheSize);
+        }
+
+        /**
+         * Closes cached statements and the physical connection
+         */
+        void destroy() {
+            statementCache.clear();
+            try {
+                physical.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * A proxy of a pooled connection, that is handed out to one borrower. It works only during its lease:
+     * after the connection is given back, closing it does nothing and other calls fail
+     */
+    private class Lease implements InvocationHandler {
+        private final PooledConnection connection;
+        private final long number;
+        private final Connection proxy;
+
+        Lease(PooledConnection connection, long number) {
+            this.connection = connection;
+            this.number = number;
+            this.proxy = (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, this);
+        }
+
+        private boolean isActive() {
+            return connection.borrowed && connection.lease == number;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name)) {
+                release(connection, number);
+                return null;
+            }
+            if ("isClosed".equals(name)) {
+                return !isActive();
+            }
+            if ("equals".equals(name)) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(name)) {
+                return System.identityHashCode(proxy);
+            }
+            if ("toString".equals(name)) {
+                return "PooledConnection{" + connection.physical + ", lease=" + number + "}";
+            }
+            if (!isActive()) {
+                throw new SQLException("Connection is closed");
+            }
+            if ("prepareStatement".equals(name) && args.length == 1) {
+                return connection.statementCache.prepareStatement((String) args[0], this.proxy, this::isActive);
+            }
+            if ("prepareCall".equals(name) && args.length == 1) {
+                return connection.statementCache.prepareCall((String) args[0], this.proxy, this::isActive);
+            }
+            Object result;
+            try {
+                result = method.invoke(connection.physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof Statement) {
+                return StatementCache.wrap((Statement) result, method.getReturnType(), this.proxy, this::isActive);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.database.exception.DatabaseException;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A connection factory, that sends writes to the primary database and spreads reads over its replicas.
+ * {@link #createConnection()} returns a connection to the primary, {@link #createReadConnection()} returns
+ * a read-only connection to the next replica in round-robin order. Replicas lag behind the primary, so for a short
+ * window after a caller has committed a write, its reads go to the primary too, and a user sees his own writes.
+ * A caller is identified by a key, bound by {@link #bindCaller(Object)}, e.g. the id of an HTTP session, so the window
+ * follows a user to any thread, that serves his next request, and reads of other users still go to replicas.
+ * Calls without a key share one window. Only statements, that change rows, start it, so queries on the primary,
+ * e.g. inside a unit of work, don't send reads to the primary.
+ * A replica, that could not be connected, is skipped, and the primary is used, if no replica is available.
+ * Units of work use only the primary, because they run all statements on one connection of {@link #createConnection()}.
+ * Settings: connection.* of the primary, connection.replicas (amount of replicas), connection.replica.N.url,
+ * connection.replica.N.user, connection.replica.N.password (user and password of the primary by default),
+ * connection.replica.stickyWindow (milliseconds), connection.replica.factory (a class of factories of all databases)
+ *
+ * @see ua.nure.usermanagement.database.ConnectionFactory
+ */
+public class ReadWriteConnectionFactory implements ConnectionFactory {
+    private static final Logger LOGGER = Logger.getLogger(ReadWriteConnectionFactory.class.getName());
+    private static final long NO_WRITES = Long.MIN_VALUE;
+    /**
+     * Amount of callers with a window, after which expired windows are removed
+     */
+    private static final int MAX_KEPT_WINDOWS = 1024;
+    private static final ThreadLocal<Object> CALLER = new ThreadLocal<>();
+
+    private final ConnectionFactory primary;
+    private final List<ConnectionFactory> replicas;
+    private final long stickyWindowNanos;
+
+    private final AtomicInteger next = new AtomicInteger();
+    /**
+     * Time of the last committed write of calls without a key
+     */
+    private volatile long lastWriteNanos = NO_WRITES;
+    /**
+     * Times of the last committed writes by keys of callers
+     */
+    private final ConcurrentHashMap<Object, Long> lastWrites = new ConcurrentHashMap<>();
+    private final AtomicLong primaryReads = new AtomicLong();
+    private final AtomicLong replicaReads = new AtomicLong();
+    private final AtomicLong failedReplicaConnections = new AtomicLong();
+
+    /**
+     * @param primary      a factory of connections to the primary database
+     * @param replicas     factories of connections to read replicas, may be empty
+     * @param stickyWindow time in milliseconds after a write, during which reads go to the primary
+     */
+    public ReadWriteConnectionFactory(ConnectionFactory primary, List<ConnectionFactory> replicas, long stickyWindow) {
+        if (stickyWindow < 0) {
+            throw new IllegalArgumentException("Sticky window must not be negative: " + stickyWindow);
+        }
+        this.primary = primary;
+        this.replicas = Collections.unmodifiableList(new ArrayList<>(replicas));
+        this.stickyWindowNanos = TimeUnit.MILLISECONDS.toNanos(stickyWindow);
+    }
+
+    /**
+     * @param properties settings of the system, see settings.properties file for a list of used parameters
+     * @throws DatabaseException if a factory of the primary or a replica could not be created
+     */
+    public ReadWriteConnectionFactory(Properties properties) throws DatabaseException {
+        this(createFactories(properties), Long.parseLong(properties.getProperty("connection.replica.stickyWindow", "2000").trim()));
+    }
+
+    private ReadWriteConnectionFactory(List<ConnectionFactory> factories, long stickyWindow) {
+        this(factories.get(0), factories.subList(1, factories.size()), stickyWindow);
+    }
+
+    /**
+     * @return factories of the primary and the replicas, the primary is the first one
+     */
+    private static List<ConnectionFactory> createFactories(Properties properties) throws DatabaseException {
+        int count = Integer.parseInt(properties.getProperty("connection.replicas", "0").trim());
+        List<ConnectionFactory> factories = new ArrayList<>(count + 1);
+        try {
+            factories.add(createFactory(properties, properties));
+            for (int i = 1; i <= count; i++) {
+                factories.add(createFactory(properties, DaoFactory.getDatabaseProperties(properties, "connection.replica." + i + ".")));
+            }
+        } catch (DatabaseException | RuntimeException e) {
+            for (ConnectionFactory factory : factories) {
+                DaoFactory.close(factory);
+            }
+            throw e;
+        }
+        return factories;
+    }
+
+    /**
+     * @param settings settings of the database, connection.* keys of the primary are replaced for a replica
+     * @return a factory of the class, named by connection.replica.factory
+     */
+    private static ConnectionFactory createFactory(Properties properties, Properties settings) throws DatabaseException {
+        return DaoFactory.createConnectionFactory(
+                properties.getProperty("connection.replica.factory", ConnectionFactoryImpl.class.getName()), settings);
+    }
+
+    /**
+     * Returns a connection to the primary. Statements of the connection note, whether they have changed rows.
+     * The sticky window of the caller starts, when such a change is committed, or when the connection is closed
+     * after it in auto-commit mode, because a write is visible to others only after it is committed
+     *
+     * @return a connection to the primary database
+     * @throws DatabaseException if the connection could not be opened
+     * @see ConnectionFactory#createConnection()
+     */
+    @Override
+    public Connection createConnection() throws DatabaseException {
+        Connection connection = primary.createConnection();
+        boolean[] written = new boolean[1];
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    String name = method.getName();
+                    if ("rollback".equals(name) && (args == null || args.length == 0)) {
+                        written[0] = false;
+                    }
+                    Object result = invoke(connection, method, args);
+                    if ("commit".equals(name) || "close".equals(name)) {
+                        if (written[0]) {
+                            recordWrite();
+                            written[0] = false;
+                        }
+                    } else if (result instanceof Statement) {
+                        return trackWrites((Statement) result, method.getReturnType(), written);
+                    }
+                    return result;
+                });
+    }
+
+    /**
+     * Binds a key of the caller to the current thread, so that its reads follow its own writes, whichever thread
+     * serves it. A web application binds the id of the session for the time of a request
+     *
+     * @param key a key of the caller, null for calls, that share one window
+     * @return the key, that was bound before, it must be given to {@link #restoreCaller(Object)}
+     */
+    public static Object bindCaller(Object key) {
+        Object previous = CALLER.get();
+        restoreCaller(key);
+        return previous;
+    }
+
+    /**
+     * @return the key of the caller, bound to the current thread, null if there is none
+     */
+    static Object currentCaller() {
+        return CALLER.get();
+    }
+
+    public static void restoreCaller(Object previous) {
+        if (previous == null) {
+            CALLER.remove();
+        } else {
+            CALLER.set(previous);
+        }
+    }
+
+    private void recordWrite() {
+        long now = System.nanoTime();
+        Object caller = CALLER.get();
+        if (caller == null) {
+            lastWriteNanos = now;
+            return;
+        }
+        lastWrites.put(caller, now);
+        if (lastWrites.size() > MAX_KEPT_WINDOWS) {
+            lastWrites.values().removeIf(time -> now - time >= stickyWindowNanos);
+        }
+    }
+
+    /**
+     * @return true, if the caller of the current thread has committed a write less than the sticky window ago
+     */
+    private boolean isInStickyWindow() {
+        Object caller = CALLER.get();
+        if (caller == null) {
+            long lastWrite = lastWriteNanos;
+            return lastWrite != NO_WRITES && System.nanoTime() - lastWrite < stickyWindowNanos;
+        }
+        Long lastWrite = lastWrites.get(caller);
+        if (lastWrite == null) {
+            return false;
+        }
+        if (System.nanoTime() - lastWrite < stickyWindowNanos) {
+            return true;
+        }
+        lastWrites.remove(caller, lastWrite);
+        return false;
+    }
+
+    /**
+     * Wraps a statement of the primary, so that executeUpdate(), executeBatch() and execute(), that has returned
+     * an update count, set written[0]
+     */
+    private static Object trackWrites(Statement statement, Class<?> type, boolean[] written) {
+        return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{type},
+                (proxy, method, args) -> {
+                    Object result = invoke(statement, method, args);
+                    String name = method.getName();
+                    if (name.startsWith("executeUpdate") || name.startsWith("executeLargeUpdate")
+                            || name.startsWith("execute") && name.endsWith("Batch")
+                            || "execute".equals(name) && Boolean.FALSE.equals(result)) {
+                        written[0] = true;
+                    }
+                    return result;
+                });
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    /**
+     * Returns a read-only connection to the next replica, or a connection to the primary inside the sticky window
+     * of the caller and when no replica is available
+     *
+     * @return a connection, that must be used only for queries
+     * @throws DatabaseException if neither a replica nor the primary could be connected
+     * @see ConnectionFactory#createReadConnection()
+     */
+    @Override
+    public Connection createReadConnection() throws DatabaseException {
+        if (!isInStickyWindow()) {
+            int first = next.getAndIncrement();
+            for (int i = 0; i < replicas.size(); i++) {
+                ConnectionFactory replica = replicas.get(Math.floorMod(first + i, replicas.size()));
+                try {
+                    Connection connection = replica.createConnection();
+                    setReadOnly(connection);
+                    replicaReads.incrementAndGet();
+                    return connection;
+                } catch (DatabaseException | RuntimeException e) {
+                    failedReplicaConnections.incrementAndGet();
+                    LOGGER.log(Level.WARNING, "Replica " + Math.floorMod(first + i, replicas.size()) + " could not be connected", e);
+                }
+            }
+        }
+        primaryReads.incrementAndGet();
+        return primary.createConnection();
+    }
+
+    private static void setReadOnly(Connection connection) throws DatabaseException {
+        try {
+            connection.setReadOnly(true);
+        } catch (SQLException e) {
+            try {
+                connection.close();
+            } catch (SQLException closeException) {
+                e.addSuppressed(closeException);
+            }
+            throw new DatabaseException(e);
+        }
+    }
+
+    /**
+     * Closes pools of the primary and the replicas
+     */
+    public void close() {
+        DaoFactory.close(primary);
+        for (ConnectionFactory replica : replicas) {
+            DaoFactory.close(replica);
+        }
+    }
+
+    public int getReplicaCount() {
+        return replicas.size();
+    }
+
+    /**
+     * @return amount of read connections, that were given by the primary
+     */
+    public long getPrimaryReads() {
+        return primaryReads.get();
+    }
+
+    /**
+     * @return amount of read connections, that were given by replicas
+     */
+    public long getReplicaReads() {
+        return replicaReads.get();
+    }
+
+    @Override
+    public String toString() {
+        return "ReadWriteConnectionFactory{" +
+                "replicas=" + replicas.size() +
+                ", stickyWindow=" + TimeUnit.NANOSECONDS.toMillis(stickyWindowNanos) +
+                ", primaryReads=" + primaryReads +
+                ", replicaReads=" + replicaReads +
+                ", failedReplicaConnections=" + failedReplicaConnections +
+                '}';
+    }
+}
@@ -0,0 +1,164 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.UserSummary;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A base for UserDao implementations without SQL, that answer queries by scanning all users.
+ * Filtering and ordering follow the queries of {@link HSQLdbUserDao}, so all backends give the same results.
+ * Subclasses treat absent users the same way too: find returns a user without id, update and delete throw.
+ * Subclasses store users and may hold resources, that are released by {@link #close()}
+ *
+ * @see ua.nure.usermanagement.database.UserDao
+ */
+public abstract class ScanningUserDao implements UserDao, AutoCloseable {
+    private static final Comparator<User> BY_ID = Comparator.comparing(User::getId);
+
+    /**
+     * @return all stored users in any order, they must not be changed
+     * @throws DatabaseException if the users could not be read
+     */
+    protected abstract Stream<User> users() throws DatabaseException;
+
+    /**
+     * Called for every found user before it is returned
+     *
+     * @return a user, that may be changed by the caller
+     */
+    protected User detach(User user) {
+        return user;
+    }
+
+    @Override
+    public Collection<User> findAll() throws DatabaseException {
+        return streamAll(0).collect(Collectors.toList());
+    }
+
+    /**
+     * Users are sorted before the first one is returned, so the stream doesn't hold any resources
+     *
+     * @see UserDao#streamAll(int)
+     */
+    @Override
+    public Stream<User> streamAll(int fetchSize) throws DatabaseException {
+        return users().sorted(BY_ID).map(this::detach);
+    }
+
+    @Override
+    public List<User> findPage(Long afterId, int limit) throws DatabaseException {
+        return users()
+                .filter(user -> afterId == null || user.getId() > afterId)
+                .sorted(BY_ID)
+                .limit(limit)
+                .map(this::detach)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<User> findPageBefore(Long beforeId, int limit) throws DatabaseException {
+        List<User> page = users()
+                .filter(user -> beforeId == null || user.getId() < beforeId)
+                .sorted(BY_ID.reversed())
+                .limit(limit)
+                .map(this::detach)
+                .collect(Collectors.toList());
+        Collections.reverse(page);
+        return page;
+    }
+
+    @Override
+    public List<UserSummary> findSummaries() throws DatabaseException {
+        return users().sorted(BY_ID).map(UserSummary::new).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<UserSummary> findSummaryPage(Long afterId, int limit) throws DatabaseException {
+        return findPage(afterId, limit).stream().map(UserSummary::new).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<UserSummary> findSummaryPageBefore(Long beforeId, int limit) throws DatabaseException {
+        return findPageBefore(beforeId, limit).stream().map(UserSummary::new).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<User> findByCriteria(UserCriteria criteria) throws DatabaseException {
+        Stream<User> found = users().filter(criteria::matches).sorted(criteria.getComparator());
+        if (criteria.getLimit() > 0) {
+            found = found.limit(criteria.getLimit());
+        }
+        return found.map(this::detach).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<User> findByDateOfBirth(Date from, Date to) throws DatabaseException {
+        UserCriteria criteria = new UserCriteria();
+        criteria.setBornFrom(from);
+        criteria.setBornTo(to);
+        criteria.setSortColumn(UserCriteria.SortColumn.DATEOFBIRTH);
+        return findByCriteria(criteria);
+    }
+
+    @Override
+    public List<User> findByAge(int minAge, int maxAge) throws DatabaseException {
+        UserCriteria criteria = new UserCriteria();
+        criteria.setAge(minAge, maxAge);
+        criteria.setSortColumn(UserCriteria.SortColumn.DATEOFBIRTH);
+        criteria.setDescending(true);
+        return findByCriteria(criteria);
+    }
+
+    @Override
+    public List<User> findUpcomingBirthdays(int days) throws DatabaseException {
+        int[][] ranges = Birthdays.ranges(LocalDate.now(), days);
+        List<User> candidates = users()
+                .filter(user -> {
+                    int birthday = Birthdays.of(user.getDateOfBirth());
+                    for (int[] range : ranges) {
+                        if (birthday >= range[0] && birthday <= range[1]) {
+                            return true;
+                        }
+                    }
+                    return false;
+                })
+                .sorted(Comparator.comparing((User user) -> Birthdays.of(user.getDateOfBirth())).thenComparing(User::getId))
+                .collect(Collectors.toList());
+        List<User> found = new ArrayList<>(candidates.size());
+        for (int[] range : ranges) {
+            for (User user : candidates) {
+                int birthday = Birthdays.of(user.getDateOfBirth());
+                if (birthday >= range[0] && birthday <= range[1]) {
+                    found.add(detach(user));
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * Checks the same conditions, as NOT NULL constraints of table users
+     */
+    protected static void check(User user) throws DatabaseException {
+        if (user.getFirstName() == null || user.getLastName() == null || user.getDateOfBirth() == null) {
+            throw new DatabaseException("All fields of user must be filled: " + user);
+        }
+    }
+
+    /**
+     * Releases resources of the DAO. Called by {@link UserDaoDecorator#close()}, when the DAO factory is closed
+     */
+    @Override
+    public void close() {
+    }
+}
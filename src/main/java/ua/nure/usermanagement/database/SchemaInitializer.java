@@ -0,0 +1,210 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.database.exception.DatabaseException;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Properties;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Brings table USERS to the state, expected by {@link HSQLdbUserDao}, when the application starts:
+ * creates the table and its indexes, if they are missing, adds columns of newer versions to an old table
+ * and converts the table to the configured storage mode.
+ * A MEMORY table is kept on heap and its rows are replayed from the script on every start,
+ * a CACHED table is kept in the .data file and only a part of its rows is cached, so it suits large data sets.
+ * Settings: schema.storage (MEMORY or CACHED), schema.cacheScale (HSQLDB caches 3 * 2^scale rows of CACHED tables)
+ */
+public class SchemaInitializer {
+    private static final Logger LOGGER = Logger.getLogger(SchemaInitializer.class.getName());
+
+    /**
+     * Where HSQLDB keeps rows of the table
+     */
+    public enum StorageMode {
+        MEMORY, CACHED
+    }
+
+    private static final String TABLE = "USERS";
+    private static final String MIGRATION_TABLE = "USERS_MIGRATION";
+    private static final String COLUMNS = "(ID BIGINT GENERATED BY DEFAULT AS IDENTITY(START WITH 0) NOT NULL PRIMARY KEY," +
+            "FIRSTNAME VARCHAR NOT NULL,LASTNAME VARCHAR NOT NULL,DATEOFBIRTH DATE NOT NULL," +
+            "BIRTHDAY INTEGER NOT NULL,VERSION BIGINT DEFAULT 0 NOT NULL)";
+    private static final String COLUMN_NAMES = "ID,FIRSTNAME,LASTNAME,DATEOFBIRTH,BIRTHDAY,VERSION";
+    private static final String[][] INDEXES = {
+            {"IDX_USERS_LASTNAME", "LASTNAME"},
+            {"IDX_USERS_FIRSTNAME", "FIRSTNAME"},
+            {"IDX_USERS_DATEOFBIRTH", "DATEOFBIRTH"},
+            {"IDX_USERS_BIRTHDAY", "BIRTHDAY"}
+    };
+    private static final String SELECT_TABLE_TYPE = "SELECT HSQLDB_TYPE FROM INFORMATION_SCHEMA.SYSTEM_TABLES " +
+            "WHERE TABLE_SCHEM = 'PUBLIC' AND TABLE_NAME = ?";
+    private static final int MIN_CACHE_SCALE = 8;
+    private static final int MAX_CACHE_SCALE = 18;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final StorageMode storageMode;
+    private final int cacheScale;
+
+    /**
+     * @param connectionFactory a factory of connections to the database
+     * @param storageMode       where rows of the table must be kept
+     * @param cacheScale        HSQLDB caches 3 * 2^cacheScale rows of CACHED tables, from 8 to 18, 0 to keep the current value
+     */
+    public SchemaInitializer(ConnectionFactory connectionFactory, StorageMode storageMode, int cacheScale) {
+        if (cacheScale != 0 && (cacheScale < MIN_CACHE_SCALE || cacheScale > MAX_CACHE_SCALE)) {
+            throw new IllegalArgumentException("Cache scale must be from " + MIN_CACHE_SCALE + " to " + MAX_CACHE_SCALE + ": " + cacheScale);
+        }
+        this.jdbcTemplate = new JdbcTemplate(connectionFactory);
+        this.storageMode = storageMode;
+        this.cacheScale = cacheScale;
+    }
+
+    /**
+     * @param connectionFactory a factory of connections to the database
+     * @param properties        settings of the system, see settings.properties file for a list of used parameters
+     */
+    public SchemaInitializer(ConnectionFactory connectionFactory, Properties properties) {
+        this(connectionFactory,
+                StorageMode.valueOf(properties.getProperty("schema.storage", "MEMORY").trim().toUpperCase(Locale.ROOT)),
+                Integer.parseInt(properties.getProperty("schema.cacheScale", "0").trim()));
+    }
+
+    /**
+     * Creates or migrates the table. Does nothing, if the table is already up to date, so it is cheap to call on every start.
+     * DDL statements of HSQLDB are committed at once, so an interrupted conversion is finished or done again by the next call.
+     * If anything was changed, a checkpoint is made, so the next start doesn't replay the migration from the log
+     *
+     * @throws DatabaseException if has any problems with db
+     */
+    public void initialize() throws DatabaseException {
+        jdbcTemplate.execute(connection -> {
+            try (Statement statement = connection.createStatement()) {
+                if (storageMode == StorageMode.CACHED && cacheScale != 0) {
+                    // applied by HSQLDB, when the database is opened next time
+                    statement.execute("SET PROPERTY \"hsqldb.cache_scale\" " + cacheScale);
+                }
+                boolean changed = false;
+                String type = getTableType(connection, TABLE);
+                if (getTableType(connection, MIGRATION_TABLE) != null) {
+                    changed = true;
+                    // a previous conversion was interrupted
+                    if (type != null) {
+                        // the old table is intact, the copy may be incomplete, so the conversion is done again
+                        statement.execute("DROP TABLE " + MIGRATION_TABLE);
+                    } else {
+                        finishMigration(statement, false);
+                        type = getTableType(connection, TABLE);
+                    }
+                }
+                if (type == null) {
+                    LOGGER.info("Creating " + storageMode + " table " + TABLE);
+                    statement.execute("CREATE " + storageMode + " TABLE " + TABLE + COLUMNS);
+                    changed = true;
+                } else {
+                    changed |= addMissingColumns(connection, statement);
+                    if (!storageMode.name().equalsIgnoreCase(type)) {
+                        LOGGER.info("Converting " + type + " table " + TABLE + " to " + storageMode);
+                        statement.execute("CREATE " + storageMode + " TABLE " + MIGRATION_TABLE + COLUMNS);
+                        statement.execute("INSERT INTO " + MIGRATION_TABLE + "(" + COLUMN_NAMES + ") SELECT " + COLUMN_NAMES + " FROM " + TABLE);
+                        finishMigration(statement, true);
+                        changed = true;
+                    }
+                }
+                changed |= createMissingIndexes(connection, statement);
+                if (changed) {
+                    statement.execute("CHECKPOINT");
+                }
+            }
+            return null;
+        });
+    }
+
+    /**
+     * @return HSQLDB type of the table, e.g. MEMORY or CACHED, or null, if there is no such table
+     */
+    private static String getTableType(Connection connection, String table) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_TABLE_TYPE)) {
+            statement.setString(1, table);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                return resultSet.next() ? resultSet.getString(1) : null;
+            }
+        }
+    }
+
+    /**
+     * Replaces the old table with the complete copy and continues ids after the greatest copied one
+     */
+    private static void finishMigration(Statement statement, boolean dropOldTable) throws SQLException {
+        if (dropOldTable) {
+            statement.execute("DROP TABLE " + TABLE);
+        }
+        statement.execute("ALTER TABLE " + MIGRATION_TABLE + " RENAME TO " + TABLE);
+        long nextId = 0;
+        try (ResultSet resultSet = statement.executeQuery("SELECT MAX(ID) FROM " + TABLE)) {
+            if (resultSet.next() && resultSet.getObject(1) != null) {
+                nextId = resultSet.getLong(1) + 1;
+            }
+        }
+        statement.execute("ALTER TABLE " + TABLE + " ALTER COLUMN ID RESTART WITH " + nextId);
+    }
+
+    /**
+     * Adds BIRTHDAY and VERSION columns, that were introduced after the first version of the table
+     *
+     * @return true, if a column was added
+     */
+    private static boolean addMissingColumns(Connection connection, Statement statement) throws SQLException {
+        Set<String> columns = new HashSet<>();
+        try (ResultSet resultSet = connection.getMetaData().getColumns(null, null, TABLE, null)) {
+            while (resultSet.next()) {
+                columns.add(resultSet.getString("COLUMN_NAME").toUpperCase(Locale.ROOT));
+            }
+        }
+        boolean added = false;
+        if (!columns.contains("BIRTHDAY")) {
+            LOGGER.info("Adding column BIRTHDAY to table " + TABLE);
+            statement.execute("ALTER TABLE " + TABLE + " ADD COLUMN BIRTHDAY INTEGER DEFAULT 0 NOT NULL");
+            statement.execute("UPDATE " + TABLE + " SET BIRTHDAY = MONTH(DATEOFBIRTH) * 100 + DAYOFMONTH(DATEOFBIRTH)");
+            added = true;
+        }
+        if (!columns.contains("VERSION")) {
+            LOGGER.info("Adding column VERSION to table " + TABLE);
+            statement.execute("ALTER TABLE " + TABLE + " ADD COLUMN VERSION BIGINT DEFAULT 0 NOT NULL");
+            added = true;
+        }
+        return added;
+    }
+
+    /**
+     * @return true, if an index was created
+     */
+    private static boolean createMissingIndexes(Connection connection, Statement statement) throws SQLException {
+        Set<String> indexes = new HashSet<>();
+        DatabaseMetaData metaData = connection.getMetaData();
+        try (ResultSet resultSet = metaData.getIndexInfo(null, null, TABLE, false, false)) {
+            while (resultSet.next()) {
+                String name = resultSet.getString("INDEX_NAME");
+                if (name != null) {
+                    indexes.add(name.toUpperCase(Locale.ROOT));
+                }
+            }
+        }
+        boolean created = false;
+        for (String[] index : INDEXES) {
+            if (!indexes.contains(index[0])) {
+                LOGGER.info("Creating index " + index[0]);
+                statement.execute("CREATE INDEX " + index[0] + " ON " + TABLE + "(" + index[1] + ")");
+                created = true;
+            }
+        }
+        return created;
+    }
+}
@@ -0,0 +1,565 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.UserSummary;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Properties;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A UserDao, that partitions users over several databases (shards) by id: a user with id N lives in shard N mod count.
+ * Every shard is an {@link HSQLdbUserDao} with its own connection factory. Calls with an id go to one shard,
+ * other queries are sent to all shards in parallel, and their results are merged in the order of the query.
+ * Every shard has a sequence of ids in its database, that steps by the amount of shards, so ids of different shards
+ * never collide, even if several processes write to the shards. Ids are taken from the sequences in blocks,
+ * shards get new users in turn.
+ * Writes of several users are atomic per shard only: if a shard fails, users, added to other shards, are deleted again.
+ * Inside a unit of work shards are called one after another, because its connections are bound to the calling thread.
+ * Settings: dao.shard.count (0 for one shard on the connection factory of DaoFactory), dao.shard.N.url,
+ * dao.shard.N.user, dao.shard.N.password, dao.shard.factory (a class of connection factories of shards),
+ * dao.shard.threads, dao.shard.queueSize (queries, waiting for a thread, a caller runs a query itself, when it is full).
+ * The amount of shards can't be changed, once their sequences are created
+ *
+ * @see ua.nure.usermanagement.database.UserDao
+ */
+public class ShardedUserDao implements UserDao, AutoCloseable {
+    private static final String PREFIX = "dao.shard";
+    private static final Comparator<User> BY_ID = Comparator.comparing(User::getId);
+    private static final Comparator<UserSummary> SUMMARY_BY_ID = Comparator.comparing(UserSummary::getId);
+    /**
+     * Amount of ids of a shard, that are taken from its sequence at once
+     */
+    private static final int ID_BLOCK_SIZE = 100;
+
+    /**
+     * A call of one shard
+     */
+    private interface ShardCall<T> {
+        T call(HSQLdbUserDao shard) throws DatabaseException;
+    }
+
+    private List<HSQLdbUserDao> shards;
+    private List<ConnectionFactory> ownFactories = Collections.emptyList();
+    private IdBlock[] idBlocks;
+    private final AtomicInteger nextShard = new AtomicInteger();
+    private ThreadPoolExecutor executor;
+    private volatile boolean closed;
+
+    /**
+     * Creates a DAO, whose shards are set up by {@link #setConnectionFactory(ConnectionFactory)} from settings.properties
+     */
+    public ShardedUserDao() {
+    }
+
+    /**
+     * @param factories connection factories of shards, their order defines, which users each shard keeps
+     * @param threads   amount of threads, that query shards in parallel
+     * @param queueSize amount of queries, that may wait for a thread
+     * @throws DatabaseException if sequences of ids could not be created
+     */
+    public ShardedUserDao(List<ConnectionFactory> factories, int threads, int queueSize) throws DatabaseException {
+        init(factories, threads, queueSize);
+    }
+
+    /**
+     * Creates connection factories of shards from settings.properties on the first call and initializes their schema,
+     * if schema.initialize is true. Without dao.shard.count there is one shard on the given factory
+     *
+     * @see UserDao#setConnectionFactory(ConnectionFactory)
+     */
+    @Override
+    public synchronized void setConnectionFactory(ConnectionFactory factory) {
+        if (shards != null) {
+            return;
+        }
+        Properties properties = DaoFactory.properties;
+        int count = Integer.parseInt(properties.getProperty(PREFIX + ".count", "0").trim());
+        List<ConnectionFactory> factories = new ArrayList<>();
+        try {
+            if (count == 0) {
+                factories.add(factory);
+            } else {
+                String className = properties.getProperty(PREFIX + ".factory", ConnectionFactoryImpl.class.getName());
+                for (int i = 1; i <= count; i++) {
+                    ConnectionFactory shardFactory = DaoFactory.createConnectionFactory(className,
+                            DaoFactory.getDatabaseProperties(properties, PREFIX + "." + i + "."));
+                    factories.add(shardFactory);
+                    if (Boolean.parseBoolean(properties.getProperty(DaoFactory.SCHEMA_INITIALIZE, "false"))) {
+                        new SchemaInitializer(shardFactory, properties).initialize();
+                    }
+                }
+                ownFactories = factories;
+            }
+            init(factories, Integer.parseInt(properties.getProperty(PREFIX + ".threads", "8").trim()),
+                    Integer.parseInt(properties.getProperty(PREFIX + ".queueSize", "100").trim()));
+        } catch (DatabaseException | RuntimeException e) {
+            if (count > 0) {
+                for (ConnectionFactory shardFactory : factories) {
+                    DaoFactory.close(shardFactory);
+                }
+            }
+            ownFactories = Collections.emptyList();
+            throw e instanceof RuntimeException ? (RuntimeException) e : new RuntimeException(e);
+        }
+    }
+
+    private void init(List<ConnectionFactory> factories, int threads, int queueSize) throws DatabaseException {
+        if (factories.isEmpty()) {
+            throw new IllegalArgumentException("There must be at least one shard");
+        }
+        List<HSQLdbUserDao> daos = new ArrayList<>(factories.size());
+        for (ConnectionFactory factory : factories) {
+            daos.add(new HSQLdbUserDao(factory));
+        }
+        long next = 0;
+        for (HSQLdbUserDao dao : daos) {
+            Long maxId = dao.findMaxId();
+            if (maxId != null) {
+                next = Math.max(next, maxId + 1);
+            }
+        }
+        int count = daos.size();
+        IdBlock[] blocks = new IdBlock[count];
+        for (int i = 0; i < count; i++) {
+            // the first id after the greatest one, that belongs to shard i
+            long start = next + Math.floorMod(i - next, (long) count);
+            daos.get(i).createIdSequence(start, (long) count * ID_BLOCK_SIZE);
+            blocks[i] = new IdBlock();
+        }
+        idBlocks = blocks;
+        nextShard.set((int) Math.floorMod(next, (long) count));
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "user-dao-shard-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (runnable, pool) -> {
+                    if (pool.isShutdown()) {
+                        throw new RejectedExecutionException("Sharded DAO is closed");
+                    }
+                    runnable.run();
+                });
+        shards = Collections.unmodifiableList(daos);
+    }
+
+    private int shardIndex(Long id) {
+        return (int) Math.floorMod(id, (long) shards.size());
+    }
+
+    private HSQLdbUserDao shardOf(Long id) throws DatabaseException {
+        checkOpen();
+        return shards.get(shardIndex(id));
+    }
+
+    private void checkOpen() throws DatabaseException {
+        if (closed) {
+            throw new DatabaseException("Sharded DAO is closed");
+        }
+    }
+
+    /**
+     * Ids of a shard, taken from its sequence, that aren't given to users yet
+     */
+    private static class IdBlock {
+        private long next;
+        private int left;
+    }
+
+    /**
+     * Takes the next id of the shard, whose turn it is. A value v of the sequence of a shard reserves
+     * ids v, v + count, ..., v + (ID_BLOCK_SIZE - 1) * count, because the sequence steps by count * ID_BLOCK_SIZE
+     */
+    private long nextId() throws DatabaseException {
+        checkOpen();
+        int index = Math.floorMod(nextShard.getAndIncrement(), shards.size());
+        IdBlock block = idBlocks[index];
+        synchronized (block) {
+            if (block.left == 0) {
+                block.next = shards.get(index).nextSequenceId();
+                block.left = ID_BLOCK_SIZE;
+            }
+            long id = block.next;
+            block.next += shards.size();
+            block.left--;
+            return id;
+        }
+    }
+
+    @Override
+    public User create(User user) throws DatabaseException {
+        User createdUser = new User(user);
+        createdUser.setId(nextId());
+        return shardOf(createdUser.getId()).createAllWithIds(Collections.singletonList(createdUser), 1).get(0);
+    }
+
+    /**
+     * Ids are assigned in the order of the users, and every shard inserts its part in one transaction
+     *
+     * @see UserDao#createAll(Collection, int)
+     */
+    @Override
+    public List<User> createAll(Collection<User> users, int chunkSize) throws DatabaseException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+        }
+        List<User> createdUsers = new ArrayList<>(users.size());
+        Map<Integer, List<User>> parts = new LinkedHashMap<>();
+        for (User user : users) {
+            User createdUser = new User(user);
+            createdUser.setId(nextId());
+            createdUser.setVersion(0L);
+            createdUsers.add(createdUser);
+            parts.computeIfAbsent(shardIndex(createdUser.getId()), index -> new ArrayList<>()).add(createdUser);
+        }
+        try {
+            forEachPart(parts, (shard, part) -> shard.createAllWithIds(part, chunkSize));
+        } catch (DatabaseException | RuntimeException e) {
+            if (!Transaction.isActive()) {
+                deleteCreated(createdUsers, e);
+            }
+            throw e;
+        }
+        return createdUsers;
+    }
+
+    /**
+     * Deletes users, that were added to shards, which didn't fail
+     */
+    private void deleteCreated(List<User> createdUsers, Exception cause) {
+        List<Long> ids = createdUsers.stream().map(User::getId).collect(Collectors.toList());
+        try {
+            deleteAll(ids);
+        } catch (DatabaseException | RuntimeException e) {
+            cause.addSuppressed(e);
+        }
+    }
+
+    @Override
+    public void update(User user) throws DatabaseException {
+        shardOf(user.getId()).update(user);
+    }
+
+    @Override
+    public int updateAll(Collection<User> users) throws DatabaseException {
+        Map<Integer, List<User>> parts = new LinkedHashMap<>();
+        for (User user : users) {
+            parts.computeIfAbsent(shardIndex(user.getId()), index -> new ArrayList<>()).add(user);
+        }
+        return sum(forEachPart(parts, HSQLdbUserDao::updateAll));
+    }
+
+    @Override
+    public void delete(User user) throws DatabaseException {
+        shardOf(user.getId()).delete(user);
+    }
+
+    @Override
+    public int deleteAll(Collection<Long> ids) throws DatabaseException {
+        Map<Integer, List<Long>> parts = new LinkedHashMap<>();
+        for (Long id : ids) {
+            parts.computeIfAbsent(shardIndex(id), index -> new ArrayList<>()).add(id);
+        }
+        return sum(forEachPart(parts, HSQLdbUserDao::deleteAll));
+    }
+
+    private static int sum(List<Integer> counts) {
+        int sum = 0;
+        for (int count : counts) {
+            sum += count;
+        }
+        return sum;
+    }
+
+    @Override
+    public User find(Long id) throws DatabaseException {
+        return shardOf(id).find(id);
+    }
+
+    @Override
+    public Collection<User> findAll() throws DatabaseException {
+        return merge(onAllShards(shard -> new ArrayList<>(shard.findAll())), BY_ID, 0);
+    }
+
+    /**
+     * Opens a stream of every shard, that reads it by pages, and merges them lazily, so memory usage
+     * doesn't depend on the size of the shards
+     *
+     * @see UserDao#streamAll(int)
+     */
+    @Override
+    public Stream<User> streamAll(int fetchSize) throws DatabaseException {
+        checkOpen();
+        List<Stream<User>> streams = new ArrayList<>(shards.size());
+        try {
+            for (HSQLdbUserDao shard : shards) {
+                streams.add(shard.streamAll(fetchSize));
+            }
+        } catch (DatabaseException | RuntimeException e) {
+            streams.forEach(Stream::close);
+            throw e;
+        }
+        return StreamSupport.stream(new MergingSpliterator<>(streams, BY_ID), false)
+                .onClose(() -> streams.forEach(Stream::close));
+    }
+
+    @Override
+    public List<User> findPage(Long afterId, int limit) throws DatabaseException {
+        return merge(onAllShards(shard -> shard.findPage(afterId, limit)), BY_ID, limit);
+    }
+
+    @Override
+    public List<User> findPageBefore(Long beforeId, int limit) throws DatabaseException {
+        return last(merge(onAllShards(shard -> shard.findPageBefore(beforeId, limit)), BY_ID, 0), limit);
+    }
+
+    @Override
+    public List<UserSummary> findSummaries() throws DatabaseException {
+        return merge(onAllShards(HSQLdbUserDao::findSummaries), SUMMARY_BY_ID, 0);
+    }
+
+    @Override
+    public List<UserSummary> findSummaryPage(Long afterId, int limit) throws DatabaseException {
+        return merge(onAllShards(shard -> shard.findSummaryPage(afterId, limit)), SUMMARY_BY_ID, limit);
+    }
+
+    @Override
+    public List<UserSummary> findSummaryPageBefore(Long beforeId, int limit) throws DatabaseException {
+        return last(merge(onAllShards(shard -> shard.findSummaryPageBefore(beforeId, limit)), SUMMARY_BY_ID, 0), limit);
+    }
+
+    /**
+     * Every shard applies the criteria with its limit, so the merged result has enough users for the limit
+     *
+     * @see UserDao#findByCriteria(UserCriteria)
+     */
+    @Override
+    public List<User> findByCriteria(UserCriteria criteria) throws DatabaseException {
+        return merge(onAllShards(shard -> shard.findByCriteria(criteria)), criteria.getComparator(), criteria.getLimit());
+    }
+
+    @Override
+    public List<User> findByDateOfBirth(Date from, Date to) throws DatabaseException {
+        UserCriteria criteria = new UserCriteria();
+        criteria.setBornFrom(from);
+        criteria.setBornTo(to);
+        criteria.setSortColumn(UserCriteria.SortColumn.DATEOFBIRTH);
+        return findByCriteria(criteria);
+    }
+
+    @Override
+    public List<User> findByAge(int minAge, int maxAge) throws DatabaseException {
+        UserCriteria criteria = new UserCriteria();
+        criteria.setAge(minAge, maxAge);
+        criteria.setSortColumn(UserCriteria.SortColumn.DATEOFBIRTH);
+        criteria.setDescending(true);
+        return findByCriteria(criteria);
+    }
+
+    @Override
+    public List<User> findUpcomingBirthdays(int days) throws DatabaseException {
+        int[][] ranges = Birthdays.ranges(LocalDate.now(), days);
+        Function<User, Integer> rangeOf = user -> {
+            int birthday = Birthdays.of(user.getDateOfBirth());
+            for (int i = 0; i < ranges.length; i++) {
+                if (birthday >= ranges[i][0] && birthday <= ranges[i][1]) {
+                    return i;
+                }
+            }
+            return ranges.length;
+        };
+        Comparator<User> byNextBirthday = Comparator.comparing(rangeOf)
+                .thenComparing(user -> Birthdays.of(user.getDateOfBirth()))
+                .thenComparing(User::getId);
+        return merge(onAllShards(shard -> shard.findUpcomingBirthdays(days)), byNextBirthday, 0);
+    }
+
+    private static <T> List<T> merge(List<List<T>> parts, Comparator<? super T> comparator, int limit) {
+        List<T> merged = new ArrayList<>();
+        for (List<T> part : parts) {
+            merged.addAll(part);
+        }
+        merged.sort(comparator);
+        return limit > 0 && merged.size() > limit ? new ArrayList<>(merged.subList(0, limit)) : merged;
+    }
+
+    private static <T> List<T> last(List<T> list, int limit) {
+        return list.size() > limit ? new ArrayList<>(list.subList(list.size() - limit, list.size())) : list;
+    }
+
+    private <T> List<T> onAllShards(ShardCall<T> call) throws DatabaseException {
+        List<ShardTask<T>> tasks = new ArrayList<>(shards.size());
+        for (HSQLdbUserDao shard : shards) {
+            tasks.add(() -> call.call(shard));
+        }
+        return execute(tasks);
+    }
+
+    private interface PartCall<P, T> {
+        T call(HSQLdbUserDao shard, List<P> part) throws DatabaseException;
+    }
+
+    private <P, T> List<T> forEachPart(Map<Integer, List<P>> parts, PartCall<P, T> call) throws DatabaseException {
+        List<ShardTask<T>> tasks = new ArrayList<>(parts.size());
+        for (Map.Entry<Integer, List<P>> part : parts.entrySet()) {
+            HSQLdbUserDao shard = shards.get(part.getKey());
+            tasks.add(() -> call.call(shard, part.getValue()));
+        }
+        return execute(tasks);
+    }
+
+    private interface ShardTask<T> {
+        T run() throws DatabaseException;
+    }
+
+    /**
+     * Runs the tasks on the executor under the {@link Deadline} of the caller and waits for all of them.
+     * A single task and tasks of a unit of work run in the calling thread
+     *
+     * @return results in the order of the tasks
+     * @throws DatabaseException the first failure of a task, the rest of the tasks are cancelled,
+     *                           or if the DAO is closed
+     */
+    private <T> List<T> execute(List<ShardTask<T>> tasks) throws DatabaseException {
+        checkOpen();
+        List<T> results = new ArrayList<>(tasks.size());
+        if (tasks.size() == 1 || Transaction.isActive()) {
+            for (ShardTask<T> task : tasks) {
+                results.add(task.run());
+            }
+            return results;
+        }
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        Deadline deadline = Deadline.current();
+        try {
+            for (ShardTask<T> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    Deadline previous = Deadline.bind(deadline);
+                    try {
+                        return task.run();
+                    } finally {
+                        Deadline.restore(previous);
+                    }
+                }));
+            }
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (RejectedExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            throw new DatabaseException("Sharded DAO is closed");
+        } catch (InterruptedException e) {
+            futures.forEach(future -> future.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Interrupted while shards were queried");
+        } catch (ExecutionException e) {
+            futures.forEach(future -> future.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof DatabaseException) {
+                throw (DatabaseException) cause;
+            }
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new RuntimeException(cause);
+        }
+    }
+
+    /**
+     * Stops the threads, that query shards, and closes connection factories of shards, that were created from settings.
+     * Calls after close throw DatabaseException
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (executor != null) {
+            executor.shutdown();
+        }
+        for (ConnectionFactory factory : ownFactories) {
+            DaoFactory.close(factory);
+        }
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    @Override
+    public String toString() {
+        return "ShardedUserDao{" +
+                "shards=" + (shards != null ? shards.size() : 0) +
+                ", closed=" + closed +
+                '}';
+    }
+
+    /**
+     * Merges sorted streams into one sorted stream, reading one element ahead from each of them
+     */
+    private static class MergingSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+        private final PriorityQueue<Head<T>> heads;
+
+        MergingSpliterator(List<Stream<T>> streams, Comparator<? super T> comparator) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            heads = new PriorityQueue<>(Math.max(1, streams.size()), (a, b) -> comparator.compare(a.value, b.value));
+            for (Stream<T> stream : streams) {
+                Iterator<T> iterator = stream.iterator();
+                if (iterator.hasNext()) {
+                    heads.add(new Head<>(iterator.next(), iterator));
+                }
+            }
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            Head<T> head = heads.poll();
+            if (head == null) {
+                return false;
+            }
+            action.accept(head.value);
+            if (head.rest.hasNext()) {
+                heads.add(new Head<>(head.rest.next(), head.rest));
+            }
+            return true;
+        }
+    }
+
+    private static class Head<T> {
+        private final T value;
+        private final Iterator<T> rest;
+
+        Head(T value, Iterator<T> rest) {
+            this.value = value;
+            this.rest = rest;
+        }
+    }
+}
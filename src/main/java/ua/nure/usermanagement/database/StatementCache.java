@@ -0,0 +1,247 @@
+package ua.nure.usermanagement.database;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.function.BooleanSupplier;
+
+/**
+ * A least-recently-used cache of prepared statements of one physical connection, keyed by SQL.
+ * Statements, handed out by the cache, are not closed by {@code close()}, but are given back to the cache
+ * with their parameters, query timeout, fetch size and max rows cleared, so the next preparation of the same SQL
+ * skips parsing and planning. Every preparation gets its own handle of the statement, that works only until it is
+ * closed or the lease of the connection ends, so a borrower, that keeps a statement, can't use or close it,
+ * after it was handed out again. A connection is used by one borrower at a time, so the cache is not thread-safe.
+ */
+class StatementCache {
+    private final Connection connection;
+    private final int maxSize;
+    private final LinkedHashMap<String, CachedStatement> statements = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * @param connection a physical connection, that prepares cached statements
+     * @param maxSize    maximum amount of statements, kept open for the connection
+     */
+    StatementCache(Connection connection, int maxSize) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param lease  the connection, that the borrower uses, it is returned by getConnection() of the statement
+     * @param active tells, whether the lease of the borrower still lasts
+     */
+    PreparedStatement prepareStatement(String sql, Connection lease, BooleanSupplier active) throws SQLException {
+        return (PreparedStatement) lookup(sql, false, lease, active);
+    }
+
+    CallableStatement prepareCall(String sql, Connection lease, BooleanSupplier active) throws SQLException {
+        return (CallableStatement) lookup(sql, true, lease, active);
+    }
+
+    private Object lookup(String sql, boolean callable, Connection lease, BooleanSupplier active) throws SQLException {
+        String key = (callable ? "{call}" : "") + sql;
+        Class<?> type = callable ? CallableStatement.class : PreparedStatement.class;
+        CachedStatement cached = statements.get(key);
+        if (cached != null && !cached.inUse) {
+            return cached.checkOut(lease, active, type);
+        }
+        PreparedStatement statement = callable ? connection.prepareCall(sql) : connection.prepareStatement(sql);
+        if (cached != null || maxSize < 1) {
+            // the same SQL is already open on this connection; hand out a plain statement
+            return wrap(statement, type, lease, active);
+        }
+        cached = new CachedStatement(statement);
+        statements.put(key, cached);
+        evictEldest();
+        return cached.checkOut(lease, active, type);
+    }
+
+    /**
+     * Wraps a statement, that isn't cached, so that it works only during the lease and returns the lease
+     * from getConnection()
+     */
+    static Statement wrap(Statement statement, Class<?> type, Connection lease, BooleanSupplier active) {
+        return (Statement) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                new Handle(statement, null, 0, lease, active));
+    }
+
+    private void evictEldest() {
+        Iterator<CachedStatement> iterator = statements.values().iterator();
+        while (statements.size() > maxSize && iterator.hasNext()) {
+            CachedStatement eldest = iterator.next();
+            if (!eldest.inUse) {
+                iterator.remove();
+                closeQuietly(eldest.statement);
+            }
+        }
+    }
+
+    /**
+     * Gives every statement back to the cache, including the ones, that their users forgot to close.
+     * Called when the connection goes back to the pool.
+     */
+    void releaseAll() {
+        for (CachedStatement cached : statements.values()) {
+            if (cached.inUse) {
+                cached.giveBack();
+            }
+        }
+    }
+
+    /**
+     * Closes all cached statements
+     */
+    void clear() {
+        for (CachedStatement cached : statements.values()) {
+            closeQuietly(cached.statement);
+        }
+        statements.clear();
+    }
+
+    private static void closeQuietly(PreparedStatement statement) {
+        try {
+            statement.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * A physical statement, that is checked out by one handle at a time.
+     * Every checkout has its own number, so handles of previous checkouts stop working
+     */
+    private static class CachedStatement {
+        private final PreparedStatement statement;
+        private volatile boolean inUse;
+        private volatile long checkout;
+
+        CachedStatement(PreparedStatement statement) {
+            this.statement = statement;
+        }
+
+        Object checkOut(Connection lease, BooleanSupplier active, Class<?> type) {
+            inUse = true;
+            checkout++;
+            return Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type},
+                    new Handle(statement, this, checkout, lease, active));
+        }
+
+        boolean isCheckedOut(long number) {
+            return inUse && checkout == number;
+        }
+
+        /**
+         * Clears the state, that the borrower has set, and makes the statement free
+         */
+        void giveBack() {
+            inUse = false;
+            try {
+                statement.clearParameters();
+                statement.clearBatch();
+                statement.setQueryTimeout(0);
+                statement.setFetchSize(0);
+                statement.setMaxRows(0);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * A statement, that is handed out to a borrower. It works only while the lease of the connection lasts
+     * and, for a cached statement, while its checkout does
+     */
+    private static class Handle implements InvocationHandler {
+        private final Statement statement;
+        private final CachedStatement cached;
+        private final long checkout;
+        private final Connection lease;
+        private final BooleanSupplier active;
+
+        Handle(Statement statement, CachedStatement cached, long checkout, Connection lease, BooleanSupplier active) {
+            this.statement = statement;
+            this.cached = cached;
+            this.checkout = checkout;
+            this.lease = lease;
+            this.active = active;
+        }
+
+        private boolean isValid() {
+            return active.getAsBoolean() && (cached == null || cached.isCheckedOut(checkout));
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if ("close".equals(name)) {
+                if (cached == null) {
+                    statement.close();
+                } else if (isValid()) {
+                    cached.giveBack();
+                }
+                return null;
+            }
+            if ("isClosed".equals(name)) {
+                return !isValid() || cached == null && statement.isClosed();
+            }
+            if ("equals".equals(name)) {
+                return proxy == args[0];
+            }
+            if ("hashCode".equals(name)) {
+                return System.identityHashCode(proxy);
+            }
+            if (!isValid()) {
+                throw new SQLException("Statement is closed");
+            }
+            if ("getConnection".equals(name)) {
+                return lease;
+            }
+            if ("unwrap".equals(name) && ((Class<?>) args[0]).isInstance(statement)) {
+                return statement;
+            }
+            Object result;
+            try {
+                result = method.invoke(statement, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+            if (result instanceof ResultSet) {
+                return wrap((ResultSet) result, (Statement) proxy);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Makes getStatement() of a result set return the handle, that has produced it
+     */
+    private static ResultSet wrap(ResultSet resultSet, Statement handle) {
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getStatement":
+                            return handle;
+                        case "equals":
+                            return proxy == args[0];
+                        case "hashCode":
+                            return System.identityHashCode(proxy);
+                        default:
+                            try {
+                                return method.invoke(resultSet, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                });
+    }
+}
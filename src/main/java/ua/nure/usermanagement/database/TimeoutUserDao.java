@@ -0,0 +1,283 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.UserSummary;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.DatabaseTimeoutException;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * A UserDao, that gives every call of the wrapped DAO a time budget, so a slow or locked database fails the call
+ * with a {@link ua.nure.usermanagement.database.exception.DatabaseTimeoutException} instead of blocking its thread.
+ * The budget becomes a {@link Deadline}: statements get a query timeout of the time, that is left,
+ * and waiting for a pooled connection ends at the deadline. Drivers may ignore query timeouts (HSQLDB 1.8 does),
+ * so the call runs on a thread of this decorator, and the caller stops waiting for it at the deadline.
+ * Such an abandoned call isn't stopped: it keeps its statement running and its connection busy, until it ends,
+ * and its changes, if it writes, are still committed without listeners of the DAO being told.
+ * Calls inside a unit of work run on the calling thread, which holds its connection, so only query timeouts
+ * apply to them. {@link DaoFactoryImpl} wraps the DAO, named in settings.properties, with it.
+ * Settings: dao.timeout.default and dao.timeout.&lt;method&gt;, e.g. dao.timeout.findAll (milliseconds, 0 for no budget)
+ *
+ * @see ua.nure.usermanagement.database.UserDao
+ */
+public class TimeoutUserDao extends UserDaoDecorator {
+    private static final String PREFIX = "dao.timeout";
+    private static final AtomicInteger THREAD_NUMBER = new AtomicInteger();
+    /**
+     * Threads, that run calls with a budget. Abandoned calls keep their threads, until they end
+     */
+    private static final ExecutorService CALLS = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "user-dao-call-" + THREAD_NUMBER.incrementAndGet());
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * A call of the wrapped DAO
+     */
+    private interface DaoCall<T> {
+        T call() throws DatabaseException;
+    }
+
+    private final Map<String, Long> timeouts = new ConcurrentHashMap<>();
+
+    public TimeoutUserDao() {
+        super(PREFIX);
+    }
+
+    /**
+     * @param delegate a DAO, that is wrapped by this decorator
+     */
+    public TimeoutUserDao(UserDao delegate) {
+        super(PREFIX, delegate);
+    }
+
+    /**
+     * @return the budget of the method in milliseconds from settings, dao.timeout.default if it has none
+     */
+    public long getTimeout(String method) {
+        return timeouts.computeIfAbsent(method,
+                key -> Long.parseLong(getProperty(key, getProperty("default", "0")).trim()));
+    }
+
+    /**
+     * @param method  a name of a method of UserDao
+     * @param timeout time in milliseconds, 0 for no budget
+     */
+    public void setTimeout(String method, long timeout) {
+        timeouts.put(method, timeout);
+    }
+
+    private <T> T withDeadline(String method, DaoCall<T> call) throws DatabaseException {
+        Deadline previous = Deadline.start(method, getTimeout(method));
+        try {
+            Deadline deadline = Deadline.current();
+            if (deadline == null || Transaction.isActive()) {
+                return call.call();
+            }
+            return callBefore(deadline, call);
+        } finally {
+            Deadline.restore(previous);
+        }
+    }
+
+    /**
+     * Runs the call on another thread under the deadline and the caller key of the current one
+     * and waits for it till the deadline
+     *
+     * @throws DatabaseTimeoutException if the call hasn't ended by the deadline, it is left running,
+     *                                  and a stream, that it returns later, is closed
+     */
+    private static <T> T callBefore(Deadline deadline, DaoCall<T> call) throws DatabaseException {
+        Object caller = ReadWriteConnectionFactory.currentCaller();
+        // set by the side, that is first: the call, that has ended, or the caller, that stops waiting for it
+        AtomicBoolean settled = new AtomicBoolean();
+        Future<T> future = CALLS.submit(() -> {
+            Deadline previousDeadline = Deadline.bind(deadline);
+            Object previousCaller = ReadWriteConnectionFactory.bindCaller(caller);
+            try {
+                T result = call.call();
+                if (!settled.compareAndSet(false, true) && result instanceof AutoCloseable) {
+                    ((AutoCloseable) result).close();
+                }
+                return result;
+            } finally {
+                ReadWriteConnectionFactory.restoreCaller(previousCaller);
+                Deadline.restore(previousDeadline);
+            }
+        });
+        try {
+            return future.get(deadline.getRemainingMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            if (!settled.compareAndSet(false, true)) {
+                // the call has just ended, its result is taken
+                return getResult(future);
+            }
+            // interrupting the call could break files of the database, it is abandoned instead
+            throw deadline.exceeded(null);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (!settled.compareAndSet(false, true)) {
+                CALLS.execute(() -> closeResult(future));
+            }
+            throw new DatabaseException("Interrupted while waiting for the database");
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    private static void closeResult(Future<?> future) {
+        try {
+            Object result = future.get();
+            if (result instanceof AutoCloseable) {
+                ((AutoCloseable) result).close();
+            }
+        } catch (Exception e) {
+            // the call failed, there is nothing to close
+        }
+    }
+
+    private static <T> T getResult(Future<T> future) throws DatabaseException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Interrupted while waiting for the database");
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * @return the DatabaseException, that failed the call, other failures are thrown
+     */
+    private static DatabaseException unwrap(ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof DatabaseException) {
+            return (DatabaseException) cause;
+        }
+        if (cause instanceof RuntimeException) {
+            throw (RuntimeException) cause;
+        }
+        if (cause instanceof Error) {
+            throw (Error) cause;
+        }
+        throw new RuntimeException(cause);
+    }
+
+    @Override
+    public User create(User user) throws DatabaseException {
+        return withDeadline("create", () -> delegate.create(user));
+    }
+
+    @Override
+    public List<User> createAll(Collection<User> users, int chunkSize) throws DatabaseException {
+        return withDeadline("createAll", () -> delegate.createAll(users, chunkSize));
+    }
+
+    @Override
+    public void update(User user) throws DatabaseException {
+        withDeadline("update", () -> {
+            delegate.update(user);
+            return null;
+        });
+    }
+
+    @Override
+    public int updateAll(Collection<User> users) throws DatabaseException {
+        return withDeadline("updateAll", () -> delegate.updateAll(users));
+    }
+
+    @Override
+    public void delete(User user) throws DatabaseException {
+        withDeadline("delete", () -> {
+            delegate.delete(user);
+            return null;
+        });
+    }
+
+    @Override
+    public int deleteAll(Collection<Long> ids) throws DatabaseException {
+        return withDeadline("deleteAll", () -> delegate.deleteAll(ids));
+    }
+
+    @Override
+    public User find(Long id) throws DatabaseException {
+        return withDeadline("find", () -> delegate.find(id));
+    }
+
+    @Override
+    public Collection<User> findAll() throws DatabaseException {
+        return withDeadline("findAll", () -> delegate.findAll());
+    }
+
+    /**
+     * The deadline covers opening of the stream only, e.g. reading of its first page, the rest of the rows are read,
+     * while the stream is consumed
+     *
+     * @see UserDao#streamAll(int)
+     */
+    @Override
+    public Stream<User> streamAll(int fetchSize) throws DatabaseException {
+        return withDeadline("streamAll", () -> delegate.streamAll(fetchSize));
+    }
+
+    @Override
+    public List<User> findPage(Long afterId, int limit) throws DatabaseException {
+        return withDeadline("findPage", () -> delegate.findPage(afterId, limit));
+    }
+
+    @Override
+    public List<User> findPageBefore(Long beforeId, int limit) throws DatabaseException {
+        return withDeadline("findPageBefore", () -> delegate.findPageBefore(beforeId, limit));
+    }
+
+    @Override
+    public List<UserSummary> findSummaries() throws DatabaseException {
+        return withDeadline("findSummaries", () -> delegate.findSummaries());
+    }
+
+    @Override
+    public List<UserSummary> findSummaryPage(Long afterId, int limit) throws DatabaseException {
+        return withDeadline("findSummaryPage", () -> delegate.findSummaryPage(afterId, limit));
+    }
+
+    @Override
+    public List<UserSummary> findSummaryPageBefore(Long beforeId, int limit) throws DatabaseException {
+        return withDeadline("findSummaryPageBefore", () -> delegate.findSummaryPageBefore(beforeId, limit));
+    }
+
+    @Override
+    public List<User> findByCriteria(UserCriteria criteria) throws DatabaseException {
+        return withDeadline("findByCriteria", () -> delegate.findByCriteria(criteria));
+    }
+
+    @Override
+    public List<User> findByDateOfBirth(Date from, Date to) throws DatabaseException {
+        return withDeadline("findByDateOfBirth", () -> delegate.findByDateOfBirth(from, to));
+    }
+
+    @Override
+    public List<User> findByAge(int minAge, int maxAge) throws DatabaseException {
+        return withDeadline("findByAge", () -> delegate.findByAge(minAge, maxAge));
+    }
+
+    @Override
+    public List<User> findUpcomingBirthdays(int days) throws DatabaseException {
+        return withDeadline("findUpcomingBirthdays", () -> delegate.findUpcomingBirthdays(days));
+    }
+}
@@ -0,0 +1,195 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.database.exception.DatabaseException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * A unit of work, bound to the current thread. While it is active, {@link JdbcTemplate} runs all statements
+ * of a connection factory on one connection without auto-commit, and the work is committed once at the end.
+ * Decorators register actions, that must happen only after the work is committed, e.g. notifications of listeners.
+ * Units of work don't nest: an inner one joins the outer one, and if it fails, the outer one is rolled back.
+ * Connections of different factories are committed one after another, not atomically.
+ */
+final class Transaction {
+    private static final Logger LOGGER = Logger.getLogger(Transaction.class.getName());
+    private static final ThreadLocal<Transaction> CURRENT = new ThreadLocal<>();
+
+    private final Map<ConnectionFactory, Connection> connections = new LinkedHashMap<>();
+    private final List<Runnable> afterCommit = new ArrayList<>();
+    private final List<Runnable> afterCompletion = new ArrayList<>();
+    private final List<Runnable> afterRollback = new ArrayList<>();
+    private boolean rollbackOnly;
+
+    private Transaction() {
+    }
+
+    /**
+     * Runs the work in a new unit of work or in the one, that is already active in this thread
+     *
+     * @return result of the work
+     * @throws DatabaseException if the work or the commit failed, changes are rolled back in that case
+     */
+    static <T> T execute(UserDao userDao, UnitOfWork<T> work) throws DatabaseException {
+        Transaction current = CURRENT.get();
+        if (current != null) {
+            try {
+                return work.execute(userDao);
+            } catch (DatabaseException | RuntimeException e) {
+                current.rollbackOnly = true;
+                throw e;
+            }
+        }
+        Transaction transaction = new Transaction();
+        CURRENT.set(transaction);
+        boolean committed = false;
+        try {
+            T result = work.execute(userDao);
+            transaction.commit();
+            committed = true;
+            return result;
+        } finally {
+            CURRENT.remove();
+            if (!committed) {
+                transaction.rollback();
+            }
+            transaction.close();
+            transaction.complete(committed);
+        }
+    }
+
+    /**
+     * @return true, if a unit of work is active in this thread
+     */
+    static boolean isActive() {
+        return CURRENT.get() != null;
+    }
+
+    /**
+     * Returns the connection of the active unit of work to the factory. It is opened on the first call
+     *
+     * @return a connection without auto-commit, that must not be closed or committed by the caller,
+     * or null, if there is no active unit of work
+     * @throws DatabaseException if the connection could not be opened
+     */
+    static Connection getConnection(ConnectionFactory connectionFactory) throws DatabaseException {
+        Transaction transaction = CURRENT.get();
+        if (transaction == null) {
+            return null;
+        }
+        Connection connection = transaction.connections.get(connectionFactory);
+        if (connection == null) {
+            connection = connectionFactory.createConnection();
+            try {
+                connection.setAutoCommit(false);
+            } catch (SQLException e) {
+                try {
+                    connection.close();
+                } catch (SQLException e1) {
+                    e1.printStackTrace();
+                }
+                throw new DatabaseException(e);
+            }
+            transaction.connections.put(connectionFactory, connection);
+        }
+        return connection;
+    }
+
+    /**
+     * Runs the action after the active unit of work is committed, or at once, if there is none.
+     * The action is dropped, if the work is rolled back
+     */
+    static void afterCommit(Runnable action) {
+        Transaction transaction = CURRENT.get();
+        if (transaction == null) {
+            action.run();
+        } else {
+            transaction.afterCommit.add(action);
+        }
+    }
+
+    /**
+     * Runs the action after the active unit of work is committed or rolled back, or at once, if there is none
+     */
+    static void afterCompletion(Runnable action) {
+        Transaction transaction = CURRENT.get();
+        if (transaction == null) {
+            action.run();
+        } else {
+            transaction.afterCompletion.add(action);
+        }
+    }
+
+    /**
+     * Runs the action, if the active unit of work is rolled back. Does nothing, if there is none.
+     * Actions run in reverse order, so DAOs without a connection can undo their changes with them
+     */
+    static void afterRollback(Runnable action) {
+        Transaction transaction = CURRENT.get();
+        if (transaction != null) {
+            transaction.afterRollback.add(0, action);
+        }
+    }
+
+    private void commit() throws DatabaseException {
+        if (rollbackOnly) {
+            throw new DatabaseException("Unit of work is rolled back, because a joined unit of work has failed");
+        }
+        try {
+            for (Connection connection : connections.values()) {
+                connection.commit();
+            }
+        } catch (SQLException e) {
+            throw new DatabaseException(e);
+        }
+    }
+
+    private void rollback() {
+        for (Connection connection : connections.values()) {
+            try {
+                connection.rollback();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private void close() {
+        for (Connection connection : connections.values()) {
+            try {
+                connection.setAutoCommit(true);
+            } catch (SQLException e) {
+                e.printStackTrace();
+            } finally {
+                try {
+                    connection.close();
+                } catch (SQLException e) {
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+
+    private void complete(boolean committed) {
+        List<Runnable> actions = new ArrayList<>(afterCompletion);
+        if (committed) {
+            actions.addAll(0, afterCommit);
+        } else {
+            actions.addAll(0, afterRollback);
+        }
+        for (Runnable action : actions) {
+            try {
+                action.run();
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Action after the end of a unit of work failed", e);
+            }
+        }
+    }
+}
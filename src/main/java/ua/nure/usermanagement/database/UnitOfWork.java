@@ -0,0 +1,19 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.database.exception.DatabaseException;
+
+/**
+ * Several calls of a UserDao, that are executed on one connection and committed together,
+ * e.g. load, modify and save of a user
+ *
+ * @see DaoFactory#executeInTransaction(UnitOfWork)
+ */
+public interface UnitOfWork<T> {
+
+    /**
+     * @param userDao a DAO, whose calls take part in the unit of work
+     * @return result of the work
+     * @throws DatabaseException if has any problems with db, all changes of the work are rolled back in that case
+     */
+    T execute(UserDao userDao) throws DatabaseException;
+}
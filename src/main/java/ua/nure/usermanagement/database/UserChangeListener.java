@@ -0,0 +1,25 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.User;
+
+/**
+ * Receives notifications about users, changed through a {@link ListeningUserDao}.
+ * Notifications are sent by the thread, that made the change, after the DAO accepted it
+ */
+public interface UserChangeListener {
+
+    /**
+     * @param user a created user with id, assigned by db
+     */
+    void userCreated(User user);
+
+    /**
+     * @param user new values of the user
+     */
+    void userUpdated(User user);
+
+    /**
+     * @param id id of the deleted user
+     */
+    void userDeleted(Long id);
+}
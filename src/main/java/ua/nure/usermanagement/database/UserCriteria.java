@@ -0,0 +1,206 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.User;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.Date;
+
+/**
+ * Conditions of a {@link UserDao#findByCriteria(UserCriteria)} query. Every condition, that is not set, matches all users.
+ * Name prefixes are case-sensitive, bounds of date of birth are inclusive and only their day is taken into account.
+ */
+public class UserCriteria {
+
+    /**
+     * Columns, that users may be sorted by. Users with equal values are sorted by id
+     */
+    public enum SortColumn {
+        ID("id"), FIRSTNAME("firstname"), LASTNAME("lastname"), DATEOFBIRTH("dateofbirth");
+
+        private final String column;
+
+        SortColumn(String column) {
+            this.column = column;
+        }
+
+        /**
+         * @return name of the column in table users
+         */
+        public String getColumn() {
+            return column;
+        }
+    }
+
+    private String firstNamePrefix;
+    private String lastNamePrefix;
+    private Date bornFrom;
+    private Date bornTo;
+    private SortColumn sortColumn = SortColumn.ID;
+    private boolean descending;
+    private int limit;
+
+    public UserCriteria() {
+    }
+
+    public String getFirstNamePrefix() {
+        return firstNamePrefix;
+    }
+
+    /**
+     * @param firstNamePrefix a beginning of first name, null or empty string match any first name
+     */
+    public void setFirstNamePrefix(String firstNamePrefix) {
+        this.firstNamePrefix = firstNamePrefix;
+    }
+
+    public String getLastNamePrefix() {
+        return lastNamePrefix;
+    }
+
+    /**
+     * @param lastNamePrefix a beginning of last name, null or empty string match any last name
+     */
+    public void setLastNamePrefix(String lastNamePrefix) {
+        this.lastNamePrefix = lastNamePrefix;
+    }
+
+    public Date getBornFrom() {
+        return bornFrom;
+    }
+
+    /**
+     * @param bornFrom the earliest date of birth, null for no lower bound
+     */
+    public void setBornFrom(Date bornFrom) {
+        this.bornFrom = bornFrom;
+    }
+
+    public Date getBornTo() {
+        return bornTo;
+    }
+
+    /**
+     * @param bornTo the latest date of birth, null for no upper bound
+     */
+    public void setBornTo(Date bornTo) {
+        this.bornTo = bornTo;
+    }
+
+    /**
+     * Sets bounds of date of birth, so only users, that are from minAge to maxAge full years old today, match.
+     * Age is turned into a date range once, so db compares dates of birth and may use the index on them
+     *
+     * @param minAge the least age in full years
+     * @param maxAge the greatest age in full years
+     */
+    public void setAge(int minAge, int maxAge) {
+        if (minAge < 0 || maxAge < minAge) {
+            throw new IllegalArgumentException("Wrong age bracket: " + minAge + "-" + maxAge);
+        }
+        LocalDate today = LocalDate.now();
+        bornFrom = toDate(today.minusYears(maxAge + 1L).plusDays(1));
+        bornTo = toDate(today.minusYears(minAge));
+    }
+
+    private static Date toDate(LocalDate day) {
+        return Date.from(day.atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    public SortColumn getSortColumn() {
+        return sortColumn;
+    }
+
+    public void setSortColumn(SortColumn sortColumn) {
+        this.sortColumn = sortColumn != null ? sortColumn : SortColumn.ID;
+    }
+
+    public boolean isDescending() {
+        return descending;
+    }
+
+    public void setDescending(boolean descending) {
+        this.descending = descending;
+    }
+
+    public int getLimit() {
+        return limit;
+    }
+
+    /**
+     * @param limit maximum amount of found users, 0 for no limit
+     */
+    public void setLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Limit must not be negative: " + limit);
+        }
+        this.limit = limit;
+    }
+
+    boolean hasFirstNamePrefix() {
+        return firstNamePrefix != null && !firstNamePrefix.isEmpty();
+    }
+
+    boolean hasLastNamePrefix() {
+        return lastNamePrefix != null && !lastNamePrefix.isEmpty();
+    }
+
+    /**
+     * Checks a user in memory the same way, as db checks a row, so DAOs without SQL give the same results
+     *
+     * @return true, if the user satisfies all conditions
+     */
+    public boolean matches(User user) {
+        if (hasFirstNamePrefix() && !user.getFirstName().startsWith(firstNamePrefix)) {
+            return false;
+        }
+        if (hasLastNamePrefix() && !user.getLastName().startsWith(lastNamePrefix)) {
+            return false;
+        }
+        if (bornFrom != null && day(user.getDateOfBirth()).isBefore(day(bornFrom))) {
+            return false;
+        }
+        return bornTo == null || !day(user.getDateOfBirth()).isAfter(day(bornTo));
+    }
+
+    private static LocalDate day(Date date) {
+        return Instant.ofEpochMilli(date.getTime()).atZone(ZoneId.systemDefault()).toLocalDate();
+    }
+
+    /**
+     * @return a comparator, that orders users the same way, as the query does
+     */
+    public Comparator<User> getComparator() {
+        Comparator<User> comparator;
+        switch (sortColumn) {
+            case FIRSTNAME:
+                comparator = Comparator.comparing(User::getFirstName);
+                break;
+            case LASTNAME:
+                comparator = Comparator.comparing(User::getLastName);
+                break;
+            case DATEOFBIRTH:
+                comparator = Comparator.comparing(User::getDateOfBirth);
+                break;
+            default:
+                comparator = (a, b) -> 0;
+        }
+        comparator = comparator.thenComparing(User::getId);
+        return descending ? comparator.reversed() : comparator;
+    }
+
+    @Override
+    public String toString() {
+        return "UserCriteria{" +
+                "firstNamePrefix='" + firstNamePrefix + '\'' +
+                ", lastNamePrefix='" + lastNamePrefix + '\'' +
+                ", bornFrom=" + bornFrom +
+                ", bornTo=" + bornTo +
+                ", sortColumn=" + sortColumn +
+                ", descending=" + descending +
+                ", limit=" + limit +
+                '}';
+    }
+}
@@ -1,9 +1,14 @@
 package ua.nure.usermanagement.database;
 
 import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.UserSummary;
 import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.OptimisticLockException;
 
 import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
 
 /**
  * An interface that defines DAO, that works with table users
@@ -20,12 +25,32 @@ public interface UserDao {
     public User create(User user) throws DatabaseException;
 
     /**
-     * update user in db
-     * @param user all fields of user must be filled
+     * add several users into db in one transaction, using batches of insert statements
+     * @param users all fields of users must be filled except of id
+     *              ids must be null
+     * @param chunkSize amount of inserts, sent to db in one batch
+     * @return copies of users with ids from db in the same order, as the users were given
+     * @throws DatabaseException if has any problems with db, no user is added in that case
+     */
+    public List<User> createAll(Collection<User> users, int chunkSize) throws DatabaseException;
+
+    /**
+     * update user in db. If the user has a version, it is updated only if nobody has changed it since it was read,
+     * and its version is incremented on success
+     * @param user all fields of user must be filled, version may be null for an update without a check
+     * @throws OptimisticLockException if the user was changed or deleted after it was read
      * @throws DatabaseException if has any problems with db
      */
     public void update(User user) throws DatabaseException;
 
+    /**
+     * update several users in db in one transaction, using a batch of update statements
+     * @param users all fields of users must be filled
+     * @return amount of updated users, users, that are absent in db or whose version doesn't match, are skipped
+     * @throws DatabaseException if has any problems with db, no user is updated in that case
+     */
+    public int updateAll(Collection<User> users) throws DatabaseException;
+
     /**
      * delete user from db
      * @param user all fields of user must be filled
@@ -33,6 +58,14 @@ public interface UserDao {
      */
     public void delete(User user) throws DatabaseException;
 
+    /**
+     * delete several users from db in one transaction
+     * @param ids ids of users, that must be deleted
+     * @return amount of deleted users
+     * @throws DatabaseException if has any problems with db, no user is deleted in that case
+     */
+    public int deleteAll(Collection<Long> ids) throws DatabaseException;
+
     /**
      * Find user with id in db
      * @param id must not be null
@@ -48,6 +81,100 @@ public interface UserDao {
      */
     public Collection<User> findAll() throws DatabaseException;
 
+    /**
+     * Streams all data in table users of db. Users are read from db by a cursor or by pages as the stream is consumed,
+     * so memory usage doesn't depend on the size of the table. The stream may hold a connection
+     * until it is exhausted or closed, so it must be closed, e.g. by try-with-resources.
+     * Errors, that occur while the stream is consumed, are thrown as
+     * {@link ua.nure.usermanagement.database.exception.UncheckedDatabaseException}
+     * @param fetchSize amount of rows, read from db at once
+     * @return a stream of users in ascending order of id
+     * @throws DatabaseException if has any problems with db
+     */
+    public Stream<User> streamAll(int fetchSize) throws DatabaseException;
+
+    /**
+     * Finds a page of users, ordered by id, that follows the given id. Uses the primary key index,
+     * so the cost of a page doesn't depend on its position in the table
+     * @param afterId id of the last user of the previous page, null for the first page
+     * @param limit maximum amount of users in the page
+     * @return users with id greater than afterId in ascending order of id
+     * @throws DatabaseException if has any problems with db
+     */
+    public List<User> findPage(Long afterId, int limit) throws DatabaseException;
+
+    /**
+     * Finds a page of users, ordered by id, that precedes the given id
+     * @param beforeId id of the first user of the next page, null for the last page
+     * @param limit maximum amount of users in the page
+     * @return users with id less than beforeId in ascending order of id
+     * @throws DatabaseException if has any problems with db
+     */
+    public List<User> findPageBefore(Long beforeId, int limit) throws DatabaseException;
+
+    /**
+     * Finds ids and names of all users. Date of birth isn't read, so it is cheaper, than {@link #findAll()},
+     * when users are only listed
+     * @return summaries of all users in ascending order of id
+     * @throws DatabaseException if has any problems with db
+     */
+    public List<UserSummary> findSummaries() throws DatabaseException;
+
+    /**
+     * Same as {@link #findPage(Long, int)}, but reads only ids and names
+     * @param afterId id of the last user of the previous page, null for the first page
+     * @param limit maximum amount of users in the page
+     * @return summaries of users with id greater than afterId in ascending order of id
+     * @throws DatabaseException if has any problems with db
+     */
+    public List<UserSummary> findSummaryPage(Long afterId, int limit) throws DatabaseException;
+
+    /**
+     * Same as {@link #findPageBefore(Long, int)}, but reads only ids and names
+     * @param beforeId id of the first user of the next page, null for the last page
+     * @param limit maximum amount of users in the page
+     * @return summaries of users with id less than beforeId in ascending order of id
+     * @throws DatabaseException if has any problems with db
+     */
+    public List<UserSummary> findSummaryPageBefore(Long beforeId, int limit) throws DatabaseException;
+
+    /**
+     * Finds users, that satisfy the criteria. Filtering, sorting and limit are done by db,
+     * using indexes on names and date of birth
+     * @param criteria conditions, order and maximum amount of users
+     * @return users, that satisfy the criteria, in the requested order
+     * @throws DatabaseException if has any problems with db
+     */
+    public List<User> findByCriteria(UserCriteria criteria) throws DatabaseException;
+
+    /**
+     * Finds users, born between the dates, using the index on date of birth
+     * @param from the earliest date of birth, null for no lower bound
+     * @param to the latest date of birth, null for no upper bound
+     * @return users in ascending order of date of birth
+     * @throws DatabaseException if has any problems with db
+     */
+    public List<User> findByDateOfBirth(Date from, Date to) throws DatabaseException;
+
+    /**
+     * Finds users, that are from minAge to maxAge full years old today. The age bracket is turned into
+     * a range of dates of birth, so db doesn't compute age of every user
+     * @param minAge the least age in full years
+     * @param maxAge the greatest age in full years
+     * @return users in descending order of date of birth, i.e. the youngest first
+     * @throws DatabaseException if has any problems with db
+     */
+    public List<User> findByAge(int minAge, int maxAge) throws DatabaseException;
+
+    /**
+     * Finds users, whose birthday is today or in the next days, including those, that follow the end of the year.
+     * Uses the index on BIRTHDAY column (month * 100 + day), so time depends on amount of found users only
+     * @param days amount of days after today, 0 for today's birthdays only
+     * @return users in order of their next birthday
+     * @throws DatabaseException if has any problems with db
+     */
+    public List<User> findUpcomingBirthdays(int days) throws DatabaseException;
+
     /**
      *
      * @param factory a factory that will be used to generate connections for this DAO
@@ -0,0 +1,178 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.UserSummary;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * A base for UserDao implementations, that wrap another UserDao and pass every call to it.
+ * Subclasses override only the methods, that they add behaviour to.
+ * When a decorator is created by {@link DaoFactoryImpl}, the wrapped DAO is the class,
+ * named by the "&lt;prefix&gt;.delegate" key of settings.properties
+ *
+ * @see ua.nure.usermanagement.database.UserDao
+ */
+public abstract class UserDaoDecorator implements UserDao {
+    private final String prefix;
+    protected UserDao delegate;
+
+    /**
+     * @param prefix a prefix of settings.properties keys of this decorator
+     */
+    protected UserDaoDecorator(String prefix) {
+        this.prefix = prefix;
+    }
+
+    /**
+     * @param prefix   a prefix of settings.properties keys of this decorator
+     * @param delegate a DAO, that is wrapped by this decorator
+     */
+    protected UserDaoDecorator(String prefix, UserDao delegate) {
+        this.prefix = prefix;
+        this.delegate = delegate;
+    }
+
+    public UserDao getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * @param key a key of a setting without the prefix of this decorator
+     * @param defaultValue a value, used when the setting is absent
+     * @return a value of the setting from settings.properties
+     */
+    protected String getProperty(String key, String defaultValue) {
+        return DaoFactory.properties.getProperty(prefix + "." + key, defaultValue);
+    }
+
+    /**
+     * Creates the wrapped DAO from settings, if it wasn't given to the constructor, and passes the factory to it
+     *
+     * @see UserDao#setConnectionFactory(ConnectionFactory)
+     */
+    @Override
+    public void setConnectionFactory(ConnectionFactory factory) {
+        if (delegate == null) {
+            String className = getProperty("delegate", HSQLdbUserDao.class.getName());
+            try {
+                delegate = (UserDao) Class.forName(className).getDeclaredConstructor().newInstance();
+            } catch (ReflectiveOperationException e) {
+                throw new RuntimeException(e);
+            }
+        }
+        delegate.setConnectionFactory(factory);
+    }
+
+    @Override
+    public User create(User user) throws DatabaseException {
+        return delegate.create(user);
+    }
+
+    @Override
+    public List<User> createAll(Collection<User> users, int chunkSize) throws DatabaseException {
+        return delegate.createAll(users, chunkSize);
+    }
+
+    @Override
+    public void update(User user) throws DatabaseException {
+        delegate.update(user);
+    }
+
+    @Override
+    public int updateAll(Collection<User> users) throws DatabaseException {
+        return delegate.updateAll(users);
+    }
+
+    @Override
+    public void delete(User user) throws DatabaseException {
+        delegate.delete(user);
+    }
+
+    @Override
+    public int deleteAll(Collection<Long> ids) throws DatabaseException {
+        return delegate.deleteAll(ids);
+    }
+
+    @Override
+    public User find(Long id) throws DatabaseException {
+        return delegate.find(id);
+    }
+
+    @Override
+    public Collection<User> findAll() throws DatabaseException {
+        return delegate.findAll();
+    }
+
+    @Override
+    public Stream<User> streamAll(int fetchSize) throws DatabaseException {
+        return delegate.streamAll(fetchSize);
+    }
+
+    @Override
+    public List<User> findPage(Long afterId, int limit) throws DatabaseException {
+        return delegate.findPage(afterId, limit);
+    }
+
+    @Override
+    public List<User> findPageBefore(Long beforeId, int limit) throws DatabaseException {
+        return delegate.findPageBefore(beforeId, limit);
+    }
+
+    @Override
+    public List<UserSummary> findSummaries() throws DatabaseException {
+        return delegate.findSummaries();
+    }
+
+    @Override
+    public List<UserSummary> findSummaryPage(Long afterId, int limit) throws DatabaseException {
+        return delegate.findSummaryPage(afterId, limit);
+    }
+
+    @Override
+    public List<UserSummary> findSummaryPageBefore(Long beforeId, int limit) throws DatabaseException {
+        return delegate.findSummaryPageBefore(beforeId, limit);
+    }
+
+    @Override
+    public List<User> findByCriteria(UserCriteria criteria) throws DatabaseException {
+        return delegate.findByCriteria(criteria);
+    }
+
+    @Override
+    public List<User> findByDateOfBirth(Date from, Date to) throws DatabaseException {
+        return delegate.findByDateOfBirth(from, to);
+    }
+
+    @Override
+    public List<User> findByAge(int minAge, int maxAge) throws DatabaseException {
+        return delegate.findByAge(minAge, maxAge);
+    }
+
+    @Override
+    public List<User> findUpcomingBirthdays(int days) throws DatabaseException {
+        return delegate.findUpcomingBirthdays(days);
+    }
+
+    /**
+     * Releases resources of this decorator and of the DAOs, that it wraps, e.g. saves the last snapshot
+     * of an {@link InMemoryUserDao}, closes shards of a {@link ShardedUserDao} or stops the parallel scan
+     * of an {@link HSQLdbUserDao}.
+     * Called by {@link DaoFactoryImpl}, when the factory is closed
+     */
+    public void close() {
+        if (delegate instanceof UserDaoDecorator) {
+            ((UserDaoDecorator) delegate).close();
+        } else if (delegate instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) delegate).close();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.database.exception.DatabaseException;
+
+/**
+ * An in-memory structure, derived from all users, that is built once from a DAO
+ * and then follows changes of users as a {@link UserChangeListener}
+ *
+ * @see DaoFactory#getNameSearchIndex()
+ */
+public interface UserDataView extends UserChangeListener {
+
+    /**
+     * Reads all users of the DAO. The view must already be registered as a listener of the DAO,
+     * so changes, made while the users are read, are not lost
+     *
+     * @throws DatabaseException if has any problems with db
+     */
+    void build(UserDao dao) throws DatabaseException;
+}
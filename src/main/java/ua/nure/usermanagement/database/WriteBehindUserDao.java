@@ -0,0 +1,555 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.UserSummary;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.OptimisticLockException;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+
+/**
+ * A UserDao, that acknowledges updates and deletes immediately and writes them to the wrapped DAO later.
+ * Pending writes are kept by id, so repeated edits of the same user are coalesced into one write,
+ * and are flushed in batches by a background thread every flush interval, when the queue is full
+ * and when the DAO is closed or the JVM shuts down.
+ * Inserts are written at once, because their ids are assigned by db.
+ * {@link #find(Long)} sees pending writes, other reads flush them before they are executed.
+ * A pending update keeps the version, that the user has in the wrapped DAO, and is checked against it, when it is written.
+ * Callers and find get the next version, as after a write to db, so a stale update is rejected at once.
+ * Only a conflict with a change, made bypassing this DAO, is found later, such update is dropped and logged.
+ * Inside a unit of work writes are done at once as a part of it, and pending writes are flushed
+ * by the background thread before, because they were acknowledged earlier and must not be rolled back with the work.
+ * Settings: dao.writeBehind.delegate (wrapped DAO), dao.writeBehind.flushInterval (milliseconds),
+ * dao.writeBehind.maxPending, dao.writeBehind.batchSize
+ *
+ * @see ua.nure.usermanagement.database.UserDao
+ */
+public class WriteBehindUserDao extends UserDaoDecorator {
+    private static final Logger LOGGER = Logger.getLogger(WriteBehindUserDao.class.getName());
+    private static final String PREFIX = "dao.writeBehind";
+
+    private long flushInterval;
+    private int maxPending;
+    private int batchSize;
+
+    private final LinkedHashMap<Long, PendingWrite> pending = new LinkedHashMap<>();
+    private final Object flushLock = new Object();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong flushes = new AtomicLong();
+    private final AtomicLong failedFlushes = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+
+    private ScheduledExecutorService flusher;
+    private Thread shutdownHook;
+    private volatile boolean closed;
+
+    public WriteBehindUserDao() {
+        super(PREFIX);
+    }
+
+    /**
+     * @param delegate      a DAO, that receives the writes
+     * @param flushInterval time in milliseconds between background flushes
+     * @param maxPending    maximum amount of users with pending writes, a writer flushes the queue itself, when it is full
+     * @param batchSize     maximum amount of writes, sent to the wrapped DAO in one call
+     */
+    public WriteBehindUserDao(UserDao delegate, long flushInterval, int maxPending, int batchSize) {
+        super(PREFIX, delegate);
+        this.flushInterval = flushInterval;
+        this.maxPending = maxPending;
+        this.batchSize = batchSize;
+        start();
+    }
+
+    /**
+     * Reads queue settings from settings.properties and starts the background flusher
+     *
+     * @see UserDaoDecorator#setConnectionFactory(ConnectionFactory)
+     */
+    @Override
+    public void setConnectionFactory(ConnectionFactory factory) {
+        if (delegate == null) {
+            flushInterval = Long.parseLong(getProperty("flushInterval", "1000"));
+            maxPending = Integer.parseInt(getProperty("maxPending", "1000"));
+            batchSize = Integer.parseInt(getProperty("batchSize", "100"));
+            super.setConnectionFactory(factory);
+            start();
+        } else {
+            super.setConnectionFactory(factory);
+        }
+    }
+
+    private void start() {
+        if (maxPending < 1 || batchSize < 1) {
+            throw new IllegalArgumentException("Queue and batch sizes must be positive: " + maxPending + ", " + batchSize);
+        }
+        flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-dao-write-behind");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flusher.scheduleWithFixedDelay(this::backgroundFlush, flushInterval, flushInterval, TimeUnit.MILLISECONDS);
+        shutdownHook = new Thread(this::close, "user-dao-write-behind-shutdown");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Queues the update. A pending write of the same user is replaced
+     *
+     * @throws OptimisticLockException if the user has a version, that differs from the version of its pending write,
+     *                                 or is deleted by a pending write
+     * @throws DatabaseException       if the user without a version is deleted by a pending write,
+     *                                 or the queue is full and could not be flushed
+     * @see UserDao#update(User)
+     */
+    @Override
+    public void update(User user) throws DatabaseException {
+        if (Transaction.isActive()) {
+            flush();
+            delegate.update(user);
+            return;
+        }
+        if (!enqueueUpdate(user)) {
+            if (user.getVersion() != null) {
+                throw new OptimisticLockException(user.getId());
+            }
+            throw new DatabaseException("Update not executed");
+        }
+    }
+
+    /**
+     * Queues several updates. Users, that are deleted or have another version, than their pending writes, are skipped
+     *
+     * @return amount of queued users
+     * @throws DatabaseException if the queue is full and could not be flushed
+     * @see UserDao#updateAll(Collection)
+     */
+    @Override
+    public int updateAll(Collection<User> users) throws DatabaseException {
+        if (Transaction.isActive()) {
+            flush();
+            return delegate.updateAll(users);
+        }
+        int queued = 0;
+        for (User user : users) {
+            if (enqueueUpdate(user)) {
+                queued++;
+            }
+        }
+        return queued;
+    }
+
+    /**
+     * Queues the delete. A pending update of the same user is dropped
+     *
+     * @throws DatabaseException if the user is deleted by a pending write already or the queue could not be flushed
+     * @see UserDao#delete(User)
+     */
+    @Override
+    public void delete(User user) throws DatabaseException {
+        if (Transaction.isActive()) {
+            flush();
+            delegate.delete(user);
+            return;
+        }
+        if (!enqueue(user.getId(), previous -> previous == null || !previous.isDelete(), new PendingWrite(null))) {
+            throw new DatabaseException("Delete not executed");
+        }
+    }
+
+    /**
+     * Deletes users at once, because the caller needs the amount of deleted users.
+     * Pending writes of these users are dropped
+     *
+     * @see UserDao#deleteAll(Collection)
+     */
+    @Override
+    public int deleteAll(Collection<Long> ids) throws DatabaseException {
+        if (Transaction.isActive()) {
+            flush();
+            return delegate.deleteAll(ids);
+        }
+        synchronized (flushLock) {
+            synchronized (pending) {
+                for (Long id : ids) {
+                    pending.remove(id);
+                }
+            }
+            return delegate.deleteAll(ids);
+        }
+    }
+
+    /**
+     * Returns a pending update of the user with the version, it will have, when it is written,
+     * if there is one, otherwise reads the user from the wrapped DAO
+     *
+     * @see UserDao#find(Long)
+     */
+    @Override
+    public User find(Long id) throws DatabaseException {
+        synchronized (pending) {
+            PendingWrite write = pending.get(id);
+            if (write != null) {
+                if (write.isDelete()) {
+                    return new User();
+                }
+                User user = new User(write.user);
+                user.setVersion(write.nextVersion());
+                return user;
+            }
+        }
+        return delegate.find(id);
+    }
+
+    @Override
+    public Collection<User> findAll() throws DatabaseException {
+        flush();
+        return delegate.findAll();
+    }
+
+    @Override
+    public Stream<User> streamAll(int fetchSize) throws DatabaseException {
+        flush();
+        return delegate.streamAll(fetchSize);
+    }
+
+    @Override
+    public List<User> findPage(Long afterId, int limit) throws DatabaseException {
+        flush();
+        return delegate.findPage(afterId, limit);
+    }
+
+    @Override
+    public List<User> findPageBefore(Long beforeId, int limit) throws DatabaseException {
+        flush();
+        return delegate.findPageBefore(beforeId, limit);
+    }
+
+    @Override
+    public List<UserSummary> findSummaries() throws DatabaseException {
+        flush();
+        return delegate.findSummaries();
+    }
+
+    @Override
+    public List<UserSummary> findSummaryPage(Long afterId, int limit) throws DatabaseException {
+        flush();
+        return delegate.findSummaryPage(afterId, limit);
+    }
+
+    @Override
+    public List<UserSummary> findSummaryPageBefore(Long beforeId, int limit) throws DatabaseException {
+        flush();
+        return delegate.findSummaryPageBefore(beforeId, limit);
+    }
+
+    @Override
+    public List<User> findByCriteria(UserCriteria criteria) throws DatabaseException {
+        flush();
+        return delegate.findByCriteria(criteria);
+    }
+
+    @Override
+    public List<User> findByDateOfBirth(Date from, Date to) throws DatabaseException {
+        flush();
+        return delegate.findByDateOfBirth(from, to);
+    }
+
+    @Override
+    public List<User> findByAge(int minAge, int maxAge) throws DatabaseException {
+        flush();
+        return delegate.findByAge(minAge, maxAge);
+    }
+
+    @Override
+    public List<User> findUpcomingBirthdays(int days) throws DatabaseException {
+        flush();
+        return delegate.findUpcomingBirthdays(days);
+    }
+
+    /**
+     * Queues an update, that is checked against the version, the user has in the wrapped DAO.
+     * If the user has a pending write, that version is the one of the pending write, or the next one,
+     * if the pending write is being flushed. The version of the given user is set to the next one on success
+     *
+     * @return false, if the user is deleted by a pending write or its version doesn't match
+     */
+    private boolean enqueueUpdate(User user) throws DatabaseException {
+        User write = new User(user);
+        return enqueue(user.getId(), previous -> {
+            if (previous != null) {
+                if (previous.isDelete()) {
+                    return false;
+                }
+                Long next = previous.nextVersion();
+                if (next != null) {
+                    if (user.getVersion() != null && !user.getVersion().equals(next)) {
+                        return false;
+                    }
+                    // combined with a write, that isn't sent yet, the update is checked against its version
+                    write.setVersion(previous.flushing ? next : previous.user.getVersion());
+                }
+            }
+            if (write.getVersion() != null && user.getVersion() != null) {
+                user.setVersion(write.getVersion() + 1);
+            }
+            return true;
+        }, new PendingWrite(write));
+    }
+
+    /**
+     * Replaces a pending write of the user, if the check accepts it
+     *
+     * @param check receives the pending write of the user or null, it is called with the queue locked
+     * @return false, if the check rejected the write
+     * @throws DatabaseException if the DAO is closed or the queue is full and could not be flushed
+     */
+    private boolean enqueue(Long id, PendingCheck check, PendingWrite write) throws DatabaseException {
+        if (closed) {
+            throw new DatabaseException("Write-behind DAO is closed");
+        }
+        boolean full;
+        synchronized (pending) {
+            PendingWrite previous = pending.get(id);
+            if (!check.accepts(previous)) {
+                return false;
+            }
+            if (pending.remove(id) != null && !previous.flushing) {
+                coalesced.incrementAndGet();
+            }
+            // re-inserted, so writes are flushed in the order of their last change
+            pending.put(id, write);
+            full = pending.size() >= maxPending;
+        }
+        if (full) {
+            flush();
+        }
+        return true;
+    }
+
+    /**
+     * Writes all pending updates and deletes to the wrapped DAO. A write stays pending,
+     * until the wrapped DAO accepts it, so reads keep seeing it while it is written.
+     * Users, that were changed again during the flush, stay pending with their new values.
+     * Inside a unit of work the flush is done by the background thread, so it isn't a part of the work
+     *
+     * @throws DatabaseException if has any problems with db, unwritten users stay pending in that case
+     */
+    public void flush() throws DatabaseException {
+        if (Transaction.isActive() && !closed) {
+            flushInBackground();
+            return;
+        }
+        synchronized (flushLock) {
+            List<Map.Entry<Long, PendingWrite>> snapshot;
+            synchronized (pending) {
+                if (pending.isEmpty()) {
+                    return;
+                }
+                snapshot = new ArrayList<>(pending.size());
+                for (Map.Entry<Long, PendingWrite> entry : pending.entrySet()) {
+                    entry.getValue().flushing = true;
+                    snapshot.add(new AbstractMap.SimpleImmutableEntry<>(entry));
+                }
+            }
+            flushes.incrementAndGet();
+            try {
+                for (int from = 0; from < snapshot.size(); from += batchSize) {
+                    writeBatch(snapshot.subList(from, Math.min(from + batchSize, snapshot.size())));
+                }
+            } finally {
+                synchronized (pending) {
+                    // writes, that failed, are sent again by the next flush
+                    for (Map.Entry<Long, PendingWrite> entry : snapshot) {
+                        entry.getValue().flushing = false;
+                    }
+                }
+            }
+        }
+    }
+
+    private void writeBatch(List<Map.Entry<Long, PendingWrite>> batch) throws DatabaseException {
+        List<User> updates = new ArrayList<>();
+        List<Long> deletes = new ArrayList<>();
+        for (Map.Entry<Long, PendingWrite> entry : batch) {
+            if (entry.getValue().isDelete()) {
+                deletes.add(entry.getKey());
+            } else {
+                // a copy, because the wrapped DAO increments versions of written users
+                updates.add(new User(entry.getValue().user));
+            }
+        }
+        if (!deletes.isEmpty()) {
+            delegate.deleteAll(deletes);
+        }
+        if (!updates.isEmpty()) {
+            int updated = delegate.updateAll(updates);
+            if (updated < updates.size()) {
+                rejected.addAndGet(updates.size() - updated);
+                LOGGER.warning((updates.size() - updated) + " of " + updates.size()
+                        + " pending updates were rejected, the users were deleted or changed by someone else. " + this);
+            }
+        }
+        synchronized (pending) {
+            for (Map.Entry<Long, PendingWrite> entry : batch) {
+                // identity check: a newer write of the same user must not be lost
+                if (pending.get(entry.getKey()) == entry.getValue()) {
+                    pending.remove(entry.getKey());
+                }
+            }
+        }
+        written.addAndGet(batch.size());
+    }
+
+    private void flushInBackground() throws DatabaseException {
+        try {
+            flusher.submit(() -> {
+                flush();
+                return null;
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new DatabaseException("Interrupted while pending writes were flushed");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof DatabaseException) {
+                throw (DatabaseException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        } catch (RejectedExecutionException e) {
+            throw new DatabaseException("Write-behind DAO is closed");
+        }
+    }
+
+    private void backgroundFlush() {
+        try {
+            flush();
+        } catch (DatabaseException | RuntimeException e) {
+            failedFlushes.incrementAndGet();
+            LOGGER.log(Level.WARNING, "Pending writes could not be flushed, retrying in " + flushInterval + " ms. " + this, e);
+        }
+    }
+
+    /**
+     * Stops the background flusher and writes all pending changes. Further writes are rejected
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (flusher != null) {
+            flusher.shutdown();
+            try {
+                flusher.awaitTermination(flushInterval, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                Runtime.getRuntime().removeShutdownHook(shutdownHook);
+            } catch (IllegalStateException e) {
+                // the JVM is already shutting down, this is the hook
+            }
+        }
+        try {
+            flush();
+        } catch (DatabaseException | RuntimeException e) {
+            LOGGER.log(Level.SEVERE, "Pending writes are lost on close. " + this, e);
+        }
+        super.close();
+    }
+
+    /**
+     * @return amount of users, whose writes are not written to the wrapped DAO yet
+     */
+    public int getPendingCount() {
+        synchronized (pending) {
+            return pending.size();
+        }
+    }
+
+    /**
+     * @return amount of writes, that replaced a pending write of the same user
+     */
+    public long getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    public long getWrittenCount() {
+        return written.get();
+    }
+
+    public long getFailedFlushCount() {
+        return failedFlushes.get();
+    }
+
+    /**
+     * @return amount of updates, that the wrapped DAO didn't apply, because the user was deleted or had another version
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    /**
+     * Decides, whether a write may replace the pending write of the same user
+     */
+    private interface PendingCheck {
+        boolean accepts(PendingWrite previous);
+    }
+
+    /**
+     * A pending update or delete of a user. An update keeps the version, that the user has in the wrapped DAO
+     */
+    private static class PendingWrite {
+        private final User user;
+        // set, while the write is sent to the wrapped DAO, guarded by the pending map
+        private boolean flushing;
+
+        /**
+         * @param user values of the user, null for a delete
+         */
+        PendingWrite(User user) {
+            this.user = user;
+        }
+
+        boolean isDelete() {
+            return user == null;
+        }
+
+        /**
+         * @return version, that the user will have, when the write is done, null for an update without a version
+         */
+        Long nextVersion() {
+            return user.getVersion() != null ? user.getVersion() + 1 : null;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "WriteBehindUserDao{" +
+                "pending=" + getPendingCount() +
+                ", maxPending=" + maxPending +
+                ", coalesced=" + coalesced +
+                ", written=" + written +
+                ", flushes=" + flushes +
+                ", failedFlushes=" + failedFlushes +
+                ", rejected=" + rejected +
+                '}';
+    }
+}
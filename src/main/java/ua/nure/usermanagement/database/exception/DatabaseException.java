@@ -14,4 +14,8 @@ public class DatabaseException extends Exception {
     public DatabaseException(String s) {
         super(s);
     }
+
+    public DatabaseException(String s, Throwable cause) {
+        super(s, cause);
+    }
 }
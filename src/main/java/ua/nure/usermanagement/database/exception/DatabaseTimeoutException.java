@@ -0,0 +1,15 @@
+package ua.nure.usermanagement.database.exception;
+
+/**
+ * Thrown, when a call of a DAO didn't complete in time: a statement ran past its query timeout
+ * or no connection became free before the deadline
+ */
+public class DatabaseTimeoutException extends DatabaseException {
+    public DatabaseTimeoutException(String s) {
+        super(s);
+    }
+
+    public DatabaseTimeoutException(String s, Throwable cause) {
+        super(s, cause);
+    }
+}
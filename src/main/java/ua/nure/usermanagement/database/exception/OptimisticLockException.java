@@ -0,0 +1,20 @@
+package ua.nure.usermanagement.database.exception;
+
+/**
+ * Thrown, when a user can't be updated, because it was changed or deleted by someone else after it was read
+ */
+public class OptimisticLockException extends DatabaseException {
+    private final Long id;
+
+    public OptimisticLockException(Long id) {
+        super("User " + id + " was changed or deleted by someone else");
+        this.id = id;
+    }
+
+    /**
+     * @return id of the user, that wasn't updated
+     */
+    public Long getId() {
+        return id;
+    }
+}
@@ -0,0 +1,16 @@
+package ua.nure.usermanagement.database.exception;
+
+/**
+ * Wraps a {@link DatabaseException}, that occurred where checked exceptions can't be thrown,
+ * e.g. while a stream of users is being consumed
+ */
+public class UncheckedDatabaseException extends RuntimeException {
+    public UncheckedDatabaseException(DatabaseException e) {
+        super(e);
+    }
+
+    @Override
+    public synchronized DatabaseException getCause() {
+        return (DatabaseException) super.getCause();
+    }
+}
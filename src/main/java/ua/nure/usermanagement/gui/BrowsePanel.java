@@ -1,6 +1,7 @@
 package ua.nure.usermanagement.gui;
 
 import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.UserSummary;
 import ua.nure.usermanagement.database.exception.DatabaseException;
 import ua.nure.usermanagement.util.TextManager;
 
@@ -9,6 +10,7 @@ import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.util.ArrayList;
+import java.util.List;
 
 
 /**
@@ -16,11 +18,20 @@ import java.util.ArrayList;
  */
 public class BrowsePanel extends JPanel implements ActionListener {
 
+    /**
+     * Maximum amount of users, shown as a result of a search
+     */
+    private static final int SEARCH_LIMIT = 100;
+
     private MainFrame parentFrame;
     private JButton addButton;
     private JButton editButton;
     private JButton deleteButton;
     private JButton detailsButton;
+    private JButton statisticsButton;
+    private JPanel searchPanel;
+    private JTextField searchField;
+    private JButton searchButton;
     private JPanel buttonsPanel;
     private JScrollPane tablePanel;
     private JTable userTable;
@@ -37,6 +48,7 @@ public class BrowsePanel extends JPanel implements ActionListener {
     private void initialize() {
         this.setName("browsePanel");
         this.setLayout(new BorderLayout());
+        this.add(getSearchPanel(), BorderLayout.NORTH);
         this.add(getTablePanel(), BorderLayout.CENTER);
         this.add(getButtonsPanel(), BorderLayout.SOUTH);
     }
@@ -48,6 +60,36 @@ public class BrowsePanel extends JPanel implements ActionListener {
         return tablePanel;
     }
 
+    private JPanel getSearchPanel() {
+        if (searchPanel == null) {
+            searchPanel = new JPanel(new BorderLayout());
+            searchPanel.add(getSearchField(), BorderLayout.CENTER);
+            searchPanel.add(getSearchButton(), BorderLayout.EAST);
+        }
+        return searchPanel;
+    }
+
+    private JTextField getSearchField() {
+        if (searchField == null) {
+            searchField = new JTextField();
+            searchField.setName("searchField");
+            searchField.setActionCommand("search");
+            searchField.addActionListener(this);
+        }
+        return searchField;
+    }
+
+    private JButton getSearchButton() {
+        if (searchButton == null) {
+            searchButton = new JButton();
+            searchButton.setText(TextManager.getString("browsePanel.search"));
+            searchButton.setName("searchButton");
+            searchButton.setActionCommand("search");
+            searchButton.addActionListener(this);
+        }
+        return searchButton;
+    }
+
     private JPanel getButtonsPanel() {
         if (buttonsPanel == null) {
             buttonsPanel = new JPanel();
@@ -55,6 +97,7 @@ public class BrowsePanel extends JPanel implements ActionListener {
             buttonsPanel.add(getEditButton());
             buttonsPanel.add(getDeleteButton());
             buttonsPanel.add(getDetailsButton());
+            buttonsPanel.add(getStatisticsButton());
         }
         return buttonsPanel;
     }
@@ -103,23 +146,78 @@ public class BrowsePanel extends JPanel implements ActionListener {
         return detailsButton;
     }
 
+    private JButton getStatisticsButton() {
+        if (statisticsButton == null) {
+            statisticsButton = new JButton();
+            statisticsButton.setText(TextManager.getString("browsePanel.statistics"));
+            statisticsButton.setName("statisticsButton");
+            statisticsButton.setActionCommand("statistics");
+            statisticsButton.addActionListener(this);
+        }
+        return statisticsButton;
+    }
+
     private JTable getUserTable() {
         if (userTable == null) {
             userTable = new JTable();
             userTable.setName("userTable");
+            userTable.setSelectionMode(ListSelectionModel.MULTIPLE_INTERVAL_SELECTION);
         }
         return userTable;
     }
 
     void initTable() {
         try {
-            userTable.setModel(new UserTableModel(parentFrame.getUserDao().findAll()));
+            userTable.setModel(new UserTableModel(parentFrame.getUserDao().findSummaries()));
         } catch (DatabaseException e) {
-            userTable.setModel(new UserTableModel(new ArrayList<User>()));
+            userTable.setModel(new UserTableModel(new ArrayList<UserSummary>()));
             JOptionPane.showMessageDialog(this, e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
         }
     }
 
+    /**
+     * Shows users, whose names are similar to the text of the search field, the most similar first.
+     * Found users are read in one unit of work, so they share a connection.
+     * An empty search field shows all users
+     */
+    private void search() {
+        String query = searchField.getText().trim();
+        if (query.isEmpty()) {
+            initTable();
+            return;
+        }
+        try {
+            List<Long> ids = parentFrame.getNameSearchIndex().search(query, SEARCH_LIMIT);
+            List<UserSummary> users = parentFrame.executeInTransaction(userDao -> {
+                List<UserSummary> found = new ArrayList<>();
+                for (Long id : ids) {
+                    User user = userDao.find(id);
+                    if (user != null && user.getId() != null) {
+                        found.add(new UserSummary(user));
+                    }
+                }
+                return found;
+            });
+            userTable.setModel(new UserTableModel(users));
+        } catch (DatabaseException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+        }
+    }
+
+    /**
+     * Edit and details work with one user, so like the web interface they require exactly one selected row
+     * and show an error otherwise
+     *
+     * @return id of the only selected user, null if no user or several users are selected
+     */
+    private Long getSelectedId() {
+        if (userTable.getSelectedRowCount() != 1) {
+            JOptionPane.showMessageDialog(this, TextManager.getString("browsePanel.select.one"), "Error", JOptionPane.ERROR_MESSAGE);
+            return null;
+        }
+        return (Long) userTable.getValueAt(userTable.getSelectedRow(), 0);
+    }
+
     /**
      * Implements functionality of buttons inside BrowsePanel
      *
@@ -128,26 +226,37 @@ public class BrowsePanel extends JPanel implements ActionListener {
     @Override
     public void actionPerformed(ActionEvent e) {
         String actionCommand = e.getActionCommand();
+        if ("search".equalsIgnoreCase(actionCommand)) {
+            search();
+        }
+        if ("statistics".equalsIgnoreCase(actionCommand)) {
+            this.setVisible(false);
+            parentFrame.showStatisticsPanel();
+        }
         if ("add".equalsIgnoreCase(actionCommand)) {
             this.setVisible(false);
             parentFrame.showAddPanel();
         }
         if ("edit".equalsIgnoreCase(actionCommand)) {
-            if (userTable.getSelectedRow() != -1) {
-                Long selectedUserId = (Long) userTable.getValueAt(userTable.getSelectedRow(), 0);
+            Long selectedUserId = getSelectedId();
+            if (selectedUserId != null) {
                 this.setVisible(false);
                 parentFrame.showEditPanel(selectedUserId);
             }
         }
         if ("delete".equalsIgnoreCase(actionCommand)) {
             if (userTable.getSelectedRow() != -1) {
+                List<Long> selectedUserIds = new ArrayList<>();
+                for (int row : userTable.getSelectedRows()) {
+                    selectedUserIds.add((Long) userTable.getValueAt(row, 0));
+                }
                 this.setVisible(false);
-                parentFrame.showDeletePanel(((Long) userTable.getValueAt(userTable.getSelectedRow(), 0)));
+                parentFrame.showDeletePanel(selectedUserIds);
             }
         }
         if ("details".equalsIgnoreCase(actionCommand)) {
-            if (userTable.getSelectedRow() != -1) {
-                Long selectedUserId = (Long) userTable.getValueAt(userTable.getSelectedRow(), 0);
+            Long selectedUserId = getSelectedId();
+            if (selectedUserId != null) {
                 this.setVisible(false);
                 parentFrame.showDetailsPanel(selectedUserId);
             }
@@ -7,12 +7,14 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
+import java.text.MessageFormat;
+import java.util.List;
 
 /**
- * A panel. used for deleting a user from database
+ * A panel. used for deleting one or several selected users from database
  */
 public class DeletePanel extends JPanel implements ActionListener {
-    private Long bufferedId;
+    private List<Long> bufferedIds;
     private MainFrame parentFrame;
     private JButton okButton;
     private JButton cancelButton;
@@ -61,7 +63,7 @@ public class DeletePanel extends JPanel implements ActionListener {
         String actionCommand = e.getActionCommand();
         if ("ok".equalsIgnoreCase(actionCommand)) {
             try {
-                parentFrame.getUserDao().delete(parentFrame.getUserDao().find(bufferedId));
+                parentFrame.getUserDao().deleteAll(bufferedIds);
             } catch (DatabaseException e1) {
                 JOptionPane.showMessageDialog(this, e1.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             }
@@ -71,12 +73,17 @@ public class DeletePanel extends JPanel implements ActionListener {
     }
 
     /**
-     * sets the id of user, that is going to be deleted
+     * sets the ids of users, that are going to be deleted
      *
-     * @param id id of existing user
+     * @param ids ids of existing users
      */
-    public void setBufferedId(Long id) {
-        this.bufferedId = id;
+    public void setBufferedIds(List<Long> ids) {
+        this.bufferedIds = ids;
+        if (ids.size() > 1) {
+            getWarningLabel().setText(MessageFormat.format(TextManager.getString("deletePanel.warning.many"), ids.size()));
+        } else {
+            getWarningLabel().setText(TextManager.getString("deletePanel.warning"));
+        }
     }
 
     public JLabel getWarningLabel() {
@@ -2,6 +2,7 @@ package ua.nure.usermanagement.gui;
 
 import ua.nure.usermanagement.User;
 import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.OptimisticLockException;
 import ua.nure.usermanagement.util.TextManager;
 
 import javax.swing.*;
@@ -21,6 +22,7 @@ public class EditPanel extends JPanel implements ActionListener {
     private JTextField lastNameField;
     private JTextField dateOfBirthField;
     private Long bufferedId;
+    private Long bufferedVersion;
 
     EditPanel(MainFrame mainFrame) {
         this.parentFrame = mainFrame;
@@ -94,10 +96,16 @@ public class EditPanel extends JPanel implements ActionListener {
                 User user = new User(bufferedId, getFirstNameField().getText(),
                         getLastNameField().getText(),
                         DateFormat.getDateInstance().parse(getDateOfBirthField().getText()));
+                user.setVersion(bufferedVersion);
                 parentFrame.getUserDao().update(user);
             } catch (ParseException e1) {
                 getDateOfBirthField().setBackground(Color.RED);
                 return;
+            } catch (OptimisticLockException e1) {
+                // the panel stays open with the current data of the user, so the changes can be made again
+                JOptionPane.showMessageDialog(this, TextManager.getString("editPanel.conflict"), "Error", JOptionPane.WARNING_MESSAGE);
+                showUser(bufferedId);
+                return;
             } catch (DatabaseException e1) {
                 JOptionPane.showMessageDialog(this, e1.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
             }
@@ -142,7 +150,8 @@ public class EditPanel extends JPanel implements ActionListener {
     }
 
     /**
-     * Sets up user data for viewing
+     * Sets up user data for viewing. The version of the user is kept, so the update fails,
+     * if somebody changes the user in the meantime
      *
      * @param id An id of viewed user
      */
@@ -150,6 +159,10 @@ public class EditPanel extends JPanel implements ActionListener {
         try {
             bufferedId = id;
             User user = parentFrame.getUserDao().find(id);
+            if (user.getId() == null) {
+                throw new DatabaseException("User " + id + " not found");
+            }
+            bufferedVersion = user.getVersion();
             getFirstNameField().setText(user.getFirstName());
             getLastNameField().setText(user.getLastName());
             getDateOfBirthField().setText(DateFormat.getDateInstance().format(user.getDateOfBirth()));
@@ -1,11 +1,17 @@
 package ua.nure.usermanagement.gui;
 
+import ua.nure.usermanagement.database.DaoFactory;
 import ua.nure.usermanagement.database.DaoFactoryImpl;
+import ua.nure.usermanagement.database.UnitOfWork;
 import ua.nure.usermanagement.database.UserDao;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.search.NameSearchIndex;
+import ua.nure.usermanagement.statistics.UserStatistics;
 import ua.nure.usermanagement.util.TextManager;
 
 import javax.swing.*;
 import java.awt.*;
+import java.util.List;
 
 /**
  * A main window of the user management application
@@ -21,6 +27,7 @@ public class MainFrame extends JFrame {
 
     private UserDao userDao;
     private JPanel deletePanel;
+    private JPanel statisticsPanel;
 
     public MainFrame() {
         super();
@@ -127,18 +134,60 @@ public class MainFrame extends JFrame {
         return userDao;
     }
 
+    /**
+     * Runs several calls of the DAO on one connection and in one transaction
+     *
+     * @see DaoFactory#executeInTransaction(UnitOfWork)
+     */
+    public <T> T executeInTransaction(UnitOfWork<T> work) throws DatabaseException {
+        return DaoFactory.getInstance().executeInTransaction(work);
+    }
+
+    /**
+     * @return a name search index over the users of the DAO, it is built on the first call
+     * @throws DatabaseException if the users could not be read
+     */
+    public NameSearchIndex getNameSearchIndex() throws DatabaseException {
+        return DaoFactory.getInstance().getNameSearchIndex();
+    }
+
+    /**
+     * @return running statistics of the users of the DAO, they are counted on the first call
+     * @throws DatabaseException if the users could not be read
+     */
+    public UserStatistics getUserStatistics() throws DatabaseException {
+        return DaoFactory.getInstance().getUserStatistics();
+    }
+
+    /**
+     * Sets up statisticsPanel for view
+     */
+    public void showStatisticsPanel() {
+        showPanel(getStatisticsPanel());
+    }
+
+    private JPanel getStatisticsPanel() {
+        if (statisticsPanel == null) {
+            statisticsPanel = new StatisticsPanel(this);
+        }
+        ((StatisticsPanel) statisticsPanel).showStatistics();
+        return statisticsPanel;
+    }
+
     /**
      * Sets up deletePanel for view
+     *
+     * @param ids ids of users, selected for deletion
      */
-    public void showDeletePanel(Long id) {
-        showPanel(getDeletePanel(id));
+    public void showDeletePanel(List<Long> ids) {
+        showPanel(getDeletePanel(ids));
     }
 
-    private JPanel getDeletePanel(Long id) {
+    private JPanel getDeletePanel(List<Long> ids) {
         if (deletePanel == null) {
             deletePanel = new DeletePanel(this);
         }
-        ((DeletePanel) deletePanel).setBufferedId(id);
+        ((DeletePanel) deletePanel).setBufferedIds(ids);
         return deletePanel;
     }
 }
@@ -0,0 +1,127 @@
+package ua.nure.usermanagement.gui;
+
+import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.statistics.UserStatistics;
+import ua.nure.usermanagement.util.TextManager;
+
+import javax.swing.*;
+import javax.swing.table.DefaultTableModel;
+import java.awt.*;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.text.MessageFormat;
+import java.util.Map;
+
+/**
+ * A panel, that shows total amount of users and their distribution by age
+ */
+public class StatisticsPanel extends JPanel implements ActionListener {
+
+    /**
+     * Amount of years in one row of the age table
+     */
+    private static final int AGE_BUCKET_SIZE = 10;
+
+    private MainFrame parentFrame;
+    private JLabel totalLabel;
+    private JScrollPane tablePanel;
+    private JTable ageTable;
+    private JPanel buttonsPanel;
+    private JButton backButton;
+
+    public StatisticsPanel(MainFrame mainFrame) {
+        this.parentFrame = mainFrame;
+        initialize();
+    }
+
+    /**
+     * Initializes interface of StatisticsPanel object
+     */
+    private void initialize() {
+        this.setName("statisticsPanel");
+        this.setLayout(new BorderLayout());
+        this.add(getTotalLabel(), BorderLayout.NORTH);
+        this.add(getTablePanel(), BorderLayout.CENTER);
+        this.add(getButtonsPanel(), BorderLayout.SOUTH);
+    }
+
+    private JLabel getTotalLabel() {
+        if (totalLabel == null) {
+            totalLabel = new JLabel();
+            totalLabel.setName("totalLabel");
+        }
+        return totalLabel;
+    }
+
+    private JScrollPane getTablePanel() {
+        if (tablePanel == null) {
+            tablePanel = new JScrollPane(getAgeTable());
+        }
+        return tablePanel;
+    }
+
+    private JTable getAgeTable() {
+        if (ageTable == null) {
+            ageTable = new JTable();
+            ageTable.setName("ageTable");
+        }
+        return ageTable;
+    }
+
+    private JPanel getButtonsPanel() {
+        if (buttonsPanel == null) {
+            buttonsPanel = new JPanel();
+            buttonsPanel.add(getBackButton());
+        }
+        return buttonsPanel;
+    }
+
+    private JButton getBackButton() {
+        if (backButton == null) {
+            backButton = new JButton();
+            backButton.setText(TextManager.getString("detailsPanel.back"));
+            backButton.setName("backButton");
+            backButton.setActionCommand("back");
+            backButton.addActionListener(this);
+        }
+        return backButton;
+    }
+
+    /**
+     * Implements functionality of buttons inside StatisticsPanel
+     *
+     * @see java.awt.event.ActionListener#actionPerformed(ActionEvent)
+     */
+    @Override
+    public void actionPerformed(ActionEvent e) {
+        if ("back".equalsIgnoreCase(e.getActionCommand())) {
+            setVisible(false);
+            parentFrame.showBrowsePanel();
+        }
+    }
+
+    /**
+     * Shows current statistics. They are kept in memory, so the database isn't read
+     */
+    public void showStatistics() {
+        try {
+            UserStatistics statistics = parentFrame.getUserStatistics();
+            getTotalLabel().setText(MessageFormat.format(TextManager.getString("statisticsPanel.total"), statistics.getTotal()));
+            DefaultTableModel model = new DefaultTableModel(new Object[]{TextManager.getString("statisticsPanel.age"),
+                    TextManager.getString("statisticsPanel.users")}, 0) {
+                @Override
+                public boolean isCellEditable(int row, int column) {
+                    return false;
+                }
+            };
+            for (Map.Entry<Integer, Integer> bar : statistics.getAgeHistogram(AGE_BUCKET_SIZE).entrySet()) {
+                model.addRow(new Object[]{bar.getKey() + "-" + (bar.getKey() + AGE_BUCKET_SIZE - 1), bar.getValue()});
+            }
+            getAgeTable().setModel(model);
+        } catch (DatabaseException e) {
+            JOptionPane.showMessageDialog(this, e.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+            this.setVisible(false);
+            parentFrame.showBrowsePanel();
+        }
+    }
+}
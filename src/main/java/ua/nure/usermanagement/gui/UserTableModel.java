@@ -1,6 +1,6 @@
 package ua.nure.usermanagement.gui;
 
-import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.UserSummary;
 import ua.nure.usermanagement.util.TextManager;
 
 import javax.swing.table.AbstractTableModel;
@@ -8,7 +8,8 @@ import java.util.ArrayList;
 import java.util.Collection;
 
 /**
- * An implementation of AbstractTableModel for the user management database
+ * An implementation of AbstractTableModel for the user management database.
+ * Rows are {@link UserSummary} objects, because the table shows only ids and names
  * @see javax.swing.table.AbstractTableModel
  */
 public class UserTableModel extends AbstractTableModel {
@@ -16,7 +17,7 @@ public class UserTableModel extends AbstractTableModel {
             TextManager.getString("userTableModel.first.name"),
             TextManager.getString("userTableModel.last.name")};
     private static final Class[] COLUMN_CLASSES = {Long.class, String.class, String.class};
-    private ArrayList<User> users;
+    private ArrayList<UserSummary> users;
 
     @Override
     public int getRowCount() {
@@ -36,13 +37,13 @@ public class UserTableModel extends AbstractTableModel {
         return COLUMN_CLASSES[columnIndex];
     }
 
-    public UserTableModel(Collection<User> users) {
+    public UserTableModel(Collection<UserSummary> users) {
         this.users = new ArrayList<>(users);
     }
 
     @Override
     public Object getValueAt(int rowIndex, int columnIndex) {
-        User user = users.get(rowIndex);
+        UserSummary user = users.get(rowIndex);
         switch (columnIndex) {
             case 0:
                 return user.getId();
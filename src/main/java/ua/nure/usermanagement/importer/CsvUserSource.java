@@ -0,0 +1,125 @@
+package ua.nure.usermanagement.importer;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads users from CSV, one user per line. The first line is a header with the same column names,
+ * as in usersDataSet.xml (id, firstname, lastname, dateofbirth), in any order; the id column is optional
+ * and ignored. Values may be quoted with double quotes, a quote inside a quoted value is doubled.
+ */
+public class CsvUserSource implements UserSource {
+    private static final char SEPARATOR = ',';
+    private static final char QUOTE = '"';
+
+    private final BufferedReader reader;
+    private int firstNameColumn = -1;
+    private int lastNameColumn = -1;
+    private int dateOfBirthColumn = -1;
+    private long rowNumber;
+
+    public CsvUserSource(Reader reader) throws ImportException {
+        this.reader = new BufferedReader(reader);
+        readHeader();
+    }
+
+    private void readHeader() throws ImportException {
+        List<String> header = readLine();
+        if (header == null) {
+            throw new ImportException("CSV has no header");
+        }
+        for (int i = 0; i < header.size(); i++) {
+            String name = header.get(i).trim().toLowerCase();
+            if ("firstname".equals(name)) {
+                firstNameColumn = i;
+            } else if ("lastname".equals(name)) {
+                lastNameColumn = i;
+            } else if ("dateofbirth".equals(name)) {
+                dateOfBirthColumn = i;
+            }
+        }
+        if (firstNameColumn < 0 || lastNameColumn < 0 || dateOfBirthColumn < 0) {
+            throw new ImportException("CSV header must contain firstname, lastname and dateofbirth columns: " + header);
+        }
+    }
+
+    @Override
+    public RawUser next() throws ImportException {
+        List<String> values;
+        do {
+            values = readLine();
+            if (values == null) {
+                return null;
+            }
+        } while (values.size() == 1 && values.get(0).isEmpty());
+        rowNumber++;
+        return new RawUser(rowNumber, get(values, firstNameColumn), get(values, lastNameColumn),
+                get(values, dateOfBirthColumn));
+    }
+
+    private static String get(List<String> values, int column) {
+        return column < values.size() ? values.get(column) : null;
+    }
+
+    /**
+     * Reads one record, which may span several lines, if a quoted value contains line breaks
+     *
+     * @return values of the record or null at the end of input
+     */
+    private List<String> readLine() throws ImportException {
+        try {
+            String line = reader.readLine();
+            if (line == null) {
+                return null;
+            }
+            List<String> values = new ArrayList<>();
+            StringBuilder value = new StringBuilder();
+            boolean quoted = false;
+            int i = 0;
+            while (true) {
+                if (i == line.length()) {
+                    if (!quoted) {
+                        break;
+                    }
+                    line = reader.readLine();
+                    if (line == null) {
+                        throw new ImportException("Unterminated quoted value in row " + (rowNumber + 1));
+                    }
+                    value.append('\n');
+                    i = 0;
+                    continue;
+                }
+                char c = line.charAt(i++);
+                if (quoted) {
+                    if (c == QUOTE && i < line.length() && line.charAt(i) == QUOTE) {
+                        value.append(QUOTE);
+                        i++;
+                    } else if (c == QUOTE) {
+                        quoted = false;
+                    } else {
+                        value.append(c);
+                    }
+                } else if (c == QUOTE) {
+                    quoted = true;
+                } else if (c == SEPARATOR) {
+                    values.add(value.toString());
+                    value.setLength(0);
+                } else {
+                    value.append(c);
+                }
+            }
+            values.add(value.toString());
+            return values;
+        } catch (IOException e) {
+            throw new ImportException("Could not read CSV", e);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
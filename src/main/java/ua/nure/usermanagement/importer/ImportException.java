@@ -0,0 +1,14 @@
+package ua.nure.usermanagement.importer;
+
+/**
+ * Signals, that a source of users could not be read
+ */
+public class ImportException extends Exception {
+    public ImportException(String s) {
+        super(s);
+    }
+
+    public ImportException(String s, Throwable cause) {
+        super(s, cause);
+    }
+}
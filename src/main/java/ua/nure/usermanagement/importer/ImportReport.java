@@ -0,0 +1,74 @@
+package ua.nure.usermanagement.importer;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Results of one run of {@link UserImporter}
+ */
+public class ImportReport {
+    private final long read;
+    private final long imported;
+    private final long rejected;
+    private final List<String> rejections;
+    private final long elapsedNanos;
+
+    public ImportReport(long read, long imported, long rejected, List<String> rejections, long elapsedNanos) {
+        this.read = read;
+        this.imported = imported;
+        this.rejected = rejected;
+        this.rejections = Collections.unmodifiableList(new ArrayList<>(rejections));
+        this.elapsedNanos = elapsedNanos;
+    }
+
+    /**
+     * @return amount of rows, read from the source
+     */
+    public long getRead() {
+        return read;
+    }
+
+    /**
+     * @return amount of users, inserted into db
+     */
+    public long getImported() {
+        return imported;
+    }
+
+    /**
+     * @return amount of rows, that failed validation
+     */
+    public long getRejected() {
+        return rejected;
+    }
+
+    /**
+     * @return reasons of the first rejections, one message per rejected row
+     */
+    public List<String> getRejections() {
+        return rejections;
+    }
+
+    public long getElapsedMillis() {
+        return elapsedNanos / 1000000;
+    }
+
+    /**
+     * @return amount of rows, read from the source, per second of the whole import
+     */
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : read * 1e9 / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ImportReport{" +
+                "read=" + read +
+                ", imported=" + imported +
+                ", rejected=" + rejected +
+                ", elapsedMillis=" + getElapsedMillis() +
+                ", rowsPerSecond=" + Math.round(getRowsPerSecond()) +
+                '}';
+    }
+}
@@ -0,0 +1,37 @@
+package ua.nure.usermanagement.importer;
+
+/**
+ * Unvalidated values of one user, as they were read from a source
+ */
+public class RawUser {
+    private final long rowNumber;
+    private final String firstName;
+    private final String lastName;
+    private final String dateOfBirth;
+
+    public RawUser(long rowNumber, String firstName, String lastName, String dateOfBirth) {
+        this.rowNumber = rowNumber;
+        this.firstName = firstName;
+        this.lastName = lastName;
+        this.dateOfBirth = dateOfBirth;
+    }
+
+    /**
+     * @return number of the row in the source, starting with 1
+     */
+    public long getRowNumber() {
+        return rowNumber;
+    }
+
+    public String getFirstName() {
+        return firstName;
+    }
+
+    public String getLastName() {
+        return lastName;
+    }
+
+    public String getDateOfBirth() {
+        return dateOfBirth;
+    }
+}
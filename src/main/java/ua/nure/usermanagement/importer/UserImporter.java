@@ -0,0 +1,226 @@
+package ua.nure.usermanagement.importer;
+
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.database.DaoFactory;
+import ua.nure.usermanagement.database.UserDao;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Loads users from a {@link UserSource} into db. Import runs as three pipelined stages:
+ * parsing, validation and batch insertion. Stages are connected by bounded queues, so parsing
+ * overlaps writing to db, and a fast stage blocks instead of buffering, when the next one falls behind.
+ * Memory usage is bounded by queue capacity and chunk size, whatever the size of the source.
+ */
+public class UserImporter {
+    private static final int MAX_REPORTED_REJECTIONS = 100;
+    private static final Object END = new Object();
+
+    private final UserDao userDao;
+    private final int chunkSize;
+    private final int queueCapacity;
+
+    /**
+     * @param userDao       a DAO, that inserts imported users
+     * @param chunkSize     amount of users, inserted by one {@link UserDao#createAll} call
+     * @param queueCapacity capacity of each queue between stages
+     */
+    public UserImporter(UserDao userDao, int chunkSize, int queueCapacity) {
+        this.userDao = userDao;
+        this.chunkSize = chunkSize;
+        this.queueCapacity = queueCapacity;
+    }
+
+    /**
+     * Imports all users of the source. Source is read on a parser thread, validated on a validator thread
+     * and written to db on the calling thread. The source is not closed by this method.
+     *
+     * @return counters of the import
+     * @throws ImportException   if the source could not be read, users, that were written before, stay in db
+     * @throws DatabaseException if a chunk could not be inserted, users, that were written before, stay in db
+     */
+    public ImportReport importFrom(UserSource source) throws ImportException, DatabaseException {
+        long start = System.nanoTime();
+        BlockingQueue<Object> parsed = new ArrayBlockingQueue<>(queueCapacity);
+        BlockingQueue<Object> validated = new ArrayBlockingQueue<>(queueCapacity);
+        AtomicLong read = new AtomicLong();
+        AtomicLong rejected = new AtomicLong();
+        List<String> rejections = new ArrayList<>();
+
+        ExecutorService stages = Executors.newFixedThreadPool(2, runnable -> {
+            Thread thread = new Thread(runnable, "user-import-stage");
+            thread.setDaemon(true);
+            return thread;
+        });
+        try {
+            Future<?> parser = stages.submit(() -> {
+                boolean completed = false;
+                try {
+                    RawUser rawUser;
+                    while ((rawUser = source.next()) != null) {
+                        read.incrementAndGet();
+                        parsed.put(rawUser);
+                    }
+                    completed = true;
+                } finally {
+                    signalEnd(parsed, completed);
+                }
+                return null;
+            });
+            Future<?> validator = stages.submit(() -> {
+                boolean completed = false;
+                try {
+                    Object item;
+                    while ((item = parsed.take()) != END) {
+                        RawUser rawUser = (RawUser) item;
+                        try {
+                            validated.put(validate(rawUser));
+                        } catch (IllegalArgumentException e) {
+                            rejected.incrementAndGet();
+                            synchronized (rejections) {
+                                if (rejections.size() < MAX_REPORTED_REJECTIONS) {
+                                    rejections.add("Row " + rawUser.getRowNumber() + ": " + e.getMessage());
+                                }
+                            }
+                        }
+                    }
+                    completed = true;
+                } finally {
+                    signalEnd(validated, completed);
+                }
+                return null;
+            });
+
+            long imported = write(validated);
+            await(parser);
+            await(validator);
+            return new ImportReport(read.get(), imported, rejected.get(), rejections, System.nanoTime() - start);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ImportException("Import was interrupted", e);
+        } finally {
+            stages.shutdownNow();
+        }
+    }
+
+    /**
+     * Tells the next stage, that there are no more items. A stage, that has failed or was stopped, because
+     * another stage has failed, drops queued items instead of waiting for a full queue, that nobody may drain
+     */
+    private static void signalEnd(BlockingQueue<Object> queue, boolean completed) throws InterruptedException {
+        if (completed) {
+            queue.put(END);
+        } else {
+            queue.clear();
+            queue.offer(END);
+        }
+    }
+
+    /**
+     * The last stage, inserts validated users by chunks until the validator signals the end
+     *
+     * @return amount of inserted users
+     */
+    private long write(BlockingQueue<Object> validated) throws InterruptedException, DatabaseException {
+        long imported = 0;
+        List<User> chunk = new ArrayList<>(chunkSize);
+        Object item;
+        while ((item = validated.take()) != END) {
+            chunk.add((User) item);
+            if (chunk.size() == chunkSize) {
+                imported += userDao.createAll(chunk, chunkSize).size();
+                chunk.clear();
+            }
+        }
+        if (!chunk.isEmpty()) {
+            imported += userDao.createAll(chunk, chunkSize).size();
+        }
+        return imported;
+    }
+
+    private static void await(Future<?> stage) throws ImportException, InterruptedException {
+        try {
+            stage.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof ImportException) {
+                throw (ImportException) e.getCause();
+            }
+            throw new ImportException("Import stage failed", e.getCause());
+        }
+    }
+
+    /**
+     * Converts raw values into a user, that is ready to be inserted
+     *
+     * @throws IllegalArgumentException if any value is missing or malformed
+     */
+    static User validate(RawUser rawUser) {
+        String firstName = rawUser.getFirstName() != null ? rawUser.getFirstName().trim() : "";
+        String lastName = rawUser.getLastName() != null ? rawUser.getLastName().trim() : "";
+        if (firstName.isEmpty()) {
+            throw new IllegalArgumentException("first name is missing");
+        }
+        if (lastName.isEmpty()) {
+            throw new IllegalArgumentException("last name is missing");
+        }
+        if (rawUser.getDateOfBirth() == null) {
+            throw new IllegalArgumentException("date of birth is missing");
+        }
+        LocalDate dateOfBirth;
+        try {
+            dateOfBirth = LocalDate.parse(rawUser.getDateOfBirth().trim());
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("date of birth must be in yyyy-MM-dd format: " + rawUser.getDateOfBirth());
+        }
+        if (dateOfBirth.isAfter(LocalDate.now())) {
+            throw new IllegalArgumentException("date of birth is in the future: " + dateOfBirth);
+        }
+        return new User(firstName, lastName, Date.from(dateOfBirth.atStartOfDay(ZoneId.systemDefault()).toInstant()));
+    }
+
+    /**
+     * Imports a file into the db, configured in settings.properties.
+     * Usage: UserImporter &lt;file.xml|file.csv&gt; [chunkSize] [queueCapacity]
+     */
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1) {
+            System.err.println("Usage: UserImporter <file.xml|file.csv> [chunkSize] [queueCapacity]");
+            System.exit(1);
+        }
+        int chunkSize = args.length > 1 ? Integer.parseInt(args[1]) : 1000;
+        int queueCapacity = args.length > 2 ? Integer.parseInt(args[2]) : 10000;
+        UserImporter importer = new UserImporter(DaoFactory.getInstance().getUserDao(), chunkSize, queueCapacity);
+        try (UserSource source = open(args[0])) {
+            ImportReport report = importer.importFrom(source);
+            System.out.println(report);
+            for (String rejection : report.getRejections()) {
+                System.out.println(rejection);
+            }
+        }
+    }
+
+    private static UserSource open(String fileName) throws IOException, ImportException {
+        FileInputStream input = new FileInputStream(fileName);
+        if (fileName.toLowerCase().endsWith(".csv")) {
+            return new CsvUserSource(new InputStreamReader(input, StandardCharsets.UTF_8));
+        }
+        return new XmlDataSetSource(input);
+    }
+}
@@ -0,0 +1,16 @@
+package ua.nure.usermanagement.importer;
+
+import java.io.Closeable;
+
+/**
+ * A sequential source of users for {@link UserImporter}. Implementations read their input
+ * incrementally, so memory usage doesn't depend on the size of the input
+ */
+public interface UserSource extends Closeable {
+
+    /**
+     * @return next user of the source or null, if the source is exhausted
+     * @throws ImportException if the input is malformed or could not be read
+     */
+    public RawUser next() throws ImportException;
+}
@@ -0,0 +1,104 @@
+package ua.nure.usermanagement.importer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads users from an XML data set in the format of usersDataSet.xml with a StAX parser.
+ * Only the "users" table is read, columns are matched by name, so their order doesn't matter
+ * and the id column is ignored.
+ */
+public class XmlDataSetSource implements UserSource {
+    private static final String USERS_TABLE = "users";
+
+    private final InputStream input;
+    private final XMLStreamReader reader;
+    private final List<String> columns = new ArrayList<>();
+    private boolean inUsersTable;
+    private long rowNumber;
+
+    public XmlDataSetSource(InputStream input) throws ImportException {
+        this.input = input;
+        try {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            this.reader = factory.createXMLStreamReader(input);
+        } catch (XMLStreamException e) {
+            throw new ImportException("Could not open XML data set", e);
+        }
+    }
+
+    @Override
+    public RawUser next() throws ImportException {
+        try {
+            while (reader.hasNext()) {
+                if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+                    continue;
+                }
+                String element = reader.getLocalName();
+                if ("table".equals(element)) {
+                    inUsersTable = USERS_TABLE.equalsIgnoreCase(reader.getAttributeValue(null, "name"));
+                    columns.clear();
+                } else if (inUsersTable && "column".equals(element)) {
+                    columns.add(reader.getElementText().trim().toLowerCase());
+                } else if (inUsersTable && "row".equals(element)) {
+                    return readRow();
+                }
+            }
+            return null;
+        } catch (XMLStreamException e) {
+            throw new ImportException("Malformed XML data set near row " + (rowNumber + 1), e);
+        }
+    }
+
+    /**
+     * Reads values of the current row element. A {@code <null/>} element stands for a null value
+     */
+    private RawUser readRow() throws XMLStreamException {
+        rowNumber++;
+        String firstName = null;
+        String lastName = null;
+        String dateOfBirth = null;
+        int column = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.END_ELEMENT && "row".equals(reader.getLocalName())) {
+                break;
+            }
+            if (event != XMLStreamConstants.START_ELEMENT) {
+                continue;
+            }
+            String value = "value".equals(reader.getLocalName()) ? reader.getElementText() : null;
+            if ("null".equals(reader.getLocalName())) {
+                reader.nextTag();
+            }
+            String name = column < columns.size() ? columns.get(column) : "";
+            column++;
+            if ("firstname".equals(name)) {
+                firstName = value;
+            } else if ("lastname".equals(name)) {
+                lastName = value;
+            } else if ("dateofbirth".equals(name)) {
+                dateOfBirth = value;
+            }
+        }
+        return new RawUser(rowNumber, firstName, lastName, dateOfBirth);
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            reader.close();
+        } catch (XMLStreamException e) {
+            throw new IOException(e);
+        } finally {
+            input.close();
+        }
+    }
+}
@@ -0,0 +1,404 @@
+package ua.nure.usermanagement.search;
+
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.database.UserChangeListener;
+import ua.nure.usermanagement.database.UserDataView;
+import ua.nure.usermanagement.database.UserDao;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.UncheckedDatabaseException;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * An in-memory trigram index over first and last names of users, that finds users by misspelled
+ * or transliterated names. Names are lower-cased, stripped of diacritics and Cyrillic letters are transliterated
+ * to Latin, then every word is split into overlapping three-letter pieces (trigrams).
+ * A user is a candidate, if the names share at least {@link #MIN_SIMILARITY} of the trigrams of the query.
+ * Only the shortest posting lists are read to collect candidates, so common trigrams don't slow the search down.
+ * <p>
+ * The index is built from a {@link UserDao} and kept up to date as a {@link UserChangeListener}.
+ * Searches may run concurrently, changes are exclusive.
+ */
+public class NameSearchIndex implements UserDataView {
+
+    /**
+     * Minimal part of the trigrams of a query, that a user must share with it to be found
+     */
+    public static final double MIN_SIMILARITY = 0.4;
+
+    private static final int BUILD_FETCH_SIZE = 1000;
+    private static final int MIN_DEAD_SLOTS_TO_COMPACT = 1024;
+    /**
+     * Latin spelling of Cyrillic letters from U+0430 to U+044F. Letters with diacritics are decomposed
+     * before transliteration, so they are spelled as their base letters
+     */
+    private static final String[] CYRILLIC_TO_LATIN = {"a", "b", "v", "g", "d", "e", "zh", "z", "y", "y", "k", "l",
+            "m", "n", "o", "p", "r", "s", "t", "u", "f", "kh", "ts", "ch", "sh", "shch", "", "y", "", "e", "yu", "ya"};
+    private static final Map<Character, String> UKRAINIAN_TO_LATIN = new HashMap<>();
+
+    static {
+        UKRAINIAN_TO_LATIN.put('\u0454', "ye");
+        UKRAINIAN_TO_LATIN.put('\u0456', "i");
+        UKRAINIAN_TO_LATIN.put('\u0491', "g");
+    }
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, IntList> postings = new HashMap<>();
+    private final Map<Long, Integer> slotById = new HashMap<>();
+    private long[] ids = new long[16];
+    private String[] names = new String[16];
+    private int[] gramCounts = new int[16];
+    private int slots;
+    private int deadSlots;
+
+    /**
+     * Ids, changed by notifications while the index is being built. Rows of these users, read by the build,
+     * may be older than the notifications, so they are skipped. Null, when no build is running
+     */
+    private Set<Long> changedDuringBuild;
+
+    public NameSearchIndex() {
+    }
+
+    /**
+     * Adds all users of the DAO to the index
+     *
+     * @see UserDataView#build(UserDao)
+     */
+    @Override
+    public void build(UserDao dao) throws DatabaseException {
+        lock.writeLock().lock();
+        try {
+            changedDuringBuild = new HashSet<>();
+        } finally {
+            lock.writeLock().unlock();
+        }
+        try (Stream<User> users = dao.streamAll(BUILD_FETCH_SIZE)) {
+            Iterator<User> iterator = users.iterator();
+            List<User> chunk = new ArrayList<>(BUILD_FETCH_SIZE);
+            while (iterator.hasNext()) {
+                chunk.add(iterator.next());
+                if (chunk.size() == BUILD_FETCH_SIZE || !iterator.hasNext()) {
+                    addBuilt(chunk);
+                    chunk.clear();
+                }
+            }
+        } catch (UncheckedDatabaseException e) {
+            throw e.getCause();
+        } finally {
+            lock.writeLock().lock();
+            try {
+                changedDuringBuild = null;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    private void addBuilt(List<User> chunk) {
+        lock.writeLock().lock();
+        try {
+            for (User user : chunk) {
+                if (!changedDuringBuild.contains(user.getId())) {
+                    put(user);
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Finds users, whose names are similar to the query
+     *
+     * @param query a part of first name, last name or both, possibly misspelled
+     * @param limit maximum amount of returned ids
+     * @return ids of found users, the most similar first
+     */
+    public List<Long> search(String query, int limit) {
+        long[] queryGrams = toSortedArray(trigrams(normalize(query)));
+        if (queryGrams.length == 0 || limit < 1) {
+            return Collections.emptyList();
+        }
+        int minShared = Math.max(1, (int) Math.ceil(MIN_SIMILARITY * queryGrams.length));
+        lock.readLock().lock();
+        try {
+            IntList[] lists = new IntList[queryGrams.length];
+            for (int i = 0; i < queryGrams.length; i++) {
+                IntList list = postings.get(queryGrams[i]);
+                lists[i] = list != null ? list : IntList.EMPTY;
+            }
+            Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+            // a user, that shares minShared trigrams, is in at least one of the (n - minShared + 1) shortest lists,
+            // so only these lists are read, the longer ones are probed for the candidates by binary search
+            int shortLists = queryGrams.length - minShared + 1;
+            int total = 0;
+            for (int i = 0; i < shortLists; i++) {
+                total += lists[i].size;
+            }
+            int[] merged = new int[total];
+            total = 0;
+            for (int i = 0; i < shortLists; i++) {
+                System.arraycopy(lists[i].values, 0, merged, total, lists[i].size);
+                total += lists[i].size;
+            }
+            Arrays.sort(merged);
+            PriorityQueue<Match> best = new PriorityQueue<>();
+            for (int from = 0; from < merged.length; ) {
+                int slot = merged[from];
+                int to = from + 1;
+                while (to < merged.length && merged[to] == slot) {
+                    to++;
+                }
+                int shared = to - from;
+                from = to;
+                if (names[slot] == null) {
+                    continue;
+                }
+                for (int i = shortLists; i < lists.length && shared + lists.length - i >= minShared; i++) {
+                    if (Arrays.binarySearch(lists[i].values, 0, lists[i].size, slot) >= 0) {
+                        shared++;
+                    }
+                }
+                if (shared < minShared) {
+                    continue;
+                }
+                best.add(new Match(ids[slot], (double) shared / queryGrams.length,
+                        (double) shared / (queryGrams.length + gramCounts[slot] - shared)));
+                if (best.size() > limit) {
+                    best.poll();
+                }
+            }
+            List<Long> result = new ArrayList<>(best.size());
+            while (!best.isEmpty()) {
+                result.add(best.poll().id);
+            }
+            Collections.reverse(result);
+            return result;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return amount of indexed users
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return slotById.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @Override
+    public void userCreated(User user) {
+        change(user.getId(), user);
+    }
+
+    @Override
+    public void userUpdated(User user) {
+        change(user.getId(), user);
+    }
+
+    @Override
+    public void userDeleted(Long id) {
+        change(id, null);
+    }
+
+    private void change(Long id, User user) {
+        lock.writeLock().lock();
+        try {
+            if (changedDuringBuild != null) {
+                changedDuringBuild.add(id);
+            }
+            remove(id);
+            if (user != null) {
+                put(user);
+            }
+            if (deadSlots > MIN_DEAD_SLOTS_TO_COMPACT && deadSlots > slotById.size()) {
+                compact();
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Adds a user to a new slot. Must be called with the write lock held
+     */
+    private void put(User user) {
+        remove(user.getId());
+        String name = normalize(user.getFirstName() + " " + user.getLastName());
+        if (slots == ids.length) {
+            ids = Arrays.copyOf(ids, slots * 2);
+            names = Arrays.copyOf(names, slots * 2);
+            gramCounts = Arrays.copyOf(gramCounts, slots * 2);
+        }
+        int slot = slots++;
+        ids[slot] = user.getId();
+        names[slot] = name;
+        slotById.put(user.getId(), slot);
+        Set<Long> grams = trigrams(name);
+        gramCounts[slot] = grams.size();
+        for (long gram : grams) {
+            postings.computeIfAbsent(gram, key -> new IntList()).add(slot);
+        }
+    }
+
+    /**
+     * Marks the slot of the user as dead. Posting lists keep the slot until the next compaction,
+     * searches skip it. Must be called with the write lock held
+     */
+    private void remove(Long id) {
+        Integer slot = slotById.remove(id);
+        if (slot != null) {
+            names[slot] = null;
+            deadSlots++;
+        }
+    }
+
+    /**
+     * Rebuilds posting lists without dead slots. Must be called with the write lock held
+     */
+    private void compact() {
+        long[] liveIds = new long[Math.max(16, slotById.size() * 2)];
+        String[] liveNames = new String[liveIds.length];
+        int[] liveGramCounts = new int[liveIds.length];
+        int live = 0;
+        slotById.clear();
+        postings.clear();
+        for (int slot = 0; slot < slots; slot++) {
+            if (names[slot] == null) {
+                continue;
+            }
+            liveIds[live] = ids[slot];
+            liveNames[live] = names[slot];
+            liveGramCounts[live] = gramCounts[slot];
+            slotById.put(ids[slot], live);
+            for (long gram : trigrams(names[slot])) {
+                postings.computeIfAbsent(gram, key -> new IntList()).add(live);
+            }
+            live++;
+        }
+        ids = liveIds;
+        names = liveNames;
+        gramCounts = liveGramCounts;
+        slots = live;
+        deadSlots = 0;
+    }
+
+    /**
+     * Lower-cases the text, transliterates Cyrillic letters, removes diacritics
+     * and replaces everything, that is not a letter or a digit, with spaces
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String decomposed = Normalizer.normalize(text.toLowerCase(Locale.ROOT), Normalizer.Form.NFD);
+        StringBuilder result = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) {
+                continue;
+            }
+            String latin = c >= '\u0430' && c <= '\u044f' ? CYRILLIC_TO_LATIN[c - '\u0430'] : UKRAINIAN_TO_LATIN.get(c);
+            if (latin != null) {
+                result.append(latin);
+            } else if (Character.isLetterOrDigit(c)) {
+                result.append(c);
+            } else {
+                result.append(' ');
+            }
+        }
+        return result.toString();
+    }
+
+    /**
+     * Splits every word into trigrams. Words are padded with two spaces in front and one behind,
+     * so beginnings of words weigh more, and a one letter word still has a trigram
+     *
+     * @return trigrams, each packed into a long as three 16-bit chars
+     */
+    static Set<Long> trigrams(String normalized) {
+        Set<Long> grams = new HashSet<>();
+        for (String word : normalized.split(" +")) {
+            if (word.isEmpty()) {
+                continue;
+            }
+            String padded = "  " + word + " ";
+            for (int i = 0; i + 3 <= padded.length(); i++) {
+                grams.add(((long) padded.charAt(i) << 32) | ((long) padded.charAt(i + 1) << 16) | padded.charAt(i + 2));
+            }
+        }
+        return grams;
+    }
+
+    private static long[] toSortedArray(Set<Long> grams) {
+        long[] result = new long[grams.size()];
+        int i = 0;
+        for (Long gram : grams) {
+            result[i++] = gram;
+        }
+        Arrays.sort(result);
+        return result;
+    }
+
+    /**
+     * A growable list of primitive ints, that saves memory of posting lists.
+     * Slots are added in ascending order, so every posting list is sorted
+     */
+    private static class IntList {
+        private static final IntList EMPTY = new IntList();
+
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    /**
+     * A found user. Ordered from the worst to the best, so a priority queue drops the worst one first
+     */
+    private static class Match implements Comparable<Match> {
+        private final long id;
+        private final double containment;
+        private final double similarity;
+
+        Match(long id, double containment, double similarity) {
+            this.id = id;
+            this.containment = containment;
+            this.similarity = similarity;
+        }
+
+        @Override
+        public int compareTo(Match other) {
+            int result = Double.compare(containment, other.containment);
+            if (result == 0) {
+                result = Double.compare(similarity, other.similarity);
+            }
+            return result != 0 ? result : Long.compare(other.id, id);
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package ua.nure.usermanagement.statistics;
+
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.database.UserDao;
+import ua.nure.usermanagement.database.UserDataView;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.UncheckedDatabaseException;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Running counts of users: total amount and a histogram of birth years. They are counted once from a {@link UserDao}
+ * and then changed by every create, update and delete, so reading them doesn't depend on amount of users.
+ * A birth year of every user is kept, because an update or a delete must know, which bar of the histogram it changes.
+ */
+public class UserStatistics implements UserDataView {
+    private static final int BUILD_FETCH_SIZE = 1000;
+
+    private final Map<Long, Integer> birthYearById = new HashMap<>();
+    private final TreeMap<Integer, Integer> birthYears = new TreeMap<>();
+
+    /**
+     * Ids, changed by notifications while the statistics are being counted, see {@link #build(UserDao)}
+     */
+    private Set<Long> changedDuringBuild;
+
+    public UserStatistics() {
+    }
+
+    /**
+     * Counts all users of the DAO. Users, that are changed by notifications during the count, are skipped,
+     * because their rows may be older than the notifications
+     *
+     * @see UserDataView#build(UserDao)
+     */
+    @Override
+    public void build(UserDao dao) throws DatabaseException {
+        synchronized (this) {
+            changedDuringBuild = new HashSet<>();
+        }
+        try (Stream<User> users = dao.streamAll(BUILD_FETCH_SIZE)) {
+            Iterator<User> iterator = users.iterator();
+            while (iterator.hasNext()) {
+                User user = iterator.next();
+                synchronized (this) {
+                    if (!changedDuringBuild.contains(user.getId())) {
+                        put(user);
+                    }
+                }
+            }
+        } catch (UncheckedDatabaseException e) {
+            throw e.getCause();
+        } finally {
+            synchronized (this) {
+                changedDuringBuild = null;
+            }
+        }
+    }
+
+    /**
+     * @return amount of users
+     */
+    public synchronized int getTotal() {
+        return birthYearById.size();
+    }
+
+    /**
+     * @return amounts of users by year of birth in ascending order of years
+     */
+    public synchronized SortedMap<Integer, Integer> getBirthYearHistogram() {
+        return Collections.unmodifiableSortedMap(new TreeMap<>(birthYears));
+    }
+
+    /**
+     * Groups users by age, that they reach this year
+     *
+     * @param bucketSize amount of years in one bar of the histogram, e.g. 10 for decades
+     * @return amounts of users by the least age of a bar in ascending order of age
+     */
+    public synchronized SortedMap<Integer, Integer> getAgeHistogram(int bucketSize) {
+        if (bucketSize < 1) {
+            throw new IllegalArgumentException("Bucket size must be positive: " + bucketSize);
+        }
+        int thisYear = LocalDate.now().getYear();
+        TreeMap<Integer, Integer> ages = new TreeMap<>();
+        for (Map.Entry<Integer, Integer> entry : birthYears.entrySet()) {
+            int age = Math.max(0, thisYear - entry.getKey());
+            ages.merge(age / bucketSize * bucketSize, entry.getValue(), Integer::sum);
+        }
+        return Collections.unmodifiableSortedMap(ages);
+    }
+
+    @Override
+    public void userCreated(User user) {
+        change(user.getId(), user);
+    }
+
+    @Override
+    public void userUpdated(User user) {
+        change(user.getId(), user);
+    }
+
+    @Override
+    public void userDeleted(Long id) {
+        change(id, null);
+    }
+
+    private synchronized void change(Long id, User user) {
+        if (changedDuringBuild != null) {
+            changedDuringBuild.add(id);
+        }
+        remove(id);
+        if (user != null) {
+            put(user);
+        }
+    }
+
+    private void put(User user) {
+        remove(user.getId());
+        int year = Instant.ofEpochMilli(user.getDateOfBirth().getTime()).atZone(ZoneId.systemDefault()).getYear();
+        birthYearById.put(user.getId(), year);
+        birthYears.merge(year, 1, Integer::sum);
+    }
+
+    private void remove(Long id) {
+        Integer year = birthYearById.remove(id);
+        if (year != null) {
+            birthYears.computeIfPresent(year, (key, count) -> count > 1 ? count - 1 : null);
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "UserStatistics{" +
+                "total=" + getTotal() +
+                ", birthYears=" + birthYears +
+                '}';
+    }
+}
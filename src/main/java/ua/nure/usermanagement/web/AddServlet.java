@@ -3,6 +3,7 @@ package ua.nure.usermanagement.web;
 import ua.nure.usermanagement.User;
 import ua.nure.usermanagement.database.DaoFactory;
 import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.DatabaseTimeoutException;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -57,6 +58,8 @@ public class AddServlet extends EditServlet {
         }
         try {
             DaoFactory.getInstance().getUserDao().create(user);
+        } catch (DatabaseTimeoutException e) {
+            throw new ServletException(e);
         } catch (DatabaseException e) {
             req.setAttribute("error", "So... Um, there is an error in the database: " + e.getMessage());
             showPage(req, resp);
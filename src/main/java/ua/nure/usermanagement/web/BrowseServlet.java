@@ -1,8 +1,10 @@
 package ua.nure.usermanagement.web;
 
 import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.UserSummary;
 import ua.nure.usermanagement.database.DaoFactory;
 import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.DatabaseTimeoutException;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -10,7 +12,8 @@ import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
-import java.util.Collection;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * An implementation of {@link HttpServlet} for processing the requests
@@ -19,6 +22,16 @@ import java.util.Collection;
 @WebServlet(name = "browseServlet", urlPatterns = "/browse")
 public class BrowseServlet extends HttpServlet {
 
+    /**
+     * Maximum amount of entries, shown on one page
+     */
+    public static final int PAGE_SIZE = 20;
+
+    /**
+     * An error, shown when an action is requested without a selected user, or with several users for edit and details
+     */
+    public static final String SELECT_USER_ERROR = "Please, select a user via a check box before proceeding";
+
     /**
      * This method processes all requests that come through
      * him and divides them based on the users command
@@ -38,6 +51,9 @@ public class BrowseServlet extends HttpServlet {
             delete(req, resp);
         } else if (req.getParameter("details") != null) {
             details(req, resp);
+        } else if (req.getParameter("search") != null && req.getParameter("query") != null
+                && !req.getParameter("query").trim().isEmpty()) {
+            search(req, resp);
         } else {
             browse(req, resp);
         }
@@ -52,14 +68,17 @@ public class BrowseServlet extends HttpServlet {
      * @throws IOException
      */
     private void details(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        if (req.getParameter("id") == null) {
-            req.setAttribute("error", "Please, select a user via a radio button before proceeding");
+        String id = getSelectedId(req);
+        if (id == null) {
+            req.setAttribute("error", SELECT_USER_ERROR);
             req.getRequestDispatcher("/browse.jsp").forward(req, resp);
             return;
         }
         try {
-            User user = DaoFactory.getInstance().getUserDao().find(Long.valueOf(req.getParameter("id")));
+            User user = DaoFactory.getInstance().getUserDao().find(Long.valueOf(id));
             req.getSession().setAttribute("user", user);
+        } catch (DatabaseTimeoutException e) {
+            throw new ServletException(e);
         } catch (DatabaseException e) {
             req.setAttribute("error", "So... Um, there is an error in the database: " + e.getMessage());
             req.getRequestDispatcher("/browse.jsp").forward(req, resp);
@@ -69,7 +88,8 @@ public class BrowseServlet extends HttpServlet {
     }
 
     /**
-     * Processes a request for a deleting of a selected entry
+     * Processes a request for a deleting of selected entries. A single entry is loaded
+     * for the confirmation page, several entries are deleted by their ids without loading them
      *
      * @param req  Request scope of the web app
      * @param resp Response scope of the web app
@@ -77,13 +97,28 @@ public class BrowseServlet extends HttpServlet {
      * @throws IOException
      */
     private void delete(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        if (req.getParameter("id") == null) {
-            req.setAttribute("error", "Please, select a user via a radio button before proceeding");
+        String[] ids = req.getParameterValues("id");
+        if (ids == null || ids.length == 0) {
+            req.setAttribute("error", SELECT_USER_ERROR);
             req.getRequestDispatcher("/browse.jsp").forward(req, resp);
+            return;
         }
+        if (ids.length > 1) {
+            List<Long> selectedIds = new ArrayList<>();
+            for (String id : ids) {
+                selectedIds.add(Long.valueOf(id));
+            }
+            req.getSession().removeAttribute("user");
+            req.getSession().setAttribute("ids", selectedIds);
+            req.getRequestDispatcher("/delete").forward(req, resp);
+            return;
+        }
+        req.getSession().removeAttribute("ids");
         try {
-            User user = DaoFactory.getInstance().getUserDao().find(Long.valueOf(req.getParameter("id")));
+            User user = DaoFactory.getInstance().getUserDao().find(Long.valueOf(ids[0]));
             req.getSession().setAttribute("user", user);
+        } catch (DatabaseTimeoutException e) {
+            throw new ServletException(e);
         } catch (DatabaseException e) {
             req.setAttribute("error", "So... Um, there is an error in the database: " + e.getMessage());
             req.getRequestDispatcher("/browse.jsp").forward(req, resp);
@@ -101,14 +136,17 @@ public class BrowseServlet extends HttpServlet {
      * @throws IOException
      */
     private void edit(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        if (req.getParameter("id") == null) {
-            req.setAttribute("error", "Please, select a user via a radio button before proceeding");
+        String id = getSelectedId(req);
+        if (id == null) {
+            req.setAttribute("error", SELECT_USER_ERROR);
             req.getRequestDispatcher("/browse.jsp").forward(req, resp);
             return;
         }
         try {
-            User user = DaoFactory.getInstance().getUserDao().find(Long.valueOf(req.getParameter("id")));
+            User user = DaoFactory.getInstance().getUserDao().find(Long.valueOf(id));
             req.getSession().setAttribute("user", user);
+        } catch (DatabaseTimeoutException e) {
+            throw new ServletException(e);
         } catch (DatabaseException e) {
             req.setAttribute("error", "So... Um, there is an error in the database: " + e.getMessage());
             req.getRequestDispatcher("/browse.jsp").forward(req, resp);
@@ -117,6 +155,17 @@ public class BrowseServlet extends HttpServlet {
         req.getRequestDispatcher("/edit").forward(req, resp);
     }
 
+    /**
+     * Edit and details work with one user, so a request with several selected users is rejected
+     * instead of acting on the first of them
+     *
+     * @return id of the only selected user, null if no user or several users are selected
+     */
+    private static String getSelectedId(HttpServletRequest req) {
+        String[] ids = req.getParameterValues("id");
+        return ids != null && ids.length == 1 ? ids[0] : null;
+    }
+
     /**
      * Processes a request for an adding of an entry
      *
@@ -130,8 +179,47 @@ public class BrowseServlet extends HttpServlet {
     }
 
     /**
-     * Processes a request for a visualisation of data
-     * contained in a table "users" in database
+     * Processes a request for a search of users by a possibly misspelled name.
+     * Found users are shown on one page, the most similar first. They are read in one unit of work,
+     * so they share a connection
+     *
+     * @param req  Request scope of the web app
+     * @param resp Response scope of the web app
+     * @throws ServletException
+     * @throws IOException
+     */
+    private void search(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        String query = req.getParameter("query");
+        List<UserSummary> users;
+        try {
+            List<Long> ids = DaoFactory.getInstance().getNameSearchIndex().search(query, PAGE_SIZE);
+            users = DaoFactory.getInstance().executeInTransaction(userDao -> {
+                List<UserSummary> found = new ArrayList<>();
+                for (Long id : ids) {
+                    User user = userDao.find(id);
+                    if (user != null && user.getId() != null) {
+                        found.add(new UserSummary(user));
+                    }
+                }
+                return found;
+            });
+        } catch (DatabaseException e) {
+            throw new ServletException(e);
+        }
+        req.getSession().setAttribute("users", users);
+        req.getSession().setAttribute("hasNext", false);
+        req.getSession().setAttribute("hasPrevious", false);
+        req.setAttribute("query", query);
+        req.getRequestDispatcher("/browse.jsp").forward(req, resp);
+    }
+
+    /**
+     * Processes a request for a visualisation of one page of data
+     * contained in a table "users" in database. A page is selected by
+     * "after" (id of the last entry of the previous page) or "before"
+     * (id of the first entry of the next page) parameters, so it is read
+     * via the primary key index instead of loading the whole table.
+     * Only ids and names are read, that is all the page shows
      *
      * @param req  Request scope of the web app
      * @param resp Response scope of the web app
@@ -139,13 +227,56 @@ public class BrowseServlet extends HttpServlet {
      * @throws IOException
      */
     private void browse(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
-        Collection<User> users;
+        Long afterId = getIdParameter(req, "after");
+        Long beforeId = getIdParameter(req, "before");
+        List<UserSummary> users;
+        boolean hasNext;
+        boolean hasPrevious;
         try {
-            users = DaoFactory.getInstance().getUserDao().findAll();
+            if (beforeId != null) {
+                users = DaoFactory.getInstance().getUserDao().findSummaryPageBefore(beforeId, PAGE_SIZE + 1);
+                hasPrevious = users.size() > PAGE_SIZE;
+                if (hasPrevious) {
+                    users = new ArrayList<>(users.subList(1, users.size()));
+                }
+                hasNext = true;
+            } else {
+                users = DaoFactory.getInstance().getUserDao().findSummaryPage(afterId, PAGE_SIZE + 1);
+                hasNext = users.size() > PAGE_SIZE;
+                if (hasNext) {
+                    users = new ArrayList<>(users.subList(0, PAGE_SIZE));
+                }
+                hasPrevious = afterId != null;
+            }
         } catch (DatabaseException e) {
             throw new ServletException(e);
         }
         req.getSession().setAttribute("users", users);
+        req.getSession().setAttribute("hasNext", hasNext && !users.isEmpty());
+        req.getSession().setAttribute("hasPrevious", hasPrevious && !users.isEmpty());
+        if (!users.isEmpty()) {
+            req.getSession().setAttribute("firstId", users.get(0).getId());
+            req.getSession().setAttribute("lastId", users.get(users.size() - 1).getId());
+        }
         req.getRequestDispatcher("/browse.jsp").forward(req, resp);
     }
+
+    /**
+     * A utility method for reading an optional id parameter
+     *
+     * @param req  Request scope of the web app
+     * @param name Name of the parameter
+     * @return Value of the parameter or null, if it is absent or isn't a number
+     */
+    private Long getIdParameter(HttpServletRequest req, String name) {
+        String value = req.getParameter(name);
+        if (value == null || value.isEmpty()) {
+            return null;
+        }
+        try {
+            return Long.valueOf(value);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
 }
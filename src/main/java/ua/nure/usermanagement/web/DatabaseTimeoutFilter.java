@@ -0,0 +1,69 @@
+package ua.nure.usermanagement.web;
+
+import ua.nure.usermanagement.database.exception.DatabaseTimeoutException;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * A filter, that answers "503 Service Unavailable" with a Retry-After header, when a servlet fails, because
+ * a call of the DAO ran out of its time budget, so a slow database doesn't hold request threads
+ * and the client knows, that it may try again later
+ */
+@WebFilter(filterName = "databaseTimeoutFilter", urlPatterns = "/*")
+public class DatabaseTimeoutFilter implements Filter {
+
+    /**
+     * Seconds, after which a client may repeat the request
+     */
+    public static final int RETRY_AFTER = 5;
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    /**
+     * Passes the request on and turns a {@link DatabaseTimeoutException} into a 503 response,
+     * unless the response is already committed
+     *
+     * @throws ServletException if the servlet failed for another reason
+     * @throws IOException
+     */
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        try {
+            chain.doFilter(request, response);
+        } catch (ServletException | RuntimeException e) {
+            DatabaseTimeoutException timeout = findTimeout(e);
+            if (timeout == null || response.isCommitted() || !(response instanceof HttpServletResponse)) {
+                throw e;
+            }
+            HttpServletResponse httpResponse = (HttpServletResponse) response;
+            httpResponse.setHeader("Retry-After", String.valueOf(RETRY_AFTER));
+            httpResponse.sendError(HttpServletResponse.SC_SERVICE_UNAVAILABLE, timeout.getMessage());
+        }
+    }
+
+    /**
+     * @return the DatabaseTimeoutException among the causes of the exception, null if there is none
+     */
+    private static DatabaseTimeoutException findTimeout(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DatabaseTimeoutException) {
+                return (DatabaseTimeoutException) cause;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
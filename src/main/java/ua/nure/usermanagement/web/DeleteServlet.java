@@ -3,12 +3,14 @@ package ua.nure.usermanagement.web;
 import ua.nure.usermanagement.User;
 import ua.nure.usermanagement.database.DaoFactory;
 import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.DatabaseTimeoutException;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.io.IOException;
+import java.util.List;
 
 /**
  * An implementation of {@link EditServlet} for processing the requests
@@ -18,16 +20,26 @@ import java.io.IOException;
 public class DeleteServlet extends EditServlet {
 
     /**
-     * Deletes an entry from the database and returns user to the browse page.
+     * Deletes an entry (or all entries, selected on the browse page) from the database
+     * and returns user to the browse page.
      * @param req Request scope of the web app
      * @param resp Response scope of the web app
      * @throws ServletException
      * @throws IOException
      */
     @Override
+    @SuppressWarnings("unchecked")
     protected void doOk(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
         try {
-            DaoFactory.getInstance().getUserDao().delete((User) req.getSession().getAttribute("user"));
+            List<Long> ids = (List<Long>) req.getSession().getAttribute("ids");
+            if (ids != null) {
+                DaoFactory.getInstance().getUserDao().deleteAll(ids);
+                req.getSession().removeAttribute("ids");
+            } else {
+                DaoFactory.getInstance().getUserDao().delete((User) req.getSession().getAttribute("user"));
+            }
+        } catch (DatabaseTimeoutException e) {
+            throw new ServletException(e);
         } catch (DatabaseException e) {
             req.setAttribute("error", "So... Um, there is an error in the database: " + e.getMessage());
             req.getRequestDispatcher("/delete.jsp").forward(req, resp);
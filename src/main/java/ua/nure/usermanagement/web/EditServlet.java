@@ -3,6 +3,8 @@ package ua.nure.usermanagement.web;
 import ua.nure.usermanagement.User;
 import ua.nure.usermanagement.database.DaoFactory;
 import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.DatabaseTimeoutException;
+import ua.nure.usermanagement.database.exception.OptimisticLockException;
 
 import javax.servlet.ServletException;
 import javax.servlet.annotation.WebServlet;
@@ -65,6 +67,8 @@ public class EditServlet extends HttpServlet {
 
     /**
      * Applies all changes of an entry and returns user to the browse page.
+     * If somebody has changed the entry since the page was shown, the page is shown again
+     * with the current data of the entry, so the changes can be applied to it.
      * @param req Request scope of the web app
      * @param resp Response scope of the web app
      * @throws ServletException
@@ -85,6 +89,11 @@ public class EditServlet extends HttpServlet {
         }
         try {
             DaoFactory.getInstance().getUserDao().update(user);
+        } catch (OptimisticLockException e) {
+            showCurrentUser(req, resp, user.getId());
+            return;
+        } catch (DatabaseTimeoutException e) {
+            throw new ServletException(e);
         } catch (DatabaseException e) {
             req.setAttribute("error", "So... Um, there is an error in the database: " + e.getMessage());
             showPage(req, resp);
@@ -93,6 +102,36 @@ public class EditServlet extends HttpServlet {
         req.getRequestDispatcher("/browse").forward(req, resp);
     }
 
+    /**
+     * Shows the edit page with the data of the entry, that is in db now
+     * @param req Request scope of the web app
+     * @param resp Response scope of the web app
+     * @param id Id of the entry
+     * @throws ServletException
+     * @throws IOException
+     */
+    private void showCurrentUser(HttpServletRequest req, HttpServletResponse resp, Long id) throws ServletException, IOException {
+        User current;
+        try {
+            current = DaoFactory.getInstance().getUserDao().find(id);
+        } catch (DatabaseTimeoutException e) {
+            throw new ServletException(e);
+        } catch (DatabaseException e) {
+            req.setAttribute("error", "So... Um, there is an error in the database: " + e.getMessage());
+            showPage(req, resp);
+            return;
+        }
+        if (current.getId() == null) {
+            req.setAttribute("error", "Whoa, somebody has deleted this user while you were editing it!");
+            req.getRequestDispatcher("/browse").forward(req, resp);
+            return;
+        }
+        req.getSession().setAttribute("user", current);
+        req.setAttribute("error", "Whoa, somebody has changed this user while you were editing it! "
+                + "Here is the fresh version, apply your changes again.");
+        showPage(req, resp);
+    }
+
     /**
      * A utility method for getting user data from the request
      * @param req Request scope of the web app
@@ -115,6 +154,9 @@ public class EditServlet extends HttpServlet {
             throw new ValidationException("Oi, you forgot to enter the date of birth!");
         }
         user.setDateOfBirth(DateFormat.getDateInstance().parse(req.getParameter("dateOfBirth")));
+        if (req.getParameter("version") != null && !req.getParameter("version").isEmpty()) {
+            user.setVersion(Long.valueOf(req.getParameter("version")));
+        }
         return user;
     }
 }
@@ -0,0 +1,138 @@
+package ua.nure.usermanagement.web;
+
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.database.DaoFactory;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.UncheckedDatabaseException;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.text.SimpleDateFormat;
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+/**
+ * An implementation of {@link HttpServlet} for exporting the whole "users" table
+ * of the database as CSV (format=csv, the default) or newline-delimited JSON (format=ndjson).
+ * Rows are written as pages of them are read from the database and flushed in chunks,
+ * so the table is never held in memory
+ */
+@WebServlet(name = "exportServlet", urlPatterns = "/export")
+public class ExportServlet extends HttpServlet {
+
+    /**
+     * Amount of rows, read from the database at once, i.e. the size of a page
+     */
+    public static final int FETCH_SIZE = 500;
+
+    /**
+     * Amount of rows, written between flushes of the response
+     */
+    public static final int FLUSH_SIZE = 1000;
+
+    private static final String CSV_HEADER = "id,firstname,lastname,dateofbirth";
+
+    /**
+     * Streams all the entries of the "users" table in the requested format
+     *
+     * @param req  Request scope of the web app
+     * @param resp Response scope of the web app
+     * @throws ServletException
+     * @throws IOException
+     */
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        boolean json = "ndjson".equalsIgnoreCase(req.getParameter("format"));
+        if (!json && req.getParameter("format") != null && !"csv".equalsIgnoreCase(req.getParameter("format"))) {
+            resp.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown format: " + req.getParameter("format"));
+            return;
+        }
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd");
+        try (Stream<User> users = DaoFactory.getInstance().getUserDao().streamAll(FETCH_SIZE)) {
+            resp.setContentType(json ? "application/x-ndjson" : "text/csv");
+            resp.setCharacterEncoding("UTF-8");
+            resp.setHeader("Content-Disposition", "attachment; filename=\"users." + (json ? "ndjson" : "csv") + "\"");
+            PrintWriter writer = resp.getWriter();
+            if (!json) {
+                writer.print(CSV_HEADER);
+                writer.print('\n');
+            }
+            int written = 0;
+            Iterator<User> iterator = users.iterator();
+            while (iterator.hasNext()) {
+                User user = iterator.next();
+                String dateOfBirth = dateFormat.format(user.getDateOfBirth());
+                writer.print(json ? toJson(user, dateOfBirth) : toCsv(user, dateOfBirth));
+                writer.print('\n');
+                if (++written % FLUSH_SIZE == 0) {
+                    resp.flushBuffer();
+                }
+            }
+            writer.flush();
+        } catch (DatabaseException e) {
+            throw new ServletException(e);
+        } catch (UncheckedDatabaseException e) {
+            throw new ServletException(e.getCause());
+        }
+    }
+
+    /**
+     * @return a CSV line with user data in the column order of CSV_HEADER
+     */
+    private static String toCsv(User user, String dateOfBirth) {
+        return user.getId() + "," + csvValue(user.getFirstName()) + "," + csvValue(user.getLastName()) + "," + dateOfBirth;
+    }
+
+    private static String csvValue(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /**
+     * @return a JSON object with user data on one line
+     */
+    private static String toJson(User user, String dateOfBirth) {
+        return "{\"id\":" + user.getId() +
+                ",\"firstName\":" + jsonValue(user.getFirstName()) +
+                ",\"lastName\":" + jsonValue(user.getLastName()) +
+                ",\"dateOfBirth\":\"" + dateOfBirth + "\"}";
+    }
+
+    private static String jsonValue(String value) {
+        StringBuilder result = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"':
+                    result.append("\\\"");
+                    break;
+                case '\\':
+                    result.append("\\\\");
+                    break;
+                case '\n':
+                    result.append("\\n");
+                    break;
+                case '\r':
+                    result.append("\\r");
+                    break;
+                case '\t':
+                    result.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        result.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        result.append(c);
+                    }
+            }
+        }
+        return result.append('"').toString();
+    }
+}
@@ -0,0 +1,46 @@
+package ua.nure.usermanagement.web;
+
+import ua.nure.usermanagement.database.ReadWriteConnectionFactory;
+
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.annotation.WebFilter;
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+
+/**
+ * A filter, that binds the id of the session to the thread of a request, so that after a user has changed
+ * something, his following requests read from the primary database, whichever thread serves them,
+ * until replicas catch up
+ *
+ * @see ReadWriteConnectionFactory#bindCaller(Object)
+ */
+@WebFilter(filterName = "readYourWritesFilter", urlPatterns = "/*")
+public class ReadYourWritesFilter implements Filter {
+
+    @Override
+    public void init(FilterConfig filterConfig) throws ServletException {
+    }
+
+    @Override
+    public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain) throws IOException, ServletException {
+        if (!(request instanceof HttpServletRequest)) {
+            chain.doFilter(request, response);
+            return;
+        }
+        Object previous = ReadWriteConnectionFactory.bindCaller(((HttpServletRequest) request).getSession().getId());
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            ReadWriteConnectionFactory.restoreCaller(previous);
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+}
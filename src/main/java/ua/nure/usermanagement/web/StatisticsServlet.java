@@ -0,0 +1,49 @@
+package ua.nure.usermanagement.web;
+
+import ua.nure.usermanagement.database.DaoFactory;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.statistics.UserStatistics;
+
+import javax.servlet.ServletException;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import java.io.IOException;
+
+/**
+ * An implementation of {@link HttpServlet} for visualising statistics of "users" table:
+ * total amount of entries and their distribution by birth year and age.
+ * Statistics are kept up to date in memory, so the table isn't read on each request
+ */
+@WebServlet(name = "statisticsServlet", urlPatterns = "/stats")
+public class StatisticsServlet extends HttpServlet {
+
+    /**
+     * Amount of years in one bar of the age histogram
+     */
+    public static final int AGE_BUCKET_SIZE = 10;
+
+    /**
+     * Shows the statistics page
+     *
+     * @param req  Request scope of the web app
+     * @param resp Response scope of the web app
+     * @throws ServletException
+     * @throws IOException
+     */
+    @Override
+    protected void doGet(HttpServletRequest req, HttpServletResponse resp) throws ServletException, IOException {
+        UserStatistics statistics;
+        try {
+            statistics = DaoFactory.getInstance().getUserStatistics();
+        } catch (DatabaseException e) {
+            throw new ServletException(e);
+        }
+        req.setAttribute("total", statistics.getTotal());
+        req.setAttribute("birthYears", statistics.getBirthYearHistogram());
+        req.setAttribute("ages", statistics.getAgeHistogram(AGE_BUCKET_SIZE));
+        req.setAttribute("ageBucketSize", AGE_BUCKET_SIZE);
+        req.getRequestDispatcher("/stats.jsp").forward(req, resp);
+    }
+}
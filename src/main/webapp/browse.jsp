@@ -13,27 +13,37 @@
 </head>
 <body>
 <form action="${requestScope.contextPath}/browse" method="post"><!--<%=request.getContextPath()%>-->
+    <input type="text" name="query" value="<c:out value="${requestScope.query}"/>">
+    <input type="submit" name="search" value="Search">
     <table id="userTable" border="1">
         <tr>
             <th></th>
             <th>First name</th>
             <th>Last name</th>
-            <th>Date of birth</th>
         </tr>
         <c:forEach var="user" items="${sessionScope.users}">
             <tr>
-                <td><input type="radio" name="id" id="id" value="${user.id}"></td>
+                <td><input type="checkbox" name="id" value="${user.id}"></td>
                 <td>${user.firstName}</td>
                 <td>${user.lastName}</td>
-                <td>${user.dateOfBirth}</td>
             </tr>
         </c:forEach>
     </table>
+    <c:if test="${sessionScope.hasPrevious}">
+        <a href="${requestScope.contextPath}/browse?before=${sessionScope.firstId}">Previous</a>
+    </c:if>
+    <c:if test="${sessionScope.hasNext}">
+        <a href="${requestScope.contextPath}/browse?after=${sessionScope.lastId}">Next</a>
+    </c:if>
+    <br>
     <input type="submit" name="add" value="Add">
     <input type="submit" name="edit" value="Edit">
     <input type="submit" name="delete" value="Delete">
     <input type="submit" name="details" value="Details">
 </form>
+<a href="${requestScope.contextPath}/export?format=csv">Export CSV</a>
+<a href="${requestScope.contextPath}/export?format=ndjson">Export NDJSON</a>
+<a href="${requestScope.contextPath}/stats">Statistics</a>
 <c:if test="${requestScope.error != null}">
     <script>
         alert("${requestScope.error}")
@@ -1,6 +1,7 @@
 <%@ page contentType="text/html;charset=UTF-8" language="java" %>
 <%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
 <%@ taglib prefix="fmt" uri="http://java.sun.com/jsp/jstl/fmt" %>
+<%@ taglib prefix="fn" uri="http://java.sun.com/jsp/jstl/functions" %>
 <html>
 <head>
     <title>User Management/Delete</title>
@@ -13,10 +14,17 @@
 <body>
 <jsp:useBean id="user" class="ua.nure.usermanagement.User" scope="session"/>
 
+<c:choose>
+    <c:when test="${sessionScope.ids != null}">
+    <p>Are you sure, that you want to delete ${fn:length(sessionScope.ids)} selected entries?</p>
+    </c:when>
+    <c:otherwise>
     <p><b>First name:</b> ${user.firstName}</p>
     <p><b>Last name:</b> ${user.lastName}</p>
     <p><b>Date of birth:</b> <fmt:formatDate value="${user.dateOfBirth}" type="date" dateStyle="medium"/></p>
     <p>Are you sure, that you want to delete this entry?</p>
+    </c:otherwise>
+</c:choose>
     <form method="post" action="${requestScope.contextPath}/delete">
         <input type="submit" name="ok" value="Yes">
         <input type="submit" name="cancel" value="No">
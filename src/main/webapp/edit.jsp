@@ -16,6 +16,7 @@
 <form method="post" action="${requestScope.contextPath}/edit">
     <fmt:formatDate value='${user.dateOfBirth}' type='date' dateStyle='medium' var="dateStr"/>
     <input type="hidden" name="id" value="${user.id}">
+    <input type="hidden" name="version" value="${user.version}">
     <table>
         <tr>
             <th>First name</th>
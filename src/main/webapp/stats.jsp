@@ -0,0 +1,40 @@
+<%@ page contentType="text/html;charset=UTF-8" language="java" %>
+<%@ taglib prefix="c" uri="http://java.sun.com/jsp/jstl/core" %>
+<html>
+<head><title>User management/Statistics</title>
+    <style>
+        table{
+            width:30%;
+        }
+    </style>
+</head>
+<body>
+<p><b>Total users:</b> ${requestScope.total}</p>
+<table id="ageTable" border="1">
+    <tr>
+        <th>Age</th>
+        <th>Users</th>
+    </tr>
+    <c:forEach var="bar" items="${requestScope.ages}">
+        <tr>
+            <td>${bar.key}-${bar.key + requestScope.ageBucketSize - 1}</td>
+            <td>${bar.value}</td>
+        </tr>
+    </c:forEach>
+</table>
+<br>
+<table id="birthYearTable" border="1">
+    <tr>
+        <th>Year of birth</th>
+        <th>Users</th>
+    </tr>
+    <c:forEach var="bar" items="${requestScope.birthYears}">
+        <tr>
+            <td>${bar.key}</td>
+            <td>${bar.value}</td>
+        </tr>
+    </c:forEach>
+</table>
+<a href="${requestScope.contextPath}/browse">Back</a>
+</body>
+</html>
@@ -0,0 +1,80 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.User;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+/**
+ * Compares finding users of an age bracket by UserDao.findAll() and a filter by User.getAge()
+ * against UserDao.findByAge(), that is a range scan of the index on date of birth.
+ * Run it as a plain java application, it is not a part of the test suite.
+ * <p>
+ * Measured with HSQLDB 1.8.0.10 on JDK 17, one CPU, 200000 users, ages 30..40:
+ * <pre>
+ * findAll() + filter      220.8 ms/query, 22158 users found
+ * findByAge()              27.0 ms/query, 22173 users found
+ * </pre>
+ * Amounts differ, because User.getAge() counts years of 365 days, while findByAge() compares dates of birth
+ * with calendar dates, so users near the bounds of the bracket may fall on either side
+ */
+public class AgeQueryBenchmark {
+    private static final String DRIVER = "org.hsqldb.jdbcDriver";
+    private static final String URL = "jdbc:hsqldb:mem:ageBenchmark";
+    private static final int USERS = 200000;
+    private static final int CHUNK_SIZE = 1000;
+    private static final int MIN_AGE = 30;
+    private static final int MAX_AGE = 40;
+    private static final int WARMUP = 3;
+    private static final int RUNS = 10;
+
+    public static void main(String[] args) throws Exception {
+        ConnectionFactory factory = new ConnectionFactoryImpl(DRIVER, URL, "sa", "");
+        try (Connection connection = factory.createConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE MEMORY TABLE USERS(ID BIGINT GENERATED BY DEFAULT AS IDENTITY(START WITH 0) NOT NULL PRIMARY KEY," +
+                    "FIRSTNAME VARCHAR NOT NULL,LASTNAME VARCHAR NOT NULL,DATEOFBIRTH DATE NOT NULL,BIRTHDAY INTEGER NOT NULL,VERSION BIGINT DEFAULT 0 NOT NULL)");
+            statement.execute("CREATE INDEX IDX_USERS_DATEOFBIRTH ON USERS(DATEOFBIRTH)");
+        }
+        HSQLdbUserDao dao = new HSQLdbUserDao(factory);
+        Random random = new Random(42);
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.add(Calendar.DAY_OF_YEAR, -random.nextInt(100 * 365));
+            users.add(new User("First" + i, "Last" + i, calendar.getTime()));
+        }
+        dao.createAll(users, CHUNK_SIZE);
+
+        int found = 0;
+        for (int i = 0; i < WARMUP; i++) {
+            found = loadAndFilter(dao).size();
+            dao.findByAge(MIN_AGE, MAX_AGE);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            loadAndFilter(dao);
+        }
+        report("findAll() + filter", System.nanoTime() - start, found);
+
+        start = System.nanoTime();
+        for (int i = 0; i < RUNS; i++) {
+            found = dao.findByAge(MIN_AGE, MAX_AGE).size();
+        }
+        report("findByAge()", System.nanoTime() - start, found);
+    }
+
+    private static List<User> loadAndFilter(UserDao dao) throws Exception {
+        return dao.findAll().stream()
+                .filter(user -> user.getAge() >= MIN_AGE && user.getAge() <= MAX_AGE)
+                .collect(Collectors.toList());
+    }
+
+    private static void report(String name, long nanos, int found) {
+        System.out.printf("%-20s %8.1f ms/query, %d users found%n", name, nanos / 1e6 / RUNS, found);
+    }
+}
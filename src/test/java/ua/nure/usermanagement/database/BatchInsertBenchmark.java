@@ -0,0 +1,51 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.User;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Compares loading users by a loop of UserDao.create() calls against UserDao.createAll() with JDBC batching.
+ * Run it as a plain java application, it is not a part of the test suite.
+ */
+public class BatchInsertBenchmark {
+    private static final String DRIVER = "org.hsqldb.jdbcDriver";
+    private static final int USERS = 20000;
+    private static final int CHUNK_SIZE = 500;
+
+    public static void main(String[] args) throws Exception {
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(new User("First" + i, "Last" + i, new Date()));
+        }
+
+        HSQLdbUserDao loopDao = new HSQLdbUserDao(createDatabase("jdbc:hsqldb:mem:loop"));
+        long start = System.nanoTime();
+        for (User user : users) {
+            loopDao.create(user);
+        }
+        report("loop of create()", System.nanoTime() - start);
+
+        HSQLdbUserDao batchDao = new HSQLdbUserDao(createDatabase("jdbc:hsqldb:mem:batch"));
+        start = System.nanoTime();
+        batchDao.createAll(users, CHUNK_SIZE);
+        report("createAll(" + CHUNK_SIZE + ")", System.nanoTime() - start);
+    }
+
+    private static ConnectionFactory createDatabase(String url) throws Exception {
+        ConnectionFactory factory = new ConnectionFactoryImpl(DRIVER, url, "sa", "");
+        try (Connection connection = factory.createConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE MEMORY TABLE USERS(ID BIGINT GENERATED BY DEFAULT AS IDENTITY(START WITH 0) NOT NULL PRIMARY KEY," +
+                    "FIRSTNAME VARCHAR NOT NULL,LASTNAME VARCHAR NOT NULL,DATEOFBIRTH DATE NOT NULL,BIRTHDAY INTEGER NOT NULL,VERSION BIGINT DEFAULT 0 NOT NULL)");
+        }
+        return factory;
+    }
+
+    private static void report(String name, long nanos) {
+        System.out.printf("%-20s %8d ms, %10.0f rows/s%n", name, nanos / 1000000, USERS / (nanos / 1e9));
+    }
+}
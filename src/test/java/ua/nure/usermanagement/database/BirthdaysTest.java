@@ -0,0 +1,42 @@
+package ua.nure.usermanagement.database;
+
+import junit.framework.TestCase;
+
+import java.time.LocalDate;
+import java.util.Arrays;
+
+/**
+ * A test case for Birthdays class
+ */
+public class BirthdaysTest extends TestCase {
+
+    /**
+     * Tests, that a period inside one year is one range
+     */
+    public void testRangeInsideYear() {
+        int[][] ranges = Birthdays.ranges(LocalDate.of(2017, 6, 13), 30);
+        assertEquals(1, ranges.length);
+        assertTrue(Arrays.equals(new int[]{613, 713}, ranges[0]));
+    }
+
+    /**
+     * Tests, that a period, that crosses the end of the year, is split into two ranges in order of days
+     */
+    public void testRangeWrapsAround() {
+        int[][] ranges = Birthdays.ranges(LocalDate.of(2017, 12, 20), 20);
+        assertEquals(2, ranges.length);
+        assertTrue(Arrays.equals(new int[]{1220, 1231}, ranges[0]));
+        assertTrue(Arrays.equals(new int[]{101, 109}, ranges[1]));
+    }
+
+    /**
+     * Tests, that a year-long period covers every day once, including February 29
+     */
+    public void testWholeYear() {
+        int[][] ranges = Birthdays.ranges(LocalDate.of(2017, 3, 1), 365);
+        assertEquals(2, ranges.length);
+        assertTrue(Arrays.equals(new int[]{301, 1231}, ranges[0]));
+        assertTrue(Arrays.equals(new int[]{101, 300}, ranges[1]));
+        assertEquals(229, Birthdays.of(LocalDate.of(2016, 2, 29)));
+    }
+}
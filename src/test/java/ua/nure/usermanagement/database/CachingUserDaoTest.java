@@ -0,0 +1,73 @@
+package ua.nure.usermanagement.database;
+
+import junit.framework.TestCase;
+import ua.nure.usermanagement.User;
+
+import java.util.Collections;
+import java.util.Date;
+
+/**
+ * A test case for CachingUserDao class
+ */
+public class CachingUserDaoTest extends TestCase {
+
+    private MockUserDao delegate;
+    private CachingUserDao dao;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        delegate = new MockUserDao();
+        dao = new CachingUserDao(delegate, 2, 60000);
+    }
+
+    /**
+     * Tests, that a repeated find() is served from the cache with a copy of the user
+     *
+     * @throws Exception
+     */
+    public void testFindIsCached() throws Exception {
+        User user = delegate.create(new User("Rick", "Sanchez", new Date()));
+        User first = dao.find(user.getId());
+        first.setFirstName("Changed by caller");
+        User second = dao.find(user.getId());
+        assertEquals("Rick", second.getFirstName());
+        assertEquals(1, dao.getHits());
+        assertEquals(1, dao.getMisses());
+    }
+
+    /**
+     * Tests, that writes through the cache invalidate cached users
+     *
+     * @throws Exception
+     */
+    public void testWritesInvalidate() throws Exception {
+        User user = delegate.create(new User("Rick", "Sanchez", new Date()));
+        dao.find(user.getId());
+        User changed = new User(user);
+        changed.setFirstName("Morty");
+        dao.update(changed);
+        assertEquals("Morty", dao.find(user.getId()).getFirstName());
+        dao.deleteAll(Collections.singletonList(user.getId()));
+        assertNull(dao.find(user.getId()).getId());
+        assertEquals(3, dao.getMisses());
+    }
+
+    /**
+     * Tests, that the least recently used user is evicted, when the cache is full
+     *
+     * @throws Exception
+     */
+    public void testEviction() throws Exception {
+        User first = delegate.create(new User("Rick", "Sanchez", new Date()));
+        User second = delegate.create(new User("Morty", "Smith", new Date()));
+        User third = delegate.create(new User("Summer", "Smith", new Date()));
+        dao.find(first.getId());
+        dao.find(second.getId());
+        dao.find(first.getId());
+        dao.find(third.getId());
+        assertEquals(1, dao.getEvictions());
+        assertEquals(2, dao.getSize());
+        dao.find(first.getId());
+        assertEquals("Recently used user was evicted", 2, dao.getHits());
+    }
+}
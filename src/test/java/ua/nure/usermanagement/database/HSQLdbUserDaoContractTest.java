@@ -0,0 +1,26 @@
+package ua.nure.usermanagement.database;
+
+import java.sql.Connection;
+import java.sql.Statement;
+
+/**
+ * Checks {@link HSQLdbUserDao} against the common contract of UserDao, using an in-memory HSQLDB database
+ */
+public class HSQLdbUserDaoContractTest extends UserDaoContractTest {
+    private ConnectionFactory factory;
+
+    @Override
+    protected UserDao createDao() throws Exception {
+        factory = new ConnectionFactoryImpl("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:contract", "sa", "");
+        new SchemaInitializer(factory, SchemaInitializer.StorageMode.MEMORY, 0).initialize();
+        return new HSQLdbUserDao(factory);
+    }
+
+    @Override
+    protected void closeDao(UserDao dao) throws Exception {
+        super.closeDao(dao);
+        try (Connection connection = factory.createConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+    }
+}
@@ -7,9 +7,13 @@ import org.dbunit.dataset.IDataSet;
 import org.dbunit.dataset.xml.XmlDataSet;
 import org.junit.Before;
 import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.UserSummary;
 import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.OptimisticLockException;
 
 import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * A test case for checking HSQL db userDAo implementation of UserDao interface
@@ -56,6 +60,26 @@ public class HSQLdbUserDaoTest extends DatabaseTestCase {
         }
     }
 
+    /**
+     * Tests work of createAll() method. Users must be inserted with consecutive ids in the given order,
+     * including the last, incomplete chunk
+     * @throws Exception
+     */
+    public void testCreateAll() throws Exception {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            users.add(new User("Jerry" + i, "Smith", new Date()));
+        }
+        List<User> createdUsers = dao.createAll(users, 2);
+        assertEquals(users.size(), createdUsers.size());
+        for (int i = 0; i < users.size(); i++) {
+            User createdUser = createdUsers.get(i);
+            assertEquals(users.get(i).getFirstName(), createdUser.getFirstName());
+            assertEquals("Wrong id assigned", createdUser.getFirstName(), dao.find(createdUser.getId()).getFirstName());
+        }
+        assertEquals("Collection size: ", 2 + users.size(), dao.findAll().size());
+    }
+
     /**
      * Tests work of update() method. Given a user with all fields filled, it must update the necessary entry in db
      * @throws Exception
@@ -103,6 +127,16 @@ public class HSQLdbUserDaoTest extends DatabaseTestCase {
         }
     }
 
+    /**
+     * Tests work of deleteAll() method. Given a collection of ids, it must delete all the necessary entries in db
+     * @throws Exception
+     */
+    public void testDeleteAll() throws Exception {
+        int deleted = dao.deleteAll(Arrays.asList(1000L, 1001L, 999L));
+        assertEquals("Amount of deleted entries", 2, deleted);
+        assertEquals("Collection size: ", 0, dao.findAll().size());
+    }
+
     /**
      * Tests work of find(Long id) method. Given a Long id it must find the necessary entry in db
      * @throws Exception
@@ -135,4 +169,214 @@ public class HSQLdbUserDaoTest extends DatabaseTestCase {
         assertEquals("Collection size: ", AMOUNT_OF_ENTRIES_IN_DB, dao.findAll().size());
     }
 
-}
\ No newline at end of file
+    /**
+     * Tests work of findPage() and findPageBefore() methods. Pages must follow each other in ascending order of id
+     * @throws Exception
+     */
+    public void testFindPage() throws Exception {
+        List<User> firstPage = dao.findPage(null, 1);
+        assertEquals("Page size: ", 1, firstPage.size());
+        assertEquals(Long.valueOf(1000L), firstPage.get(0).getId());
+
+        List<User> secondPage = dao.findPage(firstPage.get(0).getId(), 10);
+        assertEquals("Page size: ", 1, secondPage.size());
+        assertEquals(Long.valueOf(1001L), secondPage.get(0).getId());
+
+        List<User> previousPage = dao.findPageBefore(secondPage.get(0).getId(), 10);
+        assertEquals("Page size: ", 1, previousPage.size());
+        assertEquals(Long.valueOf(1000L), previousPage.get(0).getId());
+
+        List<User> lastPage = dao.findPageBefore(null, 10);
+        assertEquals("Page size: ", 2, lastPage.size());
+        assertEquals(Long.valueOf(1001L), lastPage.get(1).getId());
+    }
+
+    /**
+     * Tests, that findPageBefore() returns a full page, when there are gaps of deleted users before the id
+     * @throws Exception
+     */
+    public void testFindPageBeforeGap() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            ids.add(dao.create(new User("Jerry", "Smith", new Date())).getId());
+        }
+        dao.deleteAll(ids.subList(1, 5));
+
+        assertEquals(Arrays.asList(1001L, ids.get(0)), ids(dao.findPageBefore(ids.get(5), 2)));
+        assertEquals(Arrays.asList(1001L, ids.get(0), ids.get(5)), ids(dao.findPageBefore(null, 3)));
+        assertEquals(Arrays.asList(1000L, 1001L, ids.get(0)), ids(dao.findPageBefore(ids.get(5), 10)));
+        assertTrue(dao.findPageBefore(1000L, 10).isEmpty());
+    }
+
+    private static List<Long> ids(List<User> users) {
+        return users.stream().map(User::getId).collect(Collectors.toList());
+    }
+
+    /**
+     * Tests, that an update of a user, that was read before another update, fails and doesn't overwrite it
+     * @throws Exception
+     */
+    public void testUpdateConflict() throws Exception {
+        User first = dao.find(1001L);
+        User second = dao.find(1001L);
+        assertEquals(Long.valueOf(0L), first.getVersion());
+
+        first.setLastName("Sanchez");
+        dao.update(first);
+        assertEquals(Long.valueOf(1L), first.getVersion());
+
+        second.setFirstName("Evil Morty");
+        try {
+            dao.update(second);
+            fail("Update of a stale user must fail");
+        } catch (OptimisticLockException e) {
+            assertEquals(Long.valueOf(1001L), e.getId());
+        }
+        User current = dao.find(1001L);
+        assertEquals(first, current);
+        assertEquals(Long.valueOf(1L), current.getVersion());
+
+        second.setVersion(null);
+        dao.update(second);
+        assertEquals(Long.valueOf(2L), dao.find(1001L).getVersion());
+    }
+
+    /**
+     * Tests work of findSummaries(), findSummaryPage() and findSummaryPageBefore() methods.
+     * They must return ids and names of the same users, as full queries
+     * @throws Exception
+     */
+    public void testFindSummaries() throws Exception {
+        List<UserSummary> summaries = dao.findSummaries();
+        assertEquals("Collection size: ", 2, summaries.size());
+        assertEquals(new UserSummary(1000L, "Rick", "Sanchez"), summaries.get(0));
+
+        List<UserSummary> page = dao.findSummaryPage(1000L, 10);
+        assertEquals(Collections.singletonList(new UserSummary(1001L, "Morty", "Smith")), page);
+
+        List<UserSummary> previousPage = dao.findSummaryPageBefore(1001L, 10);
+        assertEquals(Collections.singletonList(summaries.get(0)), previousPage);
+    }
+
+    /**
+     * Tests work of streamAll() method. It must return all entries of table users in ascending order of id
+     * @throws Exception
+     */
+    public void testStreamAll() throws Exception {
+        try (Stream<User> users = dao.streamAll(1)) {
+            List<Long> ids = users.map(User::getId).collect(Collectors.toList());
+            assertEquals(Arrays.asList(1000L, 1001L), ids);
+        }
+    }
+
+    /**
+     * Tests, that streamAll() reads the next page only, when the previous one is consumed,
+     * so a user, deleted in between, isn't read, as it would be from a result, read into memory at once
+     * @throws Exception
+     */
+    public void testStreamAllReadsByPages() throws Exception {
+        try (Stream<User> users = dao.streamAll(1)) {
+            Iterator<User> iterator = users.iterator();
+            assertEquals(Long.valueOf(1000L), iterator.next().getId());
+            dao.deleteAll(Collections.singletonList(1001L));
+            assertFalse(iterator.hasNext());
+        }
+    }
+
+    /**
+     * Tests work of findAll() and streamAll() methods with a parallel scan. Every user must be read once,
+     * in ascending order of id, though each of them is in its own range
+     * @throws Exception
+     */
+    public void testParallelScan() throws Exception {
+        dao.setParallelScan(2, 1);
+        List<Long> ids = dao.findAll().stream().map(User::getId).collect(Collectors.toList());
+        assertEquals(Arrays.asList(1000L, 1001L), ids);
+        try (Stream<User> users = dao.streamAll(1)) {
+            assertEquals(Arrays.asList(1000L, 1001L), users.map(User::getId).collect(Collectors.toList()));
+        }
+        dao.deleteAll(ids);
+        assertTrue(dao.findAll().isEmpty());
+    }
+
+    /**
+     * Tests, that a scan still reads all users, after the DAO was reconfigured and closed
+     * @throws Exception
+     */
+    public void testParallelScanAfterClose() throws Exception {
+        dao.setParallelScan(2, 1);
+        dao.setParallelScan(3, 1);
+        assertEquals(2, dao.findAll().size());
+        try (Stream<User> users = dao.streamAll(1)) {
+            dao.close();
+            assertEquals(Arrays.asList(1000L, 1001L), users.map(User::getId).collect(Collectors.toList()));
+        }
+        assertEquals(2, dao.findAll().size());
+    }
+
+    /**
+     * Tests work of findByCriteria() method. Users must be filtered by name prefix and date of birth,
+     * sorted by the requested column and limited
+     * @throws Exception
+     */
+    public void testFindByCriteria() throws Exception {
+        UserCriteria criteria = new UserCriteria();
+        criteria.setLastNamePrefix("Sm");
+        List<User> found = dao.findByCriteria(criteria);
+        assertEquals("Found users: ", 1, found.size());
+        assertEquals(Long.valueOf(1001L), found.get(0).getId());
+
+        criteria = new UserCriteria();
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(1920, Calendar.JUNE, 13, 0, 0, 0);
+        criteria.setBornFrom(calendar.getTime());
+        calendar.set(1999, Calendar.JULY, 24, 0, 0, 0);
+        criteria.setBornTo(calendar.getTime());
+        found = dao.findByCriteria(criteria);
+        assertEquals("Found users: ", 1, found.size());
+        assertEquals(Long.valueOf(1000L), found.get(0).getId());
+
+        criteria = new UserCriteria();
+        criteria.setSortColumn(UserCriteria.SortColumn.FIRSTNAME);
+        criteria.setLimit(1);
+        found = dao.findByCriteria(criteria);
+        assertEquals("Found users: ", 1, found.size());
+        assertEquals("Morty", found.get(0).getFirstName());
+    }
+
+    /**
+     * Tests work of findByDateOfBirth() and findByAge() methods. Age bracket must include users,
+     * whose age in full years is equal to its bounds
+     * @throws Exception
+     */
+    public void testFindByAge() throws Exception {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(1999, Calendar.JULY, 25, 0, 0, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        List<User> found = dao.findByDateOfBirth(calendar.getTime(), null);
+        assertEquals("Found users: ", 1, found.size());
+        assertEquals(Long.valueOf(1001L), found.get(0).getId());
+
+        int mortyAge = java.time.Period.between(java.time.LocalDate.of(1999, 7, 25), java.time.LocalDate.now()).getYears();
+        found = dao.findByAge(mortyAge, mortyAge);
+        assertEquals("Found users: ", 1, found.size());
+        assertEquals(Long.valueOf(1001L), found.get(0).getId());
+
+        found = dao.findByAge(0, 200);
+        assertEquals("Found users: ", 2, found.size());
+        assertEquals("The youngest user must go first", Long.valueOf(1001L), found.get(0).getId());
+    }
+
+    /**
+     * Tests work of findUpcomingBirthdays() method. A year-long period must include every user
+     * @throws Exception
+     */
+    public void testFindUpcomingBirthdays() throws Exception {
+        List<User> found = dao.findUpcomingBirthdays(365);
+        assertEquals("Found users: ", 2, found.size());
+        User created = dao.create(new User("Jerry", "Smith", new Date()));
+        found = dao.findUpcomingBirthdays(0);
+        assertEquals("Found users: ", 1, found.size());
+        assertEquals(created.getId(), found.get(0).getId());
+    }
+}
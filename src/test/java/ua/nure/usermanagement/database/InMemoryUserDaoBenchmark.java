@@ -0,0 +1,119 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.User;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures latency of InMemoryUserDao against HSQLdbUserDao on a pooled connection under concurrent load:
+ * several threads call find() and, once in ten calls, update() on random users.
+ * Run it as a plain java application, it is not a part of the test suite.
+ * <p>
+ * Measured with HSQLDB 1.8.0.10 on JDK 17, one CPU, 10000 users, 8 threads:
+ * <pre>
+ * HSQLdbUserDao (pool)      mean   103.09 us, p50     7.37 us, p99    26.69 us
+ * InMemoryUserDao           mean     7.78 us, p50     0.30 us, p99     1.65 us
+ * </pre>
+ * Means are far above p99, because a few calls wait for the only CPU, while other threads run
+ */
+public class InMemoryUserDaoBenchmark {
+    private static final String DRIVER = "org.hsqldb.jdbcDriver";
+    private static final String URL = "jdbc:hsqldb:mem:benchmark";
+    private static final int ROWS = 10000;
+    private static final int THREADS = 8;
+    private static final int WARMUP = 5000;
+    private static final int CALLS = 20000;
+    private static final int UPDATE_EVERY = 10;
+
+    public static void main(String[] args) throws Exception {
+        PooledConnectionFactory pooled = new PooledConnectionFactory(DRIVER, URL, "sa", "",
+                THREADS, THREADS, 5000, "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SYSTEM_USERS", 30000, 60000, 32);
+        try {
+            createTable(pooled);
+            HSQLdbUserDao hsqldb = new HSQLdbUserDao(pooled);
+            InMemoryUserDao memory = new InMemoryUserDao(null, 0);
+            fill(hsqldb);
+            fill(memory);
+            report("HSQLdbUserDao (pool)", measure(hsqldb));
+            report("InMemoryUserDao", measure(memory));
+        } finally {
+            pooled.close();
+        }
+    }
+
+    private static void createTable(ConnectionFactory factory) throws Exception {
+        try (Connection connection = factory.createConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE MEMORY TABLE USERS(ID BIGINT GENERATED BY DEFAULT AS IDENTITY(START WITH 0) NOT NULL PRIMARY KEY," +
+                    "FIRSTNAME VARCHAR NOT NULL,LASTNAME VARCHAR NOT NULL,DATEOFBIRTH DATE NOT NULL,BIRTHDAY INTEGER NOT NULL,VERSION BIGINT DEFAULT 0 NOT NULL)");
+        }
+    }
+
+    private static void fill(UserDao dao) throws Exception {
+        List<User> users = new ArrayList<>(ROWS);
+        for (int i = 0; i < ROWS; i++) {
+            users.add(new User("First" + i, "Last" + i, new Date()));
+        }
+        dao.createAll(users, 1000);
+    }
+
+    /**
+     * @return latencies of all measured calls in nanoseconds, sorted
+     */
+    private static long[] measure(UserDao dao) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<long[]>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < WARMUP; i++) {
+                        call(dao, i);
+                    }
+                    long[] latencies = new long[CALLS];
+                    for (int i = 0; i < CALLS; i++) {
+                        long start = System.nanoTime();
+                        call(dao, i);
+                        latencies[i] = System.nanoTime() - start;
+                    }
+                    return latencies;
+                }));
+            }
+            long[] all = new long[THREADS * CALLS];
+            for (int t = 0; t < THREADS; t++) {
+                System.arraycopy(futures.get(t).get(), 0, all, t * CALLS, CALLS);
+            }
+            Arrays.sort(all);
+            return all;
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void call(UserDao dao, int i) throws Exception {
+        User user = dao.find((long) ThreadLocalRandom.current().nextInt(ROWS));
+        if (i % UPDATE_EVERY == 0) {
+            user.setVersion(null);
+            user.setFirstName("Updated" + i);
+            dao.update(user);
+        }
+    }
+
+    private static void report(String name, long[] latencies) {
+        long sum = 0;
+        for (long latency : latencies) {
+            sum += latency;
+        }
+        System.out.printf("%-25s mean %8.2f us, p50 %8.2f us, p99 %8.2f us%n", name,
+                sum / 1000.0 / latencies.length,
+                latencies[latencies.length / 2] / 1000.0,
+                latencies[(int) (latencies.length * 0.99)] / 1000.0);
+    }
+}
@@ -0,0 +1,12 @@
+package ua.nure.usermanagement.database;
+
+/**
+ * Checks {@link InMemoryUserDao} against the common contract of UserDao
+ */
+public class InMemoryUserDaoContractTest extends UserDaoContractTest {
+
+    @Override
+    protected UserDao createDao() throws Exception {
+        return new InMemoryUserDao(null, 0);
+    }
+}
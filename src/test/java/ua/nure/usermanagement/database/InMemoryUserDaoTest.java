@@ -0,0 +1,166 @@
+package ua.nure.usermanagement.database;
+
+import junit.framework.TestCase;
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.OptimisticLockException;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A test case for {@link InMemoryUserDao}
+ */
+public class InMemoryUserDaoTest extends TestCase {
+    private static final String FIRST_NAME = "Rick";
+    private static final String LAST_NAME = "Sanchez";
+
+    private InMemoryUserDao dao;
+    private Date dateOfBirth;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        dao = new InMemoryUserDao(null, 0);
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(1950, Calendar.MARCH, 4, 0, 0, 0);
+        dateOfBirth = calendar.getTime();
+    }
+
+    public void testCreate() throws Exception {
+        User user = new User(FIRST_NAME, LAST_NAME, dateOfBirth);
+        User createdUser = dao.create(user);
+        assertNotNull(createdUser.getId());
+        assertNull(user.getId());
+        assertEquals(Long.valueOf(0), createdUser.getVersion());
+        User foundUser = dao.find(createdUser.getId());
+        assertEquals(createdUser, foundUser);
+        foundUser.setFirstName("Morty");
+        assertEquals(FIRST_NAME, dao.find(createdUser.getId()).getFirstName());
+    }
+
+    /**
+     * Tests, that a stale version is rejected and a current one is incremented
+     */
+    public void testUpdateConflict() throws Exception {
+        User user = dao.create(new User(FIRST_NAME, LAST_NAME, dateOfBirth));
+        User stale = new User(user);
+        user.setFirstName("Pickle Rick");
+        dao.update(user);
+        assertEquals(Long.valueOf(1), user.getVersion());
+        stale.setFirstName("Evil Rick");
+        try {
+            dao.update(stale);
+            fail("Stale user must be rejected");
+        } catch (OptimisticLockException e) {
+            assertEquals(user.getId(), e.getId());
+        }
+        assertEquals("Pickle Rick", dao.find(user.getId()).getFirstName());
+        assertEquals(0, dao.updateAll(Arrays.asList(stale)));
+    }
+
+    public void testDeleteAndPages() throws Exception {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            users.add(new User(FIRST_NAME + i, LAST_NAME, dateOfBirth));
+        }
+        List<User> createdUsers = dao.createAll(users, 2);
+        dao.delete(createdUsers.get(1));
+        assertEquals(1, dao.deleteAll(Arrays.asList(createdUsers.get(1).getId(), createdUsers.get(2).getId())));
+        List<User> page = dao.findPage(createdUsers.get(0).getId(), 2);
+        assertEquals(2, page.size());
+        assertEquals(createdUsers.get(3), page.get(0));
+        assertEquals(createdUsers.get(4), page.get(1));
+        assertEquals(3, dao.findSummaries().size());
+    }
+
+    /**
+     * Tests, that changes of a unit of work are undone, when it fails
+     */
+    public void testRollback() throws Exception {
+        User user = dao.create(new User(FIRST_NAME, LAST_NAME, dateOfBirth));
+        try {
+            Transaction.execute(dao, userDao -> {
+                userDao.create(new User("Morty", "Smith", dateOfBirth));
+                User changed = userDao.find(user.getId());
+                changed.setFirstName("Pickle Rick");
+                userDao.update(changed);
+                throw new DatabaseException("Rolled back");
+            });
+            fail("Work must fail");
+        } catch (DatabaseException e) {
+            assertEquals("Rolled back", e.getMessage());
+        }
+        assertEquals(1, dao.getSize());
+        assertEquals(FIRST_NAME, dao.find(user.getId()).getFirstName());
+    }
+
+    /**
+     * Tests, that users and ids are restored from a snapshot
+     */
+    public void testSnapshot() throws Exception {
+        File file = File.createTempFile("users", ".snapshot");
+        assertTrue(file.delete());
+        try {
+            InMemoryUserDao first = new InMemoryUserDao(file, 0);
+            User user = first.create(new User(FIRST_NAME, LAST_NAME, dateOfBirth));
+            first.update(user);
+            first.close();
+            assertTrue(file.exists());
+
+            InMemoryUserDao second = new InMemoryUserDao(file, 0);
+            User foundUser = second.find(user.getId());
+            assertEquals(user, foundUser);
+            assertEquals(Long.valueOf(1), foundUser.getVersion());
+            assertEquals(dateOfBirth, foundUser.getDateOfBirth());
+            User createdUser = second.create(new User("Morty", "Smith", dateOfBirth));
+            assertTrue(createdUser.getId() > user.getId());
+            second.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Tests, that concurrent writers get distinct ids and don't lose updates
+     */
+    public void testConcurrentWrites() throws Exception {
+        User counter = dao.create(new User("0", LAST_NAME, dateOfBirth));
+        int threads = 4;
+        int increments = 500;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            futures.add(executor.submit(() -> {
+                for (int i = 0; i < increments; i++) {
+                    dao.create(new User(FIRST_NAME, LAST_NAME, dateOfBirth));
+                    while (true) {
+                        User current = dao.find(counter.getId());
+                        current.setFirstName(String.valueOf(Integer.parseInt(current.getFirstName()) + 1));
+                        try {
+                            dao.update(current);
+                            break;
+                        } catch (OptimisticLockException e) {
+                            // read again and retry
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+        executor.shutdown();
+        assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+        assertEquals(1 + threads * increments, dao.getSize());
+        assertEquals(String.valueOf(threads * increments), dao.find(counter.getId()).getFirstName());
+    }
+}
@@ -0,0 +1,93 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.User;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Measures throughput of create(), find() and update() of LogStructuredUserDao against HSQLdbUserDao
+ * on a file database with a pooled connection. Both keep their files in temporary directories.
+ * Run it as a plain java application, it is not a part of the test suite.
+ * <p>
+ * Measured with HSQLDB 1.8.0.10 on JDK 17, one CPU, 100000 users, in one segment:
+ * <pre>
+ * HSQLdbUserDao (file)      create          6824 ops/s
+ * HSQLdbUserDao (file)      find           34954 ops/s
+ * HSQLdbUserDao (file)      update          8148 ops/s
+ * LogStructuredUserDao      create        100448 ops/s
+ * LogStructuredUserDao      find          349590 ops/s
+ * LogStructuredUserDao      update        124224 ops/s
+ * </pre>
+ */
+public class LogStructuredUserDaoBenchmark {
+    private static final String DRIVER = "org.hsqldb.jdbcDriver";
+    private static final int USERS = 100000;
+    private static final int SEGMENT_SIZE = 64 * 1024 * 1024;
+
+    public static void main(String[] args) throws Exception {
+        File hsqldbDirectory = Files.createTempDirectory("usermanager-hsqldb").toFile();
+        File logDirectory = Files.createTempDirectory("usermanager-log").toFile();
+        String url = "jdbc:hsqldb:file:" + new File(hsqldbDirectory, "usermanager").getAbsolutePath();
+        PooledConnectionFactory pooled = new PooledConnectionFactory(DRIVER, url, "sa", "",
+                1, 1, 5000, "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SYSTEM_USERS", 30000, 60000, 32);
+        LogStructuredUserDao log = new LogStructuredUserDao(logDirectory, SEGMENT_SIZE, 0.5, 0);
+        try {
+            new SchemaInitializer(pooled, SchemaInitializer.StorageMode.CACHED, 0).initialize();
+            measure("HSQLdbUserDao (file)", new HSQLdbUserDao(pooled));
+            measure("LogStructuredUserDao", log);
+            System.out.println(log);
+        } finally {
+            log.close();
+            try (Connection connection = pooled.createConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("SHUTDOWN");
+            }
+            pooled.close();
+            delete(hsqldbDirectory);
+            delete(logDirectory);
+        }
+    }
+
+    private static void measure(String name, UserDao dao) throws Exception {
+        List<User> users = new ArrayList<>(USERS);
+        long start = System.nanoTime();
+        for (int i = 0; i < USERS; i++) {
+            users.add(dao.create(new User("First" + i, "Last" + i, new Date())));
+        }
+        report(name, "create", System.nanoTime() - start);
+
+        start = System.nanoTime();
+        for (User user : users) {
+            dao.find(user.getId());
+        }
+        report(name, "find", System.nanoTime() - start);
+
+        start = System.nanoTime();
+        for (User user : users) {
+            user.setFirstName("Updated" + user.getId());
+            dao.update(user);
+        }
+        report(name, "update", System.nanoTime() - start);
+    }
+
+    private static void report(String name, String operation, long nanos) {
+        System.out.printf("%-25s %-7s %12.0f ops/s%n", name, operation, USERS / (nanos / 1e9));
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+}
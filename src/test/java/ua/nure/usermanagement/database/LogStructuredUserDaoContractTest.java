@@ -0,0 +1,29 @@
+package ua.nure.usermanagement.database;
+
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * Checks {@link LogStructuredUserDao} against the common contract of UserDao
+ */
+public class LogStructuredUserDaoContractTest extends UserDaoContractTest {
+    private File directory;
+
+    @Override
+    protected UserDao createDao() throws Exception {
+        directory = Files.createTempDirectory("users-log").toFile();
+        return new LogStructuredUserDao(directory, 4096, 0.5, 0);
+    }
+
+    @Override
+    protected void closeDao(UserDao dao) throws Exception {
+        super.closeDao(dao);
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+}
@@ -0,0 +1,198 @@
+package ua.nure.usermanagement.database;
+
+import junit.framework.TestCase;
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.OptimisticLockException;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A test case for {@link LogStructuredUserDao}. Every test works in its own temporary directory
+ */
+public class LogStructuredUserDaoTest extends TestCase {
+    private static final String FIRST_NAME = "Rick";
+    private static final String LAST_NAME = "Sanchez";
+    private static final int SEGMENT_SIZE = 4096;
+
+    private File directory;
+    private LogStructuredUserDao dao;
+    private Date dateOfBirth;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        directory = Files.createTempDirectory("users-log").toFile();
+        dao = open();
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(1950, Calendar.MARCH, 4, 0, 0, 0);
+        dateOfBirth = calendar.getTime();
+    }
+
+    public void tearDown() throws Exception {
+        dao.close();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+        super.tearDown();
+    }
+
+    private LogStructuredUserDao open() throws DatabaseException {
+        return new LogStructuredUserDao(directory, SEGMENT_SIZE, 0.5, 0);
+    }
+
+    private LogStructuredUserDao reopen() throws DatabaseException {
+        dao.close();
+        dao = open();
+        return dao;
+    }
+
+    public void testCreateUpdateDelete() throws Exception {
+        User user = dao.create(new User(FIRST_NAME, LAST_NAME, dateOfBirth));
+        assertNotNull(user.getId());
+        assertEquals(Long.valueOf(0), user.getVersion());
+        User stale = new User(user);
+        user.setFirstName("Pickle Rick");
+        dao.update(user);
+        assertEquals(Long.valueOf(1), user.getVersion());
+        try {
+            dao.update(stale);
+            fail("Stale user must be rejected");
+        } catch (OptimisticLockException e) {
+            assertEquals(user.getId(), e.getId());
+        }
+        User foundUser = dao.find(user.getId());
+        assertEquals(user, foundUser);
+        assertEquals(dateOfBirth, foundUser.getDateOfBirth());
+        dao.delete(user);
+        assertNull(dao.find(user.getId()).getId());
+        assertEquals(0, dao.getSize());
+    }
+
+    /**
+     * Tests, that the index and ids are rebuilt from segments on start
+     */
+    public void testReopen() throws Exception {
+        User rick = dao.create(new User(FIRST_NAME, LAST_NAME, dateOfBirth));
+        User morty = dao.create(new User("Morty", "Smith", dateOfBirth));
+        rick.setFirstName("Pickle Rick");
+        dao.update(rick);
+        dao.delete(morty);
+
+        reopen();
+        assertEquals(1, dao.getSize());
+        assertEquals("Pickle Rick", dao.find(rick.getId()).getFirstName());
+        assertEquals(Long.valueOf(1), dao.find(rick.getId()).getVersion());
+        assertNull(dao.find(morty.getId()).getId());
+        assertTrue(dao.create(new User("Summer", "Smith", dateOfBirth)).getId() > morty.getId());
+    }
+
+    /**
+     * Tests, that a record, torn by a crash, is ignored and overwritten by the next write
+     */
+    public void testTornRecord() throws Exception {
+        User rick = dao.create(new User(FIRST_NAME, LAST_NAME, dateOfBirth));
+        User morty = dao.create(new User("Morty", "Smith", dateOfBirth));
+        dao.close();
+        File segment = directory.listFiles()[0];
+        try (RandomAccessFile file = new RandomAccessFile(segment, "rw")) {
+            // the last byte of the checksum of the last record
+            long position = file.length();
+            int value = 0;
+            while (position > 0 && value == 0) {
+                file.seek(--position);
+                value = file.read();
+            }
+            file.seek(position);
+            file.write(value ^ 0xFF);
+        }
+
+        dao = open();
+        assertEquals(rick, dao.find(rick.getId()));
+        assertNull(dao.find(morty.getId()).getId());
+        User summer = dao.create(new User("Summer", "Smith", dateOfBirth));
+        reopen();
+        assertEquals(2, dao.getSize());
+        assertEquals(summer, dao.find(summer.getId()));
+    }
+
+    /**
+     * Tests, that compaction removes segments with overwritten records and keeps the latest states
+     */
+    public void testCompaction() throws Exception {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            users.add(dao.create(new User(FIRST_NAME + i, LAST_NAME, dateOfBirth)));
+        }
+        for (int round = 0; round < 50; round++) {
+            for (User user : users) {
+                user.setLastName(LAST_NAME + round);
+                dao.update(user);
+            }
+        }
+        dao.delete(users.get(0));
+        int segmentsBefore = dao.getSegmentCount();
+        assertTrue(segmentsBefore > 3);
+        assertTrue(dao.compact() > 0);
+        assertTrue(dao.getSegmentCount() < segmentsBefore);
+
+        reopen();
+        assertEquals(users.size() - 1, dao.getSize());
+        assertNull(dao.find(users.get(0).getId()).getId());
+        for (User user : users.subList(1, users.size())) {
+            User foundUser = dao.find(user.getId());
+            assertEquals(LAST_NAME + 49, foundUser.getLastName());
+            assertEquals(user.getVersion(), foundUser.getVersion());
+        }
+    }
+
+    /**
+     * Tests, that the id of a user, that was created and deleted in a compacted segment, isn't given again after restart
+     */
+    public void testIdsAreNotReusedAfterCompaction() throws Exception {
+        User rick = dao.create(new User(FIRST_NAME, LAST_NAME, dateOfBirth));
+        User morty = dao.create(new User("Morty", "Smith", dateOfBirth));
+        dao.delete(morty);
+        for (int round = 0; round < 100; round++) {
+            rick.setLastName(LAST_NAME + round);
+            dao.update(rick);
+        }
+        assertTrue(dao.getSegmentCount() > 1);
+        assertTrue(dao.compact() > 0);
+
+        reopen();
+        User summer = dao.create(new User("Summer", "Smith", dateOfBirth));
+        assertTrue(summer.getId() > morty.getId());
+        assertEquals(LAST_NAME + 99, dao.find(rick.getId()).getLastName());
+        assertEquals(2, dao.getSize());
+    }
+
+    /**
+     * Tests, that a rolled back unit of work leaves no trace after restart
+     */
+    public void testRollback() throws Exception {
+        User rick = dao.create(new User(FIRST_NAME, LAST_NAME, dateOfBirth));
+        try {
+            Transaction.execute(dao, userDao -> {
+                userDao.create(new User("Morty", "Smith", dateOfBirth));
+                userDao.delete(rick);
+                throw new DatabaseException("Rolled back");
+            });
+            fail("Work must fail");
+        } catch (DatabaseException e) {
+            assertEquals("Rolled back", e.getMessage());
+        }
+        reopen();
+        assertEquals(1, dao.getSize());
+        assertEquals(rick, dao.find(rick.getId()));
+    }
+}
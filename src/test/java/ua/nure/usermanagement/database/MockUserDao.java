@@ -1,10 +1,20 @@
 package ua.nure.usermanagement.database;
 
 import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.UserSummary;
 import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.OptimisticLockException;
 
+import java.time.LocalDate;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
 import java.util.HashMap;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Implements a mock version of UserDao interface for testing purposes
@@ -18,26 +28,71 @@ public class MockUserDao implements UserDao {
     public User create(User user) throws DatabaseException {
         id++;
         user.setId(id);
+        user.setVersion(0L);
         users.put(id, user);
         return user;
     }
 
+    @Override
+    public List<User> createAll(Collection<User> users, int chunkSize) throws DatabaseException {
+        List<User> createdUsers = new ArrayList<>();
+        for (User user : users) {
+            createdUsers.add(create(user));
+        }
+        return createdUsers;
+    }
+
     @Override
     public void update(User user) throws DatabaseException {
         Long currentId = user.getId();
+        if (user.getVersion() != null) {
+            User current = users.get(currentId);
+            if (current == null || !user.getVersion().equals(current.getVersion())) {
+                throw new OptimisticLockException(currentId);
+            }
+            user.setVersion(user.getVersion() + 1);
+        }
         users.remove(currentId);
         users.put(currentId, user);
     }
 
+    @Override
+    public int updateAll(Collection<User> users) throws DatabaseException {
+        int updated = 0;
+        for (User user : users) {
+            if (this.users.containsKey(user.getId())) {
+                try {
+                    update(user);
+                    updated++;
+                } catch (OptimisticLockException e) {
+                    // skipped, as db skips a row with another version
+                }
+            }
+        }
+        return updated;
+    }
+
     @Override
     public void delete(User user) throws DatabaseException {
         Long currentId = user.getId();
         users.remove(currentId);
     }
 
+    @Override
+    public int deleteAll(Collection<Long> ids) throws DatabaseException {
+        int deleted = 0;
+        for (Long currentId : ids) {
+            if (users.remove(currentId) != null) {
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
     @Override
     public User find(Long id) throws DatabaseException {
-        return users.get(id);
+        User user = users.get(id);
+        return user != null ? user : new User();
     }
 
     @Override
@@ -45,6 +100,85 @@ public class MockUserDao implements UserDao {
         return users.values();
     }
 
+    @Override
+    public Stream<User> streamAll(int fetchSize) throws DatabaseException {
+        return users.values().stream().sorted((a, b) -> a.getId().compareTo(b.getId()));
+    }
+
+    @Override
+    public List<User> findPage(Long afterId, int limit) throws DatabaseException {
+        return users.values().stream()
+                .filter(user -> afterId == null || user.getId() > afterId)
+                .sorted((a, b) -> a.getId().compareTo(b.getId()))
+                .limit(limit)
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    public List<User> findPageBefore(Long beforeId, int limit) throws DatabaseException {
+        List<User> page = users.values().stream()
+                .filter(user -> beforeId == null || user.getId() < beforeId)
+                .sorted((a, b) -> b.getId().compareTo(a.getId()))
+                .limit(limit)
+                .collect(Collectors.toList());
+        Collections.reverse(page);
+        return page;
+    }
+
+    @Override
+    public List<UserSummary> findSummaries() throws DatabaseException {
+        return findSummaryPage(null, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public List<UserSummary> findSummaryPage(Long afterId, int limit) throws DatabaseException {
+        return findPage(afterId, limit).stream().map(UserSummary::new).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<UserSummary> findSummaryPageBefore(Long beforeId, int limit) throws DatabaseException {
+        return findPageBefore(beforeId, limit).stream().map(UserSummary::new).collect(Collectors.toList());
+    }
+
+    @Override
+    public List<User> findByCriteria(UserCriteria criteria) throws DatabaseException {
+        Stream<User> found = users.values().stream().filter(criteria::matches).sorted(criteria.getComparator());
+        if (criteria.getLimit() > 0) {
+            found = found.limit(criteria.getLimit());
+        }
+        return found.collect(Collectors.toList());
+    }
+
+    @Override
+    public List<User> findByDateOfBirth(Date from, Date to) throws DatabaseException {
+        UserCriteria criteria = new UserCriteria();
+        criteria.setBornFrom(from);
+        criteria.setBornTo(to);
+        criteria.setSortColumn(UserCriteria.SortColumn.DATEOFBIRTH);
+        return findByCriteria(criteria);
+    }
+
+    @Override
+    public List<User> findByAge(int minAge, int maxAge) throws DatabaseException {
+        UserCriteria criteria = new UserCriteria();
+        criteria.setAge(minAge, maxAge);
+        criteria.setSortColumn(UserCriteria.SortColumn.DATEOFBIRTH);
+        criteria.setDescending(true);
+        return findByCriteria(criteria);
+    }
+
+    @Override
+    public List<User> findUpcomingBirthdays(int days) throws DatabaseException {
+        List<User> found = new ArrayList<>();
+        for (int[] range : Birthdays.ranges(LocalDate.now(), days)) {
+            users.values().stream()
+                    .filter(user -> Birthdays.of(user.getDateOfBirth()) >= range[0] && Birthdays.of(user.getDateOfBirth()) <= range[1])
+                    .sorted(Comparator.comparing((User user) -> Birthdays.of(user.getDateOfBirth())).thenComparing(User::getId))
+                    .forEach(found::add);
+        }
+        return found;
+    }
+
     @Override
     public void setConnectionFactory(ConnectionFactory factory) {
         //Empty on purpose
@@ -0,0 +1,86 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.User;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Measures time of findAll() and of consuming streamAll() of HSQLdbUserDao on a file database
+ * with a pooled connection, reading the table on one connection and in parallel ranges of ids.
+ * Run it as a plain java application, it is not a part of the test suite.
+ * <p>
+ * Measured with HSQLDB 1.8.0.10 on JDK 17, one CPU, 500000 users, in ms:
+ * <pre>
+ * parallelism  findAll  streamAll
+ *           1   2077.1     2252.5
+ *           2   3163.2     3291.6
+ *           4   2333.1     2786.3
+ *           8   2520.1     2794.1
+ * </pre>
+ * With one CPU ranges aren't read faster in parallel, the benchmark must be run on several to show the gain
+ */
+public class ParallelScanBenchmark {
+    private static final String DRIVER = "org.hsqldb.jdbcDriver";
+    private static final int USERS = 500000;
+    private static final int[] PARALLELISM = {1, 2, 4, 8};
+    private static final int RANGE_SIZE = 10000;
+    private static final int FETCH_SIZE = 500;
+
+    public static void main(String[] args) throws Exception {
+        File directory = Files.createTempDirectory("usermanager-scan").toFile();
+        String url = "jdbc:hsqldb:file:" + new File(directory, "usermanager").getAbsolutePath();
+        PooledConnectionFactory pooled = new PooledConnectionFactory(DRIVER, url, "sa", "",
+                1, 8, 5000, "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SYSTEM_USERS", 30000, 60000, 32);
+        try {
+            new SchemaInitializer(pooled, SchemaInitializer.StorageMode.CACHED, 0).initialize();
+            HSQLdbUserDao dao = new HSQLdbUserDao(pooled);
+            List<User> users = new ArrayList<>(USERS);
+            for (int i = 0; i < USERS; i++) {
+                users.add(new User("First" + i, "Last" + i, new Date()));
+            }
+            dao.createAll(users, 1000);
+            for (int parallelism : PARALLELISM) {
+                dao.setParallelScan(parallelism, RANGE_SIZE);
+                long start = System.nanoTime();
+                int found = dao.findAll().size();
+                report(parallelism, "findAll", found, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                long streamed;
+                try (Stream<User> stream = dao.streamAll(FETCH_SIZE)) {
+                    streamed = stream.count();
+                }
+                report(parallelism, "streamAll", streamed, System.nanoTime() - start);
+            }
+        } finally {
+            try (Connection connection = pooled.createConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("SHUTDOWN");
+            }
+            pooled.close();
+            delete(directory);
+        }
+    }
+
+    private static void report(int parallelism, String operation, long rows, long nanos) {
+        System.out.printf("parallelism %d %-10s %8d rows %8.1f ms%n", parallelism, operation, rows, nanos / 1e6);
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+}
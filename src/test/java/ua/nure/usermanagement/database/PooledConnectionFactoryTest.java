@@ -0,0 +1,175 @@
+package ua.nure.usermanagement.database;
+
+import junit.framework.TestCase;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * A test case for PooledConnectionFactory class
+ */
+public class PooledConnectionFactoryTest extends TestCase {
+
+    private static final int POOL_SIZE = 2;
+    private PooledConnectionFactory factory;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        factory = new PooledConnectionFactory("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:pooltest", "sa", "",
+                POOL_SIZE, 1, 100, "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SYSTEM_USERS", 0, 200, 8);
+    }
+
+    public void tearDown() throws Exception {
+        factory.close();
+        super.tearDown();
+    }
+
+    /**
+     * Tests, that a closed connection goes back to the pool and is reused instead of opening a new one
+     *
+     * @throws Exception
+     */
+    public void testConnectionIsReused() throws Exception {
+        Connection first = factory.createConnection();
+        first.close();
+        assertTrue("Closed connection must report being closed", first.isClosed());
+        Connection second = factory.createConnection();
+        second.close();
+        assertEquals("Physical connection wasn't reused", 1, factory.getStatistics().getCreated());
+        assertEquals(2, factory.getStatistics().getBorrowed());
+        assertEquals(0, factory.getStatistics().getInUse());
+    }
+
+    /**
+     * Tests, that a connection, closed again or used after it was given back, doesn't affect the next borrower
+     * of the same physical connection
+     *
+     * @throws Exception
+     */
+    public void testStaleConnectionDoesNotAffectNextBorrower() throws Exception {
+        Connection first = factory.createConnection();
+        first.close();
+        Connection second = factory.createConnection();
+        assertEquals("Physical connection wasn't reused", 1, factory.getStatistics().getCreated());
+        first.close();
+        assertTrue(first.isClosed());
+        assertFalse("Second borrower lost its connection", second.isClosed());
+        assertEquals(1, factory.getStatistics().getInUse());
+        try {
+            first.createStatement();
+            fail("Closed connection must not be usable");
+        } catch (SQLException e) {
+            assertEquals("Connection is closed", e.getMessage());
+        }
+        second.close();
+        assertEquals(0, factory.getStatistics().getInUse());
+    }
+
+    /**
+     * Tests, that a borrower gets an exception instead of waiting forever, when the pool is exhausted
+     *
+     * @throws Exception
+     */
+    public void testBorrowTimeout() throws Exception {
+        Connection first = factory.createConnection();
+        Connection second = factory.createConnection();
+        try {
+            factory.createConnection();
+            fail("Pool must not hand out more connections than its size");
+        } catch (DatabaseException e) {
+            assertEquals(1, factory.getStatistics().getTimeouts());
+        } finally {
+            first.close();
+            second.close();
+        }
+    }
+
+    /**
+     * Tests, that a connection, held longer than the leak threshold, is reported
+     *
+     * @throws Exception
+     */
+    public void testLeakDetection() throws Exception {
+        Connection connection = factory.createConnection();
+        Thread.sleep(600);
+        assertEquals("Leak wasn't detected", 1, factory.getStatistics().getLeaks());
+        connection.close();
+        assertEquals(0, factory.getStatistics().getInUse());
+    }
+
+    /**
+     * Tests, that a statement, prepared by a previous borrower, is served from the statement cache
+     *
+     * @throws Exception
+     */
+    public void testStatementIsCached() throws Exception {
+        String sql = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SYSTEM_USERS WHERE USER = ?";
+        Connection connection = factory.createConnection();
+        PreparedStatement first = connection.prepareStatement(sql);
+        PreparedStatement physical = first.unwrap(PreparedStatement.class);
+        PreparedStatement concurrent = connection.prepareStatement(sql);
+        assertNotSame("Statement in use must not be handed out twice", first, concurrent);
+        concurrent.close();
+        first.close();
+        connection.close();
+
+        connection = factory.createConnection();
+        PreparedStatement second = connection.prepareStatement(sql);
+        assertNotSame("Every borrower must get its own handle", first, second);
+        assertSame("Statement wasn't reused", physical, second.unwrap(PreparedStatement.class));
+        second.close();
+        connection.close();
+    }
+
+    /**
+     * Tests, that a cached statement, kept by a previous borrower, can't be used or closed,
+     * after it was handed out to the next borrower
+     *
+     * @throws Exception
+     */
+    public void testStaleStatementDoesNotAffectNextBorrower() throws Exception {
+        String sql = "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SYSTEM_USERS WHERE USER = ?";
+        Connection connection = factory.createConnection();
+        PreparedStatement first = connection.prepareStatement(sql);
+        connection.close();
+        assertTrue(first.isClosed());
+
+        connection = factory.createConnection();
+        PreparedStatement second = connection.prepareStatement(sql);
+        second.setString(1, "SA");
+        first.close();
+        assertFalse("Second borrower lost its statement", second.isClosed());
+        try {
+            first.setString(1, "OTHER");
+            fail("Stale statement must not be usable");
+        } catch (SQLException e) {
+            assertEquals("Statement is closed", e.getMessage());
+        }
+        second.close();
+        connection.close();
+    }
+
+    /**
+     * Tests, that statements and their result sets lead back to the connection of the borrower
+     *
+     * @throws Exception
+     */
+    public void testStatementReturnsLease() throws Exception {
+        Connection connection = factory.createConnection();
+        PreparedStatement prepared = connection.prepareStatement("SELECT COUNT(*) FROM INFORMATION_SCHEMA.SYSTEM_USERS");
+        assertSame(connection, prepared.getConnection());
+        try (ResultSet resultSet = prepared.executeQuery()) {
+            assertSame(prepared, resultSet.getStatement());
+        }
+        prepared.close();
+        Statement statement = connection.createStatement();
+        assertSame(connection, statement.getConnection());
+        statement.close();
+        connection.close();
+        assertTrue(statement.isClosed());
+    }
+}
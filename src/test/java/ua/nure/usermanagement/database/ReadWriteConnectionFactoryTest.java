@@ -0,0 +1,167 @@
+package ua.nure.usermanagement.database;
+
+import junit.framework.TestCase;
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A test case for ReadWriteConnectionFactory class. In-memory HSQLDB databases stand in for the primary
+ * and its replicas, they aren't replicated, so every database is filled separately and a found user
+ * shows, which database has answered
+ */
+public class ReadWriteConnectionFactoryTest extends TestCase {
+    private static final String DRIVER = "org.hsqldb.jdbcDriver";
+    private static final String[] DATABASES = {"rwprimary", "rwreplica1", "rwreplica2"};
+
+    private List<ConnectionFactory> factories;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        factories = new ArrayList<>();
+        for (String database : DATABASES) {
+            ConnectionFactory factory = new ConnectionFactoryImpl(DRIVER, "jdbc:hsqldb:mem:" + database, "sa", "");
+            new SchemaInitializer(factory, SchemaInitializer.StorageMode.MEMORY, 0).initialize();
+            new HSQLdbUserDao(factory).create(new User(database, database, new Date()));
+            factories.add(factory);
+        }
+    }
+
+    public void tearDown() throws Exception {
+        for (ConnectionFactory factory : factories) {
+            try (Connection connection = factory.createConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("SHUTDOWN");
+            }
+        }
+        super.tearDown();
+    }
+
+    private ReadWriteConnectionFactory createFactory(long stickyWindow) {
+        return new ReadWriteConnectionFactory(factories.get(0), factories.subList(1, factories.size()), stickyWindow);
+    }
+
+    private static String findDatabase(UserDao dao) throws DatabaseException {
+        Collection<User> users = dao.findAll();
+        assertEquals(1, users.size());
+        return users.iterator().next().getFirstName();
+    }
+
+    /**
+     * Tests, that queries go to replicas in turn
+     */
+    public void testReadsAreSpreadOverReplicas() throws Exception {
+        ReadWriteConnectionFactory factory = createFactory(0);
+        HSQLdbUserDao dao = new HSQLdbUserDao(factory);
+        List<String> answered = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            answered.add(findDatabase(dao));
+        }
+        assertEquals(Arrays.asList("rwreplica1", "rwreplica2", "rwreplica1", "rwreplica2"), answered);
+        assertEquals(4, factory.getReplicaReads());
+        assertEquals(0, factory.getPrimaryReads());
+    }
+
+    /**
+     * Tests, that a write goes to the primary and the following reads see it there
+     */
+    public void testReadsFollowWrite() throws Exception {
+        ReadWriteConnectionFactory factory = createFactory(60000);
+        HSQLdbUserDao dao = new HSQLdbUserDao(factory);
+        assertEquals("rwreplica1", findDatabase(dao));
+        User user = dao.create(new User("Rick", "Sanchez", new Date()));
+        assertEquals("Rick", dao.find(user.getId()).getFirstName());
+        assertEquals(1, factory.getPrimaryReads());
+        assertNull(new HSQLdbUserDao(factories.get(1)).find(user.getId()).getId());
+    }
+
+    /**
+     * Tests, that a unit of work reads from the primary, even if there was no write before
+     */
+    public void testUnitOfWorkUsesPrimary() throws Exception {
+        ReadWriteConnectionFactory factory = createFactory(0);
+        HSQLdbUserDao dao = new HSQLdbUserDao(factory);
+        String database = Transaction.execute(dao, ReadWriteConnectionFactoryTest::findDatabase);
+        assertEquals("rwprimary", database);
+        assertEquals(0, factory.getReplicaReads());
+    }
+
+    /**
+     * Tests, that queries on the primary don't start the sticky window
+     */
+    public void testReadsOnPrimaryKeepReplicas() throws Exception {
+        ReadWriteConnectionFactory factory = createFactory(60000);
+        HSQLdbUserDao dao = new HSQLdbUserDao(factory);
+        assertEquals("rwprimary", Transaction.execute(dao, ReadWriteConnectionFactoryTest::findDatabase));
+        assertEquals("rwreplica1", findDatabase(dao));
+    }
+
+    /**
+     * Reads a user on a new thread, like the next request of the caller, served by another thread of a container
+     *
+     * @return the first name of the user, null if the database, that has answered, doesn't have him
+     */
+    private static String findOnAnotherThread(UserDao dao, Long id, Object caller) throws Exception {
+        String[] answered = new String[1];
+        Exception[] failure = new Exception[1];
+        Thread reader = new Thread(() -> {
+            Object previous = ReadWriteConnectionFactory.bindCaller(caller);
+            try {
+                answered[0] = dao.find(id).getFirstName();
+            } catch (Exception e) {
+                failure[0] = e;
+            } finally {
+                ReadWriteConnectionFactory.restoreCaller(previous);
+            }
+        });
+        reader.start();
+        reader.join();
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+        return answered[0];
+    }
+
+    /**
+     * Tests, that a write, made on one thread, is seen by reads on another thread
+     */
+    public void testReadsFollowWriteOnAnotherThread() throws Exception {
+        ReadWriteConnectionFactory factory = createFactory(60000);
+        HSQLdbUserDao dao = new HSQLdbUserDao(factory);
+        User user = dao.create(new User("Rick", "Sanchez", new Date()));
+        assertEquals("Rick", findOnAnotherThread(dao, user.getId(), null));
+    }
+
+    /**
+     * Tests, that a write sends to the primary reads of the same caller on any thread, but not reads of other callers
+     */
+    public void testStickyWindowIsPerCaller() throws Exception {
+        ReadWriteConnectionFactory factory = createFactory(60000);
+        HSQLdbUserDao dao = new HSQLdbUserDao(factory);
+        Object previous = ReadWriteConnectionFactory.bindCaller("session1");
+        User user;
+        try {
+            user = dao.create(new User("Rick", "Sanchez", new Date()));
+        } finally {
+            ReadWriteConnectionFactory.restoreCaller(previous);
+        }
+        assertEquals("Rick", findOnAnotherThread(dao, user.getId(), "session1"));
+        assertNull(findOnAnotherThread(dao, user.getId(), "session2"));
+    }
+
+    /**
+     * Tests, that connections to replicas don't accept writes
+     */
+    public void testReplicaConnectionsAreReadOnly() throws Exception {
+        ReadWriteConnectionFactory factory = createFactory(0);
+        try (Connection connection = factory.createReadConnection()) {
+            assertTrue(connection.isReadOnly());
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.User;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures throughput of ShardedUserDao with 1, 2, 4 and 8 shards: several threads create users and call find()
+ * on random users, then findPage() is called, that queries all shards. Every shard is a file database
+ * with a pooled connection in a temporary directory.
+ * Run it as a plain java application, it is not a part of the test suite.
+ * <p>
+ * Measured with HSQLDB 1.8.0.10 on JDK 17, one CPU, 50000 users, 8 threads, in ops/s:
+ * <pre>
+ * shards  createAll  create/find  findPage
+ *      1      13793         7633      2140
+ *      2      22768        17446      1605
+ *      4      44280        30515       963
+ *      8      55742        35724       332
+ * </pre>
+ * Writes scale with shards even on one CPU, since every shard has its own database and lock, but findPage
+ * queries every shard, so it gets slower with each one
+ */
+public class ShardedUserDaoBenchmark {
+    private static final String DRIVER = "org.hsqldb.jdbcDriver";
+    private static final int[] SHARDS = {1, 2, 4, 8};
+    private static final int USERS = 50000;
+    private static final int THREADS = 8;
+    private static final int CALLS = 20000;
+    private static final int PAGES = 2000;
+
+    public static void main(String[] args) throws Exception {
+        for (int shards : SHARDS) {
+            File directory = Files.createTempDirectory("usermanager-shards").toFile();
+            List<ConnectionFactory> factories = new ArrayList<>();
+            ShardedUserDao dao = null;
+            try {
+                for (int i = 0; i < shards; i++) {
+                    String url = "jdbc:hsqldb:file:" + new File(directory, "shard" + i).getAbsolutePath();
+                    PooledConnectionFactory pooled = new PooledConnectionFactory(DRIVER, url, "sa", "",
+                            THREADS, THREADS, 5000, "SELECT COUNT(*) FROM INFORMATION_SCHEMA.SYSTEM_USERS", 30000, 60000, 32);
+                    factories.add(pooled);
+                    new SchemaInitializer(pooled, SchemaInitializer.StorageMode.CACHED, 0).initialize();
+                }
+                dao = new ShardedUserDao(factories, THREADS, 100);
+                measure(shards, dao);
+            } finally {
+                if (dao != null) {
+                    dao.close();
+                }
+                for (ConnectionFactory factory : factories) {
+                    try (Connection connection = factory.createConnection(); Statement statement = connection.createStatement()) {
+                        statement.execute("SHUTDOWN");
+                    }
+                    ((PooledConnectionFactory) factory).close();
+                }
+                delete(directory);
+            }
+        }
+    }
+
+    private static void measure(int shards, ShardedUserDao dao) throws Exception {
+        List<User> users = new ArrayList<>(USERS);
+        for (int i = 0; i < USERS; i++) {
+            users.add(new User("First" + i, "Last" + i, new Date()));
+        }
+        long start = System.nanoTime();
+        List<User> createdUsers = dao.createAll(users, 1000);
+        report(shards, "createAll", USERS, System.nanoTime() - start);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            start = System.nanoTime();
+            List<Future<?>> futures = new ArrayList<>();
+            for (int thread = 0; thread < THREADS; thread++) {
+                futures.add(executor.submit(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    for (int i = 0; i < CALLS / THREADS; i++) {
+                        if (i % 2 == 0) {
+                            dao.create(new User("First", "Last", new Date()));
+                        } else {
+                            dao.find(createdUsers.get(random.nextInt(createdUsers.size())).getId());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+            report(shards, "create/find", CALLS, System.nanoTime() - start);
+        } finally {
+            executor.shutdown();
+        }
+
+        start = System.nanoTime();
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < PAGES; i++) {
+            dao.findPage(createdUsers.get(random.nextInt(createdUsers.size())).getId(), 20);
+        }
+        report(shards, "findPage", PAGES, System.nanoTime() - start);
+    }
+
+    private static void report(int shards, String operation, int calls, long nanos) {
+        System.out.printf("%d shard(s) %-12s %12.0f ops/s%n", shards, operation, calls / (nanos / 1e9));
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package ua.nure.usermanagement.database;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Checks {@link ShardedUserDao} against the common contract of UserDao, every shard is an in-memory HSQLDB database
+ */
+public class ShardedUserDaoContractTest extends UserDaoContractTest {
+    private static final String[] DATABASES = {"contract1", "contract2"};
+
+    private List<ConnectionFactory> factories;
+
+    @Override
+    protected UserDao createDao() throws Exception {
+        factories = new ArrayList<>();
+        for (String database : DATABASES) {
+            ConnectionFactory factory = new ConnectionFactoryImpl("org.hsqldb.jdbcDriver", "jdbc:hsqldb:mem:" + database, "sa", "");
+            new SchemaInitializer(factory, SchemaInitializer.StorageMode.MEMORY, 0).initialize();
+            factories.add(factory);
+        }
+        return new ShardedUserDao(factories, 2, 10);
+    }
+
+    @Override
+    protected void closeDao(UserDao dao) throws Exception {
+        super.closeDao(dao);
+        for (ConnectionFactory factory : factories) {
+            try (Connection connection = factory.createConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("SHUTDOWN");
+            }
+        }
+    }
+}
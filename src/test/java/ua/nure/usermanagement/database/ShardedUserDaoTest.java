@@ -0,0 +1,152 @@
+package ua.nure.usermanagement.database;
+
+import junit.framework.TestCase;
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * A test case for ShardedUserDao class. Every shard is an in-memory HSQLDB database
+ */
+public class ShardedUserDaoTest extends TestCase {
+    private static final String DRIVER = "org.hsqldb.jdbcDriver";
+    private static final String[] DATABASES = {"shard1", "shard2", "shard3"};
+
+    private List<ConnectionFactory> factories;
+    private ShardedUserDao dao;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        factories = new ArrayList<>();
+        for (String database : DATABASES) {
+            ConnectionFactory factory = new ConnectionFactoryImpl(DRIVER, "jdbc:hsqldb:mem:" + database, "sa", "");
+            new SchemaInitializer(factory, SchemaInitializer.StorageMode.MEMORY, 0).initialize();
+            factories.add(factory);
+        }
+        dao = new ShardedUserDao(factories, 2, 10);
+    }
+
+    public void tearDown() throws Exception {
+        dao.close();
+        for (ConnectionFactory factory : factories) {
+            try (Connection connection = factory.createConnection(); Statement statement = connection.createStatement()) {
+                statement.execute("SHUTDOWN");
+            }
+        }
+        super.tearDown();
+    }
+
+    private static Date date(int year) {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(year, Calendar.JANUARY, 1, 0, 0, 0);
+        calendar.set(Calendar.MILLISECOND, 0);
+        return calendar.getTime();
+    }
+
+    private List<User> createUsers(int count) throws DatabaseException {
+        List<User> users = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            users.add(new User("First" + i, "Last" + i, date(1950 + i)));
+        }
+        return dao.createAll(users, 2);
+    }
+
+    private static List<Long> ids(List<User> users) {
+        return users.stream().map(User::getId).collect(Collectors.toList());
+    }
+
+    /**
+     * Tests, that users are spread over shards by id and found in the shard, that keeps them
+     */
+    public void testUsersAreSpreadByID() throws Exception {
+        List<User> users = createUsers(9);
+        for (User user : users) {
+            HSQLdbUserDao shard = new HSQLdbUserDao(factories.get((int) (user.getId() % DATABASES.length)));
+            assertEquals(user, shard.find(user.getId()));
+            assertEquals(user, dao.find(user.getId()));
+        }
+        for (ConnectionFactory factory : factories) {
+            assertEquals(3, new HSQLdbUserDao(factory).findAll().size());
+        }
+    }
+
+    /**
+     * Tests, that results of all shards are merged in the order of ids
+     */
+    public void testMergedQueries() throws Exception {
+        List<User> users = createUsers(10);
+        assertEquals(ids(users), ids(new ArrayList<>(dao.findAll())));
+        assertEquals(ids(users.subList(3, 7)), ids(dao.findPage(users.get(2).getId(), 4)));
+        assertEquals(ids(users.subList(4, 8)), ids(dao.findPageBefore(users.get(8).getId(), 4)));
+        try (Stream<User> stream = dao.streamAll(2)) {
+            assertEquals(ids(users), stream.map(User::getId).collect(Collectors.toList()));
+        }
+        List<User> older = dao.findByDateOfBirth(date(1950), date(1954));
+        assertEquals(ids(users.subList(0, 5)), ids(older));
+    }
+
+    /**
+     * Tests, that updates and deletes of several users reach every shard
+     */
+    public void testUpdateAndDeleteAll() throws Exception {
+        List<User> users = createUsers(6);
+        for (User user : users) {
+            user.setFirstName("Updated");
+        }
+        assertEquals(6, dao.updateAll(users));
+        for (User user : dao.findAll()) {
+            assertEquals("Updated", user.getFirstName());
+        }
+        assertEquals(4, dao.deleteAll(ids(users.subList(0, 4))));
+        assertEquals(ids(users.subList(4, 6)), ids(new ArrayList<>(dao.findAll())));
+    }
+
+    /**
+     * Tests, that ids continue after the greatest id of all shards, when the DAO is created again
+     */
+    public void testIDsContinueAfterRestart() throws Exception {
+        List<User> users = createUsers(5);
+        dao.close();
+        dao = new ShardedUserDao(factories, 2, 10);
+        User user = dao.create(new User("Rick", "Sanchez", date(1950)));
+        assertTrue(user.getId() > users.get(4).getId());
+        assertEquals(Arrays.asList(user.getId()), ids(dao.findPage(users.get(4).getId(), 10)));
+    }
+
+    /**
+     * Tests, that two DAOs on the same shards, like two processes, don't give the same id to different users
+     */
+    public void testIDsOfSeveralProcesses() throws Exception {
+        try (ShardedUserDao other = new ShardedUserDao(factories, 2, 10)) {
+            List<User> users = createUsers(5);
+            User user = other.create(new User("Rick", "Sanchez", date(1950)));
+            users.addAll(createUsers(5));
+            assertFalse(ids(users).contains(user.getId()));
+            assertEquals(11, dao.findAll().size());
+            assertEquals(user, dao.find(user.getId()));
+        }
+    }
+
+    /**
+     * Tests, that a query after close fails instead of waiting for threads, that were stopped
+     */
+    public void testQueryAfterClose() throws Exception {
+        createUsers(3);
+        dao.close();
+        try {
+            dao.findAll();
+            fail("A closed DAO must not be queried");
+        } catch (DatabaseException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package ua.nure.usermanagement.database;
+
+import ua.nure.usermanagement.User;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Measures startup time and heap of a file database with 1M users in table USERS, created as a MEMORY
+ * and as a CACHED table by {@link SchemaInitializer}. Startup is the time of opening the database and
+ * counting the users, heap is the growth of used heap after the database is opened.
+ * Pass MEMORY or CACHED as an argument to measure one mode per JVM, otherwise both are measured in turn.
+ * Run it as a plain java application with enough heap for the MEMORY table (e.g. -Xmx2g), it is not a part of the test suite.
+ * <p>
+ * Measured with HSQLDB 1.8.0.10 on JDK 17, one CPU, -Xmx2g, one mode per JVM:
+ * <pre>
+ * MEMORY  1000000 users: startup  20735.4 ms, heap    383.2 MB
+ * CACHED  1000000 users: startup   4115.7 ms, heap     16.5 MB
+ * </pre>
+ * A MEMORY table is read from the .script file into the heap on startup, a CACHED table is read on demand
+ * into a cache of 2^14 rows, so CACHED starts faster and takes less heap, but its queries read rows from disk
+ */
+public class StorageModeBenchmark {
+    private static final String DRIVER = "org.hsqldb.jdbcDriver";
+    private static final int USERS = 1000000;
+    private static final int CHUNK_SIZE = 10000;
+    private static final int CACHE_SCALE = 14;
+
+    public static void main(String[] args) throws Exception {
+        List<SchemaInitializer.StorageMode> modes = new ArrayList<>();
+        for (String arg : args) {
+            modes.add(SchemaInitializer.StorageMode.valueOf(arg));
+        }
+        if (modes.isEmpty()) {
+            modes.add(SchemaInitializer.StorageMode.MEMORY);
+            modes.add(SchemaInitializer.StorageMode.CACHED);
+        }
+        for (SchemaInitializer.StorageMode mode : modes) {
+            File dir = Files.createTempDirectory("usermanager-" + mode).toFile();
+            String url = "jdbc:hsqldb:file:" + new File(dir, "usermanager").getAbsolutePath();
+            try {
+                fill(url, mode);
+                measure(url, mode);
+            } finally {
+                delete(dir);
+            }
+        }
+    }
+
+    private static void fill(String url, SchemaInitializer.StorageMode mode) throws Exception {
+        ConnectionFactory factory = new ConnectionFactoryImpl(DRIVER, url, "sa", "");
+        new SchemaInitializer(factory, mode, CACHE_SCALE).initialize();
+        HSQLdbUserDao dao = new HSQLdbUserDao(factory);
+        Random random = new Random(42);
+        List<User> chunk = new ArrayList<>(CHUNK_SIZE);
+        for (int i = 0; i < USERS; i++) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.add(Calendar.DAY_OF_YEAR, -random.nextInt(100 * 365));
+            chunk.add(new User("First" + i, "Last" + i, calendar.getTime()));
+            if (chunk.size() == CHUNK_SIZE) {
+                dao.createAll(chunk, CHUNK_SIZE);
+                chunk.clear();
+            }
+        }
+        shutdown(factory);
+    }
+
+    private static void measure(String url, SchemaInitializer.StorageMode mode) throws Exception {
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        ConnectionFactory factory = new ConnectionFactoryImpl(DRIVER, url, "sa", "");
+        long count;
+        try (Connection connection = factory.createConnection(); Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT COUNT(*) FROM USERS")) {
+            resultSet.next();
+            count = resultSet.getLong(1);
+        }
+        long startup = System.nanoTime() - start;
+        long heap = usedHeap() - heapBefore;
+        System.out.printf("%-7s %d users: startup %8.1f ms, heap %8.1f MB%n", mode, count, startup / 1e6, heap / 1048576.0);
+        shutdown(factory);
+    }
+
+    private static void shutdown(ConnectionFactory factory) throws Exception {
+        try (Connection connection = factory.createConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("SHUTDOWN");
+        }
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static void delete(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                delete(child);
+            }
+        }
+        if (!file.delete()) {
+            file.deleteOnExit();
+        }
+    }
+}
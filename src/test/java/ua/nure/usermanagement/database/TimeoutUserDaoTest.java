@@ -0,0 +1,163 @@
+package ua.nure.usermanagement.database;
+
+import junit.framework.TestCase;
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.DatabaseTimeoutException;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A test case for TimeoutUserDao class and deadlines of DAO calls
+ */
+public class TimeoutUserDaoTest extends TestCase {
+
+    private List<Integer> queryTimeouts;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        queryTimeouts = new ArrayList<>();
+    }
+
+    /**
+     * A connection, whose statements remember their query timeouts and return no rows
+     */
+    private Connection createConnection() {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{Connection.class},
+                (proxy, method, args) -> {
+                    if ("prepareStatement".equals(method.getName())) {
+                        return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                                (statementProxy, statementMethod, statementArgs) -> {
+                                    if ("setQueryTimeout".equals(statementMethod.getName())) {
+                                        queryTimeouts.add((Integer) statementArgs[0]);
+                                    }
+                                    if ("executeQuery".equals(statementMethod.getName())) {
+                                        throw new java.sql.SQLException("No rows");
+                                    }
+                                    return null;
+                                });
+                    }
+                    return null;
+                });
+    }
+
+    /**
+     * Tests, that a call of the wrapped DAO runs under the deadline of its method, and the deadline is gone after it
+     */
+    public void testCallRunsUnderDeadline() throws Exception {
+        List<Long> remaining = new ArrayList<>();
+        TimeoutUserDao dao = new TimeoutUserDao(new MockUserDao() {
+            @Override
+            public User find(Long id) throws DatabaseException {
+                remaining.add(Deadline.current().getRemainingMillis());
+                return super.find(id);
+            }
+
+            @Override
+            public User create(User user) throws DatabaseException {
+                assertNull(Deadline.current());
+                return super.create(user);
+            }
+        });
+        dao.setTimeout("find", 2000);
+        dao.setTimeout("create", 0);
+        User user = dao.create(new User("Rick", "Sanchez", new Date()));
+        assertEquals(user, dao.find(user.getId()));
+        assertTrue(remaining.get(0) > 0 && remaining.get(0) <= 2000);
+        assertNull(Deadline.current());
+    }
+
+    /**
+     * Tests, that a nested call can't extend the deadline of the outer one
+     */
+    public void testNestedCallKeepsEarlierDeadline() throws Exception {
+        List<Long> remaining = new ArrayList<>();
+        TimeoutUserDao dao = new TimeoutUserDao(new MockUserDao() {
+            @Override
+            public User find(Long id) throws DatabaseException {
+                remaining.add(Deadline.current().getRemainingMillis());
+                return super.find(id);
+            }
+        });
+        dao.setTimeout("find", 60000);
+        Deadline previous = Deadline.start("outer", 1000);
+        try {
+            dao.find(1L);
+        } finally {
+            Deadline.restore(previous);
+        }
+        assertTrue(remaining.get(0) <= 1000);
+    }
+
+    /**
+     * Tests, that statements get the remaining time as query timeout
+     * and a statement, that fails after the deadline, throws DatabaseTimeoutException
+     */
+    public void testStatementTimesOut() throws Exception {
+        TimeoutUserDao dao = new TimeoutUserDao(new HSQLdbUserDao(this::createConnection));
+        dao.setTimeout("find", 3000);
+        try {
+            dao.find(1L);
+            fail("Query must fail");
+        } catch (DatabaseTimeoutException e) {
+            fail("Query failed before the deadline");
+        } catch (DatabaseException e) {
+            assertEquals(1, queryTimeouts.size());
+            assertEquals(3, queryTimeouts.get(0).intValue());
+        }
+
+        HSQLdbUserDao slow = new HSQLdbUserDao(() -> {
+            try {
+                Thread.sleep(100);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return createConnection();
+        });
+        dao = new TimeoutUserDao(slow);
+        dao.setTimeout("find", 50);
+        try {
+            dao.find(1L);
+            fail("Query must time out");
+        } catch (DatabaseTimeoutException e) {
+            assertEquals("find did not complete in 50 ms", e.getMessage());
+        }
+    }
+
+    /**
+     * Tests, that a statement, which runs longer than the budget and ignores its query timeout like HSQLDB 1.8 does,
+     * is cut off at the deadline
+     */
+    public void testLongStatementIsCutOff() throws Exception {
+        HSQLdbUserDao slow = new HSQLdbUserDao(() -> (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                    if ("prepareStatement".equals(method.getName())) {
+                        return Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(), new Class<?>[]{PreparedStatement.class},
+                                (statementProxy, statementMethod, statementArgs) -> {
+                                    if ("executeQuery".equals(statementMethod.getName())) {
+                                        Thread.sleep(2000);
+                                        throw new java.sql.SQLException("No rows");
+                                    }
+                                    return null;
+                                });
+                    }
+                    return null;
+                }));
+        TimeoutUserDao dao = new TimeoutUserDao(slow);
+        dao.setTimeout("find", 100);
+        long start = System.nanoTime();
+        try {
+            dao.find(1L);
+            fail("Query must be cut off");
+        } catch (DatabaseTimeoutException e) {
+            assertEquals("find did not complete in 100 ms", e.getMessage());
+        }
+        long elapsed = (System.nanoTime() - start) / 1000000;
+        assertTrue("Caller waited " + elapsed + " ms", elapsed < 1000);
+    }
+}
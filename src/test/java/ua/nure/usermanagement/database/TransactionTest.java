@@ -0,0 +1,84 @@
+package ua.nure.usermanagement.database;
+
+import junit.framework.TestCase;
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A test case for units of work. Listeners of a {@link ListeningUserDao} must see only committed changes
+ */
+public class TransactionTest extends TestCase {
+
+    private ListeningUserDao dao;
+    private List<String> events;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        dao = new ListeningUserDao(new MockUserDao());
+        events = new ArrayList<>();
+        dao.addListener(new UserChangeListener() {
+            @Override
+            public void userCreated(User user) {
+                events.add("created " + user.getFirstName());
+            }
+
+            @Override
+            public void userUpdated(User user) {
+                events.add("updated " + user.getFirstName());
+            }
+
+            @Override
+            public void userDeleted(Long id) {
+                events.add("deleted " + id);
+            }
+        });
+    }
+
+    /**
+     * Tests, that listeners are notified after the work is committed, in order of the changes
+     */
+    public void testCommit() throws Exception {
+        User created = Transaction.execute(dao, userDao -> {
+            User rick = userDao.create(new User("Rick", "Sanchez", new Date()));
+            rick.setFirstName("Pickle Rick");
+            userDao.update(rick);
+            assertTrue(Transaction.isActive());
+            assertTrue(events.isEmpty());
+            return rick;
+        });
+        assertFalse(Transaction.isActive());
+        assertEquals("Pickle Rick", created.getFirstName());
+        assertEquals(2, events.size());
+        assertEquals("created Rick", events.get(0));
+        assertEquals("updated Pickle Rick", events.get(1));
+    }
+
+    /**
+     * Tests, that listeners aren't notified about changes of a failed work, and an inner failure fails the outer work
+     */
+    public void testRollback() throws Exception {
+        try {
+            Transaction.execute(dao, userDao -> {
+                userDao.create(new User("Morty", "Smith", new Date()));
+                try {
+                    Transaction.execute(userDao, inner -> {
+                        throw new DatabaseException("Inner work failed");
+                    });
+                } catch (DatabaseException e) {
+                    // the outer work goes on, but it must not be committed
+                }
+                return null;
+            });
+            fail("Work with a failed inner work must not be committed");
+        } catch (DatabaseException e) {
+            assertFalse(Transaction.isActive());
+        }
+        assertTrue(events.isEmpty());
+        dao.create(new User("Summer", "Smith", new Date()));
+        assertEquals(1, events.size());
+    }
+}
@@ -0,0 +1,120 @@
+package ua.nure.usermanagement.database;
+
+import junit.framework.TestCase;
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+import ua.nure.usermanagement.database.exception.OptimisticLockException;
+
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.Date;
+
+/**
+ * Checks behaviour, that every UserDao implementation must share with {@link HSQLdbUserDao},
+ * so callers don't depend on the backend, chosen in settings.properties. Subclasses give a DAO to check
+ */
+public abstract class UserDaoContractTest extends TestCase {
+    private static final Long MISSING_ID = 100000L;
+
+    protected UserDao dao;
+
+    /**
+     * @return an empty DAO
+     */
+    protected abstract UserDao createDao() throws Exception;
+
+    /**
+     * Releases resources of the DAO, created by {@link #createDao()}
+     */
+    protected void closeDao(UserDao dao) throws Exception {
+        if (dao instanceof AutoCloseable) {
+            ((AutoCloseable) dao).close();
+        }
+    }
+
+    public void setUp() throws Exception {
+        super.setUp();
+        dao = createDao();
+    }
+
+    public void tearDown() throws Exception {
+        closeDao(dao);
+        super.tearDown();
+    }
+
+    private static User missingUser() {
+        Calendar calendar = Calendar.getInstance();
+        calendar.set(1950, Calendar.MARCH, 4, 0, 0, 0);
+        Date dateOfBirth = calendar.getTime();
+        User user = new User("Rick", "Sanchez", dateOfBirth);
+        user.setId(MISSING_ID);
+        return user;
+    }
+
+    /**
+     * Tests, that an absent user is found as a user without id, not as null
+     */
+    public void testFindMissing() throws Exception {
+        User user = dao.find(MISSING_ID);
+        assertNotNull(user);
+        assertNull(user.getId());
+    }
+
+    public void testUpdateMissing() throws Exception {
+        try {
+            dao.update(missingUser());
+            fail("Update of an absent user must fail");
+        } catch (OptimisticLockException e) {
+            fail("Update without a version must not be reported as a conflict");
+        } catch (DatabaseException e) {
+            // expected
+        }
+        assertEquals(0, dao.updateAll(Collections.singletonList(missingUser())));
+    }
+
+    public void testVersionedUpdateMissing() throws Exception {
+        User user = missingUser();
+        user.setVersion(0L);
+        try {
+            dao.update(user);
+            fail("Update of an absent user must fail");
+        } catch (OptimisticLockException e) {
+            assertEquals(MISSING_ID, e.getId());
+        }
+    }
+
+    public void testDeleteMissing() throws Exception {
+        try {
+            dao.delete(missingUser());
+            fail("Delete of an absent user must fail");
+        } catch (DatabaseException e) {
+            // expected
+        }
+        assertEquals(0, dao.deleteAll(Arrays.asList(MISSING_ID)));
+    }
+
+    /**
+     * Tests, that a deleted user can't be updated, deleted again or found
+     */
+    public void testDeleted() throws Exception {
+        User user = missingUser();
+        user.setId(null);
+        User createdUser = dao.create(user);
+        dao.delete(createdUser);
+        assertNull(dao.find(createdUser.getId()).getId());
+        createdUser.setVersion(null);
+        try {
+            dao.update(createdUser);
+            fail("Update of a deleted user must fail");
+        } catch (DatabaseException e) {
+            // expected
+        }
+        try {
+            dao.delete(createdUser);
+            fail("Delete of a deleted user must fail");
+        } catch (DatabaseException e) {
+            // expected
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package ua.nure.usermanagement.database;
+
+import junit.framework.TestCase;
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.database.exception.OptimisticLockException;
+
+import java.util.Date;
+
+/**
+ * A test case for WriteBehindUserDao class
+ */
+public class WriteBehindUserDaoTest extends TestCase {
+
+    private MockUserDao delegate;
+    private WriteBehindUserDao dao;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        delegate = new MockUserDao();
+        dao = new WriteBehindUserDao(delegate, 60000, 3, 2);
+    }
+
+    public void tearDown() throws Exception {
+        dao.close();
+        super.tearDown();
+    }
+
+    /**
+     * Tests, that updates of the same user are coalesced and visible before they are written
+     *
+     * @throws Exception
+     */
+    public void testUpdatesAreCoalesced() throws Exception {
+        User user = dao.create(new User("Rick", "Sanchez", new Date()));
+        User first = new User(user);
+        first.setFirstName("Morty");
+        dao.update(first);
+        User second = dao.find(user.getId());
+        second.setFirstName("Summer");
+        dao.update(second);
+        assertEquals(1, dao.getPendingCount());
+        assertEquals(1, dao.getCoalescedCount());
+        assertEquals("Summer", dao.find(user.getId()).getFirstName());
+        assertEquals("Update was written before flush", "Rick", delegate.find(user.getId()).getFirstName());
+        dao.flush();
+        assertEquals(0, dao.getPendingCount());
+        assertEquals("Summer", delegate.find(user.getId()).getFirstName());
+    }
+
+    /**
+     * Tests, that a pending update gives the caller and find the version, the user gets, when it is written,
+     * so the same user can be saved again, and a stale user is rejected at once
+     *
+     * @throws Exception
+     */
+    public void testVersionsOfPendingUpdates() throws Exception {
+        User user = dao.create(new User("Rick", "Sanchez", new Date()));
+        User stale = new User(user);
+        User edited = new User(user);
+        edited.setFirstName("Morty");
+        dao.update(edited);
+        assertEquals(Long.valueOf(1), edited.getVersion());
+        assertEquals(Long.valueOf(1), dao.find(user.getId()).getVersion());
+        edited.setFirstName("Summer");
+        dao.update(edited);
+        assertEquals("Coalesced update must keep the version", Long.valueOf(1), edited.getVersion());
+        try {
+            dao.update(stale);
+            fail("Stale user must be rejected");
+        } catch (OptimisticLockException e) {
+            assertEquals(user.getId(), e.getId());
+        }
+        dao.flush();
+        assertEquals(0, dao.getRejectedCount());
+        assertEquals(Long.valueOf(1), delegate.find(user.getId()).getVersion());
+        assertEquals("Summer", delegate.find(user.getId()).getFirstName());
+        dao.update(edited);
+        dao.flush();
+        assertEquals(Long.valueOf(2), edited.getVersion());
+        assertEquals(Long.valueOf(2), delegate.find(user.getId()).getVersion());
+        assertEquals(0, dao.getRejectedCount());
+    }
+
+    /**
+     * Tests, that a pending delete hides the user and is written on close
+     *
+     * @throws Exception
+     */
+    public void testDeleteIsWrittenOnClose() throws Exception {
+        User user = dao.create(new User("Rick", "Sanchez", new Date()));
+        dao.delete(user);
+        assertNull(dao.find(user.getId()).getId());
+        assertNotNull(delegate.find(user.getId()).getId());
+        dao.close();
+        assertNull(delegate.find(user.getId()).getId());
+    }
+
+    /**
+     * Tests, that a writer flushes the queue, when it is full
+     *
+     * @throws Exception
+     */
+    public void testFullQueueIsFlushed() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            User user = new User(dao.create(new User("Rick", "Sanchez", new Date())));
+            user.setFirstName("Morty" + i);
+            dao.update(user);
+        }
+        assertEquals(0, dao.getPendingCount());
+        assertEquals(3, dao.getWrittenCount());
+        assertEquals(0, dao.getRejectedCount());
+    }
+}
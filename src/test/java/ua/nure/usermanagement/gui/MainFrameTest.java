@@ -5,8 +5,10 @@ import junit.extensions.jfcunit.JFCTestCase;
 import junit.extensions.jfcunit.JFCTestHelper;
 import junit.extensions.jfcunit.eventdata.MouseEventData;
 import junit.extensions.jfcunit.eventdata.StringEventData;
+import junit.extensions.jfcunit.finder.DialogFinder;
 import junit.extensions.jfcunit.finder.NamedComponentFinder;
 import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.UserSummary;
 import ua.nure.usermanagement.database.DaoFactory;
 import ua.nure.usermanagement.database.MockDaoFactory;
 import ua.nure.usermanagement.util.TextManager;
@@ -58,6 +60,19 @@ public class MainFrameTest extends JFCTestCase {
         find(JButton.class, "editButton");
         find(JButton.class, "deleteButton");
         find(JButton.class, "detailsButton");
+        find(JTextField.class, "searchField");
+        find(JButton.class, "searchButton");
+    }
+
+    /**
+     * @return summaries of the users, as the browse panel reads them from the DAO
+     */
+    private static List<UserSummary> summaries(List<User> users) {
+        List<UserSummary> summaries = new ArrayList<>();
+        for (User user : users) {
+            summaries.add(new UserSummary(user));
+        }
+        return summaries;
     }
 
     @Override
@@ -70,7 +85,7 @@ public class MainFrameTest extends JFCTestCase {
             mockUserDao = ((MockDaoFactory) DaoFactory.getInstance()).getMockUserDao();
             User expectedUser = new User(new Long(0), "Rick", "Sanchez", new Date());
             users = Collections.singletonList(expectedUser);
-            mockUserDao.expectAndReturn("findAll", users);
+            mockUserDao.expectAndReturn("findSummaries", summaries(users));
             setHelper(new JFCTestHelper());
             mainFrame = new MainFrame();
         } catch (Exception e) {
@@ -109,7 +124,7 @@ public class MainFrameTest extends JFCTestCase {
         List<User> users = new ArrayList<>(this.users);
 
         users.add(expectedUser);
-        mockUserDao.expectAndReturn("findAll", users);
+        mockUserDao.expectAndReturn("findSummaries", summaries(users));
 
         JTable table = (JTable) find(JTable.class, "userTable");
         assertEquals(1, table.getRowCount());
@@ -139,7 +154,7 @@ public class MainFrameTest extends JFCTestCase {
     public void testAddUserIfCancel() {
         List<User> users = new ArrayList<>(this.users);
 
-        mockUserDao.expectAndReturn("findAll", users);
+        mockUserDao.expectAndReturn("findSummaries", summaries(users));
 
         JTable table = (JTable) find(JTable.class, "userTable");
         assertEquals(1, table.getRowCount());
@@ -190,7 +205,7 @@ public class MainFrameTest extends JFCTestCase {
 
         mockUserDao.expectAndReturn("find", 0L, users.get(0));
 
-        mockUserDao.expectAndReturn("findAll", users);
+        mockUserDao.expectAndReturn("findSummaries", summaries(users));
 
         JTable table = (JTable) find(JTable.class, "userTable");
         assertEquals(1, table.getRowCount());
@@ -212,6 +227,32 @@ public class MainFrameTest extends JFCTestCase {
         mockUserDao.verify();
     }
 
+    /**
+     * Tests, that edit and details with several selected users show an error and stay on BrowsePanel
+     * instead of opening the first selected user
+     */
+    public void testEditAndDetailsOfSeveralUsers() {
+        List<User> users = new ArrayList<>(this.users);
+        users.add(new User(new Long(1), "Morty", "Smith", new Date()));
+        JTable table = (JTable) find(JTable.class, "userTable");
+        table.setModel(new UserTableModel(summaries(users)));
+        assertEquals(2, table.getRowCount());
+
+        for (String buttonName : new String[]{"editButton", "detailsButton"}) {
+            table.setRowSelectionInterval(0, 1);
+            JButton button = (JButton) find(JButton.class, buttonName);
+            getHelper().enterClickAndLeave(new MouseEventData(this, button));
+
+            List dialogs = new DialogFinder("Error").findAll();
+            assertEquals("Error wasn't shown for " + buttonName, 1, dialogs.size());
+            JFCTestHelper.disposeWindow((JDialog) dialogs.get(0), this);
+
+            find(JPanel.class, "browsePanel");
+        }
+
+        mockUserDao.verify();
+    }
+
     /**
      * Tests UI during the process of editing an entry in database. Panels under test: BrowsePanel, EditPanel
      */
@@ -254,7 +295,7 @@ public class MainFrameTest extends JFCTestCase {
         List<User> updatedUsers = new ArrayList<>();
         updatedUsers.add(updatedUser);
 
-        mockUserDao.expectAndReturn("findAll", updatedUsers);
+        mockUserDao.expectAndReturn("findSummaries", summaries(updatedUsers));
 
         getHelper().enterClickAndLeave(new MouseEventData(this, okButton));
 
@@ -284,7 +325,7 @@ public class MainFrameTest extends JFCTestCase {
     public void testEditUserIfCancel() {
         List<User> users = new ArrayList<>(this.users);
 
-        mockUserDao.expectAndReturn("findAll", users);
+        mockUserDao.expectAndReturn("findSummaries", summaries(users));
 
         mockUserDao.expectAndReturn("find", 0L, users.get(0));
 
@@ -322,8 +363,7 @@ public class MainFrameTest extends JFCTestCase {
 
         ArrayList<User> users = new ArrayList<>(this.users);
 
-        mockUserDao.expectAndReturn("find", 0L, users.get(0));
-        mockUserDao.expect("delete", users.get(0));
+        mockUserDao.expectAndReturn("deleteAll", Collections.singletonList(0L), 1);
 
         JButton deleteButton = (JButton) find(JButton.class, "deleteButton");
 
@@ -335,10 +375,10 @@ public class MainFrameTest extends JFCTestCase {
 
         JButton okButton = (JButton) find(JButton.class, "okButton");
 
-        mockUserDao.expectAndReturn("findAll", users);
-
         users.remove(this.users.get(0));
 
+        mockUserDao.expectAndReturn("findSummaries", summaries(users));
+
         getHelper().enterClickAndLeave(new MouseEventData(this, okButton));
 
         table = (JTable) find(JTable.class, "userTable");
@@ -367,7 +407,7 @@ public class MainFrameTest extends JFCTestCase {
         find(JButton.class, "okButton");
         JButton cancelButton = (JButton) find(JButton.class, "cancelButton");
 
-        mockUserDao.expectAndReturn("findAll", users);
+        mockUserDao.expectAndReturn("findSummaries", summaries(users));
 
         getHelper().enterClickAndLeave(new MouseEventData(this, cancelButton));
 
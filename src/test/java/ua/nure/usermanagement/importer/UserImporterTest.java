@@ -0,0 +1,123 @@
+package ua.nure.usermanagement.importer;
+
+import junit.framework.TestCase;
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.database.MockUserDao;
+import ua.nure.usermanagement.database.exception.DatabaseException;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A test case for UserImporter class and its sources
+ */
+public class UserImporterTest extends TestCase {
+
+    private MockUserDao dao;
+    private UserImporter importer;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        dao = new MockUserDao();
+        importer = new UserImporter(dao, 2, 1);
+    }
+
+    /**
+     * Tests import of an XML data set in the format of usersDataSet.xml
+     *
+     * @throws Exception
+     */
+    public void testImportXmlDataSet() throws Exception {
+        try (UserSource source = new XmlDataSetSource(getClass().getClassLoader().getResourceAsStream("usersDataSet.xml"))) {
+            ImportReport report = importer.importFrom(source);
+            assertEquals(2, report.getRead());
+            assertEquals(2, report.getImported());
+            assertEquals(0, report.getRejected());
+        }
+        Collection<User> users = dao.findAll();
+        assertEquals(2, users.size());
+    }
+
+    /**
+     * Tests, that malformed rows are rejected and reported, while the rest of the rows are imported
+     *
+     * @throws Exception
+     */
+    public void testImportCsvWithRejectedRows() throws Exception {
+        String csv = "lastname,firstname,dateofbirth\n" +
+                "Smith,Morty,1999-07-25\n" +
+                "\"Sanchez, Jr.\",Rick,1920-06-13\n" +
+                ",Nobody,1990-01-01\n" +
+                "Smith,Summer,not-a-date\n" +
+                "Smith,Beth,1980-02-29\n";
+        try (UserSource source = new CsvUserSource(new StringReader(csv))) {
+            ImportReport report = importer.importFrom(source);
+            assertEquals(5, report.getRead());
+            assertEquals(3, report.getImported());
+            assertEquals(2, report.getRejected());
+            assertEquals(2, report.getRejections().size());
+        }
+        boolean found = false;
+        for (User user : dao.findAll()) {
+            found |= "Sanchez, Jr.".equals(user.getLastName());
+        }
+        assertTrue("Quoted value wasn't parsed", found);
+    }
+
+    /**
+     * Tests, that a malformed XML document stops the import with an exception
+     *
+     * @throws Exception
+     */
+    public void testMalformedXml() throws Exception {
+        String xml = "<dataset><table name=\"users\"><column>firstname</column><row><value>Rick</row>";
+        try (UserSource source = new XmlDataSetSource(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)))) {
+            importer.importFrom(source);
+            fail("Malformed XML must not be imported silently");
+        } catch (ImportException e) {
+            assertNotNull(e.getMessage());
+        }
+    }
+
+    /**
+     * Tests, that a failed insertion stops the stages, though their queues are full and nobody drains them
+     *
+     * @throws Exception
+     */
+    public void testFailedInsertionStopsStages() throws Exception {
+        importer = new UserImporter(new MockUserDao() {
+            @Override
+            public List<User> createAll(Collection<User> users, int chunkSize) throws DatabaseException {
+                throw new DatabaseException("Insertion not executed");
+            }
+        }, 2, 1);
+        StringBuilder csv = new StringBuilder("lastname,firstname,dateofbirth\n");
+        for (int i = 0; i < 100; i++) {
+            csv.append("Smith,Morty").append(i).append(",1999-07-25\n");
+        }
+        try (UserSource source = new CsvUserSource(new StringReader(csv.toString()))) {
+            importer.importFrom(source);
+            fail("Failed insertion must stop the import");
+        } catch (DatabaseException e) {
+            assertEquals("Insertion not executed", e.getMessage());
+        }
+        long end = System.currentTimeMillis() + 2000;
+        while (countStageThreads() > 0 && System.currentTimeMillis() < end) {
+            Thread.sleep(10);
+        }
+        assertEquals("Stages are still running", 0, countStageThreads());
+    }
+
+    private static int countStageThreads() {
+        int count = 0;
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if ("user-import-stage".equals(thread.getName()) && thread.isAlive()) {
+                count++;
+            }
+        }
+        return count;
+    }
+}
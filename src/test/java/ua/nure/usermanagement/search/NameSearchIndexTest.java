@@ -0,0 +1,66 @@
+package ua.nure.usermanagement.search;
+
+import junit.framework.TestCase;
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.database.MockUserDao;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * A test case for NameSearchIndex class
+ */
+public class NameSearchIndexTest extends TestCase {
+
+    private NameSearchIndex index;
+    private User rick;
+    private User morty;
+    private User yevhenii;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        MockUserDao dao = new MockUserDao();
+        rick = dao.create(new User("Rick", "Sanchez", new Date()));
+        morty = dao.create(new User("Morty", "Smith", new Date()));
+        yevhenii = dao.create(new User("\u0404\u0432\u0433\u0435\u043D\u0456\u0439", "\u0412\u043E\u043B\u043A\u043E\u0432", new Date()));
+        index = new NameSearchIndex();
+        index.build(dao);
+    }
+
+    /**
+     * Tests, that misspelled names find the user, and the most similar user goes first
+     */
+    public void testSearchMisspelled() {
+        assertEquals(3, index.size());
+        assertEquals(Collections.singletonList(rick.getId()), index.search("Sanches", 10));
+        List<Long> found = index.search("Mort Smit", 10);
+        assertEquals(morty.getId(), found.get(0));
+        assertTrue(index.search("Xyz", 10).isEmpty());
+    }
+
+    /**
+     * Tests, that Latin spelling of a Cyrillic name finds the user
+     */
+    public void testSearchTransliterated() {
+        assertEquals(Collections.singletonList(yevhenii.getId()), index.search("Volkov", 10));
+        assertEquals(yevhenii.getId(), index.search("Yevhenii", 10).get(0));
+    }
+
+    /**
+     * Tests, that notifications about changes keep the index up to date
+     */
+    public void testChanges() {
+        User changed = new User(rick);
+        changed.setLastName("Smith");
+        index.userUpdated(changed);
+        index.userDeleted(morty.getId());
+        User jerry = new User(10L, "Jerry", "Smith", new Date());
+        index.userCreated(jerry);
+        assertEquals(Arrays.asList(jerry.getId(), rick.getId()).size(), index.search("Smith", 10).size());
+        assertTrue(index.search("Smith", 10).containsAll(Arrays.asList(jerry.getId(), rick.getId())));
+        assertTrue(index.search("Sanchez", 10).isEmpty());
+        assertEquals(3, index.size());
+    }
+}
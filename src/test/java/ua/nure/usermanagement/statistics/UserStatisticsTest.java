@@ -0,0 +1,92 @@
+package ua.nure.usermanagement.statistics;
+
+import junit.framework.TestCase;
+import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.database.InMemoryUserDao;
+import ua.nure.usermanagement.database.ListeningUserDao;
+import ua.nure.usermanagement.database.MockUserDao;
+
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.SortedMap;
+
+/**
+ * A test case for UserStatistics class
+ */
+public class UserStatisticsTest extends TestCase {
+
+    private UserStatistics statistics;
+    private User rick;
+    private User morty;
+    private int thisYear;
+
+    public void setUp() throws Exception {
+        super.setUp();
+        thisYear = LocalDate.now().getYear();
+        MockUserDao dao = new MockUserDao();
+        rick = dao.create(new User("Rick", "Sanchez", bornIn(thisYear - 70)));
+        morty = dao.create(new User("Morty", "Smith", bornIn(thisYear - 14)));
+        dao.create(new User("Summer", "Smith", bornIn(thisYear - 17)));
+        statistics = new UserStatistics();
+        statistics.build(dao);
+    }
+
+    private static Date bornIn(int year) {
+        return Date.from(LocalDate.of(year, 6, 1).atStartOfDay(ZoneId.systemDefault()).toInstant());
+    }
+
+    /**
+     * Tests, that the initial count sees all users of the DAO
+     */
+    public void testBuild() {
+        assertEquals(3, statistics.getTotal());
+        SortedMap<Integer, Integer> ages = statistics.getAgeHistogram(10);
+        assertEquals(2, ages.size());
+        assertEquals(Integer.valueOf(2), ages.get(10));
+        assertEquals(Integer.valueOf(1), ages.get(70));
+        assertEquals(Integer.valueOf(1), statistics.getBirthYearHistogram().get(thisYear - 70));
+    }
+
+    /**
+     * Tests, that notifications about changes move users between bars and empty bars disappear
+     */
+    public void testChanges() {
+        statistics.userCreated(new User(10L, "Jerry", "Smith", bornIn(thisYear - 35)));
+        User changed = new User(rick);
+        changed.setDateOfBirth(bornIn(thisYear - 34));
+        statistics.userUpdated(changed);
+        statistics.userDeleted(morty.getId());
+        statistics.userDeleted(999L);
+        assertEquals(3, statistics.getTotal());
+        SortedMap<Integer, Integer> ages = statistics.getAgeHistogram(10);
+        assertNull(ages.get(70));
+        assertEquals(Integer.valueOf(2), ages.get(30));
+        assertEquals(Integer.valueOf(1), ages.get(10));
+        assertNull(statistics.getBirthYearHistogram().get(thisYear - 14));
+    }
+
+    /**
+     * Tests, that users, skipped by a batch update or delete, don't reach the statistics
+     */
+    public void testSkippedUsersAreNotCounted() throws Exception {
+        ListeningUserDao dao = new ListeningUserDao(new InMemoryUserDao(null, 0));
+        UserStatistics statistics = new UserStatistics();
+        dao.addListener(statistics);
+        User rick = dao.create(new User("Rick", "Sanchez", bornIn(thisYear - 70)));
+        User stale = new User(rick);
+        User changed = new User(rick);
+        changed.setDateOfBirth(bornIn(thisYear - 34));
+        dao.update(changed);
+        stale.setDateOfBirth(bornIn(thisYear - 20));
+        User missing = new User(999L, "Jerry", "Smith", bornIn(thisYear - 35));
+        changed.setFirstName("Pickle Rick");
+        assertEquals(1, dao.updateAll(Arrays.asList(stale, missing, changed)));
+        assertEquals(0, dao.deleteAll(Arrays.asList(999L)));
+        assertEquals(1, statistics.getTotal());
+        SortedMap<Integer, Integer> ages = statistics.getAgeHistogram(10);
+        assertEquals(1, ages.size());
+        assertEquals(Integer.valueOf(1), ages.get(30));
+    }
+}
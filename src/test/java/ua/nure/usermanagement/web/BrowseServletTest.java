@@ -1,14 +1,23 @@
 package ua.nure.usermanagement.web;
 
+import com.mockobjects.dynamic.C;
 import org.junit.Test;
 import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.UserSummary;
 
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.stream.Stream;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * An implementation of a {@code MockServletTestCase} for the BrowseServlet
@@ -28,17 +37,52 @@ public class BrowseServletTest extends MockServletTestCase {
 
     /**
      * Tests basic functionality of BrowseServlet, which is visualising
-     * all the entries in "users" table of the database
+     * the first page of entries in "users" table of the database
      */
     @Test
     public void testBrowse() {
-        User user = createJerry();
-        List<User> usersList = Collections.singletonList(user);
-        getMockUserDao().expectAndReturn("findAll", usersList);
+        List<UserSummary> usersList = Collections.singletonList(new UserSummary(createJerry()));
+        getMockUserDao().expectAndReturn("findSummaryPage", C.args(C.IS_NULL, C.eq(BrowseServlet.PAGE_SIZE + 1)), usersList);
         doGet();
         Collection collection = (Collection) getWebMockObjectFactory().getMockSession().getAttribute("users");
         assertNotNull(collection);
         assertSame(usersList, collection);
+        assertEquals(Boolean.FALSE, getWebMockObjectFactory().getMockSession().getAttribute("hasNext"));
+        assertEquals(Boolean.FALSE, getWebMockObjectFactory().getMockSession().getAttribute("hasPrevious"));
+    }
+
+    /**
+     * Tests a case, when user requests the page, that follows a given id,
+     * and there are more entries, than fit on one page
+     */
+    @Test
+    public void testBrowseNextPage() {
+        List<UserSummary> usersList = createUsers(1001L, BrowseServlet.PAGE_SIZE + 1);
+        getMockUserDao().expectAndReturn("findSummaryPage", C.args(C.eq(1000L), C.eq(BrowseServlet.PAGE_SIZE + 1)), usersList);
+        addRequestParameter("after", "1000");
+        doGet();
+        Collection collection = (Collection) getWebMockObjectFactory().getMockSession().getAttribute("users");
+        assertEquals(BrowseServlet.PAGE_SIZE, collection.size());
+        assertTrue("A page in the session must be a serializable copy", collection instanceof Serializable);
+        assertEquals(Boolean.TRUE, getWebMockObjectFactory().getMockSession().getAttribute("hasNext"));
+        assertEquals(Boolean.TRUE, getWebMockObjectFactory().getMockSession().getAttribute("hasPrevious"));
+        assertEquals(1001L + BrowseServlet.PAGE_SIZE - 1, getWebMockObjectFactory().getMockSession().getAttribute("lastId"));
+    }
+
+    /**
+     * Tests a case, when user requests the page, that precedes a given id
+     */
+    @Test
+    public void testBrowsePreviousPage() {
+        List<UserSummary> usersList = createUsers(1000L, BrowseServlet.PAGE_SIZE);
+        getMockUserDao().expectAndReturn("findSummaryPageBefore", C.args(C.eq(1020L), C.eq(BrowseServlet.PAGE_SIZE + 1)), usersList);
+        addRequestParameter("before", "1020");
+        doGet();
+        Collection collection = (Collection) getWebMockObjectFactory().getMockSession().getAttribute("users");
+        assertEquals(BrowseServlet.PAGE_SIZE, collection.size());
+        assertEquals(Boolean.TRUE, getWebMockObjectFactory().getMockSession().getAttribute("hasNext"));
+        assertEquals(Boolean.FALSE, getWebMockObjectFactory().getMockSession().getAttribute("hasPrevious"));
+        assertEquals(1000L, getWebMockObjectFactory().getMockSession().getAttribute("firstId"));
     }
 
     /**
@@ -71,6 +115,19 @@ public class BrowseServletTest extends MockServletTestCase {
         assertSame(user, returnedUser);
     }
 
+    /**
+     * Test a case, when user selects several entries and sends a request of deleting them.
+     * Entries must not be loaded from the database one by one
+     */
+    @Test
+    public void testDeleteSeveral() {
+        addRequestParameter("id", new String[]{"1000", "1001"});
+        addRequestParameter("delete", "Delete");
+        doPost();
+        List ids = (List) getWebMockObjectFactory().getMockSession().getAttribute("ids");
+        assertEquals(Arrays.asList(1000L, 1001L), ids);
+    }
+
     /**
      * Test a case, when user sends a request of showing detailed information of a selected entry
      */
@@ -85,4 +142,61 @@ public class BrowseServletTest extends MockServletTestCase {
         assertNotNull(returnedUser);
         assertSame(user, returnedUser);
     }
+
+    /**
+     * Test a case, when user selects several entries and sends a request of editing.
+     * No entry must be loaded, user must get an error instead
+     */
+    @Test
+    public void testEditSeveral() {
+        addRequestParameter("id", new String[]{"1000", "1001"});
+        addRequestParameter("edit", "Edit");
+        doPost();
+        assertEquals(BrowseServlet.SELECT_USER_ERROR, getWebMockObjectFactory().getMockRequest().getAttribute("error"));
+        assertNull(getWebMockObjectFactory().getMockSession().getAttribute("user"));
+    }
+
+    /**
+     * Test a case, when user selects several entries and sends a request of showing detailed information.
+     * No entry must be loaded, user must get an error instead
+     */
+    @Test
+    public void testDetailsOfSeveral() {
+        addRequestParameter("id", new String[]{"1000", "1001"});
+        addRequestParameter("details", "Details");
+        doPost();
+        assertEquals(BrowseServlet.SELECT_USER_ERROR, getWebMockObjectFactory().getMockRequest().getAttribute("error"));
+        assertNull(getWebMockObjectFactory().getMockSession().getAttribute("user"));
+    }
+
+    /**
+     * Creates a list of users with consecutive ids
+     * @param firstId Id of the first user
+     * @param amount Amount of users
+     * @return A new list of summaries of users
+     */
+    private List<UserSummary> createUsers(long firstId, int amount) {
+        List<UserSummary> users = new ArrayList<>();
+        for (int i = 0; i < amount; i++) {
+            users.add(new UserSummary(firstId + i, "Jerry", "Smith"));
+        }
+        return users;
+    }
+
+    /**
+     * Tests a case, when user searches for a misspelled name. The search index is built
+     * from the DAO on the first search, found users are loaded by their ids
+     */
+    @Test
+    public void testSearch() {
+        User user = createJerry();
+        getMockUserDao().expectAndReturn("streamAll", C.ANY_ARGS, Stream.of(user));
+        getMockUserDao().expectAndReturn("find", C.eq(1000L), user);
+        addRequestParameter("search", "Search");
+        addRequestParameter("query", "Jery Smit");
+        doPost();
+        Collection collection = (Collection) getWebMockObjectFactory().getMockSession().getAttribute("users");
+        assertEquals(Collections.singletonList(new UserSummary(user)), collection);
+        assertEquals(Boolean.FALSE, getWebMockObjectFactory().getMockSession().getAttribute("hasNext"));
+    }
 }
@@ -3,6 +3,9 @@ package ua.nure.usermanagement.web;
 import org.junit.Test;
 import ua.nure.usermanagement.User;
 
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * An implementation of a {@code MockServletTestCase} for the DeleteServlet
  */
@@ -33,4 +36,17 @@ public class DeleteServletTest extends MockServletTestCase {
         addRequestParameter("ok", "Ok");
         doPost();
     }
+
+    /**
+     * Tests a case, when several entries were selected on the browse page.
+     * They must be deleted by one call, that receives their ids
+     */
+    @Test
+    public void testDeleteSeveral() {
+        List<Long> ids = Arrays.asList(1000L, 1001L);
+        getMockUserDao().expectAndReturn("deleteAll", ids, 2);
+        setSessionAttribute("ids", ids);
+        addRequestParameter("ok", "Ok");
+        doPost();
+    }
 }
@@ -5,6 +5,7 @@ import org.junit.Test;
 import static org.junit.Assert.*;
 
 import ua.nure.usermanagement.User;
+import ua.nure.usermanagement.database.exception.OptimisticLockException;
 
 import java.text.DateFormat;
 import java.util.Calendar;
@@ -41,6 +42,30 @@ public class EditServletTest extends MockServletTestCase {
         doPost();
     }
 
+    /**
+     * Tests a case, when the entry was changed by someone else after the page was shown.
+     * The page must be shown again with the current data of the entry
+     */
+    @Test
+    public void testEditConflict() {
+        User user = createJerry();
+        user.setVersion(1L);
+        User current = new User(user);
+        current.setLastName("Sanchez");
+        current.setVersion(2L);
+        getMockUserDao().expectAndThrow("update", user, new OptimisticLockException(user.getId()));
+        getMockUserDao().expectAndReturn("find", user.getId(), current);
+        addRequestParameter("id", user.getId().toString());
+        addRequestParameter("version", "1");
+        addRequestParameter("firstName", user.getFirstName());
+        addRequestParameter("lastName", user.getLastName());
+        addRequestParameter("dateOfBirth", DateFormat.getDateInstance().format(user.getDateOfBirth()));
+        addRequestParameter("ok", "Ok");
+        doPost();
+        assertNotNull(getWebMockObjectFactory().getMockRequest().getAttribute("error"));
+        assertSame(current, getWebMockObjectFactory().getMockSession().getAttribute("user"));
+    }
+
     /**
      * Tests a case, when firstName parameter wasn't added to the request
      */
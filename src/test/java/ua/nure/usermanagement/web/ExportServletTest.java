@@ -0,0 +1,78 @@
+package ua.nure.usermanagement.web;
+
+import org.junit.Test;
+import ua.nure.usermanagement.User;
+
+import java.text.SimpleDateFormat;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * An implementation of a {@code MockServletTestCase} for the ExportServlet
+ */
+public class ExportServletTest extends MockServletTestCase {
+
+    /**
+     * Sets up a new version of an ExportServlet for each test
+     *
+     * @throws Exception If any malfunction occurs
+     */
+    @Override
+    public void setUp() throws Exception {
+        super.setUp();
+        createServlet(ExportServlet.class);
+    }
+
+    /**
+     * Tests basic functionality of ExportServlet, which is writing
+     * all entries of "users" table as CSV
+     */
+    @Test
+    public void testExportCsv() {
+        User user = createJerry();
+        user.setLastName("Smith, Sr.");
+        getMockUserDao().expectAndReturn("streamAll", ExportServlet.FETCH_SIZE, Stream.of(user));
+        doGet();
+        String date = new SimpleDateFormat("yyyy-MM-dd").format(user.getDateOfBirth());
+        assertEquals("id,firstname,lastname,dateofbirth\n1000,Jerry,\"Smith, Sr.\"," + date + "\n", getOutput());
+    }
+
+    /**
+     * Tests a case, when user requests entries as newline-delimited JSON
+     */
+    @Test
+    public void testExportNdjson() {
+        User user = createJerry();
+        user.setFirstName("\"Jerry\"");
+        getMockUserDao().expectAndReturn("streamAll", ExportServlet.FETCH_SIZE, Stream.of(user));
+        addRequestParameter("format", "ndjson");
+        doGet();
+        String date = new SimpleDateFormat("yyyy-MM-dd").format(user.getDateOfBirth());
+        assertEquals("{\"id\":1000,\"firstName\":\"\\\"Jerry\\\"\",\"lastName\":\"Smith\",\"dateOfBirth\":\"" + date + "\"}\n",
+                getOutput());
+    }
+
+    /**
+     * Tests, that rows are written to the response, while the rest of the table is still being read,
+     * i.e. that the export doesn't wait for the whole table
+     */
+    @Test
+    public void testRowsAreWrittenBeforeTableIsRead() {
+        AtomicInteger read = new AtomicInteger();
+        AtomicInteger writtenBeforeLastRead = new AtomicInteger(-1);
+        Stream<User> users = Stream.generate(() -> {
+            if (read.incrementAndGet() == ExportServlet.FLUSH_SIZE + 1) {
+                writtenBeforeLastRead.set(getOutput().split("\n").length - 1);
+            }
+            return createJerry();
+        }).limit(ExportServlet.FLUSH_SIZE + 1);
+        getMockUserDao().expectAndReturn("streamAll", ExportServlet.FETCH_SIZE, users);
+        doGet();
+        assertTrue("Only " + writtenBeforeLastRead.get() + " rows were written before the last one was read",
+                writtenBeforeLastRead.get() >= ExportServlet.FLUSH_SIZE);
+        assertEquals(ExportServlet.FLUSH_SIZE + 2, getOutput().split("\n").length);
+    }
+}
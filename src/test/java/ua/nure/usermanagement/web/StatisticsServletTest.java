@@ -0,0 +1,41 @@
+package ua.nure.usermanagement.web;
+
+import com.mockobjects.dynamic.C;
+import org.junit.Test;
+import ua.nure.usermanagement.User;
+
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * An implementation of a {@code MockServletTestCase} for the StatisticsServlet
+ */
+public class StatisticsServletTest extends MockServletTestCase {
+
+    /**
+     * Sets up a new version of a StatisticsServlet for each test
+     *
+     * @throws Exception If any malfunction occurs
+     */
+    public void setUp() throws Exception {
+        super.setUp();
+        createServlet(StatisticsServlet.class);
+    }
+
+    /**
+     * Tests, that users are counted once and the counts are put into the request
+     */
+    @Test
+    public void testStatistics() {
+        User user = createJerry();
+        getMockUserDao().expectAndReturn("streamAll", C.ANY_ARGS, Stream.of(user));
+        doGet();
+        assertEquals(1, getWebMockObjectFactory().getMockRequest().getAttribute("total"));
+        Map ages = (Map) getWebMockObjectFactory().getMockRequest().getAttribute("ages");
+        assertEquals(1, ages.get(0));
+        doGet();
+        assertEquals(1, getWebMockObjectFactory().getMockRequest().getAttribute("total"));
+    }
+}